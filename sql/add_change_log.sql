@@ -0,0 +1,57 @@
+-- Records every inserted, updated and deleted row so that clients can fetch only what changed since their last poll.
+-- Keys of composite primary keys are joined with '|', e.g. visits as 'patientid|doctorid|yyyy-mm-dd'.
+CREATE TABLE IF NOT EXISTS change_log (
+    seq        BIGINT AUTO_INCREMENT PRIMARY KEY,
+    table_name VARCHAR(32)  NOT NULL,
+    row_key    VARCHAR(255) NOT NULL,
+    operation  CHAR(1)      NOT NULL, -- 'I' insert, 'U' update, 'D' delete
+    changed_at TIMESTAMP    NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    INDEX idx_change_log_changed_at (changed_at)
+);
+
+CREATE TRIGGER doctor_change_insert AFTER INSERT ON doctor FOR EACH ROW
+    INSERT INTO change_log (table_name, row_key, operation) VALUES ('doctor', NEW.doctorid, 'I');
+CREATE TRIGGER doctor_change_update AFTER UPDATE ON doctor FOR EACH ROW
+    INSERT INTO change_log (table_name, row_key, operation) VALUES ('doctor', NEW.doctorid, 'U');
+CREATE TRIGGER doctor_change_delete AFTER DELETE ON doctor FOR EACH ROW
+    INSERT INTO change_log (table_name, row_key, operation) VALUES ('doctor', OLD.doctorid, 'D');
+
+CREATE TRIGGER patient_change_insert AFTER INSERT ON patient FOR EACH ROW
+    INSERT INTO change_log (table_name, row_key, operation) VALUES ('patient', NEW.patientid, 'I');
+CREATE TRIGGER patient_change_update AFTER UPDATE ON patient FOR EACH ROW
+    INSERT INTO change_log (table_name, row_key, operation) VALUES ('patient', NEW.patientid, 'U');
+CREATE TRIGGER patient_change_delete AFTER DELETE ON patient FOR EACH ROW
+    INSERT INTO change_log (table_name, row_key, operation) VALUES ('patient', OLD.patientid, 'D');
+
+CREATE TRIGGER drug_change_insert AFTER INSERT ON drug FOR EACH ROW
+    INSERT INTO change_log (table_name, row_key, operation) VALUES ('drug', NEW.drugid, 'I');
+CREATE TRIGGER drug_change_update AFTER UPDATE ON drug FOR EACH ROW
+    INSERT INTO change_log (table_name, row_key, operation) VALUES ('drug', NEW.drugid, 'U');
+CREATE TRIGGER drug_change_delete AFTER DELETE ON drug FOR EACH ROW
+    INSERT INTO change_log (table_name, row_key, operation) VALUES ('drug', OLD.drugid, 'D');
+
+CREATE TRIGGER insurance_change_insert AFTER INSERT ON insurance FOR EACH ROW
+    INSERT INTO change_log (table_name, row_key, operation) VALUES ('insurance', NEW.insuranceid, 'I');
+CREATE TRIGGER insurance_change_update AFTER UPDATE ON insurance FOR EACH ROW
+    INSERT INTO change_log (table_name, row_key, operation) VALUES ('insurance', NEW.insuranceid, 'U');
+CREATE TRIGGER insurance_change_delete AFTER DELETE ON insurance FOR EACH ROW
+    INSERT INTO change_log (table_name, row_key, operation) VALUES ('insurance', OLD.insuranceid, 'D');
+
+CREATE TRIGGER prescription_change_insert AFTER INSERT ON prescription FOR EACH ROW
+    INSERT INTO change_log (table_name, row_key, operation) VALUES ('prescription', NEW.prescriptionid, 'I');
+CREATE TRIGGER prescription_change_update AFTER UPDATE ON prescription FOR EACH ROW
+    INSERT INTO change_log (table_name, row_key, operation) VALUES ('prescription', NEW.prescriptionid, 'U');
+CREATE TRIGGER prescription_change_delete AFTER DELETE ON prescription FOR EACH ROW
+    INSERT INTO change_log (table_name, row_key, operation) VALUES ('prescription', OLD.prescriptionid, 'D');
+
+CREATE TRIGGER visit_change_insert AFTER INSERT ON visit FOR EACH ROW
+    INSERT INTO change_log (table_name, row_key, operation) VALUES ('visit', CONCAT_WS('|', NEW.patientid, NEW.doctorid, NEW.dateofvisit), 'I');
+CREATE TRIGGER visit_change_update AFTER UPDATE ON visit FOR EACH ROW
+    INSERT INTO change_log (table_name, row_key, operation) VALUES ('visit', CONCAT_WS('|', NEW.patientid, NEW.doctorid, NEW.dateofvisit), 'U');
+CREATE TRIGGER visit_change_delete AFTER DELETE ON visit FOR EACH ROW
+    INSERT INTO change_log (table_name, row_key, operation) VALUES ('visit', CONCAT_WS('|', OLD.patientid, OLD.doctorid, OLD.dateofvisit), 'D');
+
+-- Clients only read entries written after they started, so old entries can be discarded.
+-- Requires the event scheduler (SET GLOBAL event_scheduler = ON); otherwise run the DELETE periodically.
+CREATE EVENT IF NOT EXISTS change_log_cleanup ON SCHEDULE EVERY 1 HOUR
+    DO DELETE FROM change_log WHERE changed_at < NOW() - INTERVAL 1 DAY;
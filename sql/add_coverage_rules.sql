@@ -0,0 +1,21 @@
+-- Adds the coverage rules used to decide whether a visit or prescription can be claimed from the patient's insurer.
+-- An insurer without rules covers every claim. Rule types:
+--   COVERED_DRUG     drugid is on the insurer's drug list; once an insurer lists any drug, only listed drugs are covered
+--   EXCLUDED_DRUG    drugid is never covered
+--   VISIT_LIMIT      at most max_visits visits per patient and calendar year are covered
+--   COVERAGE_PERIOD  claims dated from valid_from to valid_until (inclusive, either may be open) are covered;
+--                    once an insurer has any period, claims outside all of its periods are not covered
+CREATE TABLE IF NOT EXISTS coverage_rule (
+    ruleid      INT AUTO_INCREMENT PRIMARY KEY,
+    insuranceid VARCHAR(64) NOT NULL,
+    rule_type   VARCHAR(16) NOT NULL,
+    drugid      VARCHAR(64),
+    max_visits  INT,
+    valid_from  DATE,
+    valid_until DATE,
+    INDEX idx_coverage_rule_insurance (insuranceid),
+    CHECK (rule_type IN ('COVERED_DRUG', 'EXCLUDED_DRUG', 'VISIT_LIMIT', 'COVERAGE_PERIOD'))
+);
+
+-- Counts a patient's earlier visits in the year when a new visit is checked.
+CREATE INDEX idx_visit_patient_date ON visit (patientid, dateofvisit);
@@ -0,0 +1,12 @@
+-- Adds the drug interaction table read by the prescription conflict check.
+-- Each pair of drugs that must not be taken at the same time is listed once, in either order.
+CREATE TABLE IF NOT EXISTS drug_interaction (
+    drugid       VARCHAR(64)  NOT NULL,
+    other_drugid VARCHAR(64)  NOT NULL,
+    description  VARCHAR(255),
+    PRIMARY KEY (drugid, other_drugid),
+    CHECK (drugid <> other_drugid)
+);
+
+-- Finds a patient's prescriptions by date when a new one is checked.
+CREATE INDEX idx_prescription_patient_date ON prescription (patientid, dateprescribed);
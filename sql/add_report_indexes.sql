@@ -0,0 +1,5 @@
+-- Covering indexes for the workload reports, which count visits and prescriptions within a date range by doctor.
+-- Leading with the date lets a report read only the index entries of its period, and the remaining columns
+-- let it count visits, distinct patients and prescriptions without reading the rows.
+CREATE INDEX idx_visit_date_doctor ON visit (dateofvisit, doctorid, patientid);
+CREATE INDEX idx_prescription_date_doctor ON prescription (dateprescribed, doctorid);
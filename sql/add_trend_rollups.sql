@@ -0,0 +1,124 @@
+-- Keeps visit and prescription counts per day, week and month so that trend charts read a few summary rows instead of
+-- aggregating the visit and prescription tables. Triggers keep the counts up to date on every write, whichever client
+-- makes it, and the last statement fills them from the rows already there.
+-- Metrics and their dimension:
+--   VISITS_BY_DOCTOR           doctorid
+--   VISITS_BY_DIAGNOSIS        diagnosis, trimmed and cut to 128 characters
+--   PRESCRIPTIONS_BY_DRUG      drugid
+--   PRESCRIPTIONS_BY_INSURER   insuranceid of the patient; moved along when a patient changes insurer
+-- A missing diagnosis or insurer is counted under ''. Weeks start on Monday.
+-- Run with the mysql client, which understands the DELIMITER commands.
+CREATE TABLE IF NOT EXISTS trend_rollup (
+    metric       VARCHAR(32)  NOT NULL,
+    dimension    VARCHAR(128) NOT NULL,
+    granularity  VARCHAR(8)   NOT NULL, -- 'DAY', 'WEEK' or 'MONTH'
+    period_start DATE         NOT NULL,
+    count        INT          NOT NULL,
+    PRIMARY KEY (metric, granularity, period_start, dimension)
+);
+
+DELIMITER //
+
+-- First day of the day, week or month containing a day.
+CREATE FUNCTION rollup_period(p_granularity VARCHAR(8), p_day DATE) RETURNS DATE DETERMINISTIC
+BEGIN
+    RETURN CASE p_granularity
+        WHEN 'WEEK' THEN p_day - INTERVAL WEEKDAY(p_day) DAY
+        WHEN 'MONTH' THEN p_day - INTERVAL (DAYOFMONTH(p_day) - 1) DAY
+        ELSE p_day
+    END;
+END//
+
+-- Adds a change to the day, week and month counts of one dimension.
+CREATE PROCEDURE bump_rollup(IN p_metric VARCHAR(32), IN p_dimension VARCHAR(128), IN p_day DATE, IN p_delta INT)
+BEGIN
+    INSERT INTO trend_rollup (metric, dimension, granularity, period_start, count)
+    VALUES (p_metric, COALESCE(p_dimension, ''), 'DAY', rollup_period('DAY', p_day), p_delta),
+           (p_metric, COALESCE(p_dimension, ''), 'WEEK', rollup_period('WEEK', p_day), p_delta),
+           (p_metric, COALESCE(p_dimension, ''), 'MONTH', rollup_period('MONTH', p_day), p_delta)
+    ON DUPLICATE KEY UPDATE count = count + VALUES(count);
+END//
+
+CREATE TRIGGER visit_rollup_insert AFTER INSERT ON visit FOR EACH ROW
+BEGIN
+    CALL bump_rollup('VISITS_BY_DOCTOR', NEW.doctorid, NEW.dateofvisit, 1);
+    CALL bump_rollup('VISITS_BY_DIAGNOSIS', LEFT(TRIM(NEW.diagnosis), 128), NEW.dateofvisit, 1);
+END//
+
+CREATE TRIGGER visit_rollup_update AFTER UPDATE ON visit FOR EACH ROW
+BEGIN
+    IF NOT (OLD.doctorid <=> NEW.doctorid AND OLD.dateofvisit <=> NEW.dateofvisit) THEN
+        CALL bump_rollup('VISITS_BY_DOCTOR', OLD.doctorid, OLD.dateofvisit, -1);
+        CALL bump_rollup('VISITS_BY_DOCTOR', NEW.doctorid, NEW.dateofvisit, 1);
+    END IF;
+    IF NOT (LEFT(TRIM(OLD.diagnosis), 128) <=> LEFT(TRIM(NEW.diagnosis), 128) AND OLD.dateofvisit <=> NEW.dateofvisit) THEN
+        CALL bump_rollup('VISITS_BY_DIAGNOSIS', LEFT(TRIM(OLD.diagnosis), 128), OLD.dateofvisit, -1);
+        CALL bump_rollup('VISITS_BY_DIAGNOSIS', LEFT(TRIM(NEW.diagnosis), 128), NEW.dateofvisit, 1);
+    END IF;
+END//
+
+CREATE TRIGGER visit_rollup_delete AFTER DELETE ON visit FOR EACH ROW
+BEGIN
+    CALL bump_rollup('VISITS_BY_DOCTOR', OLD.doctorid, OLD.dateofvisit, -1);
+    CALL bump_rollup('VISITS_BY_DIAGNOSIS', LEFT(TRIM(OLD.diagnosis), 128), OLD.dateofvisit, -1);
+END//
+
+CREATE TRIGGER prescription_rollup_insert AFTER INSERT ON prescription FOR EACH ROW
+BEGIN
+    CALL bump_rollup('PRESCRIPTIONS_BY_DRUG', NEW.drugid, NEW.dateprescribed, 1);
+    CALL bump_rollup('PRESCRIPTIONS_BY_INSURER', (SELECT insuranceid FROM patient WHERE patientid = NEW.patientid), NEW.dateprescribed, 1);
+END//
+
+CREATE TRIGGER prescription_rollup_update AFTER UPDATE ON prescription FOR EACH ROW
+BEGIN
+    IF NOT (OLD.drugid <=> NEW.drugid AND OLD.dateprescribed <=> NEW.dateprescribed) THEN
+        CALL bump_rollup('PRESCRIPTIONS_BY_DRUG', OLD.drugid, OLD.dateprescribed, -1);
+        CALL bump_rollup('PRESCRIPTIONS_BY_DRUG', NEW.drugid, NEW.dateprescribed, 1);
+    END IF;
+    IF NOT (OLD.patientid <=> NEW.patientid AND OLD.dateprescribed <=> NEW.dateprescribed) THEN
+        CALL bump_rollup('PRESCRIPTIONS_BY_INSURER', (SELECT insuranceid FROM patient WHERE patientid = OLD.patientid), OLD.dateprescribed, -1);
+        CALL bump_rollup('PRESCRIPTIONS_BY_INSURER', (SELECT insuranceid FROM patient WHERE patientid = NEW.patientid), NEW.dateprescribed, 1);
+    END IF;
+END//
+
+CREATE TRIGGER prescription_rollup_delete AFTER DELETE ON prescription FOR EACH ROW
+BEGIN
+    CALL bump_rollup('PRESCRIPTIONS_BY_DRUG', OLD.drugid, OLD.dateprescribed, -1);
+    CALL bump_rollup('PRESCRIPTIONS_BY_INSURER', (SELECT insuranceid FROM patient WHERE patientid = OLD.patientid), OLD.dateprescribed, -1);
+END//
+
+-- Moves a patient's prescriptions to their new insurer's counts.
+CREATE TRIGGER patient_rollup_update AFTER UPDATE ON patient FOR EACH ROW
+BEGIN
+    IF NOT (OLD.insuranceid <=> NEW.insuranceid) THEN
+        INSERT INTO trend_rollup (metric, dimension, granularity, period_start, count)
+        SELECT 'PRESCRIPTIONS_BY_INSURER', moved.dimension, g.granularity, rollup_period(g.granularity, pr.dateprescribed), SUM(moved.delta)
+        FROM prescription pr
+        CROSS JOIN (SELECT 'DAY' AS granularity UNION ALL SELECT 'WEEK' UNION ALL SELECT 'MONTH') g
+        CROSS JOIN (SELECT COALESCE(OLD.insuranceid, '') AS dimension, -1 AS delta
+                    UNION ALL SELECT COALESCE(NEW.insuranceid, ''), 1) moved
+        WHERE pr.patientid = NEW.patientid
+        GROUP BY moved.dimension, g.granularity, rollup_period(g.granularity, pr.dateprescribed)
+        ON DUPLICATE KEY UPDATE count = count + VALUES(count);
+    END IF;
+END//
+
+DELIMITER ;
+
+-- Fill the counts from the existing rows. The triggers are already in place, so visits and prescriptions are locked
+-- against writes until the counts are filled; otherwise a row written in between would be counted twice, once by its
+-- trigger and once below. A locked table can be named only once in a statement, so every reference to a table has its
+-- own alias and is locked under it.
+LOCK TABLES trend_rollup WRITE, visit AS v1 READ, visit AS v2 READ, prescription AS pr1 READ, prescription AS pr2 READ,
+    patient AS p READ;
+DELETE FROM trend_rollup;
+INSERT INTO trend_rollup (metric, dimension, granularity, period_start, count)
+SELECT metric, dimension, g.granularity, rollup_period(g.granularity, day), COUNT(*)
+FROM (SELECT 'VISITS_BY_DOCTOR' AS metric, v1.doctorid AS dimension, v1.dateofvisit AS day FROM visit v1
+      UNION ALL SELECT 'VISITS_BY_DIAGNOSIS', COALESCE(LEFT(TRIM(v2.diagnosis), 128), ''), v2.dateofvisit FROM visit v2
+      UNION ALL SELECT 'PRESCRIPTIONS_BY_DRUG', pr1.drugid, pr1.dateprescribed FROM prescription pr1
+      UNION ALL SELECT 'PRESCRIPTIONS_BY_INSURER', COALESCE(p.insuranceid, ''), pr2.dateprescribed
+                FROM prescription pr2 JOIN patient p ON p.patientid = pr2.patientid) facts
+CROSS JOIN (SELECT 'DAY' AS granularity UNION ALL SELECT 'WEEK' UNION ALL SELECT 'MONTH') g
+GROUP BY metric, dimension, g.granularity, rollup_period(g.granularity, day);
+UNLOCK TABLES;
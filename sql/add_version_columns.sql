@@ -0,0 +1,8 @@
+-- Adds the row version columns used to detect concurrent edits.
+-- Every update increments the version; an update or delete made against an older version is rejected.
+ALTER TABLE doctor ADD COLUMN version INT NOT NULL DEFAULT 0;
+ALTER TABLE patient ADD COLUMN version INT NOT NULL DEFAULT 0;
+ALTER TABLE drug ADD COLUMN version INT NOT NULL DEFAULT 0;
+ALTER TABLE insurance ADD COLUMN version INT NOT NULL DEFAULT 0;
+ALTER TABLE visit ADD COLUMN version INT NOT NULL DEFAULT 0;
+ALTER TABLE prescription ADD COLUMN version INT NOT NULL DEFAULT 0;
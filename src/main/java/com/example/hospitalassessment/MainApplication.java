@@ -1,33 +1,45 @@
 package com.example.hospitalassessment;
 
 import com.example.hospitalassessment.controllers.MainController;
+import com.example.hospitalassessment.database.CircuitBreaker;
+import com.example.hospitalassessment.database.ConnectionPool;
+import com.example.hospitalassessment.database.DaoExecutors;
+import com.example.hospitalassessment.services.ChangeFeedService;
+import com.example.hospitalassessment.utils.AlertHelper;
 import io.github.cdimascio.dotenv.Dotenv;
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Scene;
+import javafx.scene.control.Alert;
 import javafx.stage.Stage;
 import com.example.hospitalassessment.database.DatabaseManager;
 
+import java.time.Duration;
+import java.time.Instant;
+
 /**
  * MainApplication serves as the entry point for the hospital database management system.
  * It initializes the primary application window and manages the application lifecycle.
  */
 public class MainApplication extends Application {
-    private static DatabaseManager databaseManager; // Manages the application's database connection.
+    private static final String CDS_TRAINING_PROPERTY = "hospital.cds.training"; // Set when recording the class data sharing archive.
+    private static final long CHANGE_POLL_MILLIS = Long.getLong("hospital.changeFeed.intervalMillis", 5000); // Pause between checks for other users' changes.
+
+    private static volatile DatabaseManager databaseManager; // Manages the application's database connection.
+    private static volatile ConnectionPool connectionPool; // Extra connections used for parallel background loads.
+    private static volatile ChangeFeedService changeFeed; // Reports rows changed by other users.
 
     /**
      * Initializes the application's main stage and sets up the primary scene.
-     * Loads the database configuration and establishes a connection.
+     * The window is shown straight away while the database configuration is loaded and the
+     * connections are opened on a background thread, so startup is not held up by the network.
      *
      * @param stage the main window of the JavaFX application
      * @throws Exception if any error occurs during initialization or loading resources
      */
     @Override
     public void start(Stage stage) throws Exception {
-        Dotenv dotenv = Dotenv.load();
-
-        databaseManager = new DatabaseManager(dotenv.get("DB_URL"), dotenv.get("DB_USER"), dotenv.get("DB_PASSWORD"));
-
         FXMLLoader fxmlLoader = new FXMLLoader(MainApplication.class.getResource("main.fxml"));
 
         Scene scene = new Scene(fxmlLoader.load(), 1437, 692);
@@ -36,9 +48,60 @@ public class MainApplication extends Application {
         stage.setScene(scene);
 
         MainController mainController = fxmlLoader.getController();
-        mainController.setDatabaseManager(databaseManager);
-
         stage.show();
+        logStartupTime();
+
+        if (Boolean.getBoolean(CDS_TRAINING_PROPERTY)) {
+            // Training run for the class data sharing archive: exercise the view loading paths, then exit.
+            mainController.whenTableViewsPreloaded().whenComplete((ignored, error) -> Platform.runLater(Platform::exit));
+            return;
+        }
+
+        Thread connector = new Thread(() -> connect(mainController), "database-connector");
+        connector.setDaemon(true);
+        connector.start();
+    }
+
+    /**
+     * Loads the database configuration and opens the application's connections,
+     * handing them to the main controller on the JavaFX application thread once ready.
+     *
+     * @param mainController the controller that receives the connections
+     */
+    private static void connect(MainController mainController) {
+        try {
+            Dotenv dotenv = Dotenv.load();
+
+            // One breaker for every connection, so that all of them stop waiting once the database is found unreachable
+            CircuitBreaker circuitBreaker = new CircuitBreaker();
+            DatabaseManager manager = new DatabaseManager(dotenv.get("DB_URL"), dotenv.get("DB_USER"), dotenv.get("DB_PASSWORD"), circuitBreaker);
+            ConnectionPool pool = new ConnectionPool(dotenv.get("DB_URL"), dotenv.get("DB_USER"), dotenv.get("DB_PASSWORD"),
+                    Integer.parseInt(dotenv.get("DB_POOL_SIZE", "3")), circuitBreaker);
+
+            ChangeFeedService feed = new ChangeFeedService(pool, CHANGE_POLL_MILLIS);
+
+            databaseManager = manager;
+            connectionPool = pool;
+            changeFeed = feed;
+            Platform.runLater(() -> {
+                mainController.setConnectionPool(pool);
+                mainController.setChangeFeed(feed);
+                mainController.setDatabaseManager(manager);
+                feed.start();
+            });
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            Platform.runLater(() -> AlertHelper.showAlert("Connection Error",
+                    "Could not connect to the database: " + e.getMessage(), Alert.AlertType.ERROR));
+        }
+    }
+
+    /**
+     * Prints how long it took from process launch until the main window was shown.
+     */
+    private static void logStartupTime() {
+        ProcessHandle.current().info().startInstant().ifPresent(startedAt ->
+                System.out.println("Main window shown after " + Duration.between(startedAt, Instant.now()).toMillis() + " ms"));
     }
 
     /**
@@ -51,14 +114,21 @@ public class MainApplication extends Application {
     }
 
     /**
-     * Stops the application lifecycle by ensuring the database connection is properly closed.
+     * Stops the application lifecycle by ensuring the database connections are properly closed.
      * Logs a message during the process.
      */
     @Override
     public void stop() {
         System.out.println("Closing database connection...");
+        if (changeFeed != null) {
+            changeFeed.stop();
+        }
         if (databaseManager != null) {
             databaseManager.closeConnection();
         }
+        if (connectionPool != null) {
+            connectionPool.close();
+        }
+        DaoExecutors.shutdown();
     }
 }
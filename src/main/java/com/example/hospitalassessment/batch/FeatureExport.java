@@ -0,0 +1,68 @@
+package com.example.hospitalassessment.batch;
+
+import com.example.hospitalassessment.database.ConnectionPool;
+import com.example.hospitalassessment.services.FeatureExtractionPipeline;
+import com.example.hospitalassessment.services.FeatureExtractionPipeline.Format;
+import com.example.hospitalassessment.services.FeatureExtractionPipeline.Report;
+import com.example.hospitalassessment.services.FeatureExtractionPipeline.Settings;
+import io.github.cdimascio.dotenv.Dotenv;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Locale;
+
+/**
+ * FeatureExport writes the per-patient training matrix for predictive modelling without starting the user interface.
+ * Usage: {@code FeatureExport <output file> [--as-of=yyyy-mm-dd] [--format=csv|binary] [--chunk=<patients>] [--drugs=<count>]}.
+ */
+public class FeatureExport {
+    private static final int DEFAULT_CHUNK_SIZE = 5_000; // Patients per chunk unless --chunk is given.
+    private static final int DEFAULT_DRUG_COLUMNS = 20; // Drug exposure columns unless --drugs is given.
+
+    /**
+     * Loads the database configuration, opens the connection pool and writes the matrix.
+     * Each connection of the pool serves one worker.
+     *
+     * @param args the output file followed by optional settings
+     * @throws IOException if the matrix cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("Usage: FeatureExport <output file> [--as-of=yyyy-mm-dd] [--format=csv|binary] [--chunk=<patients>] [--drugs=<count>]");
+            System.exit(2);
+        }
+        Path output = Path.of(args[0]);
+        LocalDate asOf = LocalDate.now();
+        Format format = args[0].toLowerCase(Locale.ROOT).endsWith(".csv") ? Format.CSV : Format.BINARY;
+        int chunkSize = DEFAULT_CHUNK_SIZE;
+        int drugColumns = DEFAULT_DRUG_COLUMNS;
+        for (int i = 1; i < args.length; i++) {
+            String[] option = args[i].split("=", 2);
+            if (option.length != 2) {
+                throw new IllegalArgumentException("Options take the form --name=value: " + args[i]);
+            }
+            switch (option[0]) {
+                case "--as-of" -> asOf = LocalDate.parse(option[1]);
+                case "--format" -> format = Format.valueOf(option[1].toUpperCase(Locale.ROOT));
+                case "--chunk" -> chunkSize = Integer.parseInt(option[1]);
+                case "--drugs" -> drugColumns = Integer.parseInt(option[1]);
+                default -> throw new IllegalArgumentException("Unknown option " + option[0]);
+            }
+        }
+
+        Dotenv dotenv = Dotenv.load();
+        int poolSize = Integer.parseInt(dotenv.get("DB_POOL_SIZE", "8"));
+        ConnectionPool connectionPool = new ConnectionPool(dotenv.get("DB_URL"), dotenv.get("DB_USER"), dotenv.get("DB_PASSWORD"), poolSize);
+        try (OutputStream out = Files.newOutputStream(output)) {
+            Report report = new FeatureExtractionPipeline(connectionPool, poolSize).run(new Settings(asOf, chunkSize, drugColumns, format), out);
+            System.out.printf("Wrote %d patients with %d features to %s in %.1f s (%d visits and %d prescriptions, %.0f rows/s).%n",
+                    report.patients(), report.features(), output, report.millis() / 1000.0, report.visits(), report.prescriptions(),
+                    report.rowsPerSecond());
+        } finally {
+            connectionPool.close();
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.hospitalassessment.controllers;
+
+import com.example.hospitalassessment.database.DataAccessContext;
+import com.example.hospitalassessment.database.EntityEvent;
+import com.example.hospitalassessment.services.ApplicationServices;
+import com.example.hospitalassessment.services.CohortIndex;
+import com.example.hospitalassessment.services.CohortQuery;
+import com.example.hospitalassessment.services.CompressedBitmap;
+import javafx.fxml.FXML;
+import javafx.scene.control.Label;
+import javafx.scene.control.ListView;
+import javafx.scene.control.TextField;
+
+/**
+ * Controller for the cohorts view, finding the patients that match a combination of insurers, drugs, doctors,
+ * specializations and diagnoses. Queries are answered from the shared {@link CohortIndex} without reading the database,
+ * and the last query is run again whenever a record changes so its count stays current.
+ */
+public class CohortController implements ViewController {
+    private static final int MAX_LISTED_PATIENTS = 500; // Patient IDs listed below the count.
+
+    @FXML // The cohort query, e.g. "insurer:I1 AND drug:D7".
+    private TextField cohortQuery;
+
+    @FXML // Shows the size of the cohort, or why the query could not be run.
+    private Label cohortStatus;
+
+    @FXML // Lists the IDs of the patients in the cohort.
+    private ListView<String> cohortPatients;
+
+    private CohortIndex cohorts; // Patients by insurer, drug, doctor, specialization and diagnosis.
+    private CohortQuery lastQuery; // The query shown, or null before the first one.
+
+    /**
+     * Not used; cohorts are read from the shared index rather than through the DAOs.
+     *
+     * @param dataAccess the DataAccessContext shared by all views
+     */
+    @Override
+    public void setDataAccess(DataAccessContext dataAccess) {
+    }
+
+    /**
+     * Takes the shared index queries are answered from.
+     *
+     * @param services the ApplicationServices shared by all views
+     */
+    @Override
+    public void setServices(ApplicationServices services) {
+        this.cohorts = services.cohorts();
+    }
+
+    /**
+     * Runs the last query again when the view is shown again.
+     */
+    @Override
+    public void refresh() {
+        showCohort();
+    }
+
+    /**
+     * Runs the last query again after a record changed, whether through this application or by another user.
+     *
+     * @param event the change to a record
+     */
+    @Override
+    public void onEntityChanged(EntityEvent<?> event) {
+        showCohort();
+    }
+
+    /**
+     * Handles a query being entered by parsing it and showing the patients it finds.
+     */
+    @FXML
+    private void handleRunQuery() {
+        String text = cohortQuery.getText();
+        if (text == null || text.isBlank()) {
+            cohortStatus.setText("Enter a query such as insurer:I1 AND drug:D7.");
+            return;
+        }
+        try {
+            lastQuery = CohortQuery.parse(text);
+        } catch (IllegalArgumentException e) {
+            cohortStatus.setText("The query could not be read: " + e.getMessage());
+            return;
+        }
+        showCohort();
+    }
+
+    /**
+     * Evaluates the last query and shows its count and the first patients it finds.
+     */
+    private void showCohort() {
+        if (lastQuery == null) {
+            return;
+        }
+        if (!cohorts.isReady()) {
+            cohortStatus.setText("Patients are still being indexed. Please try again shortly.");
+            return;
+        }
+        long started = System.nanoTime();
+        CompressedBitmap cohort = lastQuery.evaluate(cohorts);
+        int count = cohort.cardinality();
+        long micros = (System.nanoTime() - started) / 1_000;
+
+        cohortPatients.getItems().setAll(cohorts.patientIds(cohort, MAX_LISTED_PATIENTS));
+        cohortStatus.setText(count + (count == 1 ? " patient" : " patients") + " found in " + micros + " µs"
+                + (count > MAX_LISTED_PATIENTS ? "; the first " + MAX_LISTED_PATIENTS + " are listed." : "."));
+    }
+}
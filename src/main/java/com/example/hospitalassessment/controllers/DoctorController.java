@@ -2,25 +2,44 @@ package com.example.hospitalassessment.controllers;
 
 import com.example.hospitalassessment.database.DoctorDAO;
 import com.example.hospitalassessment.models.Doctor;
-import com.example.hospitalassessment.database.DatabaseManager;
+import com.example.hospitalassessment.database.DataAccessContext;
+import com.example.hospitalassessment.database.OperationResult;
+import com.example.hospitalassessment.forms.FieldValidator;
+import com.example.hospitalassessment.forms.FormSchema;
+import com.example.hospitalassessment.forms.FormValues;
+import com.example.hospitalassessment.services.ApplicationServices;
+import com.example.hospitalassessment.services.ChangeFeedService.Table;
+import com.example.hospitalassessment.services.ChangeFeedService.TableChanges;
+import com.example.hospitalassessment.services.PickerOptionsService;
+import com.example.hospitalassessment.services.PickerOptionsService.OptionType;
+import com.example.hospitalassessment.services.UniqueKeyService;
+import com.example.hospitalassessment.services.UniqueKeyService.KeyType;
 import com.example.hospitalassessment.utils.AlertHelper;
+import com.example.hospitalassessment.utils.MergeDialog;
+import com.example.hospitalassessment.utils.TableRows;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
-import javafx.fxml.FXMLLoader;
-import javafx.scene.Parent;
-import javafx.scene.Scene;
 import javafx.scene.control.*;
 import javafx.scene.control.cell.PropertyValueFactory;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.collections.transformation.FilteredList;
 import javafx.collections.transformation.SortedList;
-import javafx.stage.Modality;
 import javafx.stage.Stage;
 
 import java.util.*;
 
 public class DoctorController implements TableController {
+    private static final FormSchema FORM = FormSchema.builder("Doctor")
+            .text("Doctor ID", FieldValidator.required())
+            .text("First Name", FieldValidator.required())
+            .text("Surname", FieldValidator.required())
+            .text("Address")
+            .text("Email")
+            .text("Specialization")
+            .text("Hospital")
+            .build(); // Fields of the doctor entry form, in display order.
+
     @FXML // Table for displaying Doctor records.
     private TableView<Doctor> doctorTable;
 
@@ -31,22 +50,61 @@ public class DoctorController implements TableController {
     private TextField searchField;
 
 
-    private DatabaseManager databaseManager; // DatabaseManager instance for managing database operations.
+    private DataAccessContext dataAccess; // Shared DAOs and the event bus announcing their writes.
     private DoctorDAO doctorDAO; // DAO (Data Access Object) for interacting with Doctor-related database operations.
+    private PickerOptionsService pickerOptions; // Shared dropdown options, refreshed after doctor changes.
+    private UniqueKeyService uniqueKeys; // Checks doctor keys for uniqueness as they are typed.
+    private FormSchema entryForm = FORM; // Entry form fields, with uniqueness checks once the key service is set.
+    private final ObservableList<Doctor> doctorList = FXCollections.observableArrayList(); // Rows backing the table, updated in place on refresh.
+
+    /**
+     * Sets the shared data access context and takes the DAOs this view needs from it.
+     *
+     * @param dataAccess the DataAccessContext shared by all table views
+     */
+    @Override
+    public void setDataAccess(DataAccessContext dataAccess) {
+        this.dataAccess = dataAccess;
+        this.doctorDAO = dataAccess.doctors();
+        EntryFormPool.prewarm(entryForm);
+        loadDoctors();
+    }
 
     /**
-     * Sets the DatabaseManager instance for use throughout the class.
-     * This method is required to initialize the database connection externally.
+     * Takes the shared services providing dropdown options and checking keys for uniqueness, adding the checks to the entry form.
      *
-     * @param dbManager an instance of DatabaseManager
+     * @param services the ApplicationServices shared by all views
      */
     @Override
-    public void setDatabaseManager(DatabaseManager dbManager) {
-        this.databaseManager = dbManager;
-        this.doctorDAO = new DoctorDAO(databaseManager);
+    public void setServices(ApplicationServices services) {
+        this.pickerOptions = services.pickerOptions();
+        this.uniqueKeys = services.uniqueKeys();
+        this.entryForm = FORM
+                .withAsyncValidator("Doctor ID", uniqueKeys.validator(KeyType.DOCTOR_ID))
+                .withAsyncValidator("Email", uniqueKeys.validator(KeyType.DOCTOR_EMAIL));
+        uniqueKeys.prefetch(KeyType.DOCTOR_ID, KeyType.DOCTOR_EMAIL);
+    }
+
+    /**
+     * Reloads the table data when the view is shown again, applying only the rows that changed.
+     */
+    @Override
+    public void refresh() {
         loadDoctors();
     }
 
+    /**
+     * Applies doctors changed by other users, loading only the changed rows.
+     *
+     * @param changes the keys of the changed rows of one table
+     */
+    @Override
+    public void applyChanges(TableChanges changes) {
+        if (changes.table() == Table.DOCTOR) {
+            TableRows.apply(doctorList, doctorDAO.getDoctorsByIds(changes.changedKeys()), changes.deletedKeys(), Doctor::getId, DoctorController::rowContent);
+        }
+    }
+
     /**
      * Initializes the columns of the doctor table and sets cell value factories for each column.
      * Populates the "Hospital" column with values or "N/A" if the hospital field is null.
@@ -62,15 +120,28 @@ public class DoctorController implements TableController {
         colHospital.setCellValueFactory(cellData ->
                 new SimpleStringProperty(cellData.getValue().getHospital() != null ? cellData.getValue().getHospital() : "N/A")
         );
+
+        bindTableData();
     }
 
     /**
-     * Populates the doctor table with data retrieved from the database.
-     * Enables search and filter functionality based on doctor attributes.
-     * Also sorts the displayed data dynamically based on user interactions.
+     * Loads doctor data from the database and applies it to the table in place,
+     * so the current filter, sort order, selection and scroll position are kept.
+     * If the database cannot be reached, the rows already shown are kept as they are.
      */
     private void loadDoctors() {
-        ObservableList<Doctor> doctorList = FXCollections.observableArrayList(doctorDAO.getAllDoctors());
+        List<Doctor> rows = doctorDAO.getAllDoctors();
+        if (!dataAccess.getDatabaseManager().isAvailable()) {
+            return;
+        }
+        TableRows.merge(doctorList, rows, Doctor::getId, DoctorController::rowContent);
+    }
+
+    /**
+     * Connects the table to its rows through a filtered and sorted view.
+     * Filtering follows the search field, and sorting follows the table's sort order.
+     */
+    private void bindTableData() {
         FilteredList<Doctor> filteredData = new FilteredList<>(doctorList, p -> true);
 
         searchField.textProperty().addListener((observable, oldValue, newValue) -> {
@@ -94,13 +165,23 @@ public class DoctorController implements TableController {
         doctorTable.setItems(sortedData);
     }
 
+    /**
+     * Lists the values of a row that are compared to detect a change when the table is refreshed.
+     *
+     * @param doctor the row to describe
+     * @return the row's version and displayed values
+     */
+    private static List<?> rowContent(Doctor doctor) {
+        return Arrays.asList(doctor.getVersion(), doctor.getFirstName(), doctor.getSurname(), doctor.getAddress(), doctor.getEmail(), doctor.getSpecialization(), doctor.getHospital());
+    }
+
     /**
      * Handles the action of adding a new doctor by opening the entry form dialog.
      * The form is initialized with blank fields for the doctor details.
      */
     @FXML
     private void handleAddDoctor() {
-        openEntryForm("Add Doctor", null, Set.of());
+        openEntryForm("Add Doctor", null, Set.of(), 0);
     }
 
     /**
@@ -113,16 +194,7 @@ public class DoctorController implements TableController {
     private void handleModifyDoctor() {
         Doctor selectedDoctor = doctorTable.getSelectionModel().getSelectedItem();
         if (selectedDoctor != null) {
-            Map<String, String> doctorData = new HashMap<>();
-            doctorData.put("Doctor ID", selectedDoctor.getId());
-            doctorData.put("First Name", selectedDoctor.getFirstName());
-            doctorData.put("Surname", selectedDoctor.getSurname());
-            doctorData.put("Address", selectedDoctor.getAddress());
-            doctorData.put("Email", selectedDoctor.getEmail());
-            doctorData.put("Specialization", selectedDoctor.getSpecialization());
-            doctorData.put("Hospital", selectedDoctor.getHospital() != null ? selectedDoctor.getHospital() : "");
-
-            openEntryForm("Modify Doctor", doctorData, Set.of("Doctor ID"));
+            openEntryForm("Modify Doctor", formData(selectedDoctor), Set.of("Doctor ID"), selectedDoctor.getVersion());
         } else {
             AlertHelper.showAlert("Selection Error", "Please select a doctor to modify.", Alert.AlertType.ERROR);
         }
@@ -134,70 +206,43 @@ public class DoctorController implements TableController {
      * @param title               the title of the entry form window
      * @param existingData        a map containing existing doctor data, where keys are field identifiers and values are field values
      * @param undisplayableFields a set of field identifiers that should not be displayed in the form
+     * @param version             the version of the doctor being edited, checked when the changes are saved
      */
-    private void openEntryForm(String title, Map<String, String> existingData, Set<String> undisplayableFields) {
+    private void openEntryForm(String title, Map<String, ?> existingData, Set<String> undisplayableFields, int version) {
         try {
-            // Load the FXML file for the entry form
-            FXMLLoader loader = new FXMLLoader(getClass().getResource("/com/example/hospitalassessment/entry_form.fxml"));
-            Parent root = loader.load();
-            EntryFormController controller = loader.getController();
+            // Take a pooled entry form window; it is rebound to this record rather than rebuilt
+            EntryFormPool.EntryForm form = EntryFormPool.acquire(entryForm, doctorTable.getScene().getWindow());
+            EntryFormController controller = form.controller();
             controller.setFormTitle(title);
 
-            // Define fields for a new doctor (empty values)
-            if (existingData == null) {
-                existingData = new HashMap<>();
-                existingData.put("Doctor ID", "");
-                existingData.put("First Name", "");
-                existingData.put("Surname", "");
-                existingData.put("Address", "");
-                existingData.put("Email", "");
-                existingData.put("Specialization", "");
-                existingData.put("Hospital", "");
-            }
+            // Show the record, or empty fields for a new doctor, and hide fields that shouldn't be displayed
+            controller.bind(existingData != null ? existingData : Map.of(), undisplayableFields, Map.of());
 
-            // Set form fields and hide fields that shouldn't be displayed
-            controller.setFields(existingData, undisplayableFields);
-
-            // Create and configure a new window (Stage) for the form
-            Stage stage = new Stage();
+            // Configure the pooled window (Stage) for this use
+            Stage stage = form.stage();
             stage.setTitle(title);
-            stage.setScene(new Scene(root));
-            stage.initModality(Modality.WINDOW_MODAL); // Make it a modal window
-            stage.initOwner(doctorTable.getScene().getWindow()); // Attach it to the main window
-
-            // Preserve the original existing data for reference
-            Map<String, String> finalExistingData = existingData;
 
             // Define the action to be performed when the Save button is clicked
-            controller.setOnSaveCallback(() -> {
-                Map<String, String> updatedValues = controller.getFieldValues();
-
-                // Ensure Doctor ID is preserved if it's not in updatedValues
-                String doctorId = updatedValues.get("Doctor ID") == null ? finalExistingData.get("Doctor ID") : updatedValues.get("Doctor ID");
-
+            controller.setOnSaveCallback(values -> {
                 // Create a Doctor object with updated values
-                Doctor doctor = new Doctor(
-                        doctorId,
-                        updatedValues.get("First Name"),
-                        updatedValues.get("Surname"),
-                        updatedValues.get("Address"),
-                        updatedValues.get("Email"),
-                        updatedValues.get("Specialization"),
-                        updatedValues.get("Hospital")
-                );
+                Doctor doctor = toDoctor(values);
+                doctor.setVersion(version);
 
                 // Determine whether to update an existing doctor or add a new one
-                Map.Entry<String, Alert.AlertType> resultMessage = undisplayableFields.contains("Doctor ID")
-                        ? doctorDAO.updateDoctor(doctor)    // Update if "Doctor ID" is not editable
+                OperationResult result = undisplayableFields.contains("Doctor ID")
+                        ? updateDoctor(doctor, existingData, values)    // Update if "Doctor ID" is not editable
                         : doctorDAO.addDoctor(doctor);      // Otherwise, add a new doctor
 
                 // Show an alert message with the result of the operation
-                AlertHelper.showAlert(title, resultMessage.getKey(), resultMessage.getValue());
+                AlertHelper.showResult(title, result);
 
                 // If the operation was successful, close the form and refresh the doctor table
-                if (resultMessage.getValue() != Alert.AlertType.ERROR) {
+                if (result.isSuccess()) {
                     stage.close(); // Close window only on success
                     loadDoctors(); // Refresh table
+                    pickerOptions.invalidate(OptionType.DOCTORS);
+                    uniqueKeys.recordKey(KeyType.DOCTOR_ID, doctor.getId());
+                    uniqueKeys.recordKey(KeyType.DOCTOR_EMAIL, doctor.getEmail());
                 }
             });
 
@@ -208,6 +253,72 @@ public class DoctorController implements TableController {
         }
     }
 
+    /**
+     * Saves changes to an existing doctor. If another user saved the doctor after the form was opened,
+     * their changes are merged with these, asking which value to keep where both changed the same field,
+     * and the save is retried against the doctor as it is now.
+     *
+     * @param doctor the changed doctor, carrying the version the form was opened with
+     * @param base   the values the form was opened with
+     * @param values the values the user saved
+     * @return the result of the last save attempt
+     */
+    private OperationResult updateDoctor(Doctor doctor, Map<String, ?> base, FormValues values) {
+        OperationResult result = doctorDAO.updateDoctor(doctor);
+        while (result.getStatus() == OperationResult.Status.CONFLICT) {
+            Doctor current = doctorDAO.getDoctorById(doctor.getId());
+            if (current == null) {
+                return OperationResult.notFound("Error: This doctor was deleted by another user.");
+            }
+            Map<String, Object> theirs = formData(current);
+            values = MergeDialog.merge(entryForm, base, values, theirs);
+            if (values == null) {
+                return result; // Merge cancelled
+            }
+            base = theirs;
+            doctor = toDoctor(values);
+            doctor.setVersion(current.getVersion());
+            result = doctorDAO.updateDoctor(doctor);
+        }
+        return result;
+    }
+
+    /**
+     * Lists a doctor's values by entry form field.
+     *
+     * @param doctor the doctor to show
+     * @return the field values of the doctor
+     */
+    private static Map<String, Object> formData(Doctor doctor) {
+        Map<String, Object> doctorData = new HashMap<>();
+        doctorData.put("Doctor ID", doctor.getId());
+        doctorData.put("First Name", doctor.getFirstName());
+        doctorData.put("Surname", doctor.getSurname());
+        doctorData.put("Address", doctor.getAddress());
+        doctorData.put("Email", doctor.getEmail());
+        doctorData.put("Specialization", doctor.getSpecialization());
+        doctorData.put("Hospital", doctor.getHospital() != null ? doctor.getHospital() : "");
+        return doctorData;
+    }
+
+    /**
+     * Creates a doctor from saved entry form values.
+     *
+     * @param values the values of the entry form
+     * @return the doctor described by the form
+     */
+    private static Doctor toDoctor(FormValues values) {
+        return new Doctor(
+                values.getText("Doctor ID"),
+                values.getText("First Name"),
+                values.getText("Surname"),
+                values.getText("Address"),
+                values.getText("Email"),
+                values.getText("Specialization"),
+                values.getText("Hospital")
+        );
+    }
+
     /**
      * Handles the deletion of a selected doctor from the table.
      * Prompts for confirmation before deletion. If confirmed, deletes the doctor
@@ -222,9 +333,10 @@ public class DoctorController implements TableController {
                     "Are you sure you want to delete Doctor: " + selectedDoctor.getFirstName() + " " + selectedDoctor.getSurname() + "?");
 
             if (confirmed) {
-                String resultMessage = doctorDAO.deleteDoctor(selectedDoctor.getId());
-                AlertHelper.showAlert("Doctor Deletion", resultMessage, Alert.AlertType.INFORMATION);
+                OperationResult result = doctorDAO.deleteDoctor(selectedDoctor.getId(), selectedDoctor.getVersion());
+                AlertHelper.showResult("Doctor Deletion", result);
                 loadDoctors(); // Refresh table
+                pickerOptions.invalidate(OptionType.DOCTORS);
             }
 
         } else {
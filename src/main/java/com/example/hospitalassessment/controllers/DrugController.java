@@ -2,14 +2,24 @@ package com.example.hospitalassessment.controllers;
 
 import com.example.hospitalassessment.database.DrugDAO;
 import com.example.hospitalassessment.models.Drug;
-import com.example.hospitalassessment.database.DatabaseManager;
+import com.example.hospitalassessment.database.DataAccessContext;
+import com.example.hospitalassessment.database.OperationResult;
+import com.example.hospitalassessment.forms.FieldValidator;
+import com.example.hospitalassessment.forms.FormSchema;
+import com.example.hospitalassessment.forms.FormValues;
+import com.example.hospitalassessment.services.ApplicationServices;
+import com.example.hospitalassessment.services.ChangeFeedService.Table;
+import com.example.hospitalassessment.services.ChangeFeedService.TableChanges;
+import com.example.hospitalassessment.services.PickerOptionsService;
+import com.example.hospitalassessment.services.PickerOptionsService.OptionType;
+import com.example.hospitalassessment.services.UniqueKeyService;
+import com.example.hospitalassessment.services.UniqueKeyService.KeyType;
 import com.example.hospitalassessment.utils.AlertHelper;
+import com.example.hospitalassessment.utils.MergeDialog;
+import com.example.hospitalassessment.utils.TableRows;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
-import javafx.fxml.FXMLLoader;
-import javafx.scene.Parent;
-import javafx.scene.Scene;
 import javafx.scene.control.Alert;
 import javafx.scene.control.TableColumn;
 import javafx.scene.control.TableView;
@@ -17,10 +27,11 @@ import javafx.scene.control.TextField;
 import javafx.scene.control.cell.PropertyValueFactory;
 import javafx.collections.transformation.FilteredList;
 import javafx.collections.transformation.SortedList;
-import javafx.stage.Modality;
 import javafx.stage.Stage;
 
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -29,6 +40,13 @@ import java.util.Set;
  * Provides functionality to load, add, modify, and delete drugs using a database manager.
  */
 public class DrugController implements TableController {
+    private static final FormSchema FORM = FormSchema.builder("Drug")
+            .text("Drug ID", FieldValidator.required())
+            .text("Drug Name", FieldValidator.required())
+            .text("Side Effects")
+            .text("Benefits")
+            .build(); // Fields of the drug entry form, in display order.
+
     @FXML // Table to display drug records.
     private TableView<Drug> drugTable;
 
@@ -39,21 +57,60 @@ public class DrugController implements TableController {
     private TextField searchField;
 
 
-    private DatabaseManager databaseManager; // Manages database connections and transactions.
+    private DataAccessContext dataAccess; // Shared DAOs and the event bus announcing their writes.
     private DrugDAO drugDAO; // Data Access Object for drug-related operations.
+    private PickerOptionsService pickerOptions; // Shared dropdown options, refreshed after drug changes.
+    private UniqueKeyService uniqueKeys; // Checks drug keys for uniqueness as they are typed.
+    private FormSchema entryForm = FORM; // Entry form fields, with uniqueness checks once the key service is set.
+    private final ObservableList<Drug> drugList = FXCollections.observableArrayList(); // Rows backing the table, updated in place on refresh.
+
+    /**
+     * Sets the shared data access context and takes the DAOs this view needs from it.
+     *
+     * @param dataAccess the DataAccessContext shared by all table views
+     */
+    @Override
+    public void setDataAccess(DataAccessContext dataAccess) {
+        this.dataAccess = dataAccess;
+        this.drugDAO = dataAccess.drugs();
+        EntryFormPool.prewarm(entryForm);
+        loadDrugs();
+    }
 
     /**
-     * Sets the database manager for this controller, initializes the DrugDAO, and loads drugs into the table.
+     * Takes the shared services providing dropdown options and checking keys for uniqueness, adding the checks to the entry form.
      *
-     * @param dbManager the DatabaseManager instance to be used for database operations
+     * @param services the ApplicationServices shared by all views
      */
     @Override
-    public void setDatabaseManager(DatabaseManager dbManager) {
-        this.databaseManager = dbManager;
-        this.drugDAO = new DrugDAO(databaseManager);
+    public void setServices(ApplicationServices services) {
+        this.pickerOptions = services.pickerOptions();
+        this.uniqueKeys = services.uniqueKeys();
+        this.entryForm = FORM
+                .withAsyncValidator("Drug ID", uniqueKeys.validator(KeyType.DRUG_ID));
+        uniqueKeys.prefetch(KeyType.DRUG_ID);
+    }
+
+    /**
+     * Reloads the table data when the view is shown again, applying only the rows that changed.
+     */
+    @Override
+    public void refresh() {
         loadDrugs();
     }
 
+    /**
+     * Applies drugs changed by other users, loading only the changed rows.
+     *
+     * @param changes the keys of the changed rows of one table
+     */
+    @Override
+    public void applyChanges(TableChanges changes) {
+        if (changes.table() == Table.DRUG) {
+            TableRows.apply(drugList, drugDAO.getDrugsByIds(changes.changedKeys()), changes.deletedKeys(), Drug::getId, DrugController::rowContent);
+        }
+    }
+
     /**
      * Initializes the table columns for displaying drug data by setting up their
      * value factories to map to corresponding properties.
@@ -64,14 +121,28 @@ public class DrugController implements TableController {
         colDrugName.setCellValueFactory(new PropertyValueFactory<>("drugName"));
         colSideEffects.setCellValueFactory(new PropertyValueFactory<>("sideEffects"));
         colBenefits.setCellValueFactory(new PropertyValueFactory<>("benefits"));
+
+        bindTableData();
     }
 
     /**
-     * Loads drug data from the database into an observable and sortable table structure.
-     * Applies search functionality for filtering drugs by ID, name, side effects, or benefits.
+     * Loads drug data from the database and applies it to the table in place,
+     * so the current filter, sort order, selection and scroll position are kept.
+     * If the database cannot be reached, the rows already shown are kept as they are.
      */
     private void loadDrugs() {
-        ObservableList<Drug> drugList = FXCollections.observableArrayList(drugDAO.getAllDrugs());
+        List<Drug> rows = drugDAO.getAllDrugs();
+        if (!dataAccess.getDatabaseManager().isAvailable()) {
+            return;
+        }
+        TableRows.merge(drugList, rows, Drug::getId, DrugController::rowContent);
+    }
+
+    /**
+     * Connects the table to its rows through a filtered and sorted view.
+     * Filtering follows the search field, and sorting follows the table's sort order.
+     */
+    private void bindTableData() {
         FilteredList<Drug> filteredData = new FilteredList<>(drugList, p -> true);
 
         searchField.textProperty().addListener((observable, oldValue, newValue) -> {
@@ -92,13 +163,23 @@ public class DrugController implements TableController {
         drugTable.setItems(sortedData);
     }
 
+    /**
+     * Lists the values of a row that are compared to detect a change when the table is refreshed.
+     *
+     * @param drug the row to describe
+     * @return the row's version and displayed values
+     */
+    private static List<?> rowContent(Drug drug) {
+        return Arrays.asList(drug.getVersion(), drug.getDrugName(), drug.getSideEffects(), drug.getBenefits());
+    }
+
     /**
      * Opens a form for adding a new drug.
      * Configures the form with empty fields.
      */
     @FXML
     private void handleAddDrug() {
-        openEntryForm("Add Drug", null, Set.of());
+        openEntryForm("Add Drug", null, Set.of(), 0);
     }
 
     /**
@@ -110,13 +191,7 @@ public class DrugController implements TableController {
     private void handleModifyDrug() {
         Drug selectedDrug = drugTable.getSelectionModel().getSelectedItem();
         if (selectedDrug != null) {
-            Map<String, String> drugData = new HashMap<>();
-            drugData.put("Drug ID", selectedDrug.getId());
-            drugData.put("Drug Name", selectedDrug.getDrugName());
-            drugData.put("Side Effects", selectedDrug.getSideEffects());
-            drugData.put("Benefits", selectedDrug.getBenefits());
-
-            openEntryForm("Modify Drug", drugData, Set.of("Drug ID"));
+            openEntryForm("Modify Drug", formData(selectedDrug), Set.of("Drug ID"), selectedDrug.getVersion());
         } else {
             AlertHelper.showAlert("Selection Error", "Please select a drug to modify.", Alert.AlertType.WARNING);
         }
@@ -136,79 +211,118 @@ public class DrugController implements TableController {
                     "Are you sure you want to delete Drug " + selectedDrug.getDrugName() + "?");
 
             if (confirmed) {
-                String resultMessage = drugDAO.deleteDrug(selectedDrug.getId());
-                AlertHelper.showAlert("Drug Deletion", resultMessage, Alert.AlertType.INFORMATION);
+                OperationResult result = drugDAO.deleteDrug(selectedDrug.getId(), selectedDrug.getVersion());
+                AlertHelper.showResult("Drug Deletion", result);
                 loadDrugs();
+                pickerOptions.invalidate(OptionType.DRUGS);
             }
         } else {
             AlertHelper.showAlert("Selection Error", "Please select a drug to delete.", Alert.AlertType.WARNING);
         }
     }
 
+    /**
+     * Saves changes to an existing drug. If another user saved the drug after the form was opened,
+     * their changes are merged with these, asking which value to keep where both changed the same field,
+     * and the save is retried against the drug as it is now.
+     *
+     * @param drug   the changed drug, carrying the version the form was opened with
+     * @param base   the values the form was opened with
+     * @param values the values the user saved
+     * @return the result of the last save attempt
+     */
+    private OperationResult updateDrug(Drug drug, Map<String, ?> base, FormValues values) {
+        OperationResult result = drugDAO.updateDrug(drug);
+        while (result.getStatus() == OperationResult.Status.CONFLICT) {
+            Drug current = drugDAO.getDrugById(drug.getId());
+            if (current == null) {
+                return OperationResult.notFound("Error: This drug was deleted by another user.");
+            }
+            Map<String, Object> theirs = formData(current);
+            values = MergeDialog.merge(entryForm, base, values, theirs);
+            if (values == null) {
+                return result; // Merge cancelled
+            }
+            base = theirs;
+            drug = toDrug(values);
+            drug.setVersion(current.getVersion());
+            result = drugDAO.updateDrug(drug);
+        }
+        return result;
+    }
+
+    /**
+     * Lists a drug's values by entry form field.
+     *
+     * @param drug the drug to show
+     * @return the field values of the drug
+     */
+    private static Map<String, Object> formData(Drug drug) {
+        Map<String, Object> drugData = new HashMap<>();
+        drugData.put("Drug ID", drug.getId());
+        drugData.put("Drug Name", drug.getDrugName());
+        drugData.put("Side Effects", drug.getSideEffects());
+        drugData.put("Benefits", drug.getBenefits());
+        return drugData;
+    }
+
+    /**
+     * Creates a drug from saved entry form values.
+     *
+     * @param values the values of the entry form
+     * @return the drug described by the form
+     */
+    private static Drug toDrug(FormValues values) {
+        return new Drug(
+                values.getText("Drug ID"),
+                values.getText("Drug Name"),
+                values.getText("Side Effects"),
+                values.getText("Benefits")
+        );
+    }
+
     /**
      * Opens an entry form for drug data, pre-filling fields if data is provided and excluding specified fields from display.
      *
      * @param title               the title of the form window
      * @param existingData        a map of field names to their current values, or null for empty fields
      * @param undisplayableFields a set of field names that should be hidden in the form
+     * @param version             the version of the drug being edited, checked when the changes are saved
      */
-    private void openEntryForm(String title, Map<String, String> existingData, Set<String> undisplayableFields) {
+    private void openEntryForm(String title, Map<String, ?> existingData, Set<String> undisplayableFields, int version) {
         try {
-            // Load the FXML file for the entry form
-            FXMLLoader loader = new FXMLLoader(getClass().getResource("/com/example/hospitalassessment/entry_form.fxml"));
-            Parent root = loader.load();
-            EntryFormController controller = loader.getController();
+            // Take a pooled entry form window; it is rebound to this record rather than rebuilt
+            EntryFormPool.EntryForm form = EntryFormPool.acquire(entryForm, drugTable.getScene().getWindow());
+            EntryFormController controller = form.controller();
             controller.setFormTitle(title);
 
-            // Define fields for a new drug (empty values)
-            if (existingData == null) {
-                existingData = new HashMap<>();
-                existingData.put("Drug ID", "");
-                existingData.put("Drug Name", "");
-                existingData.put("Side Effects", "");
-                existingData.put("Benefits", "");
-            }
-
-            // Set form fields and hide fields that shouldn't be displayed
-            controller.setFields(existingData, undisplayableFields);
+            // Show the record, or empty fields for a new drug, and hide fields that shouldn't be displayed
+            controller.bind(existingData != null ? existingData : Map.of(), undisplayableFields, Map.of());
 
-            // Create and configure a new window (Stage) for the form
-            Stage stage = new Stage();
+            // Configure the pooled window (Stage) for this use
+            Stage stage = form.stage();
             stage.setTitle(title);
-            stage.setScene(new Scene(root));
-            stage.initModality(Modality.WINDOW_MODAL); // Make it a modal window
-            stage.initOwner(drugTable.getScene().getWindow()); // Attach it to the main window
-
-            // Preserve the original existing data for reference
-            Map<String, String> finalExistingData = existingData;
 
             // Define the action to be performed when the Save button is clicked
-            controller.setOnSaveCallback(() -> {
-                Map<String, String> updatedValues = controller.getFieldValues();
-
-                // Ensure Drug ID is preserved if it's not in updatedValues
-                String drugId = updatedValues.get("Drug ID") == null ? finalExistingData.get("Drug ID") : updatedValues.get("Drug ID");
-
+            controller.setOnSaveCallback(values -> {
                 // Create a Drug object with updated values
-                Drug drug = new Drug(
-                        drugId,
-                        updatedValues.get("Drug Name"),
-                        updatedValues.get("Side Effects"),
-                        updatedValues.get("Benefits")
-                );
+                Drug drug = toDrug(values);
+                drug.setVersion(version);
 
                 // Determine whether to update an existing drug or add a new one
-                Map.Entry<String, Alert.AlertType> resultMessage = undisplayableFields.contains("Drug ID")
-                        ? drugDAO.updateDrug(drug)    // Update if "Drug ID" is not editable
+                OperationResult result = undisplayableFields.contains("Drug ID")
+                        ? updateDrug(drug, existingData, values)    // Update if "Drug ID" is not editable
                         : drugDAO.addDrug(drug);      // Otherwise, add a new drug
 
                 // Show an alert message with the result of the operation
-                AlertHelper.showAlert(title, resultMessage.getKey(), resultMessage.getValue());
+                AlertHelper.showResult(title, result);
 
                 // If the operation was successful, close the form and refresh the drug table
-                if (resultMessage.getValue() != Alert.AlertType.ERROR) {
+                if (result.isSuccess()) {
                     stage.close(); // Close window only on success
                     loadDrugs(); // Refresh table
+                    pickerOptions.invalidate(OptionType.DRUGS);
+                    uniqueKeys.recordKey(KeyType.DRUG_ID, drug.getId());
                 }
             });
 
@@ -1,20 +1,35 @@
 package com.example.hospitalassessment.controllers;
 
+import com.example.hospitalassessment.forms.AsyncFieldValidator;
+import com.example.hospitalassessment.forms.FieldDescriptor;
+import com.example.hospitalassessment.forms.FieldValidator;
+import com.example.hospitalassessment.forms.FormSchema;
+import com.example.hospitalassessment.forms.FormValues;
+import com.example.hospitalassessment.services.PickerOptionsService.OptionType;
+import com.example.hospitalassessment.utils.AlertHelper;
+import com.example.hospitalassessment.utils.FxFutures;
+import javafx.beans.value.ObservableValue;
 import javafx.fxml.FXML;
 import javafx.scene.control.*;
 import javafx.scene.layout.GridPane;
 import javafx.stage.Stage;
 
-import java.util.HashMap;
 import java.time.LocalDate;
-import java.util.List;
-import java.util.Map;
-import java.util.Set;
+import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 /**
  * Controller for managing an entry form, its fields, and associated actions.
+ * The fields are described by a {@link FormSchema}; their input controls are built once when the schema is set
+ * and reused every time the pooled form is bound to another record.
+ * Fields are validated as the user edits them, and again when the form is saved.
  */
 public class EntryFormController {
+    private static final String ERROR_STYLE = "-fx-border-color: red;"; // Style marking a field that failed validation.
+    private static final String UNCHECKED = "could not be checked"; // Problem reported when an asynchronous check does not complete.
+
     @FXML // Label displaying the title of the form.
     private Label formTitle;
 
@@ -25,8 +40,16 @@ public class EntryFormController {
     private Button btnSave;
 
 
-    private Map<String, Control> fieldMap = new HashMap<>(); // Map to store input fields by their labels.
-    private Runnable onSaveCallback; // Callback triggered when the form is saved.
+    private FormSchema schema; // Fields shown by this form.
+    private final Map<String, Control> controls = new HashMap<>(); // Input controls by field name, built once per schema.
+    private final Map<String, Label> labels = new HashMap<>(); // Field labels by field name, built once per schema.
+    private final Map<String, Object> hiddenValues = new HashMap<>(); // Bound values of the fields not shown.
+    private final Map<String, Object> boundValues = new HashMap<>(); // Bound values of the fields shown, to skip rechecking them.
+    private final Map<String, Integer> latestChecks = new HashMap<>(); // Newest as-you-type check per field; older results are ignored.
+    private int checkCount; // Numbers the as-you-type checks.
+    private boolean updating; // Whether the controls are being filled in by bind, rather than edited by the user.
+    private int binding; // Counts bindings so that late validation results for a previous record are ignored.
+    private Consumer<FormValues> onSaveCallback; // Callback triggered with the typed values when a valid form is saved.
 
     /**
      * Sets the title of the form by updating the text of the formTitle field.
@@ -38,229 +61,345 @@ public class EntryFormController {
     }
 
     /**
-     * Populates the form with the provided fields, excluding those specified as undisplayable.
+     * Sets the fields of the form and builds an input control for each of them.
+     * Called when the form is created; later records are shown with {@link #bind}. Setting the same schema again does nothing.
      *
-     * @param fields              a map containing field names as keys and their corresponding values
-     * @param undisplayableFields a set of field names that should be excluded from the form
+     * @param schema the description of the form's fields
      */
-    public void setFields(Map<String, String> fields, Set<String> undisplayableFields) {
+    public void setSchema(FormSchema schema) {
+        if (this.schema == schema) {
+            return;
+        }
+        this.schema = schema;
+        controls.clear();
+        labels.clear();
+        for (FieldDescriptor field : schema.getFields()) {
+            labels.put(field.getName(), new Label(field.getName() + ":"));
+            Control control = createControl(field);
+            controls.put(field.getName(), control);
+            valueOf(control).addListener((observable, oldValue, newValue) -> {
+                if (!updating) {
+                    handleEdit(field);
+                }
+            });
+        }
+    }
+
+    /**
+     * Shows a record in the form. Fields without a value show their default, and hidden fields
+     * keep their value so that it is included when the form is saved.
+     *
+     * @param values              the typed field values by field name; missing fields are left empty
+     * @param undisplayableFields the names of fields that should not be shown
+     * @param options             the option lists offered by choice fields
+     */
+    public void bind(Map<String, ?> values, Set<String> undisplayableFields, Map<OptionType, List<String>> options) {
+        binding++;
+        btnSave.setDisable(false);
         formGrid.getChildren().clear();
-        fieldMap.clear();
-        int row = 0;
+        hiddenValues.clear();
+        boundValues.clear();
+        latestChecks.clear();
 
-        for (Map.Entry<String, String> entry : fields.entrySet()) {
-            if (undisplayableFields.contains(entry.getKey())) {
+        int row = 0;
+        for (FieldDescriptor field : schema.getFields()) {
+            Object value = values.containsKey(field.getName()) ? values.get(field.getName()) : field.getDefaultValue();
+            if (undisplayableFields.contains(field.getName())) {
+                hiddenValues.put(field.getName(), value);
                 continue; // Skip fields that should not be displayed
             }
 
-            Label label = new Label(entry.getKey() + ":");
-
-            TextField textField = new TextField(entry.getValue());
-            formGrid.add(label, 0, row);
-            formGrid.add(textField, 1, row);
-            fieldMap.put(entry.getKey(), textField);
+            Control control = controls.get(field.getName());
+            showError(control, null);
+            if (field.getType() == FieldDescriptor.Type.CHOICE) {
+                setOptions(field, control, options.getOrDefault(field.getPickerSource(), List.of()));
+            }
+            updating = true;
+            setValue(field, control, value);
+            updating = false;
+            boundValues.put(field.getName(), value);
 
+            formGrid.add(labels.get(field.getName()), 0, row);
+            formGrid.add(control, 1, row);
             row++;
         }
     }
 
     /**
-     * Populates the form with fields, excluding undisplayable ones, and handles insurance options.
+     * Builds the input control matching a field's type.
      *
-     * @param fields              a map containing field names as keys and their corresponding values
-     * @param undisplayableFields a set of field names to exclude from the form
-     * @param insuranceOptions    a list of insurance options to display in the combo box for the "Insurance" field
+     * @param field the field to build a control for
+     * @return a new input control
      */
-    public void setFields(Map<String, String> fields, Set<String> undisplayableFields, List<String> insuranceOptions) {
-        formGrid.getChildren().clear();
-        fieldMap.clear();
-        int row = 0;
-
-        for (Map.Entry<String, String> entry : fields.entrySet()) {
-            if (undisplayableFields.contains(entry.getKey())) {
-                continue; // Skip undisplayable fields
+    private Control createControl(FieldDescriptor field) {
+        return switch (field.getType()) {
+            case TEXT -> new TextField();
+            case INTEGER -> {
+                TextField textField = new TextField();
+                // Only accept keystrokes that keep the text a (possibly partial) whole number
+                textField.setTextFormatter(new TextFormatter<>(change -> change.getControlNewText().matches("-?\\d*") ? change : null));
+                yield textField;
             }
+            case DATE -> new DatePicker();
+            case CHOICE -> new ComboBox<String>();
+        };
+    }
 
-            Label label = new Label(entry.getKey() + ":");
-            if (entry.getKey().equals("Insurance")) {
-                ComboBox<String> insuranceDropdown = new ComboBox<>();
-                insuranceDropdown.getItems().add("NHS");
-                insuranceDropdown.getItems().addAll(insuranceOptions);
-                insuranceDropdown.setValue(entry.getValue().isEmpty() ? "NHS" : entry.getValue()); // Set initial value
-
-                formGrid.add(label, 0, row);
-                formGrid.add(insuranceDropdown, 1, row);
-                fieldMap.put(entry.getKey(), insuranceDropdown);
-            } else {
-                TextField textField = new TextField(entry.getValue());
-                formGrid.add(label, 0, row);
-                formGrid.add(textField, 1, row);
-                fieldMap.put(entry.getKey(), textField);
+    /**
+     * Provides the property holding the value a control shows.
+     *
+     * @param control an input control built by {@link #createControl}
+     * @return the observable value of the control
+     */
+    private ObservableValue<?> valueOf(Control control) {
+        if (control instanceof TextField textField) {
+            return textField.textProperty();
+        } else if (control instanceof DatePicker datePicker) {
+            return datePicker.valueProperty();
+        }
+        return ((ComboBox<?>) control).valueProperty();
+    }
+
+    /**
+     * Offers options in a choice field. The options are only copied into the dropdown
+     * when they differ from the list it was last given.
+     *
+     * @param field   the choice field
+     * @param control the dropdown of the field
+     * @param options the options to offer
+     */
+    @SuppressWarnings("unchecked")
+    private void setOptions(FieldDescriptor field, Control control, List<String> options) {
+        ComboBox<String> comboBox = (ComboBox<String>) control;
+        if (comboBox.getUserData() != options) {
+            comboBox.getItems().clear();
+            if (field.getFirstOption() != null) {
+                comboBox.getItems().add(field.getFirstOption());
             }
-            row++;
+            comboBox.getItems().addAll(options);
+            comboBox.setUserData(options); // Remember the source list to skip copying it next time
         }
     }
 
     /**
-     * Populates the form with the given fields, excluding undisplayable ones,
-     * and configures specific input controls for patients, doctors, and the date of visit.
+     * Shows a typed value in a field's control.
      *
-     * @param fields              a map containing field names as keys and their corresponding values
-     * @param undisplayableFields a set of field names to exclude from the form
-     * @param patientOptions      a list of options for the patient dropdown
-     * @param doctorOptions       a list of options for the doctor dropdown
-     * @param datePicker          the DatePicker control to use for date input
+     * @param field   the field
+     * @param control the input control of the field
+     * @param value   the value to show, or null for an empty field
      */
-    public void setFields(Map<String, String> fields, Set<String> undisplayableFields, List<String> patientOptions, List<String> doctorOptions, DatePicker datePicker) {
-        formGrid.getChildren().clear();
-        fieldMap.clear();
-        int row = 0;
+    @SuppressWarnings("unchecked")
+    private void setValue(FieldDescriptor field, Control control, Object value) {
+        switch (field.getType()) {
+            case TEXT, INTEGER -> ((TextField) control).setText(value == null ? "" : value.toString());
+            case DATE -> ((DatePicker) control).setValue((LocalDate) value);
+            case CHOICE -> ((ComboBox<String>) control).setValue(value == null ? null : value.toString());
+        }
+    }
 
-        for (Map.Entry<String, String> entry : fields.entrySet()) {
-            if (undisplayableFields.contains(entry.getKey())) {
-                continue; // Skip undisplayable fields
+    /**
+     * Reads the typed value of a field from its control.
+     *
+     * @param field   the field
+     * @param control the input control of the field
+     * @return the value, or null if the field is empty
+     * @throws NumberFormatException if a whole number field holds a number out of range
+     */
+    private Object readValue(FieldDescriptor field, Control control) {
+        return switch (field.getType()) {
+            case TEXT -> ((TextField) control).getText();
+            case INTEGER -> {
+                String text = ((TextField) control).getText();
+                yield text.isBlank() || text.equals("-") ? null : Integer.valueOf(text);
             }
+            case DATE -> ((DatePicker) control).getValue();
+            case CHOICE -> ((ComboBox<?>) control).getValue();
+        };
+    }
 
-            Label label = new Label(entry.getKey() + ":");
-
-            if (entry.getKey().equals("Patient")) {
-                ComboBox<String> patientDropdown = new ComboBox<>();
-                patientDropdown.getItems().addAll(patientOptions);
-                patientDropdown.setValue(entry.getValue()); // Set initial value
-
-                formGrid.add(label, 0, row);
-                formGrid.add(patientDropdown, 1, row);
-                fieldMap.put(entry.getKey(), patientDropdown);
-            } else if (entry.getKey().equals("Doctor")) {
-                ComboBox<String> doctorDropdown = new ComboBox<>();
-                doctorDropdown.getItems().addAll(doctorOptions);
-                doctorDropdown.setValue(entry.getValue()); // Set initial value
-
-                formGrid.add(label, 0, row);
-                formGrid.add(doctorDropdown, 1, row);
-                fieldMap.put(entry.getKey(), doctorDropdown);
-            } else if (entry.getKey().equals("Date of Visit")) {
-                datePicker.setValue(entry.getValue().isEmpty() ? null : LocalDate.parse(entry.getValue()));
-
-                formGrid.add(label, 0, row);
-                formGrid.add(datePicker, 1, row);
-                fieldMap.put(entry.getKey(), datePicker);
-            } else {
-                TextField textField = new TextField(entry.getValue());
-                formGrid.add(label, 0, row);
-                formGrid.add(textField, 1, row);
-                fieldMap.put(entry.getKey(), textField);
-            }
-            row++;
-        }
+    /**
+     * Marks a field as invalid, or clears the mark.
+     *
+     * @param control the input control of the field
+     * @param message the problem to show, or null to clear it
+     */
+    private void showError(Control control, String message) {
+        control.setStyle(message == null ? "" : ERROR_STYLE);
+        control.setTooltip(message == null ? null : new Tooltip(message));
     }
 
     /**
-     * Populates the form with the provided fields and configures appropriate input controls,
-     * omitting fields specified as undisplayable.
+     * Validates a field as the user edits it. Synchronous problems are shown immediately; asynchronous
+     * validators report later, and their result is dropped if the field has been edited again meanwhile.
      *
-     * @param fields              a map containing field names as keys and their corresponding values
-     * @param undisplayableFields a set of field names to exclude from the form
-     * @param drugOptions         a list of options for the drug dropdown
-     * @param doctorOptions       a list of options for the doctor dropdown
-     * @param patientOptions      a list of options for the patient dropdown
-     * @param datePicker          the DatePicker control to use for date input
+     * @param field the edited field
      */
-    public void setFields(Map<String, String> fields, Set<String> undisplayableFields, List<String> drugOptions, List<String> doctorOptions, List<String> patientOptions, DatePicker datePicker) {
-        formGrid.getChildren().clear();
-        fieldMap.clear();
-        int row = 0;
+    private void handleEdit(FieldDescriptor field) {
+        Control control = controls.get(field.getName());
+        int check = ++checkCount;
+        latestChecks.put(field.getName(), check);
+
+        Object value;
+        try {
+            value = readValue(field, control);
+        } catch (NumberFormatException e) {
+            showError(control, field.getName() + " must be a whole number.");
+            return;
+        }
+
+        String error = validateSync(field, value);
+        showError(control, error == null ? null : field.getName() + " " + error + ".");
+        if (error != null || !needsAsyncCheck(field, value)) {
+            return;
+        }
 
-        for (Map.Entry<String, String> entry : fields.entrySet()) {
-            if (undisplayableFields.contains(entry.getKey())) {
-                continue; // Skip undisplayable fields
+        CompletableFuture<String> result = validateAsync(field, value, null);
+        FxFutures.runWhenReady(result, () -> {
+            if (Objects.equals(latestChecks.get(field.getName()), check)) {
+                showError(control, result.join() == null ? null : field.getName() + " " + result.join() + ".");
             }
+        }, "Could not validate " + field.getName() + ".");
+    }
 
-            Label label = new Label(entry.getKey() + ":");
-
-            if (entry.getKey().equals("Drug")) {
-                ComboBox<String> drugDropdown = new ComboBox<>();
-                drugDropdown.getItems().addAll(drugOptions);
-                drugDropdown.setValue(entry.getValue());
-
-                formGrid.add(label, 0, row);
-                formGrid.add(drugDropdown, 1, row);
-                fieldMap.put(entry.getKey(), drugDropdown);
-            } else if (entry.getKey().equals("Doctor")) {
-                ComboBox<String> doctorDropdown = new ComboBox<>();
-                doctorDropdown.getItems().addAll(doctorOptions);
-                doctorDropdown.setValue(entry.getValue());
-
-                formGrid.add(label, 0, row);
-                formGrid.add(doctorDropdown, 1, row);
-                fieldMap.put(entry.getKey(), doctorDropdown);
-            } else if (entry.getKey().equals("Patient")) {
-                ComboBox<String> patientDropdown = new ComboBox<>();
-                patientDropdown.getItems().addAll(patientOptions);
-                patientDropdown.setValue(entry.getValue());
-
-                formGrid.add(label, 0, row);
-                formGrid.add(patientDropdown, 1, row);
-                fieldMap.put(entry.getKey(), patientDropdown);
-            } else if (entry.getKey().equals("Date Prescribed")) {
-                datePicker.setValue(entry.getValue().isEmpty() ? null : LocalDate.parse(entry.getValue()));
-
-                formGrid.add(label, 0, row);
-                formGrid.add(datePicker, 1, row);
-                fieldMap.put(entry.getKey(), datePicker);
-            } else {
-                TextField textField = new TextField(entry.getValue());
-                formGrid.add(label, 0, row);
-                formGrid.add(textField, 1, row);
-                fieldMap.put(entry.getKey(), textField);
+    /**
+     * Runs a field's synchronous validators, stopping at the first problem.
+     *
+     * @param field the field
+     * @param value the typed value of the field
+     * @return the first problem, or null if the value is valid
+     */
+    private String validateSync(FieldDescriptor field, Object value) {
+        for (FieldValidator validator : field.getValidators()) {
+            String error = validator.validate(value);
+            if (error != null) {
+                return error;
             }
-            row++;
         }
+        return null;
     }
 
+    /**
+     * Decides whether a field's asynchronous validators need to run. Values the form was bound with
+     * belong to the record being edited and are not checked again.
+     *
+     * @param field the field
+     * @param value the typed value of the field
+     * @return true if the field has asynchronous validators and its value was changed
+     */
+    private boolean needsAsyncCheck(FieldDescriptor field, Object value) {
+        return !field.getAsyncValidators().isEmpty() && !Objects.equals(value, boundValues.get(field.getName()));
+    }
 
     /**
-     * Retrieves the current values of form fields.
+     * Sets a callback to be executed with the typed form values when a valid form is saved.
      *
-     * @return a map where keys are field names and values are their current inputs
+     * @param callback the callback to be called on save, or null for none
      */
-    public Map<String, String> getFieldValues() {
-        Map<String, String> values = new HashMap<>();
-        for (Map.Entry<String, Control> entry : fieldMap.entrySet()) {
-            if (entry.getValue() instanceof TextField) {
-                values.put(entry.getKey(), ((TextField) entry.getValue()).getText());
-            } else if (entry.getValue() instanceof ComboBox) {
-                values.put(entry.getKey(), ((ComboBox<?>) entry.getValue()).getValue().toString());
-            } else if (entry.getValue() instanceof DatePicker) {
-                DatePicker datePicker = (DatePicker) entry.getValue();
-                LocalDate date = datePicker.getValue();
-                if (date != null) {
-                    values.put(entry.getKey(), date.toString()); // Format LocalDate as 'yyyy-MM-dd'
-                } else {
-                    values.put(entry.getKey(), ""); // Handle null case
-                }
+    public void setOnSaveCallback(Consumer<FormValues> callback) {
+        this.onSaveCallback = callback;
+    }
+
+    /**
+     * Handles the save action by validating the shown fields and, if they are all valid,
+     * passing the typed values to the onSaveCallback. Asynchronous validators run in the background
+     * while the Save button is disabled.
+     */
+    @FXML
+    private void handleSave() {
+        Map<String, Object> values = new LinkedHashMap<>();
+        Map<String, String> errors = new LinkedHashMap<>();
+        Map<String, CompletableFuture<String>> pending = new LinkedHashMap<>();
+
+        for (FieldDescriptor field : schema.getFields()) {
+            if (hiddenValues.containsKey(field.getName())) {
+                values.put(field.getName(), hiddenValues.get(field.getName()));
+                continue;
+            }
+
+            Object value;
+            try {
+                value = readValue(field, controls.get(field.getName()));
+            } catch (NumberFormatException e) {
+                errors.put(field.getName(), "must be a whole number");
+                continue;
+            }
+            values.put(field.getName(), value);
+
+            String error = validateSync(field, value);
+            if (error != null) {
+                errors.put(field.getName(), error);
+            } else if (needsAsyncCheck(field, value)) {
+                pending.put(field.getName(), validateAsync(field, value, UNCHECKED));
             }
+        }
 
+        if (pending.isEmpty()) {
+            finishSave(values, errors);
+            return;
         }
-        return values;
+
+        int validatedBinding = binding;
+        btnSave.setDisable(true);
+        CompletableFuture<Void> checks = CompletableFuture.allOf(pending.values().toArray(CompletableFuture[]::new));
+        FxFutures.runWhenReady(checks, () -> {
+            if (validatedBinding != binding) {
+                return; // The form has been rebound to another record meanwhile
+            }
+            btnSave.setDisable(false);
+            pending.forEach((name, check) -> {
+                if (check.join() != null) {
+                    errors.put(name, check.join());
+                }
+            });
+            finishSave(values, errors);
+        }, "Could not validate the form.");
     }
 
     /**
-     * Sets a callback to be executed when the save action is triggered.
+     * Runs a field's asynchronous validators one after another, stopping at the first problem.
+     * A validator that fails is reported as a problem rather than failing the whole save.
      *
-     * @param callback a Runnable representing the callback to be called on save
+     * @param field        the field
+     * @param value        the typed value of the field
+     * @param ifSuperseded the result if a validator abandons the check in favour of a newer one
+     * @return a future completed with the first problem, or null if the value is valid
      */
-    public void setOnSaveCallback(Runnable callback) {
-        this.onSaveCallback = callback;
+    private CompletableFuture<String> validateAsync(FieldDescriptor field, Object value, String ifSuperseded) {
+        CompletableFuture<String> result = CompletableFuture.completedFuture(null);
+        for (AsyncFieldValidator validator : field.getAsyncValidators()) {
+            result = result.thenCompose(error -> error != null ? CompletableFuture.completedFuture(error) : validator.validate(value));
+        }
+        return result.exceptionally(error -> {
+            if (error instanceof CancellationException || error.getCause() instanceof CancellationException) {
+                return ifSuperseded;
+            }
+            error.printStackTrace();
+            return UNCHECKED;
+        });
     }
 
     /**
-     * Handles the save action by executing the onSaveCallback if it is set.
+     * Marks the invalid fields and reports them, or passes the values to the onSaveCallback if there are none.
+     *
+     * @param values the typed values of every field
+     * @param errors the problems found, by field name
      */
-    @FXML
-    private void handleSave() {
-        if (onSaveCallback != null) {
-            onSaveCallback.run();
+    private void finishSave(Map<String, Object> values, Map<String, String> errors) {
+        StringBuilder message = new StringBuilder();
+        for (FieldDescriptor field : schema.getFields()) {
+            String error = errors.get(field.getName());
+            if (!hiddenValues.containsKey(field.getName())) {
+                showError(controls.get(field.getName()), error == null ? null : field.getName() + " " + error + ".");
+            }
+            if (error != null) {
+                message.append(field.getName()).append(' ').append(error).append(".\n");
+            }
+        }
+
+        if (!message.isEmpty()) {
+            AlertHelper.showAlert("Input Error", message.toString().trim(), Alert.AlertType.ERROR);
+        } else if (onSaveCallback != null) {
+            onSaveCallback.accept(new FormValues(values));
         }
     }
 
@@ -0,0 +1,95 @@
+package com.example.hospitalassessment.controllers;
+
+import com.example.hospitalassessment.forms.FormSchema;
+import javafx.application.Platform;
+import javafx.fxml.FXMLLoader;
+import javafx.scene.Parent;
+import javafx.scene.Scene;
+import javafx.stage.Modality;
+import javafx.stage.Stage;
+import javafx.stage.Window;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Keeps entry form windows alive between uses, one pool per form schema, so opening a form
+ * only rebinds an existing window to new data instead of loading the FXML and building a new stage.
+ * A form returns to its pool as soon as its window is hidden. Must be used on the JavaFX application thread.
+ */
+final class EntryFormPool {
+    private static final String FORM_FXML = "/com/example/hospitalassessment/entry_form.fxml"; // Layout shared by every entry form.
+
+    private static final Map<String, Deque<EntryForm>> idleForms = new HashMap<>(); // Hidden forms ready for reuse, by schema name.
+
+    private EntryFormPool() {
+    }
+
+    /**
+     * Takes an idle form for the given schema, building one if none is available.
+     *
+     * @param schema the fields of the form
+     * @param owner  the window the modal form belongs to
+     * @return a hidden form ready to be bound and shown
+     * @throws IOException if a new form has to be built and its FXML cannot be loaded
+     */
+    static EntryForm acquire(FormSchema schema, Window owner) throws IOException {
+        EntryForm form = idle(schema.getName()).poll();
+        if (form == null) {
+            form = create(schema);
+        }
+        form.controller().setSchema(schema); // No-op unless the schema was extended since the form was built
+        if (form.stage().getOwner() == null) {
+            form.stage().initOwner(owner); // Attach it to the main window
+        }
+        return form;
+    }
+
+    /**
+     * Builds a form for the given schema in the background of the application thread
+     * so that the first open is as fast as later ones.
+     *
+     * @param schema the fields of the form
+     */
+    static void prewarm(FormSchema schema) {
+        Platform.runLater(() -> {
+            if (idle(schema.getName()).isEmpty()) {
+                try {
+                    idle(schema.getName()).push(create(schema));
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        });
+    }
+
+    private static Deque<EntryForm> idle(String formType) {
+        return idleForms.computeIfAbsent(formType, type -> new ArrayDeque<>());
+    }
+
+    private static EntryForm create(FormSchema schema) throws IOException {
+        FXMLLoader loader = new FXMLLoader(EntryFormPool.class.getResource(FORM_FXML));
+        Parent root = loader.load();
+
+        Stage stage = new Stage();
+        stage.setScene(new Scene(root));
+        stage.initModality(Modality.WINDOW_MODAL); // Make it a modal window
+
+        EntryForm form = new EntryForm(stage, loader.getController());
+        form.controller().setSchema(schema); // Build the input controls once for every later binding
+        stage.setOnHidden(event -> {
+            form.controller().setOnSaveCallback(null); // Drop the callback so the previous record can be collected
+            idle(schema.getName()).push(form);
+        });
+        return form;
+    }
+
+    /**
+     * A reusable entry form window together with its controller.
+     */
+    record EntryForm(Stage stage, EntryFormController controller) {
+    }
+}
@@ -1,15 +1,30 @@
 package com.example.hospitalassessment.controllers;
 
+import com.example.hospitalassessment.database.ClaimDAO.Claim;
 import com.example.hospitalassessment.database.InsuranceDAO;
 import com.example.hospitalassessment.models.Insurance;
-import com.example.hospitalassessment.database.DatabaseManager;
+import com.example.hospitalassessment.database.DataAccessContext;
+import com.example.hospitalassessment.database.OperationResult;
+import com.example.hospitalassessment.forms.FieldValidator;
+import com.example.hospitalassessment.forms.FormSchema;
+import com.example.hospitalassessment.forms.FormValues;
+import com.example.hospitalassessment.services.ApplicationServices;
+import com.example.hospitalassessment.services.ChangeFeedService.Table;
+import com.example.hospitalassessment.services.ChangeFeedService.TableChanges;
+import com.example.hospitalassessment.services.ClaimEligibilityService;
+import com.example.hospitalassessment.services.ClaimEligibilityService.BatchReport;
+import com.example.hospitalassessment.services.ClaimEligibilityService.Decision;
+import com.example.hospitalassessment.services.PickerOptionsService;
+import com.example.hospitalassessment.services.PickerOptionsService.OptionType;
+import com.example.hospitalassessment.services.UniqueKeyService;
+import com.example.hospitalassessment.services.UniqueKeyService.KeyType;
 import com.example.hospitalassessment.utils.AlertHelper;
+import com.example.hospitalassessment.utils.FxFutures;
+import com.example.hospitalassessment.utils.MergeDialog;
+import com.example.hospitalassessment.utils.TableRows;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
-import javafx.fxml.FXMLLoader;
-import javafx.scene.Parent;
-import javafx.scene.Scene;
 import javafx.scene.control.Alert;
 import javafx.scene.control.TableColumn;
 import javafx.scene.control.TableView;
@@ -17,12 +32,14 @@ import javafx.scene.control.TextField;
 import javafx.scene.control.cell.PropertyValueFactory;
 import javafx.collections.transformation.FilteredList;
 import javafx.collections.transformation.SortedList;
-import javafx.stage.Modality;
 import javafx.stage.Stage;
 
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Controller for managing insurance records, including adding, modifying, deleting,
@@ -30,6 +47,14 @@ import java.util.Set;
  * and allows interactive filtering and sorting of records.
  */
 public class InsuranceController implements TableController {
+    private static final FormSchema FORM = FormSchema.builder("Insurance")
+            .text("Insurance ID", FieldValidator.required())
+            .text("Company", FieldValidator.required())
+            .text("Address")
+            .text("Phone")
+            .build(); // Fields of the insurance entry form, in display order.
+    private static final int MAX_LISTED_REJECTIONS = 20; // Most claims listed as not covered after checking every claim.
+
     @FXML // Table to display insurance records.
     private TableView<Insurance> insuranceTable;
 
@@ -40,22 +65,62 @@ public class InsuranceController implements TableController {
     private TextField searchField;
 
 
-    private DatabaseManager databaseManager; // Manages database connections and transactions.
+    private DataAccessContext dataAccess; // Shared DAOs and the event bus announcing their writes.
     private InsuranceDAO insuranceDAO; // Data Access Object for insurance-related operations.
+    private PickerOptionsService pickerOptions; // Shared dropdown options, refreshed after insurance changes.
+    private UniqueKeyService uniqueKeys; // Checks insurance keys for uniqueness as they are typed.
+    private ClaimEligibilityService claimEligibility; // Decides which visits and prescriptions are covered by insurance.
+    private FormSchema entryForm = FORM; // Entry form fields, with uniqueness checks once the key service is set.
+    private final ObservableList<Insurance> insuranceList = FXCollections.observableArrayList(); // Rows backing the table, updated in place on refresh.
 
     /**
-     * Sets the DatabaseManager instance for this controller and initializes the InsuranceDAO.
-     * This method also triggers the loading of insurance data into the application.
+     * Sets the shared data access context and takes the DAOs this view needs from it.
      *
-     * @param dbManager the DatabaseManager instance used for database operations
+     * @param dataAccess the DataAccessContext shared by all table views
+     */
+    @Override
+    public void setDataAccess(DataAccessContext dataAccess) {
+        this.dataAccess = dataAccess;
+        this.insuranceDAO = dataAccess.insurance();
+        EntryFormPool.prewarm(entryForm);
+        loadInsurances();
+    }
+
+    /**
+     * Takes the shared services for dropdown options, key uniqueness and coverage, and adds the key checks to the entry form.
+     *
+     * @param services the ApplicationServices shared by all views
+     */
+    @Override
+    public void setServices(ApplicationServices services) {
+        this.pickerOptions = services.pickerOptions();
+        this.uniqueKeys = services.uniqueKeys();
+        this.claimEligibility = services.claimEligibility();
+        this.entryForm = FORM
+                .withAsyncValidator("Insurance ID", uniqueKeys.validator(KeyType.INSURANCE_ID));
+        uniqueKeys.prefetch(KeyType.INSURANCE_ID);
+    }
+
+    /**
+     * Reloads the table data when the view is shown again, applying only the rows that changed.
      */
     @Override
-    public void setDatabaseManager(DatabaseManager dbManager) {
-        this.databaseManager = dbManager;
-        this.insuranceDAO = new InsuranceDAO(databaseManager);
+    public void refresh() {
         loadInsurances();
     }
 
+    /**
+     * Applies insurance companies changed by other users, loading only the changed rows.
+     *
+     * @param changes the keys of the changed rows of one table
+     */
+    @Override
+    public void applyChanges(TableChanges changes) {
+        if (changes.table() == Table.INSURANCE) {
+            TableRows.apply(insuranceList, insuranceDAO.getInsuranceByIds(changes.changedKeys()), changes.deletedKeys(), Insurance::getId, InsuranceController::rowContent);
+        }
+    }
+
     /**
      * Initializes the table columns for displaying insurance data
      * by setting up their value factories to map to corresponding properties.
@@ -66,15 +131,28 @@ public class InsuranceController implements TableController {
         colCompany.setCellValueFactory(new PropertyValueFactory<>("company"));
         colAddress.setCellValueFactory(new PropertyValueFactory<>("address"));
         colPhone.setCellValueFactory(new PropertyValueFactory<>("phone"));
+
+        bindTableData();
     }
 
     /**
-     * Loads insurance data from the database into the table.
-     * Applies filtering based on the search field input
-     * and sorts data according to table settings.
+     * Loads insurance data from the database and applies it to the table in place,
+     * so the current filter, sort order, selection and scroll position are kept.
+     * If the database cannot be reached, the rows already shown are kept as they are.
      */
     private void loadInsurances() {
-        ObservableList<Insurance> insuranceList = FXCollections.observableArrayList(insuranceDAO.getAllInsurance());
+        List<Insurance> rows = insuranceDAO.getAllInsurance();
+        if (!dataAccess.getDatabaseManager().isAvailable()) {
+            return;
+        }
+        TableRows.merge(insuranceList, rows, Insurance::getId, InsuranceController::rowContent);
+    }
+
+    /**
+     * Connects the table to its rows through a filtered and sorted view.
+     * Filtering follows the search field, and sorting follows the table's sort order.
+     */
+    private void bindTableData() {
         FilteredList<Insurance> filteredData = new FilteredList<>(insuranceList, p -> true);
 
         searchField.textProperty().addListener((observable, oldValue, newValue) -> {
@@ -95,12 +173,22 @@ public class InsuranceController implements TableController {
         insuranceTable.setItems(sortedData);
     }
 
+    /**
+     * Lists the values of a row that are compared to detect a change when the table is refreshed.
+     *
+     * @param insurance the row to describe
+     * @return the row's version and displayed values
+     */
+    private static List<?> rowContent(Insurance insurance) {
+        return Arrays.asList(insurance.getVersion(), insurance.getCompany(), insurance.getAddress(), insurance.getPhone());
+    }
+
     /**
      * Opens a form to add a new insurance entry. The form is pre-populated with empty fields.
      */
     @FXML
     private void handleAddInsurance() {
-        openEntryForm("Add Insurance", null, Set.of());
+        openEntryForm("Add Insurance", null, Set.of(), 0);
     }
 
     /**
@@ -112,13 +200,7 @@ public class InsuranceController implements TableController {
     private void handleModifyInsurance() {
         Insurance selectedInsurance = insuranceTable.getSelectionModel().getSelectedItem();
         if (selectedInsurance != null) {
-            Map<String, String> insuranceData = new HashMap<>();
-            insuranceData.put("Insurance ID", selectedInsurance.getId());
-            insuranceData.put("Company", selectedInsurance.getCompany());
-            insuranceData.put("Address", selectedInsurance.getAddress());
-            insuranceData.put("Phone", selectedInsurance.getPhone());
-
-            openEntryForm("Modify Insurance", insuranceData, Set.of("Insurance ID"));
+            openEntryForm("Modify Insurance", formData(selectedInsurance), Set.of("Insurance ID"), selectedInsurance.getVersion());
         } else {
             AlertHelper.showAlert("Selection Error", "Please select an insurance entry to modify.", Alert.AlertType.WARNING);
         }
@@ -138,79 +220,161 @@ public class InsuranceController implements TableController {
                     "Are you sure you want to delete the insurance company: " + selectedInsurance.getCompany() + "?");
 
             if (confirmed) {
-                String resultMessage = insuranceDAO.deleteInsurance(selectedInsurance.getId());
-                AlertHelper.showAlert("Insurance Deletion", resultMessage, Alert.AlertType.INFORMATION);
+                OperationResult result = insuranceDAO.deleteInsurance(selectedInsurance.getId(), selectedInsurance.getVersion());
+                AlertHelper.showResult("Insurance Deletion", result);
                 loadInsurances();
+                pickerOptions.invalidate(OptionType.INSURANCE);
             }
         } else {
             AlertHelper.showAlert("Selection Error", "Please select an insurance entry to delete.", Alert.AlertType.WARNING);
         }
     }
 
+    /**
+     * Handles checking every visit and prescription against its insurer's coverage rules in the background,
+     * then shows how many each insurer covers, the claims that are not covered, and how fast they were checked.
+     */
+    @FXML
+    private void handleCheckClaims() {
+        CompletableFuture<BatchReport> report = claimEligibility.evaluateAll();
+        FxFutures.runWhenReady(report, () -> showClaimReport(report.join()), "Could not check the claims.");
+    }
+
+    /**
+     * Shows the outcome of checking every claim.
+     *
+     * @param report the report of the check
+     */
+    private static void showClaimReport(BatchReport report) {
+        StringBuilder message = new StringBuilder()
+                .append(report.covered()).append(" of ").append(report.claims()).append(" visits and prescriptions are covered.\n")
+                .append(String.format("Checked in %d ms (%.0f claims per second) after loading for %d ms.%n",
+                        report.evaluateMillis(), report.claimsPerSecond(), report.loadMillis()));
+
+        if (!report.claimsByInsurer().isEmpty()) {
+            message.append("\nCovered by insurer:");
+            report.claimsByInsurer().entrySet().stream()
+                    .sorted(Map.Entry.comparingByKey())
+                    .forEach(entry -> message.append("\n").append(entry.getKey()).append(": ")
+                            .append(report.coveredByInsurer().getOrDefault(entry.getKey(), 0)).append(" of ").append(entry.getValue()));
+            message.append("\n");
+        }
+
+        List<Decision> rejected = report.rejected();
+        if (!rejected.isEmpty()) {
+            message.append("\nNot covered:");
+            rejected.stream().limit(MAX_LISTED_REJECTIONS).forEach(decision -> message.append("\n")
+                    .append(decision.claim().type() == Claim.Type.VISIT ? "Visit " : "Prescription ")
+                    .append(decision.claim().key()).append(": ").append(decision.reason()));
+            if (rejected.size() > MAX_LISTED_REJECTIONS) {
+                message.append("\n... and ").append(rejected.size() - MAX_LISTED_REJECTIONS).append(" more.");
+            }
+        }
+        AlertHelper.showAlert("Claim Eligibility", message.toString(), Alert.AlertType.INFORMATION);
+    }
+
+    /**
+     * Saves changes to an existing insurance. If another user saved the insurance after the form was opened,
+     * their changes are merged with these, asking which value to keep where both changed the same field,
+     * and the save is retried against the insurance as it is now.
+     *
+     * @param insurance the changed insurance, carrying the version the form was opened with
+     * @param base      the values the form was opened with
+     * @param values    the values the user saved
+     * @return the result of the last save attempt
+     */
+    private OperationResult updateInsurance(Insurance insurance, Map<String, ?> base, FormValues values) {
+        OperationResult result = insuranceDAO.updateInsurance(insurance);
+        while (result.getStatus() == OperationResult.Status.CONFLICT) {
+            Insurance current = insuranceDAO.getInsuranceById(insurance.getId());
+            if (current == null) {
+                return OperationResult.notFound("Error: This insurance was deleted by another user.");
+            }
+            Map<String, Object> theirs = formData(current);
+            values = MergeDialog.merge(entryForm, base, values, theirs);
+            if (values == null) {
+                return result; // Merge cancelled
+            }
+            base = theirs;
+            insurance = toInsurance(values);
+            insurance.setVersion(current.getVersion());
+            result = insuranceDAO.updateInsurance(insurance);
+        }
+        return result;
+    }
+
+    /**
+     * Lists an insurance's values by entry form field.
+     *
+     * @param insurance the insurance to show
+     * @return the field values of the insurance
+     */
+    private static Map<String, Object> formData(Insurance insurance) {
+        Map<String, Object> insuranceData = new HashMap<>();
+        insuranceData.put("Insurance ID", insurance.getId());
+        insuranceData.put("Company", insurance.getCompany());
+        insuranceData.put("Address", insurance.getAddress());
+        insuranceData.put("Phone", insurance.getPhone());
+        return insuranceData;
+    }
+
+    /**
+     * Creates an insurance from saved entry form values.
+     *
+     * @param values the values of the entry form
+     * @return the insurance described by the form
+     */
+    private static Insurance toInsurance(FormValues values) {
+        return new Insurance(
+                values.getText("Insurance ID"),
+                values.getText("Company"),
+                values.getText("Address"),
+                values.getText("Phone")
+        );
+    }
+
     /**
      * Opens an entry form for creating or editing insurance data.
      *
      * @param title               the title of the entry form window
      * @param existingData        the map of pre-filled field data; uses defaults if null
      * @param undisplayableFields the set of field names that should not be displayed in the form
+     * @param version             the version of the insurance being edited, checked when the changes are saved
      */
-    private void openEntryForm(String title, Map<String, String> existingData, Set<String> undisplayableFields) {
+    private void openEntryForm(String title, Map<String, ?> existingData, Set<String> undisplayableFields, int version) {
         try {
-            // Load the FXML file for the entry form
-            FXMLLoader loader = new FXMLLoader(getClass().getResource("/com/example/hospitalassessment/entry_form.fxml"));
-            Parent root = loader.load();
-            EntryFormController controller = loader.getController();
+            // Take a pooled entry form window; it is rebound to this record rather than rebuilt
+            EntryFormPool.EntryForm form = EntryFormPool.acquire(entryForm, insuranceTable.getScene().getWindow());
+            EntryFormController controller = form.controller();
             controller.setFormTitle(title);
 
-            // Define fields for a new insurance (empty values)
-            if (existingData == null) {
-                existingData = new HashMap<>();
-                existingData.put("Insurance ID", "");
-                existingData.put("Company", "");
-                existingData.put("Address", "");
-                existingData.put("Phone", "");
-            }
-
-            // Set form fields and hide fields that shouldn't be displayed
-            controller.setFields(existingData, undisplayableFields);
+            // Show the record, or empty fields for a new insurance, and hide fields that shouldn't be displayed
+            controller.bind(existingData != null ? existingData : Map.of(), undisplayableFields, Map.of());
 
-            // Create and configure a new window (Stage) for the form
-            Stage stage = new Stage();
+            // Configure the pooled window (Stage) for this use
+            Stage stage = form.stage();
             stage.setTitle(title);
-            stage.setScene(new Scene(root));
-            stage.initModality(Modality.WINDOW_MODAL); // Make it a modal window
-            stage.initOwner(insuranceTable.getScene().getWindow()); // Attach it to the main window
-
-            // Preserve the original existing data for reference
-            Map<String, String> finalExistingData = existingData;
 
             // Define the action to be performed when the Save button is clicked
-            controller.setOnSaveCallback(() -> {
-                Map<String, String> updatedValues = controller.getFieldValues();
-
-                // Ensure Insurance ID is preserved if it's not in updatedValues
-                String insuranceId = updatedValues.get("Insurance ID") == null ? finalExistingData.get("Insurance ID") : updatedValues.get("Insurance ID");
-
+            controller.setOnSaveCallback(values -> {
                 // Create an Insurance object with updated values
-                Insurance insurance = new Insurance(
-                        insuranceId,
-                        updatedValues.get("Company"),
-                        updatedValues.get("Address"),
-                        updatedValues.get("Phone")
-                );
+                Insurance insurance = toInsurance(values);
+                insurance.setVersion(version);
 
                 // Determine whether to update an existing insurance or add a new one
-                Map.Entry<String, Alert.AlertType> resultMessage = undisplayableFields.contains("Insurance ID")
-                        ? insuranceDAO.updateInsurance(insurance)    // Update if "Insurance ID" is not editable
+                OperationResult result = undisplayableFields.contains("Insurance ID")
+                        ? updateInsurance(insurance, existingData, values)    // Update if "Insurance ID" is not editable
                         : insuranceDAO.addInsurance(insurance);      // Otherwise, add a new insurance
 
                 // Show an alert message with the result of the operation
-                AlertHelper.showAlert(title, resultMessage.getKey(), resultMessage.getValue());
+                AlertHelper.showResult(title, result);
 
                 // If the operation was successful, close the form and refresh the insurance table
-                if (resultMessage.getValue() != Alert.AlertType.ERROR) {
+                if (result.isSuccess()) {
                     stage.close(); // Close window only on success
                     loadInsurances(); // Refresh table
+                    pickerOptions.invalidate(OptionType.INSURANCE);
+                    uniqueKeys.recordKey(KeyType.INSURANCE_ID, insurance.getId());
                 }
             });
 
@@ -1,40 +1,195 @@
 package com.example.hospitalassessment.controllers;
 
+import com.example.hospitalassessment.database.CircuitBreaker;
+import com.example.hospitalassessment.database.ConnectionPool;
+import com.example.hospitalassessment.database.DataAccessContext;
 import com.example.hospitalassessment.database.DatabaseManager;
+import com.example.hospitalassessment.database.EntityEvent;
+import com.example.hospitalassessment.services.ChangeFeedService;
+import com.example.hospitalassessment.services.ChangeFeedService.TableChanges;
+import com.example.hospitalassessment.services.ApplicationServices;
+import com.example.hospitalassessment.services.PickerOptionsService.OptionType;
+import com.example.hospitalassessment.services.UniqueKeyService.KeyType;
 import com.example.hospitalassessment.utils.AlertHelper;
+import javafx.application.Platform;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
 import javafx.scene.control.Alert;
 import javafx.scene.control.ComboBox;
+import javafx.scene.control.Label;
 import javafx.scene.layout.AnchorPane;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.ref.SoftReference;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 
 /**
  * MainController handles the initialization and interaction with table views,
  * integrating database operations and view management for a user interface.
  */
 public class MainController {
+    // Background thread that parses table view FXML files ahead of their first use.
+    private static final Executor PRELOAD_EXECUTOR = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "fxml-preloader");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static final int VIEW_CACHE_SIZE = Integer.getInteger("hospital.viewCache.size", 4); // Most table views kept alive between selections.
+
     @FXML // Dropdown for selecting a table to display.
     private ComboBox<String> tableSelector;
 
     @FXML // Container for loading selected table views.
     private AnchorPane tableContainer;
 
+    @FXML // Warns that the database cannot be reached while the last loaded data is shown.
+    private Label connectionStatus;
+
 
-    private DatabaseManager databaseManager; // Manages database connections and transactions.
+    private DataAccessContext dataAccess; // DAOs, reference caches and the event bus shared by all table views.
+    private ConnectionPool connectionPool; // Connections for background loads, announcing their writes on the views' event bus.
+    private ApplicationServices services; // Services shared by all views, some kept up to date from the event bus.
+    private ChangeFeedService changeFeed; // Reports rows changed by other users, keeping cached views current.
     private final Map<String, String> tableViews = new HashMap<>(); // Mapping of table names to their FXML file paths.
+    private final Map<String, CompletableFuture<FXMLLoader>> preloadedViews = new ConcurrentHashMap<>(); // Parsed table views ready for use.
+    private final Map<String, SoftReference<CachedView>> viewCache = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, SoftReference<CachedView>> eldest) {
+            if (size() > VIEW_CACHE_SIZE) {
+                preloadTableView(eldest.getKey()); // Keep a parsed copy ready for when the table is selected again
+                return true;
+            }
+            return false;
+        }
+    }; // Recently used table views with their data, kept in least-recently-used order; cleared under memory pressure.
 
     /**
-     * Sets the DatabaseManager instance for managing database operations.
+     * Sets the DatabaseManager instance for managing database operations
+     * and creates the data access context shared by all table views, announcing writes on the connection pool's bus
+     * so that writes made in the background are seen too.
+     * Writes announced on its event bus are passed on to every cached view, the active medication index,
+     * the kept patient histories and the cohort index,
+     * and a warning is shown while the database cannot be reached. Called after {@link #setConnectionPool(ConnectionPool)}.
      *
      * @param databaseManager the DatabaseManager instance to be associated with this controller
      */
     public void setDatabaseManager(DatabaseManager databaseManager) {
-        this.databaseManager = databaseManager;
+        this.dataAccess = new DataAccessContext(databaseManager, connectionPool.events());
+        services.activeMedications().follow(dataAccess.events());
+        services.activeMedications().prefetch();
+        services.patientHistory().follow(dataAccess.events());
+        services.cohorts().follow(dataAccess.events());
+        services.cohorts().prefetch();
+        databaseManager.getCircuitBreaker().subscribe(state -> Platform.runLater(() -> showConnectionState(state)));
+        dataAccess.events().subscribeAll(event -> {
+            if (Platform.isFxApplicationThread()) {
+                forwardEvent(event);
+            } else {
+                Platform.runLater(() -> forwardEvent(event));
+            }
+        });
+    }
+
+    /**
+     * Sets the ConnectionPool used by table views for parallel background loads
+     * and creates the services shared by all views: dropdown options, key uniqueness, prescription conflicts,
+     * claim eligibility, the active medication index, patient histories, trends, cohorts and reports.
+     *
+     * @param connectionPool the ConnectionPool instance to be associated with this controller
+     */
+    public void setConnectionPool(ConnectionPool connectionPool) {
+        this.connectionPool = connectionPool;
+        this.services = new ApplicationServices(connectionPool);
+    }
+
+    /**
+     * Sets the service reporting rows changed by other users. Their changes are applied to the cached table views
+     * and the shared dropdown and key caches as they arrive, so cached views need no full reload when shown again.
+     *
+     * @param changeFeed the ChangeFeedService to follow
+     */
+    public void setChangeFeed(ChangeFeedService changeFeed) {
+        this.changeFeed = changeFeed;
+        changeFeed.subscribe(changes -> Platform.runLater(() -> applyChanges(changes)));
+    }
+
+    /**
+     * Applies a table's changed rows to the shared caches and every cached view.
+     * Each changed row is announced on the event bus, so reference caches drop exactly those records.
+     *
+     * @param changes the keys of the changed rows of one table
+     */
+    private void applyChanges(TableChanges changes) {
+        changes.publishTo(dataAccess.events());
+
+        switch (changes.table()) {
+            case DOCTOR -> {
+                services.pickerOptions().invalidate(OptionType.DOCTORS);
+                services.uniqueKeys().recordSavedRows(KeyType.DOCTOR_ID, changes.changedKeys());
+            }
+            case PATIENT -> {
+                services.pickerOptions().invalidate(OptionType.PATIENTS);
+                services.uniqueKeys().recordSavedRows(KeyType.PATIENT_ID, changes.changedKeys());
+            }
+            case DRUG -> {
+                services.pickerOptions().invalidate(OptionType.DRUGS);
+                services.uniqueKeys().recordSavedRows(KeyType.DRUG_ID, changes.changedKeys());
+            }
+            case INSURANCE -> {
+                services.pickerOptions().invalidate(OptionType.INSURANCE);
+                services.uniqueKeys().recordSavedRows(KeyType.INSURANCE_ID, changes.changedKeys());
+            }
+            case PRESCRIPTION -> services.uniqueKeys().recordSavedRows(KeyType.PRESCRIPTION_ID, changes.changedKeys());
+            case VISIT -> {
+            }
+        }
+
+        // Iterate the values rather than calling get(), which would reorder the least-recently-used cache
+        for (SoftReference<CachedView> reference : viewCache.values()) {
+            CachedView view = reference.get();
+            if (view != null) {
+                view.controller().applyChanges(changes);
+            }
+        }
+    }
+
+    /**
+     * Shows or hides the warning that the database cannot be reached.
+     * Table views keep their rows meanwhile, and saving fails with a message instead of waiting.
+     *
+     * @param state the new state of the circuit breaker
+     */
+    private void showConnectionState(CircuitBreaker.State state) {
+        switch (state) {
+            case OPEN -> connectionStatus.setText("Database unavailable. Showing the last loaded data until it reconnects.");
+            case HALF_OPEN -> connectionStatus.setText("Reconnecting to the database...");
+            case CLOSED -> connectionStatus.setText("");
+        }
+        connectionStatus.setVisible(state != CircuitBreaker.State.CLOSED);
+    }
+
+    /**
+     * Passes a change announced on the event bus to every cached view.
+     *
+     * @param event the change to a record
+     */
+    private void forwardEvent(EntityEvent<?> event) {
+        for (SoftReference<CachedView> reference : viewCache.values()) {
+            CachedView view = reference.get();
+            if (view != null) {
+                view.controller().onEntityChanged(event);
+            }
+        }
     }
 
     /**
@@ -49,14 +204,88 @@ public class MainController {
         tableViews.put("Insurance", "/com/example/hospitalassessment/insurance.fxml");
         tableViews.put("Prescriptions", "/com/example/hospitalassessment/prescription.fxml");
         tableViews.put("Visits", "/com/example/hospitalassessment/visit.fxml");
+        tableViews.put("Trends", "/com/example/hospitalassessment/trends.fxml");
+        tableViews.put("Cohorts", "/com/example/hospitalassessment/cohorts.fxml");
+        tableViews.put("Reports", "/com/example/hospitalassessment/reports.fxml");
 
         tableSelector.getItems().addAll(tableViews.keySet());
+
+        tableViews.keySet().forEach(this::preloadTableView);
+    }
+
+    /**
+     * Provides a future that completes once every table view has been parsed in the background.
+     *
+     * @return a future completing when all table views are preloaded
+     */
+    public CompletableFuture<Void> whenTableViewsPreloaded() {
+        return CompletableFuture.allOf(preloadedViews.values().toArray(new CompletableFuture<?>[0]));
+    }
+
+    /**
+     * Starts parsing the FXML of a table view on the background preload thread.
+     * The resulting view is not attached to any scene until it is selected.
+     *
+     * @param tableName the name of the table whose view should be prepared
+     */
+    private void preloadTableView(String tableName) {
+        String path = tableViews.get(tableName);
+        preloadedViews.put(tableName, CompletableFuture.supplyAsync(() -> {
+            try {
+                FXMLLoader loader = new FXMLLoader(getClass().getResource(path));
+                loader.load();
+                return loader;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, PRELOAD_EXECUTOR));
+    }
+
+    /**
+     * Looks up a previously shown view of a table.
+     *
+     * @param tableName the name of the table
+     * @return the cached view, or null if it was never shown, was evicted, or was reclaimed to free memory
+     */
+    private CachedView cachedView(String tableName) {
+        SoftReference<CachedView> reference = viewCache.get(tableName);
+        CachedView view = reference != null ? reference.get() : null;
+        if (reference != null && view == null) {
+            viewCache.remove(tableName);
+        }
+        return view;
+    }
+
+    /**
+     * Takes the preloaded view of a table, falling back to parsing it on the spot if it is not ready
+     * or preloading failed.
+     *
+     * @param tableName the name of the table whose view is needed
+     * @return an FXMLLoader whose view has already been loaded
+     * @throws IOException if the FXML file cannot be loaded
+     */
+    private FXMLLoader takeTableView(String tableName) throws IOException {
+        CompletableFuture<FXMLLoader> preloaded = preloadedViews.remove(tableName);
+
+        if (preloaded != null) {
+            try {
+                return preloaded.join();
+            } catch (CompletionException e) {
+                e.printStackTrace(); // Fall back to loading the view directly
+            }
+        }
+
+        FXMLLoader loader = new FXMLLoader(getClass().getResource(tableViews.get(tableName)));
+        loader.load();
+        return loader;
     }
 
     /**
      * Loads and displays the selected table view in the table container.
-     * Validates the selection and shows an error alert if no table is selected.
-     * Associates the controller of the loaded table view with the database manager.
+     * Validates the selection and shows an error alert if no table is selected
+     * or the database connection is still being established.
+     * Recently used views are reused and refreshed in place, keeping their filter, sort order,
+     * selection and scroll position; other views are built and given the shared services and data access context.
      */
     @FXML
     private void loadSelectedTable() {
@@ -67,13 +296,31 @@ public class MainController {
             return;
         }
 
+        if (dataAccess == null) {
+            AlertHelper.showAlert("Please Wait", "Still connecting to the database. Please try again in a moment.", Alert.AlertType.INFORMATION);
+            return;
+        }
+
         try {
-            FXMLLoader loader = new FXMLLoader(getClass().getResource(tableViews.get(selectedTable)));
-            Parent tableView = loader.load();
+            Parent tableView;
+            CachedView cached = cachedView(selectedTable);
+            if (cached != null) {
+                if (changeFeed == null || !changeFeed.isLive()) {
+                    cached.controller().refresh(); // Changes are not being followed, so reload to pick them up
+                }
+                tableView = cached.root();
+            } else {
+                FXMLLoader loader = takeTableView(selectedTable);
+                tableView = loader.getRoot();
 
-            Object controller = loader.getController();
-            if (controller instanceof TableController) {
-                ((TableController) controller).setDatabaseManager(databaseManager);
+                Object controller = loader.getController();
+                if (controller instanceof ViewController viewController) {
+                    viewController.setServices(services);
+                    viewController.setDataAccess(dataAccess);
+                    viewCache.put(selectedTable, new SoftReference<>(new CachedView(tableView, viewController)));
+                } else {
+                    preloadTableView(selectedTable);
+                }
             }
 
             tableContainer.getChildren().clear();
@@ -86,4 +333,10 @@ public class MainController {
             e.printStackTrace();
         }
     }
+
+    /**
+     * A view kept alive between selections together with its controller.
+     */
+    private record CachedView(Parent root, ViewController controller) {
+    }
 }
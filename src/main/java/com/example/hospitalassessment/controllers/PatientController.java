@@ -2,12 +2,32 @@ package com.example.hospitalassessment.controllers;
 
 import com.example.hospitalassessment.database.InsuranceDAO;
 import com.example.hospitalassessment.database.PatientDAO;
-import com.example.hospitalassessment.database.VisitDAO;
+import com.example.hospitalassessment.database.PatientDAO.PatientHistory;
+import com.example.hospitalassessment.database.ReferenceCache;
 import com.example.hospitalassessment.models.Doctor;
 import com.example.hospitalassessment.models.Insurance;
 import com.example.hospitalassessment.models.Patient;
-import com.example.hospitalassessment.database.DatabaseManager;
+import com.example.hospitalassessment.models.Visit;
+import com.example.hospitalassessment.database.DataAccessContext;
+import com.example.hospitalassessment.database.EntityEvent;
+import com.example.hospitalassessment.database.OperationResult;
+import com.example.hospitalassessment.forms.FieldValidator;
+import com.example.hospitalassessment.forms.FormSchema;
+import com.example.hospitalassessment.forms.FormValues;
+import com.example.hospitalassessment.services.ApplicationServices;
+import com.example.hospitalassessment.services.ChangeFeedService.Table;
+import com.example.hospitalassessment.services.ChangeFeedService.TableChanges;
+import com.example.hospitalassessment.services.ActiveMedicationIndex.Course;
+import com.example.hospitalassessment.services.PatientHistoryService;
+import com.example.hospitalassessment.services.PickerOptionsService;
+import com.example.hospitalassessment.services.PickerOptionsService.OptionType;
+import com.example.hospitalassessment.services.UniqueKeyService;
+import com.example.hospitalassessment.services.UniqueKeyService.KeyType;
 import com.example.hospitalassessment.utils.AlertHelper;
+import com.example.hospitalassessment.utils.FxFutures;
+import com.example.hospitalassessment.utils.MergeDialog;
+import com.example.hospitalassessment.utils.ReferenceBatcher;
+import com.example.hospitalassessment.utils.TableRows;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
@@ -22,18 +42,35 @@ import javafx.scene.control.cell.PropertyValueFactory;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.collections.transformation.FilteredList;
 import javafx.collections.transformation.SortedList;
-import javafx.stage.Modality;
 import javafx.stage.Stage;
 
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
 
 /**
  * Controller for managing patient records in a table view. Provides functionality
  * to add, modify, delete, and search patients. Interacts with database through DAOs.
  */
 public class PatientController implements TableController {
+    private static final FormSchema FORM = FormSchema.builder("Patient")
+            .text("Patient ID", FieldValidator.required())
+            .text("First Name", FieldValidator.required())
+            .text("Surname", FieldValidator.required())
+            .text("Address")
+            .text("Postcode")
+            .text("Phone")
+            .text("Email")
+            .choice("Insurance", OptionType.INSURANCE, "NHS")
+            .build(); // Fields of the patient entry form, in display order.
+    private static final String DETAIL_FXML = "/com/example/hospitalassessment/patient_detail.fxml"; // Layout of the patient detail window.
+
     @FXML // Table to display patient records.
     private TableView<Patient> patientTable;
 
@@ -44,23 +81,85 @@ public class PatientController implements TableController {
     private TextField searchField;
 
 
-    private DatabaseManager databaseManager; // Manages database connections and transactions.
+    private DataAccessContext dataAccess; // Shared DAOs and the event bus announcing their writes.
     private PatientDAO patientDAO; // Data Access Object for patient-related operations.
     private InsuranceDAO insuranceDAO; // Data Access Object for insurance-related operations.
-    private VisitDAO visitDAO;
+    private PickerOptionsService pickerOptions; // Shared dropdown options, refreshed after patient changes.
+    private UniqueKeyService uniqueKeys; // Checks patient keys for uniqueness as they are typed.
+    private PatientHistoryService patientHistory; // Loads and keeps each patient's full history for the detail window.
+    private FormSchema entryForm = FORM; // Entry form fields, with uniqueness checks once the key service is set.
+    private final ObservableList<Patient> patientList = FXCollections.observableArrayList(); // Rows backing the table, updated in place on refresh.
+    private final ReferenceBatcher referenceBatcher = new ReferenceBatcher(); // Loads insurance companies and main doctors for rendered rows in batches.
+    private ReferenceCache<Doctor> mainDoctorRefs; // Doctor each patient visited most, for the main doctor column.
 
     /**
-     * Sets the provided DatabaseManager instance and initializes related DAOs.
+     * Sets the shared data access context and takes the DAOs this view needs from it.
      *
-     * @param dbManager the DatabaseManager instance to be set and used for database operations.
+     * @param dataAccess the DataAccessContext shared by all table views
+     */
+    @Override
+    public void setDataAccess(DataAccessContext dataAccess) {
+        this.dataAccess = dataAccess;
+        this.patientDAO = dataAccess.patients();
+        this.insuranceDAO = dataAccess.insurance();
+        this.mainDoctorRefs = dataAccess.mainDoctorReferences();
+        pickerOptions.prefetch(OptionType.INSURANCE);
+        EntryFormPool.prewarm(entryForm);
+        loadPatients();
+    }
+
+    /**
+     * Takes the shared services for dropdown options, key uniqueness and patient histories, and adds the key checks to the entry form.
+     *
+     * @param services the ApplicationServices shared by all views
+     */
+    @Override
+    public void setServices(ApplicationServices services) {
+        this.pickerOptions = services.pickerOptions();
+        this.uniqueKeys = services.uniqueKeys();
+        this.patientHistory = services.patientHistory();
+        this.entryForm = FORM
+                .withAsyncValidator("Patient ID", uniqueKeys.validator(KeyType.PATIENT_ID))
+                .withAsyncValidator("Email", uniqueKeys.validator(KeyType.PATIENT_EMAIL));
+        uniqueKeys.prefetch(KeyType.PATIENT_ID, KeyType.PATIENT_EMAIL);
+    }
+
+    /**
+     * Reloads the table data when the view is shown again, applying only the rows that changed.
+     * Cached references are dropped first so renamed records show their new names.
      */
     @Override
-    public void setDatabaseManager(DatabaseManager dbManager) {
-        this.databaseManager = dbManager;
-        this.patientDAO = new PatientDAO(databaseManager);
-        this.insuranceDAO = new InsuranceDAO(databaseManager);
-        this.visitDAO = new VisitDAO(dbManager);
+    public void refresh() {
+        patientDAO.getInsuranceReferences().clear();
+        mainDoctorRefs.clear();
         loadPatients();
+        patientTable.refresh();
+    }
+
+    /**
+     * Applies patients changed by other users, loading only the changed rows.
+     *
+     * @param changes the keys of the changed rows of one table
+     */
+    @Override
+    public void applyChanges(TableChanges changes) {
+        if (changes.table() == Table.PATIENT) {
+            TableRows.apply(patientList, patientDAO.getPatientsByIds(changes.changedKeys()), changes.deletedKeys(),
+                    Patient::getId, PatientController::rowContent);
+        }
+    }
+
+    /**
+     * Redraws the table when a referenced insurance company changes, showing its new name, or when a visit or doctor
+     * changes, showing the new main doctor. The data access context has already dropped the changed entries from its caches.
+     *
+     * @param event the change to a record
+     */
+    @Override
+    public void onEntityChanged(EntityEvent<?> event) {
+        if (event.type() == Insurance.class || event.type() == Visit.class || event.type() == Doctor.class) {
+            patientTable.refresh();
+        }
     }
 
     /**
@@ -76,28 +175,47 @@ public class PatientController implements TableController {
         colAddress.setCellValueFactory(new PropertyValueFactory<>("address"));
         colPhone.setCellValueFactory(new PropertyValueFactory<>("phone"));
         colEmail.setCellValueFactory(new PropertyValueFactory<>("email"));
-        colInsurance.setCellValueFactory(cellData ->
-                new SimpleStringProperty(cellData.getValue().getInsurance() != null ? cellData.getValue().getInsurance().getCompany() : "NHS")
-        );
-        colMainDoctor.setCellValueFactory(cellData -> {
-            Doctor mainDoctor = visitDAO.getMainDoctorForPatient(cellData.getValue().getId());
-            return new SimpleStringProperty(mainDoctor != null
-                    ? mainDoctor.getFirstName() + " " + mainDoctor.getSurname()
-                    : "N/A");
+        colInsurance.setCellValueFactory(cellData -> cellData.getValue().getInsuranceRef() == null
+                ? new SimpleStringProperty("NHS")
+                : referenceBatcher.label(cellData.getValue().getInsuranceRef(), patientDAO.getInsuranceReferences(),
+                        insurance -> insurance != null ? insurance.getCompany() : "NHS"));
+        colMainDoctor.setCellValueFactory(cellData -> referenceBatcher.label(mainDoctorRefs.ref(cellData.getValue().getId()), mainDoctorRefs,
+                mainDoctor -> mainDoctor != null ? mainDoctor.getFirstName() + " " + mainDoctor.getSurname() : "N/A"));
+
+        patientTable.setOnMouseClicked(event -> {
+            if (event.getClickCount() == 2 && patientTable.getSelectionModel().getSelectedItem() != null) {
+                handleViewHistory();
+            }
         });
 
+        bindTableData();
     }
 
     /**
-     * Loads patient data into the table with filtering and sorting functionality.
-     * Filters allow searching by patient ID, name, postcode, address, phone, email, or insurance company.
-     * Binds sorted data to match the table's comparator.
+     * Loads patient data from the database and applies it to the table in place,
+     * so the current filter, sort order, selection and scroll position are kept.
+     * If the database cannot be reached, the rows already shown are kept as they are.
      */
     private void loadPatients() {
-        ObservableList<Patient> patientList = FXCollections.observableArrayList(patientDAO.getAllPatients());
+        List<Patient> rows = patientDAO.getAllPatients();
+        if (!dataAccess.getDatabaseManager().isAvailable()) {
+            return;
+        }
+        TableRows.merge(patientList, rows, Patient::getId, PatientController::rowContent);
+    }
+
+    /**
+     * Connects the table to its rows through a filtered and sorted view.
+     * Filtering follows the search field, and sorting follows the table's sort order.
+     */
+    private void bindTableData() {
         FilteredList<Patient> filteredData = new FilteredList<>(patientList, p -> true);
 
         searchField.textProperty().addListener((observable, oldValue, newValue) -> {
+            if (newValue != null && !newValue.isEmpty()) {
+                // Matching on the insurance company needs every reference, so load them all in one batch.
+                patientDAO.resolveReferences(patientList);
+            }
             filteredData.setPredicate(patient -> {
                 if (newValue == null || newValue.isEmpty()) return true;
 
@@ -115,17 +233,29 @@ public class PatientController implements TableController {
 
         SortedList<Patient> sortedData = new SortedList<>(filteredData);
         sortedData.comparatorProperty().bind(patientTable.comparatorProperty());
+        patientTable.setOnSort(event -> patientDAO.resolveReferences(patientList));
 
         patientTable.setItems(sortedData);
     }
 
+    /**
+     * Lists the values of a row that are compared to detect a change when the table is refreshed.
+     *
+     * @param patient the row to describe
+     * @return the row's version and displayed values
+     */
+    private static List<?> rowContent(Patient patient) {
+        return Arrays.asList(patient.getVersion(), patient.getFirstName(), patient.getSurname(), patient.getPostcode(), patient.getAddress(), patient.getPhone(), patient.getEmail(),
+                patient.getInsuranceRef() != null ? patient.getInsuranceRef().getId() : null);
+    }
+
     /**
      * Handles the action of adding a new patient by opening a patient entry form.
      * The form allows input of patient details and saves the data upon submission.
      */
     @FXML
     private void handleAddPatient() {
-        openEntryForm("Add Patient", null, Set.of());
+        openEntryForm("Add Patient", null, Set.of(), 0);
     }
 
     /**
@@ -137,17 +267,7 @@ public class PatientController implements TableController {
     private void handleModifyPatient() {
         Patient selectedPatient = patientTable.getSelectionModel().getSelectedItem();
         if (selectedPatient != null) {
-            Map<String, String> patientData = new HashMap<>();
-            patientData.put("Patient ID", selectedPatient.getId());
-            patientData.put("First Name", selectedPatient.getFirstName());
-            patientData.put("Surname", selectedPatient.getSurname());
-            patientData.put("Address", selectedPatient.getAddress());
-            patientData.put("Postcode", selectedPatient.getPostcode());
-            patientData.put("Phone", selectedPatient.getPhone());
-            patientData.put("Email", selectedPatient.getEmail());
-            patientData.put("Insurance", selectedPatient.getInsurance() != null ? selectedPatient.getInsurance().getCompany() : "NHS");
-
-            openEntryForm("Modify Patient", patientData, Set.of("Patient ID"));
+            openEntryForm("Modify Patient", formData(selectedPatient), Set.of("Patient ID"), selectedPatient.getVersion());
         } else {
             AlertHelper.showAlert("Selection Error", "Please select a patient to modify.", Alert.AlertType.WARNING);
         }
@@ -166,88 +286,193 @@ public class PatientController implements TableController {
                     "Are you sure you want to delete Patient " + selectedPatient.getFirstName() + " " + selectedPatient.getSurname() + "?");
 
             if (confirmed) {
-                String resultMessage = patientDAO.deletePatient(selectedPatient.getId());
-                AlertHelper.showAlert("Patient Deletion", resultMessage, Alert.AlertType.INFORMATION);
+                OperationResult result = patientDAO.deletePatient(selectedPatient.getId(), selectedPatient.getVersion());
+                AlertHelper.showResult("Patient Deletion", result);
                 loadPatients();
+                pickerOptions.invalidate(OptionType.PATIENTS);
             }
         } else {
             AlertHelper.showAlert("Selection Error", "Please select a patient to delete.", Alert.AlertType.WARNING);
         }
     }
 
+    /**
+     * Handles opening the selected patient's history in a detail window.
+     * The history is read in the background unless it was kept from an earlier open.
+     */
+    @FXML
+    private void handleViewHistory() {
+        Patient selectedPatient = patientTable.getSelectionModel().getSelectedItem();
+        if (selectedPatient != null) {
+            CompletableFuture<PatientHistory> history = patientHistory.getHistory(selectedPatient.getId());
+            FxFutures.runWhenReady(history, () -> showHistory(history.join()), "Could not load the patient's history.");
+        } else {
+            AlertHelper.showAlert("Selection Error", "Please select a patient to view.", Alert.AlertType.WARNING);
+        }
+    }
+
+    /**
+     * Opens a detail window showing a patient's history.
+     *
+     * @param history the history to show, or null if the patient no longer exists
+     */
+    private void showHistory(PatientHistory history) {
+        if (history == null) {
+            AlertHelper.showAlert("Patient History", "This patient no longer exists.", Alert.AlertType.WARNING);
+            return;
+        }
+        try {
+            FXMLLoader loader = new FXMLLoader(getClass().getResource(DETAIL_FXML));
+            Parent root = loader.load();
+            PatientDetailController controller = loader.getController();
+
+            // Mark the prescriptions whose course includes today
+            long today = LocalDate.now().toEpochDay();
+            controller.show(history, history.prescriptions().stream()
+                    .map(Course::of)
+                    .filter(course -> course != null && course.start() <= today && today < course.end())
+                    .map(Course::prescriptionId)
+                    .collect(Collectors.toSet()));
+
+            Stage stage = new Stage();
+            stage.setTitle("Patient History - " + history.patient().getFirstName() + " " + history.patient().getSurname());
+            stage.setScene(new Scene(root));
+            stage.initOwner(patientTable.getScene().getWindow());
+            stage.show();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Saves changes to an existing patient. If another user saved the patient after the form was opened,
+     * their changes are merged with these, asking which value to keep where both changed the same field,
+     * and the save is retried against the patient as it is now.
+     *
+     * @param patient the changed patient, carrying the version the form was opened with.
+     * @param base    the values the form was opened with.
+     * @param values  the values the user saved.
+     * @return the result of the last save attempt.
+     */
+    private OperationResult updatePatient(Patient patient, Map<String, ?> base, FormValues values) {
+        OperationResult result = patientDAO.updatePatient(patient);
+        while (result.getStatus() == OperationResult.Status.CONFLICT) {
+            Patient current = patientDAO.getPatientById(patient.getId());
+            if (current == null) {
+                return OperationResult.notFound("Error: This patient was deleted by another user.");
+            }
+            Map<String, Object> theirs = formData(current);
+            values = MergeDialog.merge(entryForm, base, values, theirs);
+            if (values == null) {
+                return result; // Merge cancelled
+            }
+            base = theirs;
+            patient = toPatient(values);
+            patient.setVersion(current.getVersion());
+            result = patientDAO.updatePatient(patient);
+        }
+        return result;
+    }
+
+    /**
+     * Lists a patient's values by entry form field.
+     *
+     * @param patient the patient to show.
+     * @return the field values of the patient.
+     */
+    private static Map<String, Object> formData(Patient patient) {
+        Map<String, Object> patientData = new HashMap<>();
+        patientData.put("Patient ID", patient.getId());
+        patientData.put("First Name", patient.getFirstName());
+        patientData.put("Surname", patient.getSurname());
+        patientData.put("Address", patient.getAddress());
+        patientData.put("Postcode", patient.getPostcode());
+        patientData.put("Phone", patient.getPhone());
+        patientData.put("Email", patient.getEmail());
+        patientData.put("Insurance", patient.getInsurance() != null ? patient.getInsurance().getCompany() : "NHS");
+        return patientData;
+    }
+
+    /**
+     * Creates a patient from saved entry form values, looking up the chosen insurance company.
+     *
+     * @param values the values of the entry form.
+     * @return the patient described by the form.
+     */
+    private Patient toPatient(FormValues values) {
+        return new Patient(
+                values.getText("Patient ID"),
+                values.getText("First Name"),
+                values.getText("Surname"),
+                values.getText("Address"),
+                values.getText("Postcode"),
+                values.getText("Phone"),
+                values.getText("Email"),
+                insuranceDAO.getInsuranceByCompany(values.getText("Insurance"))
+        );
+    }
+
     /**
      * Opens an entry form for adding or modifying patient details.
+     * The insurance options come from the prefetch service, so the form opens immediately when they are warm.
+     *
+     * @param title               the title of the form to be displayed on the window.
+     * @param existingData        a map containing pre-filled data for the form fields, or null to initialize default fields.
+     * @param undisplayableFields a set of field names that should not be displayed in the form.
+     * @param version             the version of the patient being edited, checked when the changes are saved.
+     */
+    private void openEntryForm(String title, Map<String, ?> existingData, Set<String> undisplayableFields, int version) {
+        CompletableFuture<Map<OptionType, List<String>>> options = pickerOptions.getOptions(entryForm.getPickerSources());
+        FxFutures.runWhenReady(options,
+                () -> showEntryForm(title, existingData, undisplayableFields, version, options.join()),
+                "Could not load insurance companies.");
+    }
+
+    /**
+     * Builds and displays the patient entry form using preloaded insurance options.
      *
      * @param title               the title of the form to be displayed on the window.
      * @param existingData        a map containing pre-filled data for the form fields, or null to initialize default fields.
      * @param undisplayableFields a set of field names that should not be displayed in the form.
+     * @param version             the version of the patient being edited, checked when the changes are saved.
+     * @param options             the option lists offered by the form's dropdowns.
      */
-    private void openEntryForm(String title, Map<String, String> existingData, Set<String> undisplayableFields) {
+    private void showEntryForm(String title, Map<String, ?> existingData, Set<String> undisplayableFields, int version,
+                               Map<OptionType, List<String>> options) {
         try {
-            // Load the FXML file for the entry form
-            FXMLLoader loader = new FXMLLoader(getClass().getResource("/com/example/hospitalassessment/entry_form.fxml"));
-            Parent root = loader.load();
-            EntryFormController controller = loader.getController();
+            // Take a pooled entry form window; it is rebound to this record rather than rebuilt
+            EntryFormPool.EntryForm form = EntryFormPool.acquire(entryForm, patientTable.getScene().getWindow());
+            EntryFormController controller = form.controller();
             controller.setFormTitle(title);
 
-            // Define fields for a new patient (empty values)
-            if (existingData == null) {
-                existingData = new HashMap<>();
-                existingData.put("Patient ID", "");
-                existingData.put("First Name", "");
-                existingData.put("Surname", "");
-                existingData.put("Address", "");
-                existingData.put("Postcode", "");
-                existingData.put("Phone", "");
-                existingData.put("Email", "");
-                existingData.put("Insurance", "");
-            }
-
-            // Set form fields and hide fields that shouldn't be displayed
-            // and provide a list of available insurance companies for selection.
-            controller.setFields(existingData, undisplayableFields, insuranceDAO.getAllInsurance().stream().map(Insurance::getCompany).toList());
+            // Show the record, or empty fields for a new patient, and hide fields that shouldn't be displayed
+            controller.bind(existingData != null ? existingData : Map.of(), undisplayableFields, options);
 
-            // Create and configure a new window (Stage) for the form
-            Stage stage = new Stage();
+            // Configure the pooled window (Stage) for this use
+            Stage stage = form.stage();
             stage.setTitle(title);
-            stage.setScene(new Scene(root));
-            stage.initModality(Modality.WINDOW_MODAL); // Make it a modal window
-            stage.initOwner(patientTable.getScene().getWindow()); // Attach it to the main window
-
-            // Preserve the original existing data for reference
-            Map<String, String> finalExistingData = existingData;
 
             // Define the action to be performed when the Save button is clicked
-            controller.setOnSaveCallback(() -> {
-                Map<String, String> updatedValues = controller.getFieldValues();
-
-                // Ensure Patient ID is preserved if it's not in updatedValues
-                String patientId = updatedValues.get("Patient ID") == null ? finalExistingData.get("Patient ID") : updatedValues.get("Patient ID");
-
+            controller.setOnSaveCallback(values -> {
                 // Create a Patient object with updated values
-                Patient patient = new Patient(
-                        patientId,
-                        updatedValues.get("First Name"),
-                        updatedValues.get("Surname"),
-                        updatedValues.get("Address"),
-                        updatedValues.get("Postcode"),
-                        updatedValues.get("Phone"),
-                        updatedValues.get("Email"),
-                        insuranceDAO.getInsuranceByCompany(updatedValues.get("Insurance"))
-                );
+                Patient patient = toPatient(values);
+                patient.setVersion(version);
 
                 // Determine whether to update an existing patient or add a new one
-                Map.Entry<String, Alert.AlertType> resultMessage = undisplayableFields.contains("Patient ID")
-                        ? patientDAO.updatePatient(patient)    // Update if "Patient ID" is not editable
+                OperationResult result = undisplayableFields.contains("Patient ID")
+                        ? updatePatient(patient, existingData, values)    // Update if "Patient ID" is not editable
                         : patientDAO.addPatient(patient);      // Otherwise, add a new patient
 
                 // Show an alert message with the result of the operation
-                AlertHelper.showAlert(title, resultMessage.getKey(), resultMessage.getValue());
+                AlertHelper.showResult(title, result);
 
                 // If the operation was successful, close the form and refresh the patient table
-                if (resultMessage.getValue() != Alert.AlertType.ERROR) {
+                if (result.isSuccess()) {
                     stage.close(); // Close window only on success
                     loadPatients(); // Refresh table
+                    pickerOptions.invalidate(OptionType.PATIENTS);
+                    uniqueKeys.recordKey(KeyType.PATIENT_ID, patient.getId());
+                    uniqueKeys.recordKey(KeyType.PATIENT_EMAIL, patient.getEmail());
                 }
             });
 
@@ -0,0 +1,111 @@
+package com.example.hospitalassessment.controllers;
+
+import com.example.hospitalassessment.database.PatientDAO.PatientHistory;
+import com.example.hospitalassessment.models.Doctor;
+import com.example.hospitalassessment.models.Patient;
+import com.example.hospitalassessment.models.Prescription;
+import com.example.hospitalassessment.models.Visit;
+import javafx.beans.property.SimpleStringProperty;
+import javafx.collections.FXCollections;
+import javafx.fxml.FXML;
+import javafx.scene.control.Label;
+import javafx.scene.control.TableColumn;
+import javafx.scene.control.TableView;
+import javafx.stage.Stage;
+
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Controller for the patient detail window, showing one patient's contact details, insurance,
+ * visits and prescriptions together. The window only displays a history loaded beforehand.
+ */
+public class PatientDetailController {
+    @FXML // Labels showing the patient's details.
+    private Label patientName, patientId, address, contact, insurance, visitsTitle, prescriptionsTitle;
+
+    @FXML // Table of the patient's visits.
+    private TableView<Visit> visitTable;
+
+    @FXML // Columns representing Visit properties.
+    private TableColumn<Visit, String> colVisitDate, colVisitDoctor, colSpecialization, colSymptoms, colDiagnosis;
+
+    @FXML // Table of the patient's prescriptions.
+    private TableView<Prescription> prescriptionTable;
+
+    @FXML // Columns representing Prescription properties.
+    private TableColumn<Prescription, String> colPrescriptionID, colDatePrescribed, colDrug, colDosage, colDuration, colPrescriptionDoctor, colTakingNow;
+
+    private Set<String> takingNow = Set.of(); // IDs of the prescriptions the patient is taking today.
+
+    /**
+     * Initializes the table columns of the window.
+     */
+    @FXML
+    public void initialize() {
+        colVisitDate.setCellValueFactory(cellData -> new SimpleStringProperty(String.valueOf(cellData.getValue().getDateOfVisit())));
+        colVisitDoctor.setCellValueFactory(cellData -> new SimpleStringProperty(fullName(cellData.getValue().getDoctor())));
+        colSpecialization.setCellValueFactory(cellData -> new SimpleStringProperty(cellData.getValue().getDoctor().getSpecialization()));
+        colSymptoms.setCellValueFactory(cellData -> new SimpleStringProperty(cellData.getValue().getSymptoms()));
+        colDiagnosis.setCellValueFactory(cellData -> new SimpleStringProperty(cellData.getValue().getDiagnosis()));
+
+        colPrescriptionID.setCellValueFactory(cellData -> new SimpleStringProperty(cellData.getValue().getId()));
+        colDatePrescribed.setCellValueFactory(cellData -> new SimpleStringProperty(String.valueOf(cellData.getValue().getDatePrescribed())));
+        colDrug.setCellValueFactory(cellData -> new SimpleStringProperty(cellData.getValue().getDrug().getDrugName()));
+        colDosage.setCellValueFactory(cellData -> new SimpleStringProperty(String.valueOf(cellData.getValue().getDosage())));
+        colDuration.setCellValueFactory(cellData -> new SimpleStringProperty(cellData.getValue().getDuration() + " days"));
+        colPrescriptionDoctor.setCellValueFactory(cellData -> new SimpleStringProperty(fullName(cellData.getValue().getDoctor())));
+        colTakingNow.setCellValueFactory(cellData -> new SimpleStringProperty(takingNow.contains(cellData.getValue().getId()) ? "Yes" : ""));
+    }
+
+    /**
+     * Shows a patient's history.
+     *
+     * @param history   the history to show
+     * @param takingNow the IDs of the prescriptions the patient is taking today
+     */
+    public void show(PatientHistory history, Set<String> takingNow) {
+        Patient patient = history.patient();
+        this.takingNow = takingNow;
+        patientName.setText(fullName(patient));
+        patientId.setText(patient.getId());
+        address.setText(join(", ", patient.getAddress(), patient.getPostcode()));
+        contact.setText(join(", ", patient.getPhone(), patient.getEmail()));
+        insurance.setText(patient.getInsurance() != null
+                ? patient.getInsurance().getCompany() + " (" + patient.getInsurance().getId() + ")"
+                : "NHS");
+
+        visitsTitle.setText("Visits (" + history.visits().size() + ")");
+        prescriptionsTitle.setText("Prescriptions (" + history.prescriptions().size() + ", " + takingNow.size() + " taken now)");
+        visitTable.setItems(FXCollections.observableArrayList(history.visits()));
+        prescriptionTable.setItems(FXCollections.observableArrayList(history.prescriptions()));
+    }
+
+    /**
+     * Handles closing the window.
+     */
+    @FXML
+    private void handleClose() {
+        ((Stage) visitTable.getScene().getWindow()).close();
+    }
+
+    private static String fullName(Patient patient) {
+        return patient.getFirstName() + " " + patient.getSurname();
+    }
+
+    private static String fullName(Doctor doctor) {
+        return doctor.getFirstName() + " " + doctor.getSurname();
+    }
+
+    /**
+     * Joins the parts that are not blank.
+     */
+    private static String join(String separator, String... parts) {
+        return Stream.of(parts)
+                .filter(Objects::nonNull)
+                .filter(part -> !part.isBlank())
+                .collect(Collectors.joining(separator));
+    }
+}
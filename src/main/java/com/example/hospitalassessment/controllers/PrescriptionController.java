@@ -2,31 +2,63 @@ package com.example.hospitalassessment.controllers;
 
 import com.example.hospitalassessment.database.*;
 import com.example.hospitalassessment.models.*;
+import com.example.hospitalassessment.forms.FieldValidator;
+import com.example.hospitalassessment.forms.FormSchema;
+import com.example.hospitalassessment.forms.FormValues;
+import com.example.hospitalassessment.services.ApplicationServices;
+import com.example.hospitalassessment.services.ChangeFeedService.Table;
+import com.example.hospitalassessment.services.ChangeFeedService.TableChanges;
+import com.example.hospitalassessment.services.PickerOptionsService;
+import com.example.hospitalassessment.services.PickerOptionsService.OptionType;
+import com.example.hospitalassessment.services.ActiveMedicationIndex;
+import com.example.hospitalassessment.services.ClaimEligibilityService;
+import com.example.hospitalassessment.services.ClaimEligibilityService.Decision;
+import com.example.hospitalassessment.services.PrescriptionConflictService;
+import com.example.hospitalassessment.services.PrescriptionConflictService.Conflict;
+import com.example.hospitalassessment.services.UniqueKeyService;
+import com.example.hospitalassessment.services.UniqueKeyService.KeyType;
 import com.example.hospitalassessment.utils.AlertHelper;
+import com.example.hospitalassessment.utils.FxFutures;
+import com.example.hospitalassessment.utils.MergeDialog;
+import com.example.hospitalassessment.utils.ReferenceBatcher;
+import com.example.hospitalassessment.utils.TableRows;
+import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
-import javafx.fxml.FXMLLoader;
-import javafx.scene.Parent;
-import javafx.scene.Scene;
 import javafx.scene.control.*;
 import javafx.scene.control.cell.PropertyValueFactory;
-import javafx.beans.property.SimpleStringProperty;
 import javafx.collections.transformation.FilteredList;
 import javafx.collections.transformation.SortedList;
 import javafx.scene.text.Text;
-import javafx.stage.Modality;
 import javafx.stage.Stage;
 
+import java.sql.Date;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
 
 /**
  * Controller class for managing Prescription operations in the UI.
  * Implements database interactions, table view handling, and user actions.
  */
 public class PrescriptionController implements TableController {
+    private static final FormSchema FORM = FormSchema.builder("Prescription")
+            .text("Prescription ID", FieldValidator.required())
+            .choice("Drug", OptionType.DRUGS, FieldValidator.required())
+            .choice("Doctor", OptionType.DOCTORS, FieldValidator.required())
+            .choice("Patient", OptionType.PATIENTS, FieldValidator.required())
+            .date("Date Prescribed", FieldValidator.required())
+            .integer("Dosage", FieldValidator.required(), FieldValidator.atLeast(1))
+            .integer("Duration", FieldValidator.required(), FieldValidator.atLeast(1))
+            .text("Comment")
+            .build(); // Fields of the prescription entry form, in display order.
+    private static final int MAX_LISTED_CONFLICTS = 20; // Most conflicts listed after checking the whole table.
+
     @FXML // Table to display prescription records.
     private TableView<Prescription> prescriptionTable;
 
@@ -37,26 +69,96 @@ public class PrescriptionController implements TableController {
     private TextField searchField;
 
 
-    private DatabaseManager databaseManager; // Manages database connections and transactions.
+    private DataAccessContext dataAccess; // Shared DAOs and the event bus announcing their writes.
     private PrescriptionDAO prescriptionDAO; // Data Access Object for prescription-related operations.
     private DrugDAO drugDAO; // Data Access Object for drug-related operations.
     private DoctorDAO doctorDAO; // Data Access Object for doctor-related operations.
     private PatientDAO patientDAO; // Data Access Object for patient-related operations.
+    private PickerOptionsService pickerOptions; // Provides preloaded drug, doctor and patient options.
+    private UniqueKeyService uniqueKeys; // Checks prescription keys for uniqueness as they are typed.
+    private PrescriptionConflictService prescriptionConflicts; // Checks prescriptions for interacting drugs.
+    private ClaimEligibilityService claimEligibility; // Decides whether prescriptions are covered by the patient's insurer.
+    private ActiveMedicationIndex activeMedications; // The drugs each patient takes on each day.
+    private FormSchema entryForm = FORM; // Entry form fields, with uniqueness checks once the key service is set.
+    private final ObservableList<Prescription> prescriptionList = FXCollections.observableArrayList(); // Rows backing the table, updated in place on refresh.
+    private final ReferenceBatcher referenceBatcher = new ReferenceBatcher(); // Loads drug, doctor and patient names for rendered rows in batches.
+    private boolean checkingInteractions; // Whether a save is waiting for its interaction check, so it is not started twice.
+
 
+    /**
+     * Sets the shared data access context and takes the DAOs this view needs from it.
+     *
+     * @param dataAccess the DataAccessContext shared by all table views
+     */
+    @Override
+    public void setDataAccess(DataAccessContext dataAccess) {
+        this.dataAccess = dataAccess;
+        this.prescriptionDAO = dataAccess.prescriptions();
+        this.drugDAO = dataAccess.drugs();
+        this.doctorDAO = dataAccess.doctors();
+        this.patientDAO = dataAccess.patients();
+        pickerOptions.prefetch(OptionType.DRUGS, OptionType.DOCTORS, OptionType.PATIENTS);
+        prescriptionConflicts.prefetch();
+        claimEligibility.prefetch();
+        EntryFormPool.prewarm(entryForm);
+        loadPrescriptions();
+    }
 
     /**
-     * Sets the DatabaseManager for the controller and initializes DAO objects.
+     * Takes the shared services for entry form options, key uniqueness, drug interactions, coverage and active medications,
+     * and adds the key checks to the entry form.
      *
-     * @param dbManager the DatabaseManager instance to connect to the database
+     * @param services the ApplicationServices shared by all views
      */
     @Override
-    public void setDatabaseManager(DatabaseManager dbManager) {
-        this.databaseManager = dbManager;
-        this.prescriptionDAO = new PrescriptionDAO(databaseManager);
-        this.drugDAO = new DrugDAO(databaseManager);
-        this.doctorDAO = new DoctorDAO(databaseManager);
-        this.patientDAO = new PatientDAO(databaseManager);
+    public void setServices(ApplicationServices services) {
+        this.pickerOptions = services.pickerOptions();
+        this.uniqueKeys = services.uniqueKeys();
+        this.prescriptionConflicts = services.prescriptionConflicts();
+        this.claimEligibility = services.claimEligibility();
+        this.activeMedications = services.activeMedications();
+        this.entryForm = FORM
+                .withAsyncValidator("Prescription ID", uniqueKeys.validator(KeyType.PRESCRIPTION_ID));
+        uniqueKeys.prefetch(KeyType.PRESCRIPTION_ID);
+    }
+
+    /**
+     * Reloads the table data when the view is shown again, applying only the rows that changed.
+     * Cached references are dropped first so renamed records show their new names.
+     */
+    @Override
+    public void refresh() {
+        prescriptionDAO.getDrugReferences().clear();
+        prescriptionDAO.getDoctorReferences().clear();
+        prescriptionDAO.getPatientReferences().clear();
         loadPrescriptions();
+        prescriptionTable.refresh();
+    }
+
+    /**
+     * Applies prescriptions changed by other users, loading only the changed rows.
+     *
+     * @param changes the keys of the changed rows of one table
+     */
+    @Override
+    public void applyChanges(TableChanges changes) {
+        if (changes.table() == Table.PRESCRIPTION) {
+            TableRows.apply(prescriptionList, prescriptionDAO.getPrescriptionsByIds(changes.changedKeys()), changes.deletedKeys(),
+                    Prescription::getId, PrescriptionController::rowContent);
+        }
+    }
+
+    /**
+     * Redraws the table when a referenced drug, doctor or patient changes, showing its new name.
+     * The data access context has already dropped the record from the reference cache.
+     *
+     * @param event the change to a record
+     */
+    @Override
+    public void onEntityChanged(EntityEvent<?> event) {
+        if (event.type() == Drug.class || event.type() == Doctor.class || event.type() == Patient.class) {
+            prescriptionTable.refresh();
+        }
     }
 
     /**
@@ -96,26 +198,44 @@ public class PrescriptionController implements TableController {
             return cell;
         });
 
-        colDrug.setCellValueFactory(cellData ->
-                new SimpleStringProperty(cellData.getValue().getDrug().getDrugName())
-        );
-        colDoctor.setCellValueFactory(cellData ->
-                new SimpleStringProperty(cellData.getValue().getDoctor().getFirstName() + " " + cellData.getValue().getDoctor().getSurname())
-        );
-        colPatient.setCellValueFactory(cellData ->
-                new SimpleStringProperty(cellData.getValue().getPatient().getFirstName() + " " + cellData.getValue().getPatient().getSurname())
-        );
+        colDrug.setCellValueFactory(cellData -> referenceBatcher.label(
+                cellData.getValue().getDrugRef(), prescriptionDAO.getDrugReferences(),
+                drug -> drug != null ? drug.getDrugName() : "Unknown"));
+        colDoctor.setCellValueFactory(cellData -> referenceBatcher.label(
+                cellData.getValue().getDoctorRef(), prescriptionDAO.getDoctorReferences(),
+                doctor -> doctor != null ? doctor.getFirstName() + " " + doctor.getSurname() : "Unknown"));
+        colPatient.setCellValueFactory(cellData -> referenceBatcher.label(
+                cellData.getValue().getPatientRef(), prescriptionDAO.getPatientReferences(),
+                patient -> patient != null ? patient.getFirstName() + " " + patient.getSurname() : "Unknown"));
+
+        bindTableData();
     }
 
     /**
-     * Loads prescriptions from the database and populates the table view.
-     * Applies filtering and sorting based on user input in the search field.
+     * Loads prescription data from the database and applies it to the table in place,
+     * so the current filter, sort order, selection and scroll position are kept.
+     * If the database cannot be reached, the rows already shown are kept as they are.
      */
     private void loadPrescriptions() {
-        ObservableList<Prescription> prescriptionList = FXCollections.observableArrayList(prescriptionDAO.getAllPrescriptions());
+        List<Prescription> rows = prescriptionDAO.getAllPrescriptions();
+        if (!dataAccess.getDatabaseManager().isAvailable()) {
+            return;
+        }
+        TableRows.merge(prescriptionList, rows, Prescription::getId, PrescriptionController::rowContent);
+    }
+
+    /**
+     * Connects the table to its rows through a filtered and sorted view.
+     * Filtering follows the search field, and sorting follows the table's sort order.
+     */
+    private void bindTableData() {
         FilteredList<Prescription> filteredData = new FilteredList<>(prescriptionList, p -> true);
 
         searchField.textProperty().addListener((observable, oldValue, newValue) -> {
+            if (newValue != null && !newValue.isEmpty()) {
+                // Matching on names needs every reference, so load them all in one batch.
+                prescriptionDAO.resolveReferences(prescriptionList);
+            }
             filteredData.setPredicate(prescription -> {
                 if (newValue == null || newValue.isEmpty()) return true;
 
@@ -133,39 +253,109 @@ public class PrescriptionController implements TableController {
 
         SortedList<Prescription> sortedData = new SortedList<>(filteredData);
         sortedData.comparatorProperty().bind(prescriptionTable.comparatorProperty());
+        prescriptionTable.setOnSort(event -> prescriptionDAO.resolveReferences(prescriptionList));
 
         prescriptionTable.setItems(sortedData);
     }
 
+    /**
+     * Handles the Check Interactions action.
+     * Checks every prescription in the table for drugs that interact with another drug the same patient
+     * takes at the same time, and lists the conflicts found. If the interactions are still loading, the check
+     * runs once they are loaded.
+     */
+    @FXML
+    private void handleCheckInteractions() {
+        FxFutures.runWhenReady(prescriptionConflicts.whenLoaded(), this::showAllConflicts, "Could not load the drug interactions.");
+    }
+
+    /**
+     * Checks every prescription in the table for interacting drugs and lists the conflicts found.
+     */
+    private void showAllConflicts() {
+        List<Conflict> conflicts = prescriptionConflicts.checkAll(prescriptionList);
+        if (conflicts.isEmpty()) {
+            AlertHelper.showAlert("Drug Interactions", "No prescriptions conflict with each other.", Alert.AlertType.INFORMATION);
+            return;
+        }
+
+        // Load the drug names of the listed prescriptions in one query
+        List<Conflict> listed = conflicts.subList(0, Math.min(conflicts.size(), MAX_LISTED_CONFLICTS));
+        prescriptionDAO.resolveReferences(listed.stream()
+                .flatMap(conflict -> Stream.of(conflict.prescription(), conflict.conflictsWith()))
+                .toList());
+
+        StringBuilder message = new StringBuilder(conflicts.size() + " pairs of prescriptions conflict:\n");
+        listed.forEach(conflict -> message.append("\n").append(describe(conflict)));
+        if (conflicts.size() > MAX_LISTED_CONFLICTS) {
+            message.append("\n... and ").append(conflicts.size() - MAX_LISTED_CONFLICTS).append(" more.");
+        }
+        AlertHelper.showAlert("Drug Interactions", message.toString(), Alert.AlertType.WARNING);
+    }
+
+    /**
+     * Asks the user whether to save a prescription anyway if it interacts with drugs the patient takes at the same time.
+     *
+     * @param conflicts the conflicts of the prescription about to be saved
+     * @return true if there are no conflicts or the user chose to save anyway
+     */
+    private boolean confirmInteractions(List<Conflict> conflicts) {
+        if (conflicts.isEmpty()) {
+            return true;
+        }
+
+        StringBuilder message = new StringBuilder("This prescription interacts with other drugs the patient takes at the same time:\n");
+        conflicts.forEach(conflict -> message.append("\n").append(describe(conflict)));
+        return AlertHelper.showConfirmation("Drug Interactions", message.append("\n\nSave it anyway?").toString());
+    }
+
+    /**
+     * Describes a conflict on one line, e.g. "P12 (Warfarin) with P07 (Aspirin, from 2024-03-01): bleeding risk".
+     */
+    private static String describe(Conflict conflict) {
+        Prescription other = conflict.conflictsWith();
+        return conflict.prescription().getId() + " (" + conflict.prescription().getDrug().getDrugName() + ") with "
+                + other.getId() + " (" + other.getDrug().getDrugName() + ", from " + other.getDatePrescribed() + ")"
+                + (conflict.description() != null ? ": " + conflict.description() : "");
+    }
+
+    /**
+     * Lists the values of a row that are compared to detect a change when the table is refreshed.
+     *
+     * @param prescription the row to describe
+     * @return the row's version and displayed values
+     */
+    private static List<?> rowContent(Prescription prescription) {
+        return Arrays.asList(prescription.getVersion(), prescription.getDatePrescribed(), prescription.getDosage(), prescription.getDuration(), prescription.getComment(),
+                prescription.getDrugRef().getId(), prescription.getDoctorRef().getId(), prescription.getPatientRef().getId());
+    }
+
     /**
      * Handles the Add Prescription action.
      * Opens a form for creating a new prescription record.
      */
     @FXML
     private void handleAddPrescription() {
-        openEntryForm("Add Prescription", null, Set.of());
+        openEntryForm("Add Prescription", null, Set.of(), 0);
     }
 
     /**
      * Handles the modification of a selected prescription.
-     * Prompts the user with a form pre-filled with the prescription's data for editing.
+     * Prompts the user with a form pre-filled with the prescription's data, including the full comment, for editing.
      * Displays a warning alert if no prescription is selected.
      */
     @FXML
     private void handleModifyPrescription() {
         Prescription selectedPrescription = prescriptionTable.getSelectionModel().getSelectedItem();
         if (selectedPrescription != null) {
-            Map<String, String> prescriptionData = new HashMap<>();
-            prescriptionData.put("Prescription ID", selectedPrescription.getId());
-            prescriptionData.put("Drug", selectedPrescription.getDrug().getId() + " - " + selectedPrescription.getDrug().getDrugName());
-            prescriptionData.put("Doctor", selectedPrescription.getDoctor().getFirstName() + " " + selectedPrescription.getDoctor().getSurname());
-            prescriptionData.put("Patient", selectedPrescription.getPatient().getFirstName() + " " + selectedPrescription.getPatient().getSurname());
-            prescriptionData.put("Date Prescribed", selectedPrescription.getDatePrescribed().toString());
-            prescriptionData.put("Dosage", String.valueOf(selectedPrescription.getDosage()));
-            prescriptionData.put("Duration", String.valueOf(selectedPrescription.getDuration()));
-            prescriptionData.put("Comment", selectedPrescription.getComment());
-
-            openEntryForm("Modify Prescription", prescriptionData, Set.of("Prescription ID"));
+            // The table only holds a preview of the comment, so fetch the full text for editing.
+            if (prescriptionDAO.loadFullComment(selectedPrescription) == null) {
+                AlertHelper.showAlert("Prescription Not Found", "This prescription no longer exists.", Alert.AlertType.WARNING);
+                loadPrescriptions();
+                return;
+            }
+
+            openEntryForm("Modify Prescription", formData(selectedPrescription), Set.of("Prescription ID"), selectedPrescription.getVersion());
         } else {
             AlertHelper.showAlert("Selection Error", "Please select a prescription to modify.", Alert.AlertType.WARNING);
         }
@@ -184,8 +374,8 @@ public class PrescriptionController implements TableController {
                     "Are you sure you want to delete this prescription?");
 
             if (confirmed) {
-                String resultMessage = prescriptionDAO.deletePrescription(selectedPrescription.getId());
-                AlertHelper.showAlert("Prescription Deletion", resultMessage, Alert.AlertType.INFORMATION);
+                OperationResult result = prescriptionDAO.deletePrescription(selectedPrescription.getId(), selectedPrescription.getVersion());
+                AlertHelper.showResult("Prescription Deletion", result);
                 loadPrescriptions();
             }
         } else {
@@ -193,117 +383,205 @@ public class PrescriptionController implements TableController {
         }
     }
 
+    /**
+     * Saves changes to an existing prescription. If another user saved the prescription after the form was opened,
+     * their changes are merged with these, asking which value to keep where both changed the same field,
+     * and the save is retried against the prescription as it is now.
+     *
+     * @param prescription the changed prescription, carrying the version the form was opened with
+     * @param base         the values the form was opened with
+     * @param values       the values the user saved
+     * @return the result of the last save attempt
+     */
+    private OperationResult updatePrescription(Prescription prescription, Map<String, ?> base, FormValues values) {
+        OperationResult result = prescriptionDAO.updatePrescription(prescription);
+        while (result.getStatus() == OperationResult.Status.CONFLICT) {
+            Prescription current = prescriptionDAO.getPrescriptionById(prescription.getId());
+            if (current == null) {
+                return OperationResult.notFound("Error: This prescription was deleted by another user.");
+            }
+            Map<String, Object> theirs = formData(current);
+            values = MergeDialog.merge(entryForm, base, values, theirs);
+            if (values == null) {
+                return result; // Merge cancelled
+            }
+            base = theirs;
+            prescription = toPrescription(values);
+            if (prescription == null) {
+                return OperationResult.failed("Error: Invalid drug, doctor, or patient selection.");
+            }
+            prescription.setVersion(current.getVersion());
+            result = prescriptionDAO.updatePrescription(prescription);
+        }
+        return result;
+    }
+
+    /**
+     * Saves a prescription checked for interactions and tells the user the outcome, closing the entry form on success.
+     *
+     * @param title               the title of the entry form, used for the result message
+     * @param stage               the entry form window
+     * @param prescription        the prescription to save
+     * @param existingData        the values the form was opened with, or null for a new prescription
+     * @param undisplayableFields the fields that could not be edited; a read-only ID means an existing prescription
+     * @param values              the values entered
+     */
+    private void savePrescription(String title, Stage stage, Prescription prescription, Map<String, ?> existingData,
+                                  Set<String> undisplayableFields, FormValues values) {
+        // Determine whether to update an existing prescription or add a new one
+        OperationResult result = undisplayableFields.contains("Prescription ID")
+                ? updatePrescription(prescription, existingData, values)    // Update if "Prescription ID" is not editable
+                : prescriptionDAO.addPrescription(prescription);      // Otherwise, add a new prescription
+
+        if (!result.isSuccess()) {
+            AlertHelper.showResult(title, result);
+            return;
+        }
+
+        // Close the form and refresh the prescription table
+        stage.close();
+        loadPrescriptions();
+        uniqueKeys.recordKey(KeyType.PRESCRIPTION_ID, prescription.getId());
+
+        // Tell the user the prescription was saved, and whether the patient's insurer covers it once decided in the background
+        OperationResult saved = result;
+        claimEligibility.evaluatePrescription(prescription).whenComplete((decision, error) -> Platform.runLater(() -> {
+            if (error != null) {
+                error.printStackTrace();
+            }
+            AlertHelper.showResult(title, decision == null ? saved : OperationResult.success(saved.getMessage() + "\n\n" + describeCoverage(decision)));
+        }));
+    }
+
+    /**
+     * Describes whether the patient's insurer covers a saved prescription, for the message confirming the save.
+     *
+     * @param decision the decision on the prescription's claim
+     * @return a sentence stating whether the prescription is covered and why not
+     */
+    private static String describeCoverage(Decision decision) {
+        return decision.covered()
+                ? "Covered by insurance " + decision.claim().insuranceId() + "."
+                : "Not covered by insurance: " + decision.reason();
+    }
+
+    /**
+     * Lists a prescription's values by entry form field.
+     *
+     * @param prescription the prescription to show, with its full comment
+     * @return the field values of the prescription
+     */
+    private static Map<String, Object> formData(Prescription prescription) {
+        Map<String, Object> prescriptionData = new HashMap<>();
+        prescriptionData.put("Prescription ID", prescription.getId());
+        prescriptionData.put("Drug", prescription.getDrug().getId() + " - " + prescription.getDrug().getDrugName());
+        prescriptionData.put("Doctor", prescription.getDoctor().getFirstName() + " " + prescription.getDoctor().getSurname());
+        prescriptionData.put("Patient", prescription.getPatient().getFirstName() + " " + prescription.getPatient().getSurname());
+        prescriptionData.put("Date Prescribed", prescription.getDatePrescribed().toLocalDate());
+        prescriptionData.put("Dosage", prescription.getDosage());
+        prescriptionData.put("Duration", prescription.getDuration());
+        prescriptionData.put("Comment", prescription.getComment());
+        return prescriptionData;
+    }
+
+    /**
+     * Creates a prescription from saved entry form values, looking up the chosen drug, doctor and patient.
+     *
+     * @param values the values of the entry form
+     * @return the prescription described by the form, or null if a selection no longer matches a record
+     */
+    private Prescription toPrescription(FormValues values) {
+        // Get Drug, Doctor, and Patient objects based on selection
+        Drug selectedDrug = drugDAO.getDrugById(values.getText("Drug").split(" - ")[0]);
+        Doctor selectedDoctor = doctorDAO.getDoctorByFullName(values.getText("Doctor"));
+        Patient selectedPatient = patientDAO.getPatientByFullName(values.getText("Patient"));
+        if (selectedDrug == null || selectedDoctor == null || selectedPatient == null) {
+            return null;
+        }
+
+        return new Prescription(
+                values.getText("Prescription ID"),
+                Date.valueOf(values.getDate("Date Prescribed")),
+                values.getInteger("Dosage"),
+                values.getInteger("Duration"),
+                values.getText("Comment"),
+                selectedDrug,
+                selectedDoctor,
+                selectedPatient
+        );
+    }
+
     /**
      * Opens an entry form for creating or modifying a prescription.
+     * The drug, doctor and patient options come from the prefetch service; the form opens immediately
+     * when they are warm, otherwise as soon as their parallel background loads finish.
      *
      * @param title               the title of the form window
      * @param existingData        a map containing pre-populated field values, or empty if creating a new prescription
      * @param undisplayableFields a set of field names that should not be displayed on the form
+     * @param version             the version of the prescription being edited, checked when the changes are saved
+     */
+    private void openEntryForm(String title, Map<String, ?> existingData, Set<String> undisplayableFields, int version) {
+        CompletableFuture<Map<OptionType, List<String>>> options = pickerOptions.getOptions(entryForm.getPickerSources());
+        FxFutures.runWhenReady(options,
+                () -> showEntryForm(title, existingData, undisplayableFields, version, options.join()),
+                "Could not load drugs, doctors and patients.");
+    }
+
+    /**
+     * Builds and displays the prescription entry form using preloaded selection options.
+     *
+     * @param title               the title of the form window
+     * @param existingData        a map containing pre-populated field values, or null if creating a new prescription
+     * @param undisplayableFields a set of field names that should not be displayed on the form
+     * @param version             the version of the prescription being edited, checked when the changes are saved
+     * @param options             the option lists offered by the form's dropdowns
      */
-    private void openEntryForm(String title, Map<String, String> existingData, Set<String> undisplayableFields) {
+    private void showEntryForm(String title, Map<String, ?> existingData, Set<String> undisplayableFields, int version,
+                               Map<OptionType, List<String>> options) {
         try {
-            // Load the FXML file for the entry form
-            FXMLLoader loader = new FXMLLoader(getClass().getResource("/com/example/hospitalassessment/entry_form.fxml"));
-            Parent root = loader.load();
-            EntryFormController controller = loader.getController();
+            // Take a pooled entry form window; it is rebound to this record rather than rebuilt
+            EntryFormPool.EntryForm form = EntryFormPool.acquire(entryForm, prescriptionTable.getScene().getWindow());
+            EntryFormController controller = form.controller();
             controller.setFormTitle(title);
 
-            // Define fields for a new prescription (empty values)
-            if (existingData == null) {
-                existingData = new HashMap<>();
-                existingData.put("Prescription ID", "");
-                existingData.put("Drug", "");
-                existingData.put("Doctor", "");
-                existingData.put("Patient", "");
-                existingData.put("Date Prescribed", "");
-                existingData.put("Dosage", "");
-                existingData.put("Duration", "");
-                existingData.put("Comment", "");
-            }
+            // Show the record, or empty fields for a new prescription, and hide fields that shouldn't be displayed
+            controller.bind(existingData != null ? existingData : Map.of(), undisplayableFields, options);
 
-            // Set form fields and hide fields that shouldn't be displayed
-            // and provide a list of available drugs, doctors and patients for selection.
-            controller.setFields(
-                    existingData,
-                    undisplayableFields,
-                    drugDAO.getAllDrugs().stream().map(drug -> drug.getId() + " - " + drug.getDrugName()).toList(),
-                    doctorDAO.getAllDoctors().stream().map(doctor -> doctor.getFirstName() + " " + doctor.getSurname()).toList(),
-                    patientDAO.getAllPatients().stream().map(patient -> patient.getFirstName() + " " + patient.getSurname()).toList(),
-                    new DatePicker()
-            );
-
-            // Create and configure a new window (Stage) for the form
-            Stage stage = new Stage();
+            // Configure the pooled window (Stage) for this use
+            Stage stage = form.stage();
             stage.setTitle(title);
-            stage.setScene(new Scene(root));
-            stage.initModality(Modality.WINDOW_MODAL); // Make it a modal window
-            stage.initOwner(prescriptionTable.getScene().getWindow()); // Attach it to the main window
-
-            // Preserve the original existing data for reference
-            Map<String, String> finalExistingData = existingData;
 
             // Define the action to be performed when the Save button is clicked
-            controller.setOnSaveCallback(() -> {
-                Map<String, String> updatedValues = controller.getFieldValues();
-
-                // Get Drug, Doctor, and Patient objects based on selection
-                Drug selectedDrug = drugDAO.getDrugById(updatedValues.get("Drug").split(" - ")[0] == null ? finalExistingData.get("Drug").split(" - ")[0] : updatedValues.get("Drug").split(" - ")[0]);
-                Doctor selectedDoctor = doctorDAO.getDoctorByFullName(updatedValues.get("Doctor") == null ? finalExistingData.get("Doctor") : updatedValues.get("Doctor"));
-                Patient selectedPatient = patientDAO.getPatientByFullName(updatedValues.get("Patient") == null ? finalExistingData.get("Patient") : updatedValues.get("Patient"));
+            controller.setOnSaveCallback(values -> {
+                // Create a Prescription object with updated values
+                Prescription prescription = toPrescription(values);
 
                 // Ensure that a valid drug, doctor, and patient are selected before proceeding
-                if (selectedDrug == null || selectedDoctor == null || selectedPatient == null) {
+                if (prescription == null) {
                     AlertHelper.showAlert("Error", "Invalid drug, doctor, or patient selection.", Alert.AlertType.ERROR);
                     return;
                 }
-
-                java.sql.Date sqlDate = null;
-                try {
-                    // Retrieve the date input, either from the updated values or the existing data
-                    String dateInput = updatedValues.get("Date Prescribed") == null ? finalExistingData.get("Date Prescribed") : updatedValues.get("Date Prescribed");
-
-                    // Ensure the date is not empty
-                    if (dateInput == null || dateInput.isBlank()) {
-                        throw new IllegalArgumentException("Date Prescribed cannot be empty.");
-                    }
-
-                    // Convert the input string to a SQL Date format
-                    sqlDate = java.sql.Date.valueOf(dateInput);
-                } catch (IllegalArgumentException e) {
-                    // Show an error alert if the date format is incorrect
-                    AlertHelper.showAlert("Input Error", "Invalid date format. Please use 'yyyy-mm-dd'.", Alert.AlertType.ERROR);
-                    return;
+                prescription.setVersion(version);
+                if (checkingInteractions) {
+                    return; // This save is already being checked
                 }
 
-                try {
-                    // Create a Prescription object with updated values
-                    Prescription prescription = new Prescription(
-                            finalExistingData.get("Prescription ID").isEmpty() ? updatedValues.get("Prescription ID") : finalExistingData.get("Prescription ID"),
-                            sqlDate,
-                            Integer.parseInt(updatedValues.get("Dosage")),
-                            Integer.parseInt(updatedValues.get("Duration")),
-                            updatedValues.get("Comment"),
-                            selectedDrug,
-                            selectedDoctor,
-                            selectedPatient
-                    );
-
-                    // Determine whether to update an existing prescription or add a new one
-                    Map.Entry<String, Alert.AlertType> resultMessage = undisplayableFields.contains("Prescription ID")
-                            ? prescriptionDAO.updatePrescription(prescription)    // Update if "Prescription ID" is not editable
-                            : prescriptionDAO.addPrescription(prescription);      // Otherwise, add a new prescription
-
-                    // Show an alert message with the result of the operation
-                    AlertHelper.showAlert(title, resultMessage.getKey(), resultMessage.getValue());
-
-                    // If the operation was successful, close the form and refresh the prescription table
-                    if (resultMessage.getValue() != Alert.AlertType.ERROR) {
-                        stage.close(); // Close window only on success
-                        loadPrescriptions(); // Refresh table
+                // Warn about drugs the patient should not take together, letting the user decide.
+                // The check waits for the interactions and reads the patient's prescriptions in the background.
+                checkingInteractions = true;
+                prescriptionConflicts.findConflicts(prescription, activeMedications).whenComplete((conflicts, error) -> Platform.runLater(() -> {
+                    checkingInteractions = false;
+                    if (!stage.isShowing()) {
+                        return; // The form was closed while the check ran
                     }
-                } catch (NumberFormatException e) {
-                    AlertHelper.showAlert("Input Error", "Dosage and Duration must be valid numbers.", Alert.AlertType.ERROR);
-                }
+                    if (error != null) {
+                        error.printStackTrace();
+                        AlertHelper.showAlert("Error", "Could not check the prescription for drug interactions.", Alert.AlertType.ERROR);
+                    } else if (confirmInteractions(conflicts)) {
+                        savePrescription(title, stage, prescription, existingData, undisplayableFields, values);
+                    }
+                }));
             });
 
             // Display the form and wait for user interaction
@@ -0,0 +1,321 @@
+package com.example.hospitalassessment.controllers;
+
+import com.example.hospitalassessment.database.DataAccessContext;
+import com.example.hospitalassessment.database.ReportDAO.DoctorWorkload;
+import com.example.hospitalassessment.database.ReportDAO.GroupWorkload;
+import com.example.hospitalassessment.database.TrendDAO.Granularity;
+import com.example.hospitalassessment.services.ApplicationServices;
+import com.example.hospitalassessment.services.ReportService;
+import com.example.hospitalassessment.services.ReportService.DrugUtilisation;
+import com.example.hospitalassessment.services.ReportService.DrugUtilisationReport;
+import com.example.hospitalassessment.services.ReportService.Prescriber;
+import com.example.hospitalassessment.services.ReportService.WorkloadReport;
+import com.example.hospitalassessment.utils.FxFutures;
+import javafx.beans.property.SimpleDoubleProperty;
+import javafx.beans.property.SimpleIntegerProperty;
+import javafx.beans.property.SimpleStringProperty;
+import javafx.fxml.FXML;
+import javafx.scene.chart.BarChart;
+import javafx.scene.chart.XYChart;
+import javafx.scene.control.ComboBox;
+import javafx.scene.control.Label;
+import javafx.scene.control.Tab;
+import javafx.scene.control.TableColumn;
+import javafx.scene.control.TableView;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+
+/**
+ * Controller for the reports view, showing per doctor, per hospital and per specialization how many visits, patients
+ * and prescriptions there were in a recent period, and per drug how often it was prescribed, in what dosages and for how
+ * long, and by whom. Only the figures are loaded; reports are computed in the background and kept by the shared
+ * {@link ReportService}, so switching back to a period shows it at once. The drug report is only computed once its tab
+ * is opened.
+ */
+public class ReportController implements ViewController {
+    private static final Map<String, Integer> PERIODS = new LinkedHashMap<>(); // Choosable periods by label, in days up to today.
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("HH:mm:ss"); // Shows when a report was computed.
+    private static final DateTimeFormatter MONTH_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM"); // Labels of monthly periods.
+
+    static {
+        PERIODS.put("Last 7 days", 7);
+        PERIODS.put("Last 30 days", 30);
+        PERIODS.put("Last 90 days", 90);
+        PERIODS.put("Last 365 days", 365);
+    }
+
+    @FXML // Choice of the period reported on.
+    private ComboBox<String> periodSelector;
+
+    @FXML // Shows the period and when the report was computed.
+    private Label reportStatus;
+
+    @FXML // Workload of each doctor.
+    private TableView<DoctorWorkload> doctorTable;
+
+    @FXML // Columns of the doctor workload table.
+    private TableColumn<DoctorWorkload, String> colDoctor, colDoctorSpecialization, colDoctorHospital;
+
+    @FXML // Count columns of the doctor workload table.
+    private TableColumn<DoctorWorkload, Number> colDoctorVisits, colDoctorVisitsPerDay, colDoctorActiveDays, colDoctorPatients, colDoctorPrescriptions;
+
+    @FXML // Combined workload of each hospital's doctors.
+    private TableView<GroupWorkload> hospitalTable;
+
+    @FXML // Name column of the hospital workload table.
+    private TableColumn<GroupWorkload, String> colHospital;
+
+    @FXML // Count columns of the hospital workload table.
+    private TableColumn<GroupWorkload, Number> colHospitalDoctors, colHospitalVisits, colHospitalVisitsPerDay, colHospitalPatients, colHospitalPrescriptions;
+
+    @FXML // Combined workload of each specialization's doctors.
+    private TableView<GroupWorkload> specializationTable;
+
+    @FXML // Name column of the specialization workload table.
+    private TableColumn<GroupWorkload, String> colSpecialization;
+
+    @FXML // Count columns of the specialization workload table.
+    private TableColumn<GroupWorkload, Number> colSpecializationDoctors, colSpecializationVisits, colSpecializationVisitsPerDay,
+            colSpecializationPatients, colSpecializationPrescriptions;
+
+    @FXML // Tab of the drug utilisation report.
+    private Tab drugTab;
+
+    @FXML // Shows the number of prescriptions read and when the drug report was computed.
+    private Label drugStatus;
+
+    @FXML // Use of each drug.
+    private TableView<DrugUtilisation> drugTable;
+
+    @FXML // Text columns of the drug utilisation table.
+    private TableColumn<DrugUtilisation, String> colDrug, colTopPrescribers;
+
+    @FXML // Figure columns of the drug utilisation table.
+    private TableColumn<DrugUtilisation, Number> colDrugPrescriptions, colDosageMean, colDosageMedian, colDosageP90, colDosageP99,
+            colDurationMean, colDurationMedian, colDurationP90, colDurationP99;
+
+    @FXML // Prescriptions of the selected drug over the period.
+    private BarChart<String, Number> drugChart;
+
+    private DataAccessContext dataAccess; // Shared DAOs, used here to tell whether the database can be reached.
+    private ReportService reports; // Computes and keeps workload reports.
+    private CompletableFuture<WorkloadReport> latest; // The most recently requested report; older ones are not shown.
+    private CompletableFuture<DrugUtilisationReport> latestDrugs; // The most recently requested drug report; older ones are not shown.
+    private DrugUtilisationReport drugReport; // The drug report shown, whose periods the chart is drawn over.
+    private long days = 30; // Days in the period shown.
+
+    /**
+     * Sets the shared data access context and shows the report.
+     *
+     * @param dataAccess the DataAccessContext shared by all views
+     */
+    @Override
+    public void setDataAccess(DataAccessContext dataAccess) {
+        this.dataAccess = dataAccess;
+        loadReport();
+    }
+
+    /**
+     * Takes the shared service computing and keeping workload reports.
+     *
+     * @param services the ApplicationServices shared by all views
+     */
+    @Override
+    public void setServices(ApplicationServices services) {
+        this.reports = services.reports();
+    }
+
+    /**
+     * Shows the report again when the view is shown again, computing it only if the kept one is too old.
+     */
+    @Override
+    public void refresh() {
+        loadReport();
+    }
+
+    /**
+     * Initializes the period choices and the table columns.
+     */
+    @FXML
+    public void initialize() {
+        periodSelector.getItems().addAll(PERIODS.keySet());
+        periodSelector.setValue("Last 30 days");
+
+        colDoctor.setCellValueFactory(cellData -> new SimpleStringProperty(cellData.getValue().name()));
+        colDoctorSpecialization.setCellValueFactory(cellData -> new SimpleStringProperty(cellData.getValue().specialization()));
+        colDoctorHospital.setCellValueFactory(cellData -> new SimpleStringProperty(cellData.getValue().hospital()));
+        colDoctorVisits.setCellValueFactory(cellData -> new SimpleIntegerProperty(cellData.getValue().visits()));
+        colDoctorVisitsPerDay.setCellValueFactory(cellData -> new SimpleDoubleProperty(perDay(cellData.getValue().visits())));
+        colDoctorActiveDays.setCellValueFactory(cellData -> new SimpleIntegerProperty(cellData.getValue().activeDays()));
+        colDoctorPatients.setCellValueFactory(cellData -> new SimpleIntegerProperty(cellData.getValue().patients()));
+        colDoctorPrescriptions.setCellValueFactory(cellData -> new SimpleIntegerProperty(cellData.getValue().prescriptions()));
+
+        colHospital.setCellValueFactory(cellData -> new SimpleStringProperty(describeGroup(cellData.getValue().name())));
+        colHospitalDoctors.setCellValueFactory(cellData -> new SimpleIntegerProperty(cellData.getValue().doctors()));
+        colHospitalVisits.setCellValueFactory(cellData -> new SimpleIntegerProperty(cellData.getValue().visits()));
+        colHospitalVisitsPerDay.setCellValueFactory(cellData -> new SimpleDoubleProperty(perDay(cellData.getValue().visits())));
+        colHospitalPatients.setCellValueFactory(cellData -> new SimpleIntegerProperty(cellData.getValue().patients()));
+        colHospitalPrescriptions.setCellValueFactory(cellData -> new SimpleIntegerProperty(cellData.getValue().prescriptions()));
+
+        colSpecialization.setCellValueFactory(cellData -> new SimpleStringProperty(describeGroup(cellData.getValue().name())));
+        colSpecializationDoctors.setCellValueFactory(cellData -> new SimpleIntegerProperty(cellData.getValue().doctors()));
+        colSpecializationVisits.setCellValueFactory(cellData -> new SimpleIntegerProperty(cellData.getValue().visits()));
+        colSpecializationVisitsPerDay.setCellValueFactory(cellData -> new SimpleDoubleProperty(perDay(cellData.getValue().visits())));
+        colSpecializationPatients.setCellValueFactory(cellData -> new SimpleIntegerProperty(cellData.getValue().patients()));
+        colSpecializationPrescriptions.setCellValueFactory(cellData -> new SimpleIntegerProperty(cellData.getValue().prescriptions()));
+
+        colDrug.setCellValueFactory(cellData -> new SimpleStringProperty(cellData.getValue().name()));
+        colDrugPrescriptions.setCellValueFactory(cellData -> new SimpleIntegerProperty(cellData.getValue().prescriptions()));
+        colDosageMean.setCellValueFactory(cellData -> new SimpleDoubleProperty(oneDecimal(cellData.getValue().dosage().mean())));
+        colDosageMedian.setCellValueFactory(cellData -> new SimpleIntegerProperty(cellData.getValue().dosage().median()));
+        colDosageP90.setCellValueFactory(cellData -> new SimpleIntegerProperty(cellData.getValue().dosage().p90()));
+        colDosageP99.setCellValueFactory(cellData -> new SimpleIntegerProperty(cellData.getValue().dosage().p99()));
+        colDurationMean.setCellValueFactory(cellData -> new SimpleDoubleProperty(oneDecimal(cellData.getValue().duration().mean())));
+        colDurationMedian.setCellValueFactory(cellData -> new SimpleIntegerProperty(cellData.getValue().duration().median()));
+        colDurationP90.setCellValueFactory(cellData -> new SimpleIntegerProperty(cellData.getValue().duration().p90()));
+        colDurationP99.setCellValueFactory(cellData -> new SimpleIntegerProperty(cellData.getValue().duration().p99()));
+        colTopPrescribers.setCellValueFactory(cellData -> new SimpleStringProperty(describePrescribers(cellData.getValue().topPrescribers())));
+
+        drugTable.getSelectionModel().selectedItemProperty().addListener((obs, oldDrug, newDrug) -> showDrugChart(newDrug));
+    }
+
+    /**
+     * Handles a change of period by showing its report.
+     */
+    @FXML
+    private void handlePeriodChanged() {
+        if (dataAccess != null) {
+            loadReport();
+        }
+    }
+
+    /**
+     * Handles opening the drug tab by showing the drug report of the chosen period.
+     */
+    @FXML
+    private void handleDrugTabSelected() {
+        if (dataAccess != null && drugTab.isSelected()) {
+            loadReport();
+        }
+    }
+
+    /**
+     * Handles a request to compute the reports again rather than show the kept ones.
+     */
+    @FXML
+    private void handleRecompute() {
+        reports.invalidate();
+        loadReport();
+    }
+
+    /**
+     * Loads the chosen period's report in the background and shows it once loaded, unless another was requested meanwhile,
+     * along with its drug report if that tab is open. If the database cannot be reached, the reports shown are kept.
+     */
+    private void loadReport() {
+        if (!dataAccess.getDatabaseManager().isAvailable()) {
+            return;
+        }
+        int periodDays = PERIODS.get(periodSelector.getValue());
+        LocalDate until = LocalDate.now().plusDays(1);
+        CompletableFuture<WorkloadReport> report = reports.getWorkload(until.minusDays(periodDays), until);
+        latest = report;
+        FxFutures.runWhenReady(report, () -> {
+            if (report == latest) {
+                showReport(report.join());
+            }
+        }, "Could not compute the report.");
+
+        if (drugTab.isSelected()) {
+            CompletableFuture<DrugUtilisationReport> drugs = reports.getDrugUtilisation(until.minusDays(periodDays), until);
+            latestDrugs = drugs;
+            FxFutures.runWhenReady(drugs, () -> {
+                if (drugs == latestDrugs) {
+                    showDrugReport(drugs.join());
+                }
+            }, "Could not compute the drug report.");
+        }
+    }
+
+    /**
+     * Fills the tables with a report.
+     *
+     * @param report the report to show
+     */
+    private void showReport(WorkloadReport report) {
+        days = Math.max(1, report.days());
+        doctorTable.getItems().setAll(report.doctors());
+        hospitalTable.getItems().setAll(report.hospitals());
+        specializationTable.getItems().setAll(report.specializations());
+        reportStatus.setText(report.from() + " to " + report.until().minusDays(1) + ", computed at "
+                + TIME_FORMAT.format(report.computedAt()) + ".");
+    }
+
+    /**
+     * Fills the drug table with a drug report, keeping the selected drug selected.
+     *
+     * @param report the report to show
+     */
+    private void showDrugReport(DrugUtilisationReport report) {
+        DrugUtilisation selected = drugTable.getSelectionModel().getSelectedItem();
+        drugReport = report;
+        drugTable.getItems().setAll(report.drugs());
+        if (selected != null) {
+            report.drugs().stream()
+                    .filter(drug -> drug.drugId().equals(selected.drugId()))
+                    .findFirst()
+                    .ifPresent(drug -> drugTable.getSelectionModel().select(drug));
+        }
+        showDrugChart(drugTable.getSelectionModel().getSelectedItem());
+        drugStatus.setText(report.prescriptions() + " prescriptions from " + report.from() + " to " + report.until().minusDays(1)
+                + ", computed at " + TIME_FORMAT.format(report.computedAt()) + ". Select a drug to chart it.");
+    }
+
+    /**
+     * Draws the prescriptions of a drug per period of the drug report, or clears the chart if no drug is selected.
+     *
+     * @param drug the drug to draw, or null
+     */
+    private void showDrugChart(DrugUtilisation drug) {
+        drugChart.getData().clear();
+        if (drug == null || drugReport == null) {
+            drugChart.setTitle(null);
+            return;
+        }
+        XYChart.Series<String, Number> bars = new XYChart.Series<>();
+        List<LocalDate> starts = drugReport.periodStarts();
+        for (int period = 0; period < starts.size(); period++) {
+            String label = drugReport.granularity() == Granularity.MONTH ? MONTH_FORMAT.format(starts.get(period)) : starts.get(period).toString();
+            bars.getData().add(new XYChart.Data<>(label, drug.perPeriod()[period]));
+        }
+        drugChart.getData().add(bars);
+        drugChart.setTitle(drug.name() + " prescriptions per " + drugReport.granularity().name().toLowerCase());
+    }
+
+    /**
+     * Provides the average number of visits a day over the period, to one decimal place.
+     */
+    private double perDay(int visits) {
+        return oneDecimal((double) visits / days);
+    }
+
+    private static double oneDecimal(double value) {
+        return Math.round(value * 10) / 10.0;
+    }
+
+    private static String describePrescribers(List<Prescriber> prescribers) {
+        return prescribers.stream()
+                .map(prescriber -> prescriber.name() + " (" + prescriber.prescriptions() + ")")
+                .collect(Collectors.joining(", "));
+    }
+
+    private static String describeGroup(String name) {
+        return name == null || name.isEmpty() ? "(none)" : name;
+    }
+}
@@ -1,15 +1,18 @@
 package com.example.hospitalassessment.controllers;
 
-import com.example.hospitalassessment.database.DatabaseManager;
+import com.example.hospitalassessment.database.EntityEvent;
+import com.example.hospitalassessment.services.ChangeFeedService.TableChanges;
 
 /**
  * Defines a contract for controllers handling table views and database interactions.
  */
-public interface TableController {
+public interface TableController extends ViewController {
     /**
-     * Sets the DatabaseManager for the TableController.
+     * Applies rows changed by other users to the table, loading only those rows.
+     * Called on the JavaFX application thread for every changed table while the view is cached.
+     * Views ignore tables they do not show; changes to records they reference arrive through {@link #onEntityChanged(EntityEvent)}.
      *
-     * @param dbManager the DatabaseManager used for managing database operations
+     * @param changes the keys of the changed rows of one table
      */
-    void setDatabaseManager(DatabaseManager dbManager);
+    void applyChanges(TableChanges changes);
 }
@@ -0,0 +1,164 @@
+package com.example.hospitalassessment.controllers;
+
+import com.example.hospitalassessment.database.DataAccessContext;
+import com.example.hospitalassessment.database.TrendDAO.Granularity;
+import com.example.hospitalassessment.database.TrendDAO.Metric;
+import com.example.hospitalassessment.services.ApplicationServices;
+import com.example.hospitalassessment.services.ChangeFeedService.Table;
+import com.example.hospitalassessment.services.ChangeFeedService.TableChanges;
+import com.example.hospitalassessment.services.TrendService;
+import com.example.hospitalassessment.services.TrendService.Series;
+import com.example.hospitalassessment.services.TrendService.Trend;
+import com.example.hospitalassessment.utils.FxFutures;
+import javafx.fxml.FXML;
+import javafx.scene.chart.LineChart;
+import javafx.scene.chart.XYChart;
+import javafx.scene.control.ComboBox;
+import javafx.scene.control.Label;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Controller for the trends view, charting visits and prescriptions over time from the rollups kept in the database.
+ * The chart is redrawn when another metric or period length is chosen, when the view is shown again,
+ * and when other users change visits, prescriptions or the records they are counted by.
+ */
+public class TrendController implements ViewController {
+    private static final int TOP_SERIES = 8; // Values charted separately; the others are combined.
+    private static final Map<Granularity, Integer> PERIODS = Map.of(Granularity.DAY, 30, Granularity.WEEK, 26, Granularity.MONTH, 12); // Periods charted for each period length.
+    private static final DateTimeFormatter MONTH_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM"); // Labels of monthly periods.
+
+    @FXML // Choice of what to chart.
+    private ComboBox<Metric> metricSelector;
+
+    @FXML // Choice of the period length.
+    private ComboBox<Granularity> granularitySelector;
+
+    @FXML // Shows how long the trend took to load.
+    private Label trendStatus;
+
+    @FXML // Chart of the counts of each value over time.
+    private LineChart<String, Number> trendChart;
+
+    private DataAccessContext dataAccess; // Shared DAOs, used here to tell whether the database can be reached.
+    private TrendService trends; // Reads chart-ready trends from the rollups.
+    private CompletableFuture<Trend> latest; // The most recently requested trend; older ones are not drawn.
+
+    /**
+     * Sets the shared data access context and draws the chart.
+     *
+     * @param dataAccess the DataAccessContext shared by all views
+     */
+    @Override
+    public void setDataAccess(DataAccessContext dataAccess) {
+        this.dataAccess = dataAccess;
+        loadTrend();
+    }
+
+    /**
+     * Takes the shared service reading trends from the rollups.
+     *
+     * @param services the ApplicationServices shared by all views
+     */
+    @Override
+    public void setServices(ApplicationServices services) {
+        this.trends = services.trends();
+    }
+
+    /**
+     * Redraws the chart when the view is shown again.
+     */
+    @Override
+    public void refresh() {
+        loadTrend();
+    }
+
+    /**
+     * Redraws the chart when other users changed what it counts or how it is labelled.
+     *
+     * @param changes the keys of the changed rows of one table
+     */
+    @Override
+    public void applyChanges(TableChanges changes) {
+        Metric metric = metricSelector.getValue();
+        boolean counted = switch (metric) {
+            case VISITS_BY_DOCTOR -> changes.table() == Table.VISIT || changes.table() == Table.DOCTOR;
+            case VISITS_BY_DIAGNOSIS -> changes.table() == Table.VISIT;
+            case PRESCRIPTIONS_BY_DRUG -> changes.table() == Table.PRESCRIPTION || changes.table() == Table.DRUG;
+            case PRESCRIPTIONS_BY_INSURER -> changes.table() == Table.PRESCRIPTION || changes.table() == Table.PATIENT
+                    || changes.table() == Table.INSURANCE;
+        };
+        if (counted) {
+            loadTrend();
+        }
+    }
+
+    /**
+     * Initializes the metric and period length choices.
+     */
+    @FXML
+    public void initialize() {
+        metricSelector.getItems().addAll(Metric.values());
+        metricSelector.setValue(Metric.VISITS_BY_DOCTOR);
+        granularitySelector.getItems().addAll(Granularity.values());
+        granularitySelector.setValue(Granularity.WEEK);
+    }
+
+    /**
+     * Handles a change of metric or period length by redrawing the chart.
+     */
+    @FXML
+    private void handleSelectionChanged() {
+        if (dataAccess != null) {
+            loadTrend();
+        }
+    }
+
+    /**
+     * Loads the chosen trend in the background and draws it once loaded, unless another was requested meanwhile.
+     * If the database cannot be reached, the chart shown is kept.
+     */
+    private void loadTrend() {
+        if (!dataAccess.getDatabaseManager().isAvailable()) {
+            return;
+        }
+        Granularity granularity = granularitySelector.getValue();
+        long started = System.nanoTime();
+        CompletableFuture<Trend> trend = trends.getTrend(metricSelector.getValue(), granularity, PERIODS.get(granularity), LocalDate.now(), TOP_SERIES);
+        latest = trend;
+        FxFutures.runWhenReady(trend, () -> {
+            if (trend == latest) {
+                showTrend(trend.join(), (System.nanoTime() - started) / 1_000_000);
+            }
+        }, "Could not load the trend.");
+    }
+
+    /**
+     * Draws a trend, one line per value.
+     *
+     * @param trend      the trend to draw
+     * @param loadMillis how long the trend took to load
+     */
+    private void showTrend(Trend trend, long loadMillis) {
+        List<LocalDate> starts = trend.periodStarts();
+        List<String> periodLabels = starts.stream()
+                .map(start -> trend.granularity() == Granularity.MONTH ? MONTH_FORMAT.format(start) : start.toString())
+                .toList();
+
+        trendChart.getData().clear();
+        for (Series series : trend.series()) {
+            XYChart.Series<String, Number> line = new XYChart.Series<>();
+            line.setName(series.label());
+            for (int period = 0; period < starts.size(); period++) {
+                line.getData().add(new XYChart.Data<>(periodLabels.get(period), series.counts()[period]));
+            }
+            trendChart.getData().add(line);
+        }
+        trendChart.setTitle(trend.metric() + " per " + trend.granularity().name().toLowerCase());
+        trendStatus.setText(trend.series().isEmpty() ? "Nothing recorded in this range." : "Loaded in " + loadMillis + " ms.");
+    }
+}
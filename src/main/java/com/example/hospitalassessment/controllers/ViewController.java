@@ -0,0 +1,52 @@
+package com.example.hospitalassessment.controllers;
+
+import com.example.hospitalassessment.database.DataAccessContext;
+import com.example.hospitalassessment.database.EntityEvent;
+import com.example.hospitalassessment.services.ApplicationServices;
+import com.example.hospitalassessment.services.ChangeFeedService.TableChanges;
+
+/**
+ * Defines a contract for controllers of the views shown in the main window.
+ */
+public interface ViewController {
+    /**
+     * Sets the services shared by all views, from which the ViewController takes those it needs.
+     * Called before {@link #setDataAccess(DataAccessContext)}.
+     *
+     * @param services the ApplicationServices shared by all views
+     */
+    void setServices(ApplicationServices services);
+
+    /**
+     * Sets the data access context shared by all views, from which the ViewController takes its DAOs.
+     *
+     * @param dataAccess the DataAccessContext used for database operations
+     */
+    void setDataAccess(DataAccessContext dataAccess);
+
+    /**
+     * Reloads the view's data when a cached view is shown again.
+     * Implementations apply only what changed, keeping the filter, sort order, selection and scroll position.
+     */
+    void refresh();
+
+    /**
+     * Reacts to rows changed by other users.
+     * Called on the JavaFX application thread for every changed table while the view is cached.
+     * Each changed record also arrives through {@link #onEntityChanged(EntityEvent)}; views needing only the records ignore this.
+     *
+     * @param changes the keys of the changed rows of one table
+     */
+    default void applyChanges(TableChanges changes) {
+    }
+
+    /**
+     * Reacts to a record being created, updated or deleted, whether through this application or by another user.
+     * Called on the JavaFX application thread for every change while the view is cached.
+     * Views that show names of related records redraw them; reference caches have already dropped the record.
+     *
+     * @param event the change to a record
+     */
+    default void onEntityChanged(EntityEvent<?> event) {
+    }
+}
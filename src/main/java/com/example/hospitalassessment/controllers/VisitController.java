@@ -6,25 +6,40 @@ import com.example.hospitalassessment.database.VisitDAO;
 import com.example.hospitalassessment.models.Doctor;
 import com.example.hospitalassessment.models.Patient;
 import com.example.hospitalassessment.models.Visit;
-import com.example.hospitalassessment.database.DatabaseManager;
+import com.example.hospitalassessment.database.DataAccessContext;
+import com.example.hospitalassessment.database.EntityEvent;
+import com.example.hospitalassessment.database.OperationResult;
+import com.example.hospitalassessment.forms.FieldValidator;
+import com.example.hospitalassessment.forms.FormSchema;
+import com.example.hospitalassessment.forms.FormValues;
+import com.example.hospitalassessment.services.ApplicationServices;
+import com.example.hospitalassessment.services.ChangeFeedService.Table;
+import com.example.hospitalassessment.services.ChangeFeedService.TableChanges;
+import com.example.hospitalassessment.services.ClaimEligibilityService;
+import com.example.hospitalassessment.services.ClaimEligibilityService.Decision;
+import com.example.hospitalassessment.services.PickerOptionsService;
+import com.example.hospitalassessment.services.PickerOptionsService.OptionType;
 import com.example.hospitalassessment.utils.AlertHelper;
+import com.example.hospitalassessment.utils.FxFutures;
+import com.example.hospitalassessment.utils.MergeDialog;
+import com.example.hospitalassessment.utils.ReferenceBatcher;
+import com.example.hospitalassessment.utils.TableRows;
+import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
-import javafx.fxml.FXMLLoader;
-import javafx.scene.Parent;
-import javafx.scene.Scene;
 import javafx.scene.control.*;
 import javafx.scene.control.cell.PropertyValueFactory;
-import javafx.beans.property.SimpleStringProperty;
 import javafx.collections.transformation.FilteredList;
 import javafx.collections.transformation.SortedList;
-import javafx.stage.Modality;
 import javafx.stage.Stage;
 
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Controller for managing the Visit table view in a medical application.
@@ -32,6 +47,14 @@ import java.util.Set;
  * Implements search, filter, add, modify, and delete functionalities.
  */
 public class VisitController implements TableController {
+    private static final FormSchema FORM = FormSchema.builder("Visit")
+            .choice("Patient", OptionType.PATIENTS, FieldValidator.required())
+            .choice("Doctor", OptionType.DOCTORS, FieldValidator.required())
+            .date("Date of Visit", FieldValidator.required())
+            .text("Symptoms")
+            .text("Diagnosis")
+            .build(); // Fields of the visit entry form, in display order.
+
     @FXML // Table to display visit records.
     private TableView<Visit> visitTable;
 
@@ -42,30 +65,87 @@ public class VisitController implements TableController {
     private TextField searchField;
 
 
-    private DatabaseManager databaseManager; // Manages database connections and transactions.
+    private DataAccessContext dataAccess; // Shared DAOs and the event bus announcing their writes.
     private VisitDAO visitDAO; // Data Access Object for visit-related operations.
     private DoctorDAO doctorDAO; // Data Access Object for doctor-related operations.
     private PatientDAO patientDAO; // Data Access Object for patient-related operations.
+    private PickerOptionsService pickerOptions; // Provides preloaded patient and doctor options.
+    private ClaimEligibilityService claimEligibility; // Decides whether visits are covered by the patient's insurer.
+    private final ObservableList<Visit> visitList = FXCollections.observableArrayList(); // Rows backing the table, updated in place on refresh.
+    private final ReferenceBatcher referenceBatcher = new ReferenceBatcher(); // Loads patient and doctor names for rendered rows in batches.
+
 
+    /**
+     * Sets the shared data access context and takes the DAOs this view needs from it.
+     *
+     * @param dataAccess the DataAccessContext shared by all table views
+     */
+    @Override
+    public void setDataAccess(DataAccessContext dataAccess) {
+        this.dataAccess = dataAccess;
+        this.visitDAO = dataAccess.visits();
+        this.doctorDAO = dataAccess.doctors();
+        this.patientDAO = dataAccess.patients();
+        pickerOptions.prefetch(OptionType.PATIENTS, OptionType.DOCTORS);
+        claimEligibility.prefetch();
+        EntryFormPool.prewarm(FORM);
+        loadVisits();
+    }
 
     /**
-     * Sets the DatabaseManager instance and initializes related DAOs and data.
+     * Takes the shared services providing patient and doctor options and deciding whether visits are covered by the patient's insurer.
      *
-     * @param dbManager the DatabaseManager instance to be set.
+     * @param services the ApplicationServices shared by all views
+     */
+    @Override
+    public void setServices(ApplicationServices services) {
+        this.pickerOptions = services.pickerOptions();
+        this.claimEligibility = services.claimEligibility();
+    }
+
+    /**
+     * Reloads the table data when the view is shown again, applying only the rows that changed.
+     * Cached references are dropped first so renamed records show their new names.
      */
     @Override
-    public void setDatabaseManager(DatabaseManager dbManager) {
-        this.databaseManager = dbManager;
-        this.visitDAO = new VisitDAO(databaseManager);
-        this.doctorDAO = new DoctorDAO(databaseManager);
-        this.patientDAO = new PatientDAO(databaseManager);
+    public void refresh() {
+        visitDAO.getPatientReferences().clear();
+        visitDAO.getDoctorReferences().clear();
         loadVisits();
+        visitTable.refresh();
+    }
+
+    /**
+     * Applies visits changed by other users, loading only the changed rows.
+     *
+     * @param changes the keys of the changed rows of one table
+     */
+    @Override
+    public void applyChanges(TableChanges changes) {
+        if (changes.table() == Table.VISIT) {
+            TableRows.apply(visitList, visitDAO.getVisitsByKeys(changes.changedKeys()), changes.deletedKeys(),
+                    VisitDAO::changeKey, VisitController::rowContent);
+        }
+    }
+
+    /**
+     * Redraws the table when a referenced doctor or patient changes, showing its new name.
+     * The data access context has already dropped the record from the reference cache.
+     *
+     * @param event the change to a record
+     */
+    @Override
+    public void onEntityChanged(EntityEvent<?> event) {
+        if (event.type() == Doctor.class || event.type() == Patient.class) {
+            visitTable.refresh();
+        }
     }
 
     /**
      * Initializes the VisitController by configuring table columns with data from
      * the Visit model. Sets up value factories for patient and doctor names, date
-     * of visit, symptoms, and diagnosis.
+     * of visit, symptoms, and diagnosis. Patient and doctor names are loaded only for
+     * rendered rows, in batches.
      */
     @FXML
     public void initialize() {
@@ -73,24 +153,43 @@ public class VisitController implements TableController {
         colSymptoms.setCellValueFactory(new PropertyValueFactory<>("symptoms"));
         colDiagnosis.setCellValueFactory(new PropertyValueFactory<>("diagnosis"));
 
-        colPatient.setCellValueFactory(cellData ->
-                new SimpleStringProperty(cellData.getValue().getPatient().getFirstName() + " " + cellData.getValue().getPatient().getSurname())
-        );
-        colDoctor.setCellValueFactory(cellData ->
-                new SimpleStringProperty(cellData.getValue().getDoctor().getFirstName() + " " + cellData.getValue().getDoctor().getSurname())
-        );
+        colPatient.setCellValueFactory(cellData -> referenceBatcher.label(
+                cellData.getValue().getPatientRef(), visitDAO.getPatientReferences(),
+                patient -> patient != null ? patient.getFirstName() + " " + patient.getSurname() : "Unknown"));
+        colDoctor.setCellValueFactory(cellData -> referenceBatcher.label(
+                cellData.getValue().getDoctorRef(), visitDAO.getDoctorReferences(),
+                doctor -> doctor != null ? doctor.getFirstName() + " " + doctor.getSurname() : "Unknown"));
+
+        bindTableData();
     }
 
     /**
-     * Loads and initializes visits data into the visit table with filtering and sorting functionality.
-     * The visits can be filtered based on entered text in the search field by matching
-     * date of visit, symptoms, diagnosis, or patient and doctor details.
+     * Loads visit data from the database and applies it to the table in place,
+     * so the current filter, sort order, selection and scroll position are kept.
+     * If the database cannot be reached, the rows already shown are kept as they are.
      */
     private void loadVisits() {
-        ObservableList<Visit> visitList = FXCollections.observableArrayList(visitDAO.getAllVisits());
+        List<Visit> rows = visitDAO.getAllVisits();
+        if (!dataAccess.getDatabaseManager().isAvailable()) {
+            return;
+        }
+        TableRows.merge(visitList, rows,
+                visit -> List.of(visit.getPatientRef().getId(), visit.getDoctorRef().getId(), visit.getDateOfVisit()),
+                VisitController::rowContent);
+    }
+
+    /**
+     * Connects the table to its rows through a filtered and sorted view.
+     * Filtering follows the search field, and sorting follows the table's sort order.
+     */
+    private void bindTableData() {
         FilteredList<Visit> filteredData = new FilteredList<>(visitList, p -> true);
 
         searchField.textProperty().addListener((observable, oldValue, newValue) -> {
+            if (newValue != null && !newValue.isEmpty()) {
+                // Matching on names needs every reference, so load them all in one batch.
+                visitDAO.resolveReferences(visitList);
+            }
             filteredData.setPredicate(visit -> {
                 if (newValue == null || newValue.isEmpty()) return true;
 
@@ -105,36 +204,47 @@ public class VisitController implements TableController {
 
         SortedList<Visit> sortedData = new SortedList<>(filteredData);
         sortedData.comparatorProperty().bind(visitTable.comparatorProperty());
+        visitTable.setOnSort(event -> visitDAO.resolveReferences(visitList));
 
         visitTable.setItems(sortedData);
     }
 
+    /**
+     * Lists the values of a row that are compared to detect a change when the table is refreshed.
+     *
+     * @param visit the row to describe
+     * @return the row's version and displayed values
+     */
+    private static List<?> rowContent(Visit visit) {
+        return Arrays.asList(visit.getVersion(), visit.getSymptoms(), visit.getDiagnosis());
+    }
+
     /**
      * Opens a form to add a new visit entry with empty fields for patient, doctor,
      * date of visit, symptoms, and diagnosis.
      */
     @FXML
     private void handleAddVisit() {
-        openEntryForm("Add Visit", null, Set.of());
+        openEntryForm("Add Visit", null, Set.of(), 0);
     }
 
     /**
      * Handles the modification of a selected visit from the visit table.
-     * Opens an entry form pre-filled with visit details for editing.
+     * Opens an entry form pre-filled with visit details for editing, including the full symptoms and diagnosis.
      * If no visit is selected, displays a warning alert.
      */
     @FXML
     private void handleModifyVisit() {
         Visit selectedVisit = visitTable.getSelectionModel().getSelectedItem();
         if (selectedVisit != null) {
-            Map<String, String> visitData = new HashMap<>();
-            visitData.put("Patient", selectedVisit.getPatient().getFirstName() + " " + selectedVisit.getPatient().getSurname());
-            visitData.put("Doctor", selectedVisit.getDoctor().getFirstName() + " " + selectedVisit.getDoctor().getSurname());
-            visitData.put("Date of Visit", selectedVisit.getDateOfVisit().toString());
-            visitData.put("Symptoms", selectedVisit.getSymptoms());
-            visitData.put("Diagnosis", selectedVisit.getDiagnosis());
-
-            openEntryForm("Modify Visit", visitData, Set.of("Patient", "Doctor", "Date of Visit"));
+            // The table only holds previews of long text, so fetch the full symptoms and diagnosis for editing.
+            if (visitDAO.loadFullText(selectedVisit) == null) {
+                AlertHelper.showAlert("Visit Not Found", "This visit no longer exists.", Alert.AlertType.WARNING);
+                loadVisits();
+                return;
+            }
+
+            openEntryForm("Modify Visit", formData(selectedVisit), Set.of("Patient", "Doctor", "Date of Visit"), selectedVisit.getVersion());
         } else {
             AlertHelper.showAlert("Selection Error", "Please select a visit to modify.", Alert.AlertType.WARNING);
         }
@@ -153,8 +263,9 @@ public class VisitController implements TableController {
                     "Are you sure you want to delete this visit?");
 
             if (confirmed) {
-                String resultMessage = visitDAO.deleteVisit(selectedVisit.getPatient().getId(), selectedVisit.getDoctor().getId(), selectedVisit.getDateOfVisit());
-                AlertHelper.showAlert("Visit Deletion", resultMessage, Alert.AlertType.INFORMATION);
+                OperationResult result = visitDAO.deleteVisit(selectedVisit.getPatient().getId(), selectedVisit.getDoctor().getId(), selectedVisit.getDateOfVisit(),
+                        selectedVisit.getVersion());
+                AlertHelper.showResult("Visit Deletion", result);
                 loadVisits();
             }
         } else {
@@ -162,103 +273,165 @@ public class VisitController implements TableController {
         }
     }
 
+    /**
+     * Saves changes to an existing visit. If another user saved the visit after the form was opened,
+     * their changes are merged with these, asking which value to keep where both changed the same field,
+     * and the save is retried against the visit as it is now.
+     *
+     * @param visit  the changed visit, carrying the version the form was opened with.
+     * @param base   the values the form was opened with.
+     * @param values the values the user saved.
+     * @return the result of the last save attempt.
+     */
+    private OperationResult updateVisit(Visit visit, Map<String, ?> base, FormValues values) {
+        OperationResult result = visitDAO.updateVisit(visit);
+        while (result.getStatus() == OperationResult.Status.CONFLICT) {
+            Visit current = visitDAO.getVisitByPrimaryKey(visit.getPatient().getId(), visit.getDoctor().getId(), visit.getDateOfVisit());
+            if (current == null) {
+                return OperationResult.notFound("Error: This visit was deleted by another user.");
+            }
+            Map<String, Object> theirs = formData(current);
+            values = MergeDialog.merge(FORM, base, values, theirs);
+            if (values == null) {
+                return result; // Merge cancelled
+            }
+            base = theirs;
+            visit = toVisit(values);
+            if (visit == null) {
+                return OperationResult.failed("Error: Invalid doctor or patient selection.");
+            }
+            visit.setVersion(current.getVersion());
+            result = visitDAO.updateVisit(visit);
+        }
+        return result;
+    }
+
+    /**
+     * Describes whether the patient's insurer covers a saved visit, for the message confirming the save.
+     *
+     * @param decision the decision on the visit's claim
+     * @return a sentence stating whether the visit is covered and why not
+     */
+    private static String describeCoverage(Decision decision) {
+        return decision.covered()
+                ? "Covered by insurance " + decision.claim().insuranceId() + "."
+                : "Not covered by insurance: " + decision.reason();
+    }
+
+    /**
+     * Lists a visit's values by entry form field.
+     *
+     * @param visit the visit to show, with its full symptoms and diagnosis.
+     * @return the field values of the visit.
+     */
+    private static Map<String, Object> formData(Visit visit) {
+        Map<String, Object> visitData = new HashMap<>();
+        visitData.put("Patient", visit.getPatient().getFirstName() + " " + visit.getPatient().getSurname());
+        visitData.put("Doctor", visit.getDoctor().getFirstName() + " " + visit.getDoctor().getSurname());
+        visitData.put("Date of Visit", visit.getDateOfVisit().toLocalDate());
+        visitData.put("Symptoms", visit.getSymptoms());
+        visitData.put("Diagnosis", visit.getDiagnosis());
+        return visitData;
+    }
+
+    /**
+     * Creates a visit from saved entry form values, looking up the chosen doctor and patient.
+     *
+     * @param values the values of the entry form.
+     * @return the visit described by the form, or null if a selection no longer matches a record.
+     */
+    private Visit toVisit(FormValues values) {
+        // Get Doctor and Patient objects based on selection
+        Doctor doctor = doctorDAO.getDoctorByFullName(values.getText("Doctor"));
+        Patient patient = patientDAO.getPatientByFullName(values.getText("Patient"));
+        if (doctor == null || patient == null) {
+            return null;
+        }
+
+        return new Visit(
+                patient,
+                doctor,
+                java.sql.Date.valueOf(values.getDate("Date of Visit")),
+                values.getText("Symptoms"),
+                values.getText("Diagnosis")
+        );
+    }
+
     /**
      * Opens the entry form to add or modify visit data.
+     * The patient and doctor options come from the prefetch service; the form opens immediately
+     * when they are warm, otherwise as soon as their parallel background loads finish.
+     *
+     * @param title               the title of the form window.
+     * @param existingData        a map containing pre-filled data for the form fields, or null for empty fields.
+     * @param undisplayableFields a set of field names to be hidden in the form.
+     * @param version             the version of the visit being edited, checked when the changes are saved.
+     */
+    private void openEntryForm(String title, Map<String, ?> existingData, Set<String> undisplayableFields, int version) {
+        CompletableFuture<Map<OptionType, List<String>>> options = pickerOptions.getOptions(FORM.getPickerSources());
+        FxFutures.runWhenReady(options,
+                () -> showEntryForm(title, existingData, undisplayableFields, version, options.join()),
+                "Could not load patients and doctors.");
+    }
+
+    /**
+     * Builds and displays the visit entry form using preloaded selection options.
      *
      * @param title               the title of the form window.
      * @param existingData        a map containing pre-filled data for the form fields, or null for empty fields.
      * @param undisplayableFields a set of field names to be hidden in the form.
+     * @param version             the version of the visit being edited, checked when the changes are saved.
+     * @param options             the option lists offered by the form's dropdowns.
      */
-    private void openEntryForm(String title, Map<String, String> existingData, Set<String> undisplayableFields) {
+    private void showEntryForm(String title, Map<String, ?> existingData, Set<String> undisplayableFields, int version,
+                               Map<OptionType, List<String>> options) {
         try {
-            // Load the FXML file for the entry form
-            FXMLLoader loader = new FXMLLoader(getClass().getResource("/com/example/hospitalassessment/entry_form.fxml"));
-            Parent root = loader.load();
-            EntryFormController controller = loader.getController();
+            // Take a pooled entry form window; it is rebound to this record rather than rebuilt
+            EntryFormPool.EntryForm form = EntryFormPool.acquire(FORM, visitTable.getScene().getWindow());
+            EntryFormController controller = form.controller();
             controller.setFormTitle(title);
 
-            // Define fields for a new visit (empty values)
-            if (existingData == null) {
-                existingData = new HashMap<>();
-                existingData.put("Patient", "");
-                existingData.put("Doctor", "");
-                existingData.put("Date of Visit", "");
-                existingData.put("Symptoms", "");
-                existingData.put("Diagnosis", "");
-            }
-
-            // Set form fields and hide fields that shouldn't be displayed
-            // and provide a list of available doctors and patients for selection.
-            controller.setFields(existingData, undisplayableFields,
-                    patientDAO.getAllPatients().stream().map(patient -> patient.getFirstName() + " " + patient.getSurname()).toList(),
-                    doctorDAO.getAllDoctors().stream().map(doctor -> doctor.getFirstName() + " " + doctor.getSurname()).toList(),
-                    new DatePicker()
-            );
+            // Show the record, or empty fields for a new visit, and hide fields that shouldn't be displayed
+            controller.bind(existingData != null ? existingData : Map.of(), undisplayableFields, options);
 
-            // Create and configure a new window (Stage) for the form
-            Stage stage = new Stage();
+            // Configure the pooled window (Stage) for this use
+            Stage stage = form.stage();
             stage.setTitle(title);
-            stage.setScene(new Scene(root));
-            stage.initModality(Modality.WINDOW_MODAL); // Make it a modal window
-            stage.initOwner(visitTable.getScene().getWindow()); // Attach it to the main window
-
-            // Preserve the original existing data for reference
-            Map<String, String> finalExistingData = existingData;
 
             // Define the action to be performed when the Save button is clicked
-            controller.setOnSaveCallback(() -> {
-                Map<String, String> updatedValues = controller.getFieldValues();
-
-                // Get Doctor and Patient objects based on selection
-                Doctor doctor = doctorDAO.getDoctorByFullName(updatedValues.get("Doctor") == null ? finalExistingData.get("Doctor") : updatedValues.get("Doctor"));
-                Patient patient = patientDAO.getPatientByFullName(updatedValues.get("Patient") == null ? finalExistingData.get("Patient") : updatedValues.get("Patient"));
+            controller.setOnSaveCallback(values -> {
+                // Create a Visit object with updated values
+                Visit visit = toVisit(values);
 
                 // Ensure that a valid doctor and patient are selected before proceeding
-                if (doctor == null || patient == null) {
+                if (visit == null) {
                     AlertHelper.showAlert("Error", "Invalid doctor or patient selection.", Alert.AlertType.ERROR);
                     return;
                 }
+                visit.setVersion(version);
 
-                java.sql.Date sqlDate = null;
-                try {
-                    // Retrieve the date input, either from the updated values or the existing data
-                    String dateInput = updatedValues.get("Date of Visit") == null ? finalExistingData.get("Date of Visit") : updatedValues.get("Date of Visit");
-
-                    // Ensure the date is not empty
-                    if (dateInput == null || dateInput.isBlank()) {
-                        throw new IllegalArgumentException("Date of Visit cannot be empty.");
-                    }
+                // Determine whether to update an existing visit or add a new one
+                OperationResult result = undisplayableFields.contains("Date of Visit")
+                        ? updateVisit(visit, existingData, values)    // Update if "Visit ID" is not editable
+                        : visitDAO.addVisit(visit);      // Otherwise, add a new visit
 
-                    // Convert the input string to a SQL Date format
-                    sqlDate = java.sql.Date.valueOf(dateInput);
-                } catch (IllegalArgumentException e) {
-                    // Show an error alert if the date format is incorrect
-                    AlertHelper.showAlert("Input Error", "Invalid date format. Please use 'yyyy-mm-dd'.", Alert.AlertType.ERROR);
+                if (!result.isSuccess()) {
+                    AlertHelper.showResult(title, result);
                     return;
                 }
 
-                // Create a Visit object with updated values
-                Visit visit = new Visit(
-                        patient,
-                        doctor,
-                        sqlDate,
-                        updatedValues.get("Symptoms"),
-                        updatedValues.get("Diagnosis")
-                );
-
-                // Determine whether to update an existing visit or add a new one
-                Map.Entry<String, Alert.AlertType> resultMessage = undisplayableFields.contains("Date of Visit")
-                        ? visitDAO.updateVisit(visit)    // Update if "Visit ID" is not editable
-                        : visitDAO.addVisit(visit);      // Otherwise, add a new visit
-
-                // Show an alert message with the result of the operation
-                AlertHelper.showAlert(title, resultMessage.getKey(), resultMessage.getValue());
+                // Close the form and refresh the visit table
+                stage.close();
+                loadVisits();
 
-                // If the operation was successful, close the form and refresh the visit table
-                if (resultMessage.getValue() != Alert.AlertType.ERROR) {
-                    stage.close(); // Close window only on success
-                    loadVisits(); // Refresh table
-                }
+                // Tell the user the visit was saved, and whether the patient's insurer covers it once decided in the background
+                OperationResult saved = result;
+                claimEligibility.evaluateVisit(visit).whenComplete((decision, error) -> Platform.runLater(() -> {
+                    if (error != null) {
+                        error.printStackTrace();
+                    }
+                    AlertHelper.showResult(title, decision == null ? saved : OperationResult.success(saved.getMessage() + "\n\n" + describeCoverage(decision)));
+                }));
             });
 
             // Display the form and wait for user interaction
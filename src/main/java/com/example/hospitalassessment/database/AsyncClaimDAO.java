@@ -0,0 +1,59 @@
+package com.example.hospitalassessment.database;
+
+import com.example.hospitalassessment.models.Prescription;
+import com.example.hospitalassessment.models.Visit;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Non-blocking variant of ClaimDAO. Every method runs on the configured executor
+ * and returns a CompletableFuture that can be composed with other loads.
+ */
+public class AsyncClaimDAO extends AsyncDAO<ClaimDAO> {
+
+    /**
+     * Creates an AsyncClaimDAO using the shared DAO executor.
+     *
+     * @param connectionPool the pool providing database connections
+     */
+    public AsyncClaimDAO(ConnectionPool connectionPool) {
+        this(connectionPool, DaoExecutors.defaultExecutor());
+    }
+
+    /**
+     * Creates an AsyncClaimDAO using the given executor.
+     *
+     * @param connectionPool the pool providing database connections
+     * @param executor       the executor running the blocking calls
+     */
+    public AsyncClaimDAO(ConnectionPool connectionPool, Executor executor) {
+        super(connectionPool, executor, DataAccessContext::claims);
+    }
+
+    /** Asynchronous variant of {@link ClaimDAO#getCoverageRules()}. */
+    public CompletableFuture<List<ClaimDAO.CoverageRule>> getCoverageRules() {
+        return supply(ClaimDAO::getCoverageRules);
+    }
+
+    /** Asynchronous variant of {@link ClaimDAO#getVisitClaims()}. */
+    public CompletableFuture<List<ClaimDAO.Claim>> getVisitClaims() {
+        return supply(ClaimDAO::getVisitClaims);
+    }
+
+    /** Asynchronous variant of {@link ClaimDAO#getPrescriptionClaims()}. */
+    public CompletableFuture<List<ClaimDAO.Claim>> getPrescriptionClaims() {
+        return supply(ClaimDAO::getPrescriptionClaims);
+    }
+
+    /** Asynchronous variant of {@link ClaimDAO#getVisitClaim(Visit)}. */
+    public CompletableFuture<ClaimDAO.Claim> getVisitClaim(Visit visit) {
+        return supply(dao -> dao.getVisitClaim(visit));
+    }
+
+    /** Asynchronous variant of {@link ClaimDAO#getPrescriptionClaim(Prescription)}. */
+    public CompletableFuture<ClaimDAO.Claim> getPrescriptionClaim(Prescription prescription) {
+        return supply(dao -> dao.getPrescriptionClaim(prescription));
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.hospitalassessment.database;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Non-blocking variant of CohortDAO. Every method runs on the configured executor
+ * and returns a CompletableFuture that can be composed with other loads.
+ */
+public class AsyncCohortDAO extends AsyncDAO<CohortDAO> {
+
+    /**
+     * Creates an AsyncCohortDAO using the shared DAO executor.
+     *
+     * @param connectionPool the pool providing database connections
+     */
+    public AsyncCohortDAO(ConnectionPool connectionPool) {
+        this(connectionPool, DaoExecutors.defaultExecutor());
+    }
+
+    /**
+     * Creates an AsyncCohortDAO using the given executor.
+     *
+     * @param connectionPool the pool providing database connections
+     * @param executor       the executor running the blocking calls
+     */
+    public AsyncCohortDAO(ConnectionPool connectionPool, Executor executor) {
+        super(connectionPool, executor, context -> new CohortDAO(context.getDatabaseManager()));
+    }
+
+    /** Asynchronous variant of {@link CohortDAO#getPatientInsurers()}. */
+    public CompletableFuture<Map<String, String>> getPatientInsurers() {
+        return supply(CohortDAO::getPatientInsurers);
+    }
+
+    /** Asynchronous variant of {@link CohortDAO#getVisitEntries()}. */
+    public CompletableFuture<List<CohortDAO.VisitEntry>> getVisitEntries() {
+        return supply(CohortDAO::getVisitEntries);
+    }
+
+    /** Asynchronous variant of {@link CohortDAO#getPrescriptionEntries()}. */
+    public CompletableFuture<List<CohortDAO.PrescriptionEntry>> getPrescriptionEntries() {
+        return supply(CohortDAO::getPrescriptionEntries);
+    }
+
+    /** Asynchronous variant of {@link CohortDAO#getDoctorSpecializations()}. */
+    public CompletableFuture<Map<String, String>> getDoctorSpecializations() {
+        return supply(CohortDAO::getDoctorSpecializations);
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.hospitalassessment.database;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+
+/**
+ * Base class for the asynchronous DAO variants.
+ * Each call borrows its own connection from a ConnectionPool and runs the blocking DAO method
+ * on an executor, so independent calls proceed in parallel. The DAO is taken from the connection's long-lived
+ * {@link DataAccessContext}, so reads share its reference caches and writes are announced on the pool's event bus.
+ * Entities returned have their references to other records resolved before the connection is released.
+ *
+ * @param <D> the blocking DAO type that performs the work
+ */
+public abstract class AsyncDAO<D> {
+    private final ConnectionPool connectionPool; // Source of a dedicated connection for every call.
+    private final Executor executor; // Executor running the blocking DAO calls.
+    private final Function<DataAccessContext, D> daoFactory; // Provides the blocking DAO of a borrowed connection's context.
+
+    /**
+     * Creates an asynchronous DAO.
+     *
+     * @param connectionPool the pool providing database connections
+     * @param executor       the executor running the blocking calls
+     * @param daoFactory     provides the blocking DAO of a borrowed connection's data access context
+     */
+    protected AsyncDAO(ConnectionPool connectionPool, Executor executor, Function<DataAccessContext, D> daoFactory) {
+        this.connectionPool = connectionPool;
+        this.executor = executor;
+        this.daoFactory = daoFactory;
+    }
+
+    /**
+     * Runs an operation against a blocking DAO bound to a pooled connection.
+     *
+     * @param operation the DAO call to perform
+     * @param <T>       the result type
+     * @return a future completed with the operation's result
+     */
+    protected <T> CompletableFuture<T> supply(Function<D, T> operation) {
+        return CompletableFuture.supplyAsync(() -> {
+            DatabaseManager dbManager = connectionPool.borrow();
+            try {
+                return operation.apply(daoFactory.apply(connectionPool.context(dbManager)));
+            } finally {
+                connectionPool.release(dbManager);
+            }
+        }, executor);
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.hospitalassessment.database;
+
+import com.example.hospitalassessment.models.Doctor;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Non-blocking variant of DoctorDAO. Every method runs on the configured executor
+ * and returns a CompletableFuture that can be composed with other loads.
+ */
+public class AsyncDoctorDAO extends AsyncDAO<DoctorDAO> {
+
+    /**
+     * Creates an AsyncDoctorDAO using the shared DAO executor.
+     *
+     * @param connectionPool the pool providing database connections
+     */
+    public AsyncDoctorDAO(ConnectionPool connectionPool) {
+        this(connectionPool, DaoExecutors.defaultExecutor());
+    }
+
+    /**
+     * Creates an AsyncDoctorDAO using the given executor.
+     *
+     * @param connectionPool the pool providing database connections
+     * @param executor       the executor running the blocking calls
+     */
+    public AsyncDoctorDAO(ConnectionPool connectionPool, Executor executor) {
+        super(connectionPool, executor, DataAccessContext::doctors);
+    }
+
+    /** Asynchronous variant of {@link DoctorDAO#getAllDoctors()}. */
+    public CompletableFuture<List<Doctor>> getAllDoctors() {
+        return supply(DoctorDAO::getAllDoctors);
+    }
+
+    /** Asynchronous variant of {@link DoctorDAO#searchDoctors(String, int, int)}. */
+    public CompletableFuture<List<Doctor>> searchDoctors(String query, int limit, int offset) {
+        return supply(dao -> dao.searchDoctors(query, limit, offset));
+    }
+
+    /** Asynchronous variant of {@link DoctorDAO#getDoctorSummaries()}. */
+    public CompletableFuture<List<Doctor>> getDoctorSummaries() {
+        return supply(DoctorDAO::getDoctorSummaries);
+    }
+
+    /** Asynchronous variant of {@link DoctorDAO#getDoctorById(String)}. */
+    public CompletableFuture<Doctor> getDoctorById(String doctorId) {
+        return supply(dao -> dao.getDoctorById(doctorId));
+    }
+
+    /** Asynchronous variant of {@link DoctorDAO#getDoctorIds()}. */
+    public CompletableFuture<List<String>> getDoctorIds() {
+        return supply(DoctorDAO::getDoctorIds);
+    }
+
+    /** Asynchronous variant of {@link DoctorDAO#doctorExists(String)}. */
+    public CompletableFuture<Boolean> doctorExists(String doctorId) {
+        return supply(dao -> dao.doctorExists(doctorId));
+    }
+
+    /** Asynchronous variant of {@link DoctorDAO#getDoctorEmails()}. */
+    public CompletableFuture<List<String>> getDoctorEmails() {
+        return supply(DoctorDAO::getDoctorEmails);
+    }
+
+    /** Asynchronous variant of {@link DoctorDAO#getDoctorEmailsByIds(Collection)}. */
+    public CompletableFuture<List<String>> getDoctorEmailsByIds(Collection<String> ids) {
+        return supply(dao -> dao.getDoctorEmailsByIds(ids));
+    }
+
+    /** Asynchronous variant of {@link DoctorDAO#doctorEmailExists(String)}. */
+    public CompletableFuture<Boolean> doctorEmailExists(String email) {
+        return supply(dao -> dao.doctorEmailExists(email));
+    }
+
+    /** Asynchronous variant of {@link DoctorDAO#getDoctorByEmail(String)}. */
+    public CompletableFuture<Doctor> getDoctorByEmail(String email) {
+        return supply(dao -> dao.getDoctorByEmail(email));
+    }
+
+    /** Asynchronous variant of {@link DoctorDAO#getDoctorByFullName(String)}. */
+    public CompletableFuture<Doctor> getDoctorByFullName(String fullName) {
+        return supply(dao -> dao.getDoctorByFullName(fullName));
+    }
+
+    /** Asynchronous variant of {@link DoctorDAO#addDoctor(Doctor)}. */
+    public CompletableFuture<OperationResult> addDoctor(Doctor doctor) {
+        return supply(dao -> dao.addDoctor(doctor));
+    }
+
+    /** Asynchronous variant of {@link DoctorDAO#updateDoctor(Doctor)}. */
+    public CompletableFuture<OperationResult> updateDoctor(Doctor doctor) {
+        return supply(dao -> dao.updateDoctor(doctor));
+    }
+
+    /** Asynchronous variant of {@link DoctorDAO#deleteDoctor(String)}. */
+    public CompletableFuture<OperationResult> deleteDoctor(String doctorId) {
+        return supply(dao -> dao.deleteDoctor(doctorId));
+    }
+
+    /** Asynchronous variant of {@link DoctorDAO#deleteDoctor(String, Integer)}. */
+    public CompletableFuture<OperationResult> deleteDoctor(String doctorId, Integer expectedVersion) {
+        return supply(dao -> dao.deleteDoctor(doctorId, expectedVersion));
+    }
+}
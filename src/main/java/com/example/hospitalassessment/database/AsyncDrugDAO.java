@@ -0,0 +1,83 @@
+package com.example.hospitalassessment.database;
+
+import com.example.hospitalassessment.models.Drug;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Non-blocking variant of DrugDAO. Every method runs on the configured executor
+ * and returns a CompletableFuture that can be composed with other loads.
+ */
+public class AsyncDrugDAO extends AsyncDAO<DrugDAO> {
+
+    /**
+     * Creates an AsyncDrugDAO using the shared DAO executor.
+     *
+     * @param connectionPool the pool providing database connections
+     */
+    public AsyncDrugDAO(ConnectionPool connectionPool) {
+        this(connectionPool, DaoExecutors.defaultExecutor());
+    }
+
+    /**
+     * Creates an AsyncDrugDAO using the given executor.
+     *
+     * @param connectionPool the pool providing database connections
+     * @param executor       the executor running the blocking calls
+     */
+    public AsyncDrugDAO(ConnectionPool connectionPool, Executor executor) {
+        super(connectionPool, executor, DataAccessContext::drugs);
+    }
+
+    /** Asynchronous variant of {@link DrugDAO#getAllDrugs()}. */
+    public CompletableFuture<List<Drug>> getAllDrugs() {
+        return supply(DrugDAO::getAllDrugs);
+    }
+
+    /** Asynchronous variant of {@link DrugDAO#searchDrugs(String, int, int)}. */
+    public CompletableFuture<List<Drug>> searchDrugs(String query, int limit, int offset) {
+        return supply(dao -> dao.searchDrugs(query, limit, offset));
+    }
+
+    /** Asynchronous variant of {@link DrugDAO#getDrugSummaries()}. */
+    public CompletableFuture<List<Drug>> getDrugSummaries() {
+        return supply(DrugDAO::getDrugSummaries);
+    }
+
+    /** Asynchronous variant of {@link DrugDAO#getDrugById(String)}. */
+    public CompletableFuture<Drug> getDrugById(String drugId) {
+        return supply(dao -> dao.getDrugById(drugId));
+    }
+
+    /** Asynchronous variant of {@link DrugDAO#getDrugIds()}. */
+    public CompletableFuture<List<String>> getDrugIds() {
+        return supply(DrugDAO::getDrugIds);
+    }
+
+    /** Asynchronous variant of {@link DrugDAO#drugExists(String)}. */
+    public CompletableFuture<Boolean> drugExists(String drugId) {
+        return supply(dao -> dao.drugExists(drugId));
+    }
+
+    /** Asynchronous variant of {@link DrugDAO#addDrug(Drug)}. */
+    public CompletableFuture<OperationResult> addDrug(Drug drug) {
+        return supply(dao -> dao.addDrug(drug));
+    }
+
+    /** Asynchronous variant of {@link DrugDAO#updateDrug(Drug)}. */
+    public CompletableFuture<OperationResult> updateDrug(Drug drug) {
+        return supply(dao -> dao.updateDrug(drug));
+    }
+
+    /** Asynchronous variant of {@link DrugDAO#deleteDrug(String)}. */
+    public CompletableFuture<OperationResult> deleteDrug(String drugId) {
+        return supply(dao -> dao.deleteDrug(drugId));
+    }
+
+    /** Asynchronous variant of {@link DrugDAO#deleteDrug(String, Integer)}. */
+    public CompletableFuture<OperationResult> deleteDrug(String drugId, Integer expectedVersion) {
+        return supply(dao -> dao.deleteDrug(drugId, expectedVersion));
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.hospitalassessment.database;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Non-blocking variant of DrugInteractionDAO. Every method runs on the configured executor
+ * and returns a CompletableFuture that can be composed with other loads.
+ */
+public class AsyncDrugInteractionDAO extends AsyncDAO<DrugInteractionDAO> {
+
+    /**
+     * Creates an AsyncDrugInteractionDAO using the shared DAO executor.
+     *
+     * @param connectionPool the pool providing database connections
+     */
+    public AsyncDrugInteractionDAO(ConnectionPool connectionPool) {
+        this(connectionPool, DaoExecutors.defaultExecutor());
+    }
+
+    /**
+     * Creates an AsyncDrugInteractionDAO using the given executor.
+     *
+     * @param connectionPool the pool providing database connections
+     * @param executor       the executor running the blocking calls
+     */
+    public AsyncDrugInteractionDAO(ConnectionPool connectionPool, Executor executor) {
+        super(connectionPool, executor, context -> new DrugInteractionDAO(context.getDatabaseManager()));
+    }
+
+    /** Asynchronous variant of {@link DrugInteractionDAO#getAllInteractions()}. */
+    public CompletableFuture<List<DrugInteractionDAO.Interaction>> getAllInteractions() {
+        return supply(DrugInteractionDAO::getAllInteractions);
+    }
+}
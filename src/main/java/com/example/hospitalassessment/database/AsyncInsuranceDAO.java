@@ -0,0 +1,83 @@
+package com.example.hospitalassessment.database;
+
+import com.example.hospitalassessment.models.Insurance;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Non-blocking variant of InsuranceDAO. Every method runs on the configured executor
+ * and returns a CompletableFuture that can be composed with other loads.
+ */
+public class AsyncInsuranceDAO extends AsyncDAO<InsuranceDAO> {
+
+    /**
+     * Creates an AsyncInsuranceDAO using the shared DAO executor.
+     *
+     * @param connectionPool the pool providing database connections
+     */
+    public AsyncInsuranceDAO(ConnectionPool connectionPool) {
+        this(connectionPool, DaoExecutors.defaultExecutor());
+    }
+
+    /**
+     * Creates an AsyncInsuranceDAO using the given executor.
+     *
+     * @param connectionPool the pool providing database connections
+     * @param executor       the executor running the blocking calls
+     */
+    public AsyncInsuranceDAO(ConnectionPool connectionPool, Executor executor) {
+        super(connectionPool, executor, DataAccessContext::insurance);
+    }
+
+    /** Asynchronous variant of {@link InsuranceDAO#getAllInsurance()}. */
+    public CompletableFuture<List<Insurance>> getAllInsurance() {
+        return supply(InsuranceDAO::getAllInsurance);
+    }
+
+    /** Asynchronous variant of {@link InsuranceDAO#searchInsurance(String, int, int)}. */
+    public CompletableFuture<List<Insurance>> searchInsurance(String query, int limit, int offset) {
+        return supply(dao -> dao.searchInsurance(query, limit, offset));
+    }
+
+    /** Asynchronous variant of {@link InsuranceDAO#getInsuranceById(String)}. */
+    public CompletableFuture<Insurance> getInsuranceById(String insuranceId) {
+        return supply(dao -> dao.getInsuranceById(insuranceId));
+    }
+
+    /** Asynchronous variant of {@link InsuranceDAO#getInsuranceIds()}. */
+    public CompletableFuture<List<String>> getInsuranceIds() {
+        return supply(InsuranceDAO::getInsuranceIds);
+    }
+
+    /** Asynchronous variant of {@link InsuranceDAO#insuranceExists(String)}. */
+    public CompletableFuture<Boolean> insuranceExists(String insuranceId) {
+        return supply(dao -> dao.insuranceExists(insuranceId));
+    }
+
+    /** Asynchronous variant of {@link InsuranceDAO#getInsuranceByCompany(String)}. */
+    public CompletableFuture<Insurance> getInsuranceByCompany(String companyName) {
+        return supply(dao -> dao.getInsuranceByCompany(companyName));
+    }
+
+    /** Asynchronous variant of {@link InsuranceDAO#addInsurance(Insurance)}. */
+    public CompletableFuture<OperationResult> addInsurance(Insurance insurance) {
+        return supply(dao -> dao.addInsurance(insurance));
+    }
+
+    /** Asynchronous variant of {@link InsuranceDAO#updateInsurance(Insurance)}. */
+    public CompletableFuture<OperationResult> updateInsurance(Insurance insurance) {
+        return supply(dao -> dao.updateInsurance(insurance));
+    }
+
+    /** Asynchronous variant of {@link InsuranceDAO#deleteInsurance(String)}. */
+    public CompletableFuture<OperationResult> deleteInsurance(String insuranceId) {
+        return supply(dao -> dao.deleteInsurance(insuranceId));
+    }
+
+    /** Asynchronous variant of {@link InsuranceDAO#deleteInsurance(String, Integer)}. */
+    public CompletableFuture<OperationResult> deleteInsurance(String insuranceId, Integer expectedVersion) {
+        return supply(dao -> dao.deleteInsurance(insuranceId, expectedVersion));
+    }
+}
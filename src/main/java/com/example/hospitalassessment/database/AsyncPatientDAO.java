@@ -0,0 +1,130 @@
+package com.example.hospitalassessment.database;
+
+import com.example.hospitalassessment.models.Patient;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Non-blocking variant of PatientDAO. Every method runs on the configured executor
+ * and returns a CompletableFuture that can be composed with other loads.
+ * The patients returned come with their insurance loaded as they were when read, so reading them costs no query.
+ */
+public class AsyncPatientDAO extends AsyncDAO<PatientDAO> {
+
+    /**
+     * Creates an AsyncPatientDAO using the shared DAO executor.
+     *
+     * @param connectionPool the pool providing database connections
+     */
+    public AsyncPatientDAO(ConnectionPool connectionPool) {
+        this(connectionPool, DaoExecutors.defaultExecutor());
+    }
+
+    /**
+     * Creates an AsyncPatientDAO using the given executor.
+     *
+     * @param connectionPool the pool providing database connections
+     * @param executor       the executor running the blocking calls
+     */
+    public AsyncPatientDAO(ConnectionPool connectionPool, Executor executor) {
+        super(connectionPool, executor, DataAccessContext::patients);
+    }
+
+    /** Asynchronous variant of {@link PatientDAO#getAllPatients()}. */
+    public CompletableFuture<List<Patient>> getAllPatients() {
+        return supply(dao -> detached(dao, dao.getAllPatients()));
+    }
+
+    /** Asynchronous variant of {@link PatientDAO#searchPatients(String, int, int)}. */
+    public CompletableFuture<List<Patient>> searchPatients(String query, int limit, int offset) {
+        return supply(dao -> detached(dao, dao.searchPatients(query, limit, offset)));
+    }
+
+    /** Asynchronous variant of {@link PatientDAO#getPatientSummaries()}. */
+    public CompletableFuture<List<Patient>> getPatientSummaries() {
+        return supply(PatientDAO::getPatientSummaries);
+    }
+
+    /** Asynchronous variant of {@link PatientDAO#getPatientById(String)}. */
+    public CompletableFuture<Patient> getPatientById(String patientId) {
+        return supply(dao -> detached(dao, dao.getPatientById(patientId)));
+    }
+
+    /** Asynchronous variant of {@link PatientDAO#getPatientHistory(String)}. */
+    public CompletableFuture<PatientDAO.PatientHistory> getPatientHistory(String patientId) {
+        return supply(dao -> dao.getPatientHistory(patientId));
+    }
+
+    /** Asynchronous variant of {@link PatientDAO#getPatientIds()}. */
+    public CompletableFuture<List<String>> getPatientIds() {
+        return supply(PatientDAO::getPatientIds);
+    }
+
+    /** Asynchronous variant of {@link PatientDAO#patientExists(String)}. */
+    public CompletableFuture<Boolean> patientExists(String patientId) {
+        return supply(dao -> dao.patientExists(patientId));
+    }
+
+    /** Asynchronous variant of {@link PatientDAO#getPatientEmails()}. */
+    public CompletableFuture<List<String>> getPatientEmails() {
+        return supply(PatientDAO::getPatientEmails);
+    }
+
+    /** Asynchronous variant of {@link PatientDAO#getPatientEmailsByIds(Collection)}. */
+    public CompletableFuture<List<String>> getPatientEmailsByIds(Collection<String> ids) {
+        return supply(dao -> dao.getPatientEmailsByIds(ids));
+    }
+
+    /** Asynchronous variant of {@link PatientDAO#patientEmailExists(String)}. */
+    public CompletableFuture<Boolean> patientEmailExists(String email) {
+        return supply(dao -> dao.patientEmailExists(email));
+    }
+
+    /** Asynchronous variant of {@link PatientDAO#getPatientByEmail(String)}. */
+    public CompletableFuture<Patient> getPatientByEmail(String email) {
+        return supply(dao -> detached(dao, dao.getPatientByEmail(email)));
+    }
+
+    /** Asynchronous variant of {@link PatientDAO#getPatientByFullName(String)}. */
+    public CompletableFuture<Patient> getPatientByFullName(String fullName) {
+        return supply(dao -> detached(dao, dao.getPatientByFullName(fullName)));
+    }
+
+    /** Asynchronous variant of {@link PatientDAO#addPatient(Patient)}. */
+    public CompletableFuture<OperationResult> addPatient(Patient patient) {
+        return supply(dao -> dao.addPatient(patient));
+    }
+
+    /** Asynchronous variant of {@link PatientDAO#updatePatient(Patient)}. */
+    public CompletableFuture<OperationResult> updatePatient(Patient patient) {
+        return supply(dao -> dao.updatePatient(patient));
+    }
+
+    /** Asynchronous variant of {@link PatientDAO#deletePatient(String)}. */
+    public CompletableFuture<OperationResult> deletePatient(String patientId) {
+        return supply(dao -> dao.deletePatient(patientId));
+    }
+
+    /** Asynchronous variant of {@link PatientDAO#deletePatient(String, Integer)}. */
+    public CompletableFuture<OperationResult> deletePatient(String patientId, Integer expectedVersion) {
+        return supply(dao -> dao.deletePatient(patientId, expectedVersion));
+    }
+
+    /**
+     * Fixes the references of loaded patients to their related records before the connection is released.
+     */
+    private static List<Patient> detached(PatientDAO dao, List<Patient> patients) {
+        dao.detachReferences(patients);
+        return patients;
+    }
+
+    private static Patient detached(PatientDAO dao, Patient patient) {
+        if (patient != null) {
+            dao.detachReferences(List.of(patient));
+        }
+        return patient;
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.hospitalassessment.database;
+
+import com.example.hospitalassessment.models.Prescription;
+
+import java.sql.Date;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Non-blocking variant of PrescriptionDAO. Every method runs on the configured executor
+ * and returns a CompletableFuture that can be composed with other loads.
+ * The prescriptions returned come with their drugs, doctors and patients loaded as they were when read, so reading them costs no query.
+ */
+public class AsyncPrescriptionDAO extends AsyncDAO<PrescriptionDAO> {
+
+    /**
+     * Creates an AsyncPrescriptionDAO using the shared DAO executor.
+     *
+     * @param connectionPool the pool providing database connections
+     */
+    public AsyncPrescriptionDAO(ConnectionPool connectionPool) {
+        this(connectionPool, DaoExecutors.defaultExecutor());
+    }
+
+    /**
+     * Creates an AsyncPrescriptionDAO using the given executor.
+     *
+     * @param connectionPool the pool providing database connections
+     * @param executor       the executor running the blocking calls
+     */
+    public AsyncPrescriptionDAO(ConnectionPool connectionPool, Executor executor) {
+        super(connectionPool, executor, DataAccessContext::prescriptions);
+    }
+
+    /** Asynchronous variant of {@link PrescriptionDAO#getAllPrescriptions()}. */
+    public CompletableFuture<List<Prescription>> getAllPrescriptions() {
+        return supply(dao -> detached(dao, dao.getAllPrescriptions()));
+    }
+
+    /** Asynchronous variant of {@link PrescriptionDAO#searchPrescriptions(String, int, int)}. */
+    public CompletableFuture<List<Prescription>> searchPrescriptions(String query, int limit, int offset) {
+        return supply(dao -> detached(dao, dao.searchPrescriptions(query, limit, offset)));
+    }
+
+    /** Asynchronous variant of {@link PrescriptionDAO#getPrescriptionsByIds(Collection)}. */
+    public CompletableFuture<List<Prescription>> getPrescriptionsByIds(Collection<String> ids) {
+        return supply(dao -> detached(dao, dao.getPrescriptionsByIds(ids)));
+    }
+
+    /** Asynchronous variant of {@link PrescriptionDAO#getActivePrescriptions(String, Date, Date)}. */
+    public CompletableFuture<List<Prescription>> getActivePrescriptions(String patientId, Date from, Date until) {
+        return supply(dao -> detached(dao, dao.getActivePrescriptions(patientId, from, until)));
+    }
+
+    /** Asynchronous variant of {@link PrescriptionDAO#getPrescriptionById(String)}. */
+    public CompletableFuture<Prescription> getPrescriptionById(String prescriptionId) {
+        return supply(dao -> detached(dao, dao.getPrescriptionById(prescriptionId)));
+    }
+
+    /** Asynchronous variant of {@link PrescriptionDAO#getPrescriptionIds()}. */
+    public CompletableFuture<List<String>> getPrescriptionIds() {
+        return supply(PrescriptionDAO::getPrescriptionIds);
+    }
+
+    /** Asynchronous variant of {@link PrescriptionDAO#prescriptionExists(String)}. */
+    public CompletableFuture<Boolean> prescriptionExists(String prescriptionId) {
+        return supply(dao -> dao.prescriptionExists(prescriptionId));
+    }
+
+    /** Asynchronous variant of {@link PrescriptionDAO#loadFullComment(Prescription)}. */
+    public CompletableFuture<Prescription> loadFullComment(Prescription prescription) {
+        return supply(dao -> dao.loadFullComment(prescription));
+    }
+
+    /** Asynchronous variant of {@link PrescriptionDAO#addPrescription(Prescription)}. */
+    public CompletableFuture<OperationResult> addPrescription(Prescription prescription) {
+        return supply(dao -> dao.addPrescription(prescription));
+    }
+
+    /** Asynchronous variant of {@link PrescriptionDAO#updatePrescription(Prescription)}. */
+    public CompletableFuture<OperationResult> updatePrescription(Prescription prescription) {
+        return supply(dao -> dao.updatePrescription(prescription));
+    }
+
+    /** Asynchronous variant of {@link PrescriptionDAO#deletePrescription(String)}. */
+    public CompletableFuture<OperationResult> deletePrescription(String prescriptionId) {
+        return supply(dao -> dao.deletePrescription(prescriptionId));
+    }
+
+    /** Asynchronous variant of {@link PrescriptionDAO#deletePrescription(String, Integer)}. */
+    public CompletableFuture<OperationResult> deletePrescription(String prescriptionId, Integer expectedVersion) {
+        return supply(dao -> dao.deletePrescription(prescriptionId, expectedVersion));
+    }
+
+    /**
+     * Fixes the references of loaded prescriptions to their related records before the connection is released.
+     */
+    private static List<Prescription> detached(PrescriptionDAO dao, List<Prescription> prescriptions) {
+        dao.detachReferences(prescriptions);
+        return prescriptions;
+    }
+
+    private static Prescription detached(PrescriptionDAO dao, Prescription prescription) {
+        if (prescription != null) {
+            dao.detachReferences(List.of(prescription));
+        }
+        return prescription;
+    }
+}
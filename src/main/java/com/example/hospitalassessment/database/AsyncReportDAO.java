@@ -0,0 +1,58 @@
+package com.example.hospitalassessment.database;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Non-blocking variant of ReportDAO. Every method runs on the configured executor
+ * and returns a CompletableFuture that can be composed with other loads.
+ */
+public class AsyncReportDAO extends AsyncDAO<ReportDAO> {
+
+    /**
+     * Creates an AsyncReportDAO using the shared DAO executor.
+     *
+     * @param connectionPool the pool providing database connections
+     */
+    public AsyncReportDAO(ConnectionPool connectionPool) {
+        this(connectionPool, DaoExecutors.defaultExecutor());
+    }
+
+    /**
+     * Creates an AsyncReportDAO using the given executor.
+     *
+     * @param connectionPool the pool providing database connections
+     * @param executor       the executor running the blocking calls
+     */
+    public AsyncReportDAO(ConnectionPool connectionPool, Executor executor) {
+        super(connectionPool, executor, context -> new ReportDAO(context.getDatabaseManager()));
+    }
+
+    /** Asynchronous variant of {@link ReportDAO#getDoctorWorkloads(LocalDate, LocalDate)}. */
+    public CompletableFuture<List<ReportDAO.DoctorWorkload>> getDoctorWorkloads(LocalDate from, LocalDate until) {
+        return supply(dao -> dao.getDoctorWorkloads(from, until));
+    }
+
+    /** Asynchronous variant of {@link ReportDAO#getGroupWorkloads(ReportDAO.Grouping, LocalDate, LocalDate)}. */
+    public CompletableFuture<List<ReportDAO.GroupWorkload>> getGroupWorkloads(ReportDAO.Grouping grouping, LocalDate from, LocalDate until) {
+        return supply(dao -> dao.getGroupWorkloads(grouping, from, until));
+    }
+
+    /** Asynchronous variant of {@link ReportDAO#streamPrescriptions(LocalDate, LocalDate, ReportDAO.PrescriptionHandler)}. */
+    public CompletableFuture<Long> streamPrescriptions(LocalDate from, LocalDate until, ReportDAO.PrescriptionHandler handler) {
+        return supply(dao -> dao.streamPrescriptions(from, until, handler));
+    }
+
+    /** Asynchronous variant of {@link ReportDAO#getDrugNames()}. */
+    public CompletableFuture<Map<String, String>> getDrugNames() {
+        return supply(ReportDAO::getDrugNames);
+    }
+
+    /** Asynchronous variant of {@link ReportDAO#getDoctorNames()}. */
+    public CompletableFuture<Map<String, String>> getDoctorNames() {
+        return supply(ReportDAO::getDoctorNames);
+    }
+}
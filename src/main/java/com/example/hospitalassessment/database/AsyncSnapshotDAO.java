@@ -0,0 +1,41 @@
+package com.example.hospitalassessment.database;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Non-blocking variant of SnapshotDAO. Every method runs on the configured executor
+ * and returns a CompletableFuture that can be composed with other loads.
+ * Handlers are called on the executor's thread, one row at a time.
+ */
+public class AsyncSnapshotDAO extends AsyncDAO<SnapshotDAO> {
+
+    /**
+     * Creates an AsyncSnapshotDAO using the shared DAO executor.
+     *
+     * @param connectionPool the pool providing database connections
+     */
+    public AsyncSnapshotDAO(ConnectionPool connectionPool) {
+        this(connectionPool, DaoExecutors.defaultExecutor());
+    }
+
+    /**
+     * Creates an AsyncSnapshotDAO using the given executor.
+     *
+     * @param connectionPool the pool providing database connections
+     * @param executor       the executor running the blocking calls
+     */
+    public AsyncSnapshotDAO(ConnectionPool connectionPool, Executor executor) {
+        super(connectionPool, executor, context -> new SnapshotDAO(context.getDatabaseManager()));
+    }
+
+    /** Asynchronous variant of {@link SnapshotDAO#streamVisits(SnapshotDAO.VisitHandler)}. */
+    public CompletableFuture<Long> streamVisits(SnapshotDAO.VisitHandler handler) {
+        return supply(dao -> dao.streamVisits(handler));
+    }
+
+    /** Asynchronous variant of {@link SnapshotDAO#streamPrescriptions(SnapshotDAO.PrescriptionHandler)}. */
+    public CompletableFuture<Long> streamPrescriptions(SnapshotDAO.PrescriptionHandler handler) {
+        return supply(dao -> dao.streamPrescriptions(handler));
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.hospitalassessment.database;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Non-blocking variant of TrendDAO. Every method runs on the configured executor
+ * and returns a CompletableFuture that can be composed with other loads.
+ */
+public class AsyncTrendDAO extends AsyncDAO<TrendDAO> {
+
+    /**
+     * Creates an AsyncTrendDAO using the shared DAO executor.
+     *
+     * @param connectionPool the pool providing database connections
+     */
+    public AsyncTrendDAO(ConnectionPool connectionPool) {
+        this(connectionPool, DaoExecutors.defaultExecutor());
+    }
+
+    /**
+     * Creates an AsyncTrendDAO using the given executor.
+     *
+     * @param connectionPool the pool providing database connections
+     * @param executor       the executor running the blocking calls
+     */
+    public AsyncTrendDAO(ConnectionPool connectionPool, Executor executor) {
+        super(connectionPool, executor, context -> new TrendDAO(context.getDatabaseManager()));
+    }
+
+    /** Asynchronous variant of {@link TrendDAO#getRollups(TrendDAO.Metric, TrendDAO.Granularity, LocalDate, LocalDate)}. */
+    public CompletableFuture<List<TrendDAO.Rollup>> getRollups(TrendDAO.Metric metric, TrendDAO.Granularity granularity, LocalDate from, LocalDate until) {
+        return supply(dao -> dao.getRollups(metric, granularity, from, until));
+    }
+}
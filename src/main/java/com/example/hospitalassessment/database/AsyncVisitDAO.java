@@ -0,0 +1,96 @@
+package com.example.hospitalassessment.database;
+
+import com.example.hospitalassessment.models.Doctor;
+import com.example.hospitalassessment.models.Visit;
+
+import java.sql.Date;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Non-blocking variant of VisitDAO. Every method runs on the configured executor
+ * and returns a CompletableFuture that can be composed with other loads.
+ * The visits returned come with their patients and doctors loaded as they were when read, so reading them costs no query.
+ */
+public class AsyncVisitDAO extends AsyncDAO<VisitDAO> {
+
+    /**
+     * Creates an AsyncVisitDAO using the shared DAO executor.
+     *
+     * @param connectionPool the pool providing database connections
+     */
+    public AsyncVisitDAO(ConnectionPool connectionPool) {
+        this(connectionPool, DaoExecutors.defaultExecutor());
+    }
+
+    /**
+     * Creates an AsyncVisitDAO using the given executor.
+     *
+     * @param connectionPool the pool providing database connections
+     * @param executor       the executor running the blocking calls
+     */
+    public AsyncVisitDAO(ConnectionPool connectionPool, Executor executor) {
+        super(connectionPool, executor, DataAccessContext::visits);
+    }
+
+    /** Asynchronous variant of {@link VisitDAO#getAllVisits()}. */
+    public CompletableFuture<List<Visit>> getAllVisits() {
+        return supply(dao -> detached(dao, dao.getAllVisits()));
+    }
+
+    /** Asynchronous variant of {@link VisitDAO#searchVisits(String, int, int)}. */
+    public CompletableFuture<List<Visit>> searchVisits(String query, int limit, int offset) {
+        return supply(dao -> detached(dao, dao.searchVisits(query, limit, offset)));
+    }
+
+    /** Asynchronous variant of {@link VisitDAO#getVisitByPrimaryKey(String, String, Date)}. */
+    public CompletableFuture<Visit> getVisitByPrimaryKey(String patientId, String doctorId, Date dateOfVisit) {
+        return supply(dao -> detached(dao, dao.getVisitByPrimaryKey(patientId, doctorId, dateOfVisit)));
+    }
+
+    /** Asynchronous variant of {@link VisitDAO#getMainDoctorForPatient(String)}. */
+    public CompletableFuture<Doctor> getMainDoctorForPatient(String patientId) {
+        return supply(dao -> dao.getMainDoctorForPatient(patientId));
+    }
+
+    /** Asynchronous variant of {@link VisitDAO#loadFullText(Visit)}. */
+    public CompletableFuture<Visit> loadFullText(Visit visit) {
+        return supply(dao -> dao.loadFullText(visit));
+    }
+
+    /** Asynchronous variant of {@link VisitDAO#addVisit(Visit)}. */
+    public CompletableFuture<OperationResult> addVisit(Visit visit) {
+        return supply(dao -> dao.addVisit(visit));
+    }
+
+    /** Asynchronous variant of {@link VisitDAO#updateVisit(Visit)}. */
+    public CompletableFuture<OperationResult> updateVisit(Visit visit) {
+        return supply(dao -> dao.updateVisit(visit));
+    }
+
+    /** Asynchronous variant of {@link VisitDAO#deleteVisit(String, String, Date)}. */
+    public CompletableFuture<OperationResult> deleteVisit(String patientId, String doctorId, Date dateOfVisit) {
+        return supply(dao -> dao.deleteVisit(patientId, doctorId, dateOfVisit));
+    }
+
+    /** Asynchronous variant of {@link VisitDAO#deleteVisit(String, String, Date, Integer)}. */
+    public CompletableFuture<OperationResult> deleteVisit(String patientId, String doctorId, Date dateOfVisit, Integer expectedVersion) {
+        return supply(dao -> dao.deleteVisit(patientId, doctorId, dateOfVisit, expectedVersion));
+    }
+
+    /**
+     * Fixes the references of loaded visits to their related records before the connection is released.
+     */
+    private static List<Visit> detached(VisitDAO dao, List<Visit> visits) {
+        dao.detachReferences(visits);
+        return visits;
+    }
+
+    private static Visit detached(VisitDAO dao, Visit visit) {
+        if (visit != null) {
+            dao.detachReferences(List.of(visit));
+        }
+        return visit;
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.hospitalassessment.database;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ChangeLogDAO reads the change log, a table filled by triggers with one entry per inserted, updated or deleted row.
+ * Entries are numbered in the order they were written, so a reader can ask for everything after the last entry it saw.
+ * See {@code sql/add_change_log.sql} for the table and triggers.
+ */
+public class ChangeLogDAO {
+    private final Connection connection; // Represents the database connection.
+
+    /**
+     * Initializes ChangeLogDAO with a database connection.
+     *
+     * @param dbManager the DatabaseManager providing the database connection
+     */
+    public ChangeLogDAO(DatabaseManager dbManager) {
+        this.connection = dbManager.getConnection();
+    }
+
+    /**
+     * Retrieves the sequence number of the newest change log entry.
+     *
+     * @return the newest sequence number, 0 if the log is empty, or null if the change log cannot be read
+     */
+    public Long getLatestSequence() {
+        String sql = "SELECT COALESCE(MAX(seq), 0) FROM change_log";
+        try (PreparedStatement stmt = connection.prepareStatement(sql);
+             ResultSet rs = stmt.executeQuery()) {
+            if (rs.next()) {
+                return rs.getLong(1);
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Retrieves the change log entries written after the given sequence number, oldest first.
+     *
+     * @param sequence the sequence number of the last entry already seen
+     * @param limit    the maximum number of entries to return
+     * @return the entries after the sequence number, or null if the change log cannot be read
+     */
+    public List<Change> getChangesSince(long sequence, int limit) {
+        String sql = "SELECT seq, table_name, row_key, operation FROM change_log WHERE seq > ? ORDER BY seq LIMIT ?";
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setLong(1, sequence);
+            stmt.setInt(2, limit);
+            ResultSet rs = stmt.executeQuery();
+
+            List<Change> changes = new ArrayList<>();
+            while (rs.next()) {
+                changes.add(new Change(
+                        rs.getLong("seq"),
+                        rs.getString("table_name"),
+                        rs.getString("row_key"),
+                        "D".equals(rs.getString("operation"))
+                ));
+            }
+            return changes;
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * A change to one row.
+     *
+     * @param sequence the position of the change in the log
+     * @param table    the name of the changed table
+     * @param key      the key of the changed row; composite keys are joined with "|"
+     * @param deleted  whether the row was deleted rather than inserted or updated
+     */
+    public record Change(long sequence, String table, String key, boolean deleted) {
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.hospitalassessment.database;
+
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Stops sending work to a database that keeps failing, so that callers are told at once instead of each waiting
+ * for a connection attempt to time out. After a number of consecutive connection failures the breaker opens and
+ * rejects calls for a cool-down period. The first call after that is let through as a trial: the breaker closes
+ * again if it succeeds and reopens if it fails. One breaker is shared by every connection to the same database.
+ */
+public class CircuitBreaker {
+
+    /**
+     * The states of the breaker.
+     */
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private static final int DEFAULT_FAILURE_THRESHOLD = Integer.getInteger("hospital.db.failureThreshold", 3); // Consecutive failures that open the breaker.
+    private static final long DEFAULT_OPEN_MILLIS = Long.getLong("hospital.db.retryAfterMillis", 10_000); // Cool-down before a trial call.
+
+    private final int failureThreshold; // Consecutive failures that open the breaker.
+    private final long openMillis; // How long calls are rejected once the breaker opens.
+    private final List<Consumer<State>> listeners = new CopyOnWriteArrayList<>(); // Notified when the state changes.
+
+    private State state = State.CLOSED; // Current state. Guarded by this.
+    private int failures; // Consecutive connection failures. Guarded by this.
+    private long openedAt; // When the breaker last opened. Guarded by this.
+
+    /**
+     * Creates a breaker with the thresholds set by the {@code hospital.db.failureThreshold}
+     * and {@code hospital.db.retryAfterMillis} system properties, defaulting to 3 failures and 10 seconds.
+     */
+    public CircuitBreaker() {
+        this(DEFAULT_FAILURE_THRESHOLD, DEFAULT_OPEN_MILLIS);
+    }
+
+    /**
+     * Creates a breaker with the given thresholds.
+     *
+     * @param failureThreshold the number of consecutive failures that opens the breaker
+     * @param openMillis       how long calls are rejected once the breaker opens, in milliseconds
+     */
+    public CircuitBreaker(int failureThreshold, long openMillis) {
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openMillis;
+    }
+
+    /**
+     * Registers a listener for state changes. Listeners are called on the thread whose call changed the state.
+     *
+     * @param listener the listener to notify
+     */
+    public void subscribe(Consumer<State> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Checks whether a call may go ahead. Every permitted call must be followed by
+     * {@link #recordSuccess()} or {@link #recordFailure()}.
+     *
+     * @throws SQLException if the breaker is open, or a trial call is already under way
+     */
+    public void acquire() throws SQLException {
+        synchronized (this) {
+            if (state == State.CLOSED) {
+                return;
+            }
+            long remaining = openedAt + openMillis - System.currentTimeMillis();
+            if (state == State.HALF_OPEN || remaining > 0) {
+                throw new SQLTransientConnectionException("The database is unavailable. Retrying in "
+                        + Math.max(1, (remaining + 999) / 1000) + " s.", "08001");
+            }
+            state = State.HALF_OPEN;
+        }
+        notifyListeners(State.HALF_OPEN);
+    }
+
+    /**
+     * Records that the database answered a call, closing the breaker.
+     */
+    public void recordSuccess() {
+        synchronized (this) {
+            failures = 0;
+            if (state == State.CLOSED) {
+                return;
+            }
+            state = State.CLOSED;
+        }
+        notifyListeners(State.CLOSED);
+    }
+
+    /**
+     * Records that a call failed because the database could not be reached,
+     * opening the breaker after too many failures in a row or a failed trial call.
+     */
+    public void recordFailure() {
+        synchronized (this) {
+            failures++;
+            if (state == State.OPEN || (state == State.CLOSED && failures < failureThreshold)) {
+                return;
+            }
+            state = State.OPEN;
+            openedAt = System.currentTimeMillis();
+        }
+        notifyListeners(State.OPEN);
+    }
+
+    /**
+     * Provides the current state.
+     *
+     * @return the state of the breaker
+     */
+    public synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * Tells whether calls are currently let through.
+     *
+     * @return false while the breaker is open
+     */
+    public synchronized boolean isAvailable() {
+        return state != State.OPEN;
+    }
+
+    private void notifyListeners(State newState) {
+        for (Consumer<State> listener : listeners) {
+            try {
+                listener.accept(newState);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
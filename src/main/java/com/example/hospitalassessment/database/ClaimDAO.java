@@ -0,0 +1,197 @@
+package com.example.hospitalassessment.database;
+
+import com.example.hospitalassessment.models.Prescription;
+import com.example.hospitalassessment.models.Visit;
+
+import java.sql.*;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ClaimDAO reads what is needed to decide whether visits and prescriptions can be claimed from the patient's insurer:
+ * each insurer's coverage rules, and the visits and prescriptions themselves with the insurer of their patient.
+ * See {@code sql/add_coverage_rules.sql} for the rules table.
+ */
+public class ClaimDAO {
+    private final Connection connection; // Represents the database connection.
+
+    /**
+     * Initializes ClaimDAO with a database connection.
+     *
+     * @param dbManager the DatabaseManager providing the database connection
+     */
+    public ClaimDAO(DatabaseManager dbManager) {
+        this.connection = dbManager.getConnection();
+    }
+
+    /**
+     * Retrieves every insurer's coverage rules.
+     *
+     * @return the rules, or an empty list if an error occurs
+     */
+    public List<CoverageRule> getCoverageRules() {
+        List<CoverageRule> rules = new ArrayList<>();
+        String sql = "SELECT insuranceid, rule_type, drugid, max_visits, valid_from, valid_until FROM coverage_rule";
+        try (PreparedStatement stmt = connection.prepareStatement(sql);
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                rules.add(new CoverageRule(
+                        rs.getString("insuranceid"),
+                        rs.getString("rule_type"),
+                        rs.getString("drugid"),
+                        rs.getObject("max_visits") == null ? null : rs.getInt("max_visits"),
+                        toLocalDate(rs.getDate("valid_from")),
+                        toLocalDate(rs.getDate("valid_until"))
+                ));
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return rules;
+    }
+
+    /**
+     * Retrieves every visit as a claim, numbered within its patient's visits of the same calendar year.
+     *
+     * @return the visit claims, or an empty list if an error occurs
+     */
+    public List<Claim> getVisitClaims() {
+        List<Claim> claims = new ArrayList<>();
+        String sql = "SELECT v.patientid, v.doctorid, v.dateofvisit, p.insuranceid, "
+                + "ROW_NUMBER() OVER (PARTITION BY v.patientid, YEAR(v.dateofvisit) ORDER BY v.dateofvisit, v.doctorid) AS visit_number "
+                + "FROM visit v JOIN patient p ON p.patientid = v.patientid";
+        try (PreparedStatement stmt = connection.prepareStatement(sql);
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                claims.add(new Claim(
+                        Claim.Type.VISIT,
+                        rs.getString("patientid") + "|" + rs.getString("doctorid") + "|" + rs.getDate("dateofvisit"),
+                        rs.getString("insuranceid"),
+                        rs.getDate("dateofvisit").toLocalDate(),
+                        null,
+                        rs.getInt("visit_number")
+                ));
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return claims;
+    }
+
+    /**
+     * Retrieves every prescription as a claim.
+     *
+     * @return the prescription claims, or an empty list if an error occurs
+     */
+    public List<Claim> getPrescriptionClaims() {
+        List<Claim> claims = new ArrayList<>();
+        String sql = "SELECT pr.prescriptionid, pr.drugid, pr.dateprescribed, p.insuranceid "
+                + "FROM prescription pr JOIN patient p ON p.patientid = pr.patientid";
+        try (PreparedStatement stmt = connection.prepareStatement(sql);
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                claims.add(new Claim(
+                        Claim.Type.PRESCRIPTION,
+                        rs.getString("prescriptionid"),
+                        rs.getString("insuranceid"),
+                        rs.getDate("dateprescribed").toLocalDate(),
+                        rs.getString("drugid"),
+                        0
+                ));
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return claims;
+    }
+
+    /**
+     * Describes a visit about to be saved as a claim, numbering it after the patient's other visits of the same year.
+     *
+     * @param visit the visit
+     * @return the claim, or null if the patient does not exist or an error occurs
+     */
+    public Claim getVisitClaim(Visit visit) {
+        String patientId = visit.getPatientRef().getId();
+        String doctorId = visit.getDoctorRef().getId();
+        Date date = visit.getDateOfVisit();
+        String sql = "SELECT p.insuranceid, (SELECT COUNT(*) FROM visit v WHERE v.patientid = p.patientid"
+                + " AND v.dateofvisit >= ? AND (v.dateofvisit < ? OR (v.dateofvisit = ? AND v.doctorid < ?))) AS earlier_visits"
+                + " FROM patient p WHERE p.patientid = ?";
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setDate(1, Date.valueOf(date.toLocalDate().withDayOfYear(1)));
+            stmt.setDate(2, date);
+            stmt.setDate(3, date);
+            stmt.setString(4, doctorId);
+            stmt.setString(5, patientId);
+            ResultSet rs = stmt.executeQuery();
+            if (rs.next()) {
+                return new Claim(Claim.Type.VISIT, patientId + "|" + doctorId + "|" + date, rs.getString("insuranceid"),
+                        date.toLocalDate(), null, rs.getInt("earlier_visits") + 1);
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Describes a prescription about to be saved as a claim.
+     *
+     * @param prescription the prescription
+     * @return the claim, or null if the patient does not exist or an error occurs
+     */
+    public Claim getPrescriptionClaim(Prescription prescription) {
+        String sql = "SELECT insuranceid FROM patient WHERE patientid = ?";
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setString(1, prescription.getPatientRef().getId());
+            ResultSet rs = stmt.executeQuery();
+            if (rs.next()) {
+                return new Claim(Claim.Type.PRESCRIPTION, prescription.getId(), rs.getString("insuranceid"),
+                        prescription.getDatePrescribed().toLocalDate(), prescription.getDrugRef().getId(), 0);
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    private static LocalDate toLocalDate(Date date) {
+        return date == null ? null : date.toLocalDate();
+    }
+
+    /**
+     * One coverage rule of an insurer. Which fields are used depends on the rule type; see {@code sql/add_coverage_rules.sql}.
+     *
+     * @param insuranceId the insurer the rule belongs to
+     * @param type        COVERED_DRUG, EXCLUDED_DRUG, VISIT_LIMIT or COVERAGE_PERIOD
+     * @param drugId      the drug of a drug rule
+     * @param maxVisits   the visits per year of a visit limit
+     * @param validFrom   the first covered day of a coverage period, or null if open
+     * @param validUntil  the last covered day of a coverage period, or null if open
+     */
+    public record CoverageRule(String insuranceId, String type, String drugId, Integer maxVisits,
+                               LocalDate validFrom, LocalDate validUntil) {
+    }
+
+    /**
+     * A visit or prescription considered as a claim against the patient's insurer.
+     *
+     * @param type        whether a visit or a prescription is claimed
+     * @param key         the key of the visit or prescription; visit keys are joined with "|" as in the change log
+     * @param insuranceId the patient's insurer, or null if the patient is not insured
+     * @param date        the day of the visit, or the day the prescription was written
+     * @param drugId      the prescribed drug, or null for a visit
+     * @param visitNumber for a visit, its position among the patient's visits of the same calendar year, counting from 1
+     */
+    public record Claim(Type type, String key, String insuranceId, LocalDate date, String drugId, int visitNumber) {
+
+        /**
+         * What is claimed.
+         */
+        public enum Type {
+            VISIT, PRESCRIPTION
+        }
+    }
+}
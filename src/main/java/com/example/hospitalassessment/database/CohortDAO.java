@@ -0,0 +1,128 @@
+package com.example.hospitalassessment.database;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * CohortDAO reads only the columns patient cohorts are formed by: each patient's insurer, the doctor and diagnosis of
+ * each visit, the drug of each prescription, and each doctor's specialization.
+ */
+public class CohortDAO {
+    public static final int DIAGNOSIS_LENGTH = 128; // Characters of a diagnosis cohorts are formed by, as in the trend rollups.
+
+    private final Connection connection; // Represents the database connection.
+
+    /**
+     * Initializes CohortDAO with a database connection.
+     *
+     * @param dbManager the DatabaseManager providing the database connection
+     */
+    public CohortDAO(DatabaseManager dbManager) {
+        this.connection = dbManager.getConnection();
+    }
+
+    /**
+     * Retrieves the insurer of every patient.
+     *
+     * @return the insurance ID of each patient by patient ID, null for patients without insurance,
+     * or an empty map if an error occurs
+     */
+    public Map<String, String> getPatientInsurers() {
+        Map<String, String> insurers = new HashMap<>();
+        String sql = "SELECT patientid, insuranceid FROM patient";
+        try (PreparedStatement stmt = connection.prepareStatement(sql);
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                insurers.put(rs.getString("patientid"), rs.getString("insuranceid"));
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return insurers;
+    }
+
+    /**
+     * Retrieves the doctor and diagnosis of every visit, with the diagnosis trimmed and cut to
+     * {@link #DIAGNOSIS_LENGTH} characters.
+     *
+     * @return one entry per visit, or an empty list if an error occurs
+     */
+    public List<VisitEntry> getVisitEntries() {
+        List<VisitEntry> entries = new ArrayList<>();
+        String sql = "SELECT patientid, doctorid, dateofvisit, LEFT(TRIM(diagnosis), " + DIAGNOSIS_LENGTH + ") AS diagnosis FROM visit";
+        try (PreparedStatement stmt = connection.prepareStatement(sql);
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                String patientId = rs.getString("patientid");
+                String doctorId = rs.getString("doctorid");
+                entries.add(new VisitEntry(patientId + "|" + doctorId + "|" + rs.getDate("dateofvisit"), patientId, doctorId,
+                        rs.getString("diagnosis")));
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return entries;
+    }
+
+    /**
+     * Retrieves the patient and drug of every prescription.
+     *
+     * @return one entry per prescription, or an empty list if an error occurs
+     */
+    public List<PrescriptionEntry> getPrescriptionEntries() {
+        List<PrescriptionEntry> entries = new ArrayList<>();
+        String sql = "SELECT prescriptionid, patientid, drugid FROM prescription";
+        try (PreparedStatement stmt = connection.prepareStatement(sql);
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                entries.add(new PrescriptionEntry(rs.getString("prescriptionid"), rs.getString("patientid"), rs.getString("drugid")));
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return entries;
+    }
+
+    /**
+     * Retrieves the specialization of every doctor.
+     *
+     * @return the specialization of each doctor by doctor ID, or an empty map if an error occurs
+     */
+    public Map<String, String> getDoctorSpecializations() {
+        Map<String, String> specializations = new HashMap<>();
+        String sql = "SELECT doctorid, specialization FROM doctor";
+        try (PreparedStatement stmt = connection.prepareStatement(sql);
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                specializations.put(rs.getString("doctorid"), rs.getString("specialization"));
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return specializations;
+    }
+
+    /**
+     * What a visit contributes to cohorts.
+     *
+     * @param key       the visit's change key, "patientid|doctorid|yyyy-mm-dd"
+     * @param patientId the patient visiting
+     * @param doctorId  the doctor seen
+     * @param diagnosis the diagnosis, trimmed and cut to {@link #DIAGNOSIS_LENGTH} characters, or null if there is none
+     */
+    public record VisitEntry(String key, String patientId, String doctorId, String diagnosis) {
+    }
+
+    /**
+     * What a prescription contributes to cohorts.
+     *
+     * @param prescriptionId the ID of the prescription
+     * @param patientId      the patient it was written for
+     * @param drugId         the drug prescribed
+     */
+    public record PrescriptionEntry(String prescriptionId, String patientId, String drugId) {
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.hospitalassessment.database;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A fixed-size pool of DatabaseManager instances, each owning its own database connection.
+ * Allows concurrent callers to run DAO operations without sharing a single connection.
+ * Every connection keeps one {@link DataAccessContext} for as long as the pool is open, so its reference caches stay warm
+ * between borrowers, and all the contexts announce their writes on one {@link EntityEventBus}.
+ */
+public class ConnectionPool {
+    private static final long BORROW_TIMEOUT_SECONDS = 30; // Maximum time to wait for a free connection.
+
+    private final List<DatabaseManager> managers = new ArrayList<>(); // Every connection owned by the pool.
+    private final CircuitBreaker circuitBreaker; // Shared by every connection of the pool.
+    private final BlockingQueue<DatabaseManager> available; // Connections that are currently free.
+    private final EntityEventBus events = new EntityEventBus(); // Announces writes made through any connection of the pool.
+    private final Map<DatabaseManager, DataAccessContext> contexts = new IdentityHashMap<>(); // Data access context of each connection.
+
+    /**
+     * Opens the given number of connections to the database.
+     *
+     * @param URL      the database URL
+     * @param USER     the username for the database
+     * @param PASSWORD the password for the database
+     * @param size     the number of connections to open
+     */
+    public ConnectionPool(String URL, String USER, String PASSWORD, int size) {
+        this(URL, USER, PASSWORD, size, new CircuitBreaker());
+    }
+
+    /**
+     * Opens the given number of connections to the database, all guarded by the given circuit breaker.
+     *
+     * @param URL            the database URL
+     * @param USER           the username for the database
+     * @param PASSWORD       the password for the database
+     * @param size           the number of connections to open
+     * @param circuitBreaker the circuit breaker shared by every connection to the database
+     */
+    public ConnectionPool(String URL, String USER, String PASSWORD, int size, CircuitBreaker circuitBreaker) {
+        if (size < 1) {
+            throw new IllegalArgumentException("Connection pool size must be at least 1");
+        }
+
+        this.circuitBreaker = circuitBreaker;
+        available = new ArrayBlockingQueue<>(size);
+        for (int i = 0; i < size; i++) {
+            DatabaseManager manager = new DatabaseManager(URL, USER, PASSWORD, circuitBreaker);
+            managers.add(manager);
+            contexts.put(manager, new DataAccessContext(manager, events));
+            available.add(manager);
+        }
+    }
+
+    /**
+     * Takes a free DatabaseManager from the pool, waiting until one is released if necessary.
+     *
+     * @return a DatabaseManager reserved for the caller until it is released
+     */
+    public DatabaseManager borrow() {
+        try {
+            DatabaseManager manager = available.poll(BORROW_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            if (manager == null) {
+                throw new IllegalStateException("Timed out waiting for a free database connection");
+            }
+            return manager;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a database connection", e);
+        }
+    }
+
+    /**
+     * Returns a previously borrowed DatabaseManager to the pool.
+     *
+     * @param manager the DatabaseManager to release
+     */
+    public void release(DatabaseManager manager) {
+        if (manager != null) {
+            available.offer(manager);
+        }
+    }
+
+    /**
+     * Provides the data access context of a borrowed connection, whose DAOs and reference caches are kept between
+     * borrowers. It may only be used until the connection is released; entities it returns must have their references
+     * resolved before then.
+     *
+     * @param manager a DatabaseManager borrowed from this pool
+     * @return the connection's data access context
+     */
+    public DataAccessContext context(DatabaseManager manager) {
+        DataAccessContext context = contexts.get(manager);
+        if (context == null) {
+            throw new IllegalArgumentException("The connection does not belong to this pool");
+        }
+        return context;
+    }
+
+    /**
+     * Provides the bus on which writes through any connection of the pool are announced.
+     * Changes made elsewhere are published on it too, so that the pool's reference caches drop the changed records.
+     *
+     * @return the pool's event bus
+     */
+    public EntityEventBus events() {
+        return events;
+    }
+
+    /**
+     * Provides the circuit breaker shared by the pool's connections.
+     *
+     * @return the circuit breaker
+     */
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    /**
+     * Provides the number of connections owned by the pool.
+     *
+     * @return the pool size
+     */
+    public int size() {
+        return managers.size();
+    }
+
+    /**
+     * Closes every connection owned by the pool.
+     */
+    public void close() {
+        available.clear();
+        for (DatabaseManager manager : managers) {
+            manager.closeConnection();
+        }
+    }
+}
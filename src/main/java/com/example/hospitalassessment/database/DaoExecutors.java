@@ -0,0 +1,70 @@
+package com.example.hospitalassessment.database;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Provides the executor used by the asynchronous DAO variants.
+ * Defaults to one virtual thread per task; set the system property {@code hospital.dao.threads}
+ * to a positive number to use a fixed pool of platform threads instead.
+ */
+public final class DaoExecutors {
+    private static volatile Executor defaultExecutor; // Lazily created shared executor.
+
+    private DaoExecutors() {
+    }
+
+    /**
+     * Returns the shared executor for asynchronous DAO work, creating it on first use.
+     *
+     * @return the shared executor
+     */
+    public static Executor defaultExecutor() {
+        Executor executor = defaultExecutor;
+        if (executor == null) {
+            synchronized (DaoExecutors.class) {
+                if (defaultExecutor == null) {
+                    defaultExecutor = createExecutor(System.getProperty("hospital.dao.threads"));
+                }
+                executor = defaultExecutor;
+            }
+        }
+        return executor;
+    }
+
+    /**
+     * Replaces the shared executor, e.g. to run asynchronous DAO work on a caller-managed pool.
+     *
+     * @param executor the executor to use from now on
+     */
+    public static void setDefaultExecutor(Executor executor) {
+        synchronized (DaoExecutors.class) {
+            defaultExecutor = executor;
+        }
+    }
+
+    /**
+     * Shuts the shared executor down if it is one created by this class.
+     */
+    public static void shutdown() {
+        synchronized (DaoExecutors.class) {
+            if (defaultExecutor instanceof ExecutorService service) {
+                service.shutdown();
+            }
+            defaultExecutor = null;
+        }
+    }
+
+    private static Executor createExecutor(String threads) {
+        if (threads == null || threads.isBlank()) {
+            return Executors.newVirtualThreadPerTaskExecutor();
+        }
+        int size = Integer.parseInt(threads.trim());
+        return Executors.newFixedThreadPool(size, runnable -> {
+            Thread thread = new Thread(runnable, "dao-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
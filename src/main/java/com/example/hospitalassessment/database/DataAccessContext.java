@@ -0,0 +1,164 @@
+package com.example.hospitalassessment.database;
+
+import com.example.hospitalassessment.models.*;
+
+/**
+ * Shares one set of DAOs, reference caches and an {@link EntityEventBus} between everything using a connection.
+ * DAOs that need other DAOs take them from here instead of constructing their own, so every reader of
+ * a record goes through the same cache, and every write invalidates that cache through the bus.
+ * DAOs and caches are created on first use.
+ */
+public class DataAccessContext {
+    private final DatabaseManager dbManager; // Connection shared by every DAO of the context.
+    private final EntityEventBus events; // Announces every write made through the context.
+
+    private DoctorDAO doctorDAO; // Shared doctor DAO, created on first use.
+    private PatientDAO patientDAO; // Shared patient DAO, created on first use.
+    private DrugDAO drugDAO; // Shared drug DAO, created on first use.
+    private InsuranceDAO insuranceDAO; // Shared insurance DAO, created on first use.
+    private VisitDAO visitDAO; // Shared visit DAO, created on first use.
+    private PrescriptionDAO prescriptionDAO; // Shared prescription DAO, created on first use.
+    private ClaimDAO claimDAO; // Shared claim DAO, created on first use.
+
+    private ReferenceCache<Doctor> doctorRefs; // Doctors referenced by visits and prescriptions.
+    private ReferenceCache<Patient> patientRefs; // Patients referenced by visits and prescriptions.
+    private ReferenceCache<Drug> drugRefs; // Drugs referenced by prescriptions.
+    private ReferenceCache<Insurance> insuranceRefs; // Insurance companies referenced by patients.
+    private ReferenceCache<Doctor> mainDoctorRefs; // Doctor each patient visited most, keyed by patient ID.
+
+    /**
+     * Creates a context for a connection.
+     *
+     * @param dbManager the DatabaseManager providing the connection
+     */
+    public DataAccessContext(DatabaseManager dbManager) {
+        this(dbManager, new EntityEventBus());
+    }
+
+    /**
+     * Creates a context for a connection that announces its writes on a bus shared with other contexts,
+     * so that a write through any of them drops the record from the caches of all of them.
+     *
+     * @param dbManager the DatabaseManager providing the connection
+     * @param events    the bus shared with the other contexts
+     */
+    public DataAccessContext(DatabaseManager dbManager, EntityEventBus events) {
+        this.dbManager = dbManager;
+        this.events = events;
+    }
+
+    public DatabaseManager getDatabaseManager() {
+        return dbManager;
+    }
+
+    /**
+     * Provides the bus on which the context's DAOs announce their writes.
+     *
+     * @return the context's event bus
+     */
+    public EntityEventBus events() {
+        return events;
+    }
+
+    public synchronized DoctorDAO doctors() {
+        if (doctorDAO == null) {
+            doctorDAO = new DoctorDAO(this);
+        }
+        return doctorDAO;
+    }
+
+    public synchronized PatientDAO patients() {
+        if (patientDAO == null) {
+            patientDAO = new PatientDAO(this);
+        }
+        return patientDAO;
+    }
+
+    public synchronized DrugDAO drugs() {
+        if (drugDAO == null) {
+            drugDAO = new DrugDAO(this);
+        }
+        return drugDAO;
+    }
+
+    public synchronized InsuranceDAO insurance() {
+        if (insuranceDAO == null) {
+            insuranceDAO = new InsuranceDAO(this);
+        }
+        return insuranceDAO;
+    }
+
+    public synchronized VisitDAO visits() {
+        if (visitDAO == null) {
+            visitDAO = new VisitDAO(this);
+        }
+        return visitDAO;
+    }
+
+    public synchronized PrescriptionDAO prescriptions() {
+        if (prescriptionDAO == null) {
+            prescriptionDAO = new PrescriptionDAO(this);
+        }
+        return prescriptionDAO;
+    }
+
+    public synchronized ClaimDAO claims() {
+        if (claimDAO == null) {
+            claimDAO = new ClaimDAO(dbManager);
+        }
+        return claimDAO;
+    }
+
+    public synchronized ReferenceCache<Doctor> doctorReferences() {
+        if (doctorRefs == null) {
+            doctorRefs = invalidatedOnChange(Doctor.class, new ReferenceCache<>(doctors()::getDoctorSummariesByIds, dbManager::isAvailable));
+        }
+        return doctorRefs;
+    }
+
+    public synchronized ReferenceCache<Patient> patientReferences() {
+        if (patientRefs == null) {
+            patientRefs = invalidatedOnChange(Patient.class, new ReferenceCache<>(patients()::getPatientSummariesByIds, dbManager::isAvailable));
+        }
+        return patientRefs;
+    }
+
+    public synchronized ReferenceCache<Drug> drugReferences() {
+        if (drugRefs == null) {
+            drugRefs = invalidatedOnChange(Drug.class, new ReferenceCache<>(drugs()::getDrugSummariesByIds, dbManager::isAvailable));
+        }
+        return drugRefs;
+    }
+
+    public synchronized ReferenceCache<Insurance> insuranceReferences() {
+        if (insuranceRefs == null) {
+            insuranceRefs = invalidatedOnChange(Insurance.class, new ReferenceCache<>(insurance()::getInsuranceByIds, dbManager::isAvailable));
+        }
+        return insuranceRefs;
+    }
+
+    /**
+     * Provides the doctor each patient has visited most, keyed by patient ID.
+     * A patient's entry is dropped when one of their visits changes, and every entry when a doctor changes.
+     *
+     * @return the main doctor cache
+     */
+    public synchronized ReferenceCache<Doctor> mainDoctorReferences() {
+        if (mainDoctorRefs == null) {
+            ReferenceCache<Doctor> cache = ReferenceCache.keyed(visits()::getMainDoctorsForPatients, dbManager::isAvailable);
+            events.subscribe(Visit.class, event -> cache.invalidate(event.key().substring(0, event.key().indexOf('|'))));
+            events.subscribe(Doctor.class, event -> cache.clear());
+            mainDoctorRefs = cache;
+        }
+        return mainDoctorRefs;
+    }
+
+    /**
+     * Drops a record from the cache whenever it is created, updated or deleted,
+     * including a record that was cached as missing before it was created.
+     */
+    private <T extends BaseEntity> ReferenceCache<T> invalidatedOnChange(Class<T> type, ReferenceCache<T> cache) {
+        events.subscribe(type, event -> cache.invalidate(event.key()));
+        return cache;
+    }
+}
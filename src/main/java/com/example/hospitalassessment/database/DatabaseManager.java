@@ -1,14 +1,24 @@
 package com.example.hospitalassessment.database;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * Manages the database connection lifecycle for the application.
+ * The connection it provides reconnects by itself after the database restarts or the network fails,
+ * so DAOs can keep it for their whole lifetime.
  */
 public class DatabaseManager {
-    private Connection connection; // Represents the database connection.
+    static final int PREVIEW_LENGTH = 120; // Characters of long text columns fetched for list views.
+
+    private final ResilientConnection resilientConnection; // Replaces the physical connection when it is lost.
+    private final CircuitBreaker circuitBreaker; // Rejects calls at once while the database is unreachable.
+    private final Connection connection; // Represents the database connection.
 
     /**
      * Establishes a connection to the database using the provided credentials and URL.
@@ -18,8 +28,23 @@ public class DatabaseManager {
      * @param PASSWORD the password for the database
      */
     public DatabaseManager(String URL, String USER, String PASSWORD) {
+        this(URL, USER, PASSWORD, new CircuitBreaker());
+    }
+
+    /**
+     * Establishes a connection to the database that shares a circuit breaker with other connections to it,
+     * so that they all stop waiting on the database as soon as it is found to be unreachable.
+     *
+     * @param URL            the database URL
+     * @param USER           the username for the database
+     * @param PASSWORD       the password for the database
+     * @param circuitBreaker the circuit breaker shared by every connection to the database
+     */
+    public DatabaseManager(String URL, String USER, String PASSWORD, CircuitBreaker circuitBreaker) {
         try {
-            connection = DriverManager.getConnection(URL, USER, PASSWORD);
+            resilientConnection = ResilientConnection.open(URL, USER, PASSWORD, circuitBreaker);
+            this.circuitBreaker = circuitBreaker;
+            connection = resilientConnection.connection();
             System.out.println("Database connected successfully!");
         } catch (SQLException e) {
             throw new RuntimeException("Error connecting to the database", e);
@@ -35,6 +60,88 @@ public class DatabaseManager {
         return connection;
     }
 
+    /**
+     * Provides the circuit breaker guarding this connection.
+     *
+     * @return the circuit breaker
+     */
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    /**
+     * Tells whether the database can currently be reached. After a failed read, callers use this to tell an outage
+     * from an empty result, and keep showing the data they already have.
+     *
+     * @return false if the last call on this connection lost it or the circuit breaker is open
+     */
+    public boolean isAvailable() {
+        return resilientConnection.isHealthy() && circuitBreaker.isAvailable();
+    }
+
+    /**
+     * Converts free text into a LIKE pattern that matches any value containing the text.
+     * Wildcard characters in the text are escaped so they are matched literally.
+     *
+     * @param text the text to search for, or null to match everything
+     * @return a LIKE pattern for use with a prepared statement
+     */
+    static String toLikePattern(String text) {
+        if (text == null || text.isBlank()) {
+            return "%";
+        }
+        String escaped = text.trim()
+                .replace("\\", "\\\\")
+                .replace("%", "\\%")
+                .replace("_", "\\_");
+        return "%" + escaped + "%";
+    }
+
+    /**
+     * Builds a comma-separated list of parameter markers for an IN clause.
+     *
+     * @param count the number of markers, at least 1
+     * @return the markers, e.g. "?, ?, ?" for a count of 3
+     */
+    static String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
+
+    /**
+     * Builds a select expression that fetches at most {@link #PREVIEW_LENGTH} characters of a text column,
+     * appending an ellipsis when the value was shortened. The expression keeps the column's name.
+     *
+     * @param column the text column to shorten
+     * @return a select list expression aliased to the column name
+     */
+    static String previewColumn(String column) {
+        return "IF(CHAR_LENGTH(" + column + ") > " + PREVIEW_LENGTH + ", CONCAT(LEFT(" + column + ", " + PREVIEW_LENGTH + "), '...'), "
+                + column + ") AS " + column;
+    }
+
+    /**
+     * Runs a query selecting a single text column and collects its non-null values,
+     * e.g. to list every key already in use.
+     *
+     * @param connection the connection to run the query on
+     * @param sql        the query, selecting one column
+     * @return the values of the column, or an empty list if an error occurs
+     */
+    static List<String> queryColumn(Connection connection, String sql) {
+        List<String> values = new ArrayList<>();
+        try (PreparedStatement stmt = connection.prepareStatement(sql);
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                if (rs.getString(1) != null) {
+                    values.add(rs.getString(1));
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return values;
+    }
+
     /**
      * Closes the database connection if it is open.
      * Logs confirmation or prints the stack trace in case of an error.
@@ -1,7 +1,6 @@
 package com.example.hospitalassessment.database;
 
 import com.example.hospitalassessment.models.Doctor;
-import javafx.scene.control.Alert;
 
 import java.sql.*;
 import java.util.*;
@@ -11,7 +10,11 @@ import java.util.*;
  * It utilizes a database connection provided by DatabaseManager for executing queries.
  */
 public class DoctorDAO {
+    private static final String COLUMNS = "doctorid, firstname, surname, address, email, specialization, hospital, version"; // Columns of a full doctor record.
+    private static final String SUMMARY_COLUMNS = "doctorid, firstname, surname"; // Columns needed to reference a doctor by name.
+
     private final Connection connection; // Represents the database connection.
+    private final EntityEventBus events; // Announces successful writes.
 
     /**
      * Initializes DoctorDAO with a database connection.
@@ -19,7 +22,17 @@ public class DoctorDAO {
      * @param dbManager the DatabaseManager providing the database connection
      */
     public DoctorDAO(DatabaseManager dbManager) {
-        this.connection = dbManager.getConnection();
+        this(new DataAccessContext(dbManager));
+    }
+
+    /**
+     * Initializes DoctorDAO within a shared data access context, announcing writes on its event bus.
+     *
+     * @param context the context providing the connection and the event bus
+     */
+    public DoctorDAO(DataAccessContext context) {
+        this.connection = context.getDatabaseManager().getConnection();
+        this.events = context.events();
     }
 
     /**
@@ -29,7 +42,7 @@ public class DoctorDAO {
      */
     public List<Doctor> getAllDoctors() {
         List<Doctor> doctors = new ArrayList<>();
-        String sql = "SELECT * FROM doctor";
+        String sql = "SELECT " + COLUMNS + " FROM doctor";
 
         try (PreparedStatement stmt = connection.prepareStatement(sql);
              ResultSet rs = stmt.executeQuery()) {
@@ -43,6 +56,32 @@ public class DoctorDAO {
         return doctors;
     }
 
+    /**
+     * Retrieves a page of doctors whose ID, name, specialization or hospital contains the given text.
+     *
+     * @param query  the text to search for, or null to match every doctor
+     * @param limit  the maximum number of doctors to return
+     * @param offset the number of matching doctors to skip
+     * @return a list of matching Doctor objects ordered by ID
+     */
+    public List<Doctor> searchDoctors(String query, int limit, int offset) {
+        List<Doctor> doctors = new ArrayList<>();
+        String sql = "SELECT " + COLUMNS + " FROM doctor WHERE CONCAT_WS(' ', doctorid, firstname, surname, specialization, hospital) LIKE ? ORDER BY doctorid LIMIT ? OFFSET ?";
+
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setString(1, DatabaseManager.toLikePattern(query));
+            stmt.setInt(2, limit);
+            stmt.setInt(3, offset);
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                doctors.add(extractDoctorFromResultSet(rs));
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return doctors;
+    }
+
     /**
      * Retrieves a Doctor object from the database based on the provided doctor ID.
      *
@@ -50,7 +89,7 @@ public class DoctorDAO {
      * @return a Doctor object if found, otherwise null.
      */
     public Doctor getDoctorById(String doctorId) {
-        String sql = "SELECT * FROM doctor WHERE doctorid = ?";
+        String sql = "SELECT " + COLUMNS + " FROM doctor WHERE doctorid = ?";
         try (PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setString(1, doctorId);
             ResultSet rs = stmt.executeQuery();
@@ -63,6 +102,103 @@ public class DoctorDAO {
         return null;
     }
 
+    /**
+     * Retrieves the ID and name of every doctor, for pickers and other name-only listings.
+     *
+     * @return a list of summary Doctor objects in which only the ID, first name and surname are set
+     */
+    public List<Doctor> getDoctorSummaries() {
+        List<Doctor> doctors = new ArrayList<>();
+        String sql = "SELECT " + SUMMARY_COLUMNS + " FROM doctor";
+
+        try (PreparedStatement stmt = connection.prepareStatement(sql);
+             ResultSet rs = stmt.executeQuery()) {
+
+            while (rs.next()) {
+                doctors.add(extractDoctorSummaryFromResultSet(rs));
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return doctors;
+    }
+
+    /**
+     * Retrieves the ID and name of a doctor, for use when the doctor is only referenced from another record.
+     *
+     * @param doctorId the unique identifier of the doctor
+     * @return a summary Doctor object in which only the ID, first name and surname are set, or null if not found
+     */
+    public Doctor getDoctorSummaryById(String doctorId) {
+        String sql = "SELECT " + SUMMARY_COLUMNS + " FROM doctor WHERE doctorid = ?";
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setString(1, doctorId);
+            ResultSet rs = stmt.executeQuery();
+            if (rs.next()) {
+                return extractDoctorSummaryFromResultSet(rs);
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Retrieves the ID and name of every doctor whose IDs are in the given collection with a single query.
+     *
+     * @param ids the IDs to look up; IDs that do not exist are skipped
+     * @return a list of the matching Doctor objects in no particular order
+     */
+    public List<Doctor> getDoctorSummariesByIds(Collection<String> ids) {
+        List<Doctor> doctors = new ArrayList<>();
+        if (ids.isEmpty()) {
+            return doctors;
+        }
+        String sql = "SELECT " + SUMMARY_COLUMNS + " FROM doctor WHERE doctorid IN (" + DatabaseManager.placeholders(ids.size()) + ")";
+
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            int index = 1;
+            for (String id : ids) {
+                stmt.setString(index++, id);
+            }
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                doctors.add(extractDoctorSummaryFromResultSet(rs));
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return doctors;
+    }
+
+    /**
+     * Retrieves the full record of every doctor whose ID is in the given collection with a single query.
+     *
+     * @param ids the IDs to look up; IDs that do not exist are skipped
+     * @return a list of the matching Doctor objects in no particular order
+     */
+    public List<Doctor> getDoctorsByIds(Collection<String> ids) {
+        List<Doctor> doctors = new ArrayList<>();
+        if (ids.isEmpty()) {
+            return doctors;
+        }
+        String sql = "SELECT " + COLUMNS + " FROM doctor WHERE doctorid IN (" + DatabaseManager.placeholders(ids.size()) + ")";
+
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            int index = 1;
+            for (String id : ids) {
+                stmt.setString(index++, id);
+            }
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                doctors.add(extractDoctorFromResultSet(rs));
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return doctors;
+    }
+
     /**
      * Retrieves a Doctor object from the database based on the provided email.
      *
@@ -70,7 +206,7 @@ public class DoctorDAO {
      * @return the Doctor object if found, or null if no matching doctor exists
      */
     public Doctor getDoctorByEmail(String email) {
-        String sql = "SELECT * FROM doctor WHERE email = ?";
+        String sql = "SELECT " + COLUMNS + " FROM doctor WHERE email = ?";
         try (PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setString(1, email);
             ResultSet rs = stmt.executeQuery();
@@ -90,7 +226,7 @@ public class DoctorDAO {
      * @return a Doctor object if found, otherwise null
      */
     public Doctor getDoctorByFullName(String fullName) {
-        String sql = "SELECT * FROM doctor WHERE CONCAT(firstname, ' ', surname) = ?";
+        String sql = "SELECT " + COLUMNS + " FROM doctor WHERE CONCAT(firstname, ' ', surname) = ?";
         try (PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setString(1, fullName);
             ResultSet rs = stmt.executeQuery();
@@ -111,7 +247,7 @@ public class DoctorDAO {
      * @throws SQLException if a database access error occurs
      */
     private Doctor extractDoctorFromResultSet(ResultSet rs) throws SQLException {
-        return new Doctor(
+        Doctor doctor = new Doctor(
                 rs.getString("doctorid"),
                 rs.getString("firstname"),
                 rs.getString("surname"),
@@ -120,20 +256,115 @@ public class DoctorDAO {
                 rs.getString("specialization"),
                 rs.getString("hospital")
         );
+        doctor.setVersion(rs.getInt("version"));
+        return doctor;
+    }
+
+    /**
+     * Extracts a summary Doctor object holding only the columns in SUMMARY_COLUMNS.
+     *
+     * @param rs the ResultSet containing doctor summary data
+     * @return a Doctor object with its contact and employment details left null
+     * @throws SQLException if a database access error occurs
+     */
+    private Doctor extractDoctorSummaryFromResultSet(ResultSet rs) throws SQLException {
+        return new Doctor(rs.getString("doctorid"), rs.getString("firstname"), rs.getString("surname"), null, null, null, null);
+    }
+
+    /**
+     * Retrieves the ID of every doctor, e.g. to build a lookup of IDs already in use.
+     *
+     * @return a list of doctor IDs, or an empty list if an error occurs
+     */
+    public List<String> getDoctorIds() {
+        return DatabaseManager.queryColumn(connection, "SELECT doctorid FROM doctor");
+    }
+
+    /**
+     * Retrieves the email address of every doctor, e.g. to build a lookup of addresses already in use.
+     *
+     * @return a list of email addresses, or an empty list if an error occurs
+     */
+    public List<String> getDoctorEmails() {
+        return DatabaseManager.queryColumn(connection, "SELECT email FROM doctor");
+    }
+
+    /**
+     * Retrieves the email addresses of the doctors whose IDs are in the given collection with a single query.
+     *
+     * @param ids the IDs to look up; IDs that do not exist are skipped
+     * @return a list of email addresses in no particular order, or an empty list if an error occurs
+     */
+    public List<String> getDoctorEmailsByIds(Collection<String> ids) {
+        List<String> emails = new ArrayList<>();
+        if (ids.isEmpty()) {
+            return emails;
+        }
+        String sql = "SELECT email FROM doctor WHERE doctorid IN (" + DatabaseManager.placeholders(ids.size()) + ")";
+
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            int index = 1;
+            for (String id : ids) {
+                stmt.setString(index++, id);
+            }
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                emails.add(rs.getString("email"));
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return emails;
+    }
+
+    /**
+     * Checks whether a doctor with the given ID exists without loading the record.
+     *
+     * @param doctorId the ID to look up
+     * @return true if a matching row exists, otherwise false
+     */
+    public boolean doctorExists(String doctorId) {
+        String sql = "SELECT 1 FROM doctor WHERE doctorid = ?";
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setString(1, doctorId);
+            ResultSet rs = stmt.executeQuery();
+            return rs.next();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return false;
+    }
+
+    /**
+     * Checks whether a doctor with the given email address exists without loading the record.
+     *
+     * @param email the email address to look up
+     * @return true if a matching row exists, otherwise false
+     */
+    public boolean doctorEmailExists(String email) {
+        String sql = "SELECT 1 FROM doctor WHERE email = ?";
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setString(1, email);
+            ResultSet rs = stmt.executeQuery();
+            return rs.next();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return false;
     }
 
     /**
      * Adds a new doctor to the database.
      *
      * @param doctor the Doctor object containing the doctor's details to add
-     * @return a Map.Entry containing a message and an Alert.AlertType indicating success or failure
+     * @return an OperationResult containing a message and a status indicating success or failure
      */
-    public Map.Entry<String, Alert.AlertType> addDoctor(Doctor doctor) {
-        if (getDoctorById(doctor.getId()) != null) {
-            return Map.entry("Error: Doctor with this ID already exists.", Alert.AlertType.ERROR);
+    public OperationResult addDoctor(Doctor doctor) {
+        if (doctorExists(doctor.getId())) {
+            return OperationResult.duplicate("Error: Doctor with this ID already exists.");
         }
-        if (getDoctorByEmail(doctor.getEmail()) != null) {
-            return Map.entry("Error: A doctor with this email already exists.", Alert.AlertType.ERROR);
+        if (doctorEmailExists(doctor.getEmail())) {
+            return OperationResult.duplicate("Error: A doctor with this email already exists.");
         }
         String sql = "INSERT INTO doctor (doctorid, firstname, surname, address, email, specialization, hospital) VALUES (?, ?, ?, ?, ?, ?, ?)";
         try (PreparedStatement stmt = connection.prepareStatement(sql)) {
@@ -145,12 +376,14 @@ public class DoctorDAO {
             stmt.setString(6, doctor.getSpecialization());
             stmt.setString(7, doctor.getHospital() != null ? doctor.getHospital() : null);
 
-            return stmt.executeUpdate() > 0
-                    ? Map.entry("Doctor added successfully!", Alert.AlertType.INFORMATION)
-                    : Map.entry("Error: Doctor could not be added.", Alert.AlertType.ERROR);
+            if (stmt.executeUpdate() == 0) {
+                return OperationResult.failed("Error: Doctor could not be added.");
+            }
+            events.publish(EntityEvent.created(Doctor.class, doctor.getId(), doctor));
+            return OperationResult.success("Doctor added successfully!");
         } catch (SQLException e) {
             e.printStackTrace();
-            return Map.entry("Database error occurred. Please try again.", Alert.AlertType.ERROR);
+            return OperationResult.failed("Database error occurred. Please try again.");
         }
     }
 
@@ -158,16 +391,16 @@ public class DoctorDAO {
      * Updates an existing doctor's details in the database.
      *
      * @param doctor the Doctor object containing updated details of the doctor
-     * @return a Map.Entry containing a status message and an Alert.AlertType indicating success or error
+     * @return an OperationResult containing a message and a status indicating success or error
      */
-    public Map.Entry<String, Alert.AlertType> updateDoctor(Doctor doctor) {
-        if (getDoctorById(doctor.getId()) == null) {
-            return Map.entry("Error: Doctor with this ID does not exist.", Alert.AlertType.ERROR);
+    public OperationResult updateDoctor(Doctor doctor) {
+        if (!doctorExists(doctor.getId())) {
+            return OperationResult.notFound("Error: Doctor with this ID does not exist.");
         }
         if (getDoctorByEmail(doctor.getEmail()) != null && !getDoctorByEmail(doctor.getEmail()).getId().equals(doctor.getId())) {
-            return Map.entry("Error: A doctor with this email already exists.", Alert.AlertType.ERROR);
+            return OperationResult.duplicate("Error: A doctor with this email already exists.");
         }
-        String sql = "UPDATE doctor SET firstname = ?, surname = ?, address = ?, email = ?, specialization = ?, hospital = ? WHERE doctorid = ?";
+        String sql = "UPDATE doctor SET firstname = ?, surname = ?, address = ?, email = ?, specialization = ?, hospital = ?, version = version + 1 WHERE doctorid = ? AND version = ?";
         try (PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setString(1, doctor.getFirstName());
             stmt.setString(2, doctor.getSurname());
@@ -176,13 +409,18 @@ public class DoctorDAO {
             stmt.setString(5, doctor.getSpecialization());
             stmt.setString(6, doctor.getHospital() != null ? doctor.getHospital() : null);
             stmt.setString(7, doctor.getId());
+            stmt.setInt(8, doctor.getVersion());
 
-            return stmt.executeUpdate() > 0
-                    ? Map.entry("Doctor updated successfully!", Alert.AlertType.INFORMATION)
-                    : Map.entry("Error: No doctor was updated.", Alert.AlertType.ERROR);
+            if (stmt.executeUpdate() == 0) {
+                // The row exists (checked above), so its version no longer matches: someone else saved it first
+                return OperationResult.conflict("Error: This doctor was changed by another user after you opened it.");
+            }
+            doctor.setVersion(doctor.getVersion() + 1);
+            events.publish(EntityEvent.updated(Doctor.class, doctor.getId(), doctor));
+            return OperationResult.success("Doctor updated successfully!");
         } catch (SQLException e) {
             e.printStackTrace();
-            return Map.entry("Database error occurred. Please try again.", Alert.AlertType.ERROR);
+            return OperationResult.failed("Database error occurred. Please try again.");
         }
     }
 
@@ -190,20 +428,40 @@ public class DoctorDAO {
      * Deletes a doctor from the database based on the provided doctor ID.
      *
      * @param doctorId the unique identifier of the doctor to be deleted.
-     * @return a message indicating the result of the deletion operation.
+     * @return an OperationResult indicating the result of the deletion operation.
      */
-    public String deleteDoctor(String doctorId) {
-        if (getDoctorById(doctorId) == null) {
-            return "Error: Doctor with this ID does not exist.";
+    public OperationResult deleteDoctor(String doctorId) {
+        return deleteDoctor(doctorId, null);
+    }
+
+    /**
+     * Deletes a doctor from the database based on the provided doctor ID.
+     * If a version is given, the record is only deleted while it is still at that version.
+     *
+     * @param doctorId the unique identifier of the doctor to be deleted.
+     * @param expectedVersion the version the caller last saw, or null to delete regardless of later changes
+     * @return an OperationResult indicating the result of the deletion operation.
+     */
+    public OperationResult deleteDoctor(String doctorId, Integer expectedVersion) {
+        if (!doctorExists(doctorId)) {
+            return OperationResult.notFound("Error: Doctor with this ID does not exist.");
         }
 
-        String sql = "DELETE FROM doctor WHERE doctorid = ?";
+        String sql = "DELETE FROM doctor WHERE doctorid = ?" + (expectedVersion != null ? " AND version = ?" : "");
         try (PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setString(1, doctorId);
-            return stmt.executeUpdate() > 0 ? "Doctor deleted successfully!" : "Error: No doctor was deleted.";
+            if (expectedVersion != null) {
+                stmt.setInt(2, expectedVersion);
+            }
+            if (stmt.executeUpdate() == 0) {
+                // The row exists (checked above), so its version no longer matches: someone else saved it first
+                return OperationResult.conflict("Error: This doctor was changed by another user after you opened it.");
+            }
+            events.publish(EntityEvent.deleted(Doctor.class, doctorId));
+            return OperationResult.success("Doctor deleted successfully!");
         } catch (SQLException e) {
             e.printStackTrace();
-            return "Database error occurred. Please try again.";
+            return OperationResult.failed("Database error occurred. Please try again.");
         }
     }
 }
@@ -1,21 +1,24 @@
 package com.example.hospitalassessment.database;
 
 import com.example.hospitalassessment.models.Drug;
-import javafx.scene.control.Alert;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
-import java.util.Map;
 
 /**
  * Handles operations related to the Drug entity in the database.
  */
 public class DrugDAO {
+    private static final String COLUMNS = "drugid, drugname, sideeffects, benefits, version"; // Columns of a full drug record.
+    private static final String SUMMARY_COLUMNS = "drugid, drugname"; // Columns needed to reference a drug by name.
+
     private final Connection connection; // Represents the database connection.
+    private final EntityEventBus events; // Announces successful writes.
 
     /**
      * Constructs a DrugDAO instance with a database connection.
@@ -23,7 +26,17 @@ public class DrugDAO {
      * @param dbManager the DatabaseManager providing the database connection
      */
     public DrugDAO(DatabaseManager dbManager) {
-        this.connection = dbManager.getConnection();
+        this(new DataAccessContext(dbManager));
+    }
+
+    /**
+     * Initializes DrugDAO within a shared data access context, announcing writes on its event bus.
+     *
+     * @param context the context providing the connection and the event bus
+     */
+    public DrugDAO(DataAccessContext context) {
+        this.connection = context.getDatabaseManager().getConnection();
+        this.events = context.events();
     }
 
     /**
@@ -33,7 +46,7 @@ public class DrugDAO {
      */
     public List<Drug> getAllDrugs() {
         List<Drug> drugs = new ArrayList<>();
-        String sql = "SELECT * FROM drug";
+        String sql = "SELECT " + COLUMNS + " FROM drug";
 
         try (PreparedStatement stmt = connection.prepareStatement(sql);
              ResultSet rs = stmt.executeQuery()) {
@@ -47,6 +60,32 @@ public class DrugDAO {
         return drugs;
     }
 
+    /**
+     * Retrieves a page of drugs whose ID or name contains the given text.
+     *
+     * @param query  the text to search for, or null to match every drug
+     * @param limit  the maximum number of drugs to return
+     * @param offset the number of matching drugs to skip
+     * @return a list of matching Drug objects ordered by ID
+     */
+    public List<Drug> searchDrugs(String query, int limit, int offset) {
+        List<Drug> drugs = new ArrayList<>();
+        String sql = "SELECT " + COLUMNS + " FROM drug WHERE CONCAT_WS(' ', drugid, drugname) LIKE ? ORDER BY drugid LIMIT ? OFFSET ?";
+
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setString(1, DatabaseManager.toLikePattern(query));
+            stmt.setInt(2, limit);
+            stmt.setInt(3, offset);
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                drugs.add(extractDrugFromResultSet(rs));
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return drugs;
+    }
+
     /**
      * Retrieves a Drug object based on the specified drug ID.
      *
@@ -54,7 +93,7 @@ public class DrugDAO {
      * @return the Drug object if found, otherwise null
      */
     public Drug getDrugById(String drugId) {
-        String sql = "SELECT * FROM drug WHERE drugid = ?";
+        String sql = "SELECT " + COLUMNS + " FROM drug WHERE drugid = ?";
         try (PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setString(1, drugId);
             ResultSet rs = stmt.executeQuery();
@@ -67,6 +106,103 @@ public class DrugDAO {
         return null;
     }
 
+    /**
+     * Retrieves the ID and name of every drug, for pickers and other name-only listings.
+     *
+     * @return a list of summary Drug objects in which only the ID and name are set
+     */
+    public List<Drug> getDrugSummaries() {
+        List<Drug> drugs = new ArrayList<>();
+        String sql = "SELECT " + SUMMARY_COLUMNS + " FROM drug";
+
+        try (PreparedStatement stmt = connection.prepareStatement(sql);
+             ResultSet rs = stmt.executeQuery()) {
+
+            while (rs.next()) {
+                drugs.add(extractDrugSummaryFromResultSet(rs));
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return drugs;
+    }
+
+    /**
+     * Retrieves the ID and name of a drug, for use when the drug is only referenced from another record.
+     *
+     * @param drugId the ID of the drug to retrieve
+     * @return a summary Drug object in which only the ID and name are set, or null if not found
+     */
+    public Drug getDrugSummaryById(String drugId) {
+        String sql = "SELECT " + SUMMARY_COLUMNS + " FROM drug WHERE drugid = ?";
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setString(1, drugId);
+            ResultSet rs = stmt.executeQuery();
+            if (rs.next()) {
+                return extractDrugSummaryFromResultSet(rs);
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Retrieves the ID and name of every drug whose IDs are in the given collection with a single query.
+     *
+     * @param ids the IDs to look up; IDs that do not exist are skipped
+     * @return a list of the matching Drug objects in no particular order
+     */
+    public List<Drug> getDrugSummariesByIds(Collection<String> ids) {
+        List<Drug> drugs = new ArrayList<>();
+        if (ids.isEmpty()) {
+            return drugs;
+        }
+        String sql = "SELECT " + SUMMARY_COLUMNS + " FROM drug WHERE drugid IN (" + DatabaseManager.placeholders(ids.size()) + ")";
+
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            int index = 1;
+            for (String id : ids) {
+                stmt.setString(index++, id);
+            }
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                drugs.add(extractDrugSummaryFromResultSet(rs));
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return drugs;
+    }
+
+    /**
+     * Retrieves the full record of every drug whose ID is in the given collection with a single query.
+     *
+     * @param ids the IDs to look up; IDs that do not exist are skipped
+     * @return a list of the matching Drug objects in no particular order
+     */
+    public List<Drug> getDrugsByIds(Collection<String> ids) {
+        List<Drug> drugs = new ArrayList<>();
+        if (ids.isEmpty()) {
+            return drugs;
+        }
+        String sql = "SELECT " + COLUMNS + " FROM drug WHERE drugid IN (" + DatabaseManager.placeholders(ids.size()) + ")";
+
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            int index = 1;
+            for (String id : ids) {
+                stmt.setString(index++, id);
+            }
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                drugs.add(extractDrugFromResultSet(rs));
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return drugs;
+    }
+
     /**
      * Extracts a Drug object from the given ResultSet.
      *
@@ -75,23 +211,63 @@ public class DrugDAO {
      * @throws SQLException if a database access error occurs
      */
     private Drug extractDrugFromResultSet(ResultSet rs) throws SQLException {
-        return new Drug(
+        Drug drug = new Drug(
                 rs.getString("drugid"),
                 rs.getString("drugname"),
                 rs.getString("sideeffects"),
                 rs.getString("benefits")
         );
+        drug.setVersion(rs.getInt("version"));
+        return drug;
+    }
+
+    /**
+     * Extracts a summary Drug object holding only the columns in SUMMARY_COLUMNS.
+     *
+     * @param rs the ResultSet containing drug summary data
+     * @return a Drug object with its side effects and benefits left null
+     * @throws SQLException if a database access error occurs
+     */
+    private Drug extractDrugSummaryFromResultSet(ResultSet rs) throws SQLException {
+        return new Drug(rs.getString("drugid"), rs.getString("drugname"), null, null);
+    }
+
+    /**
+     * Retrieves the ID of every drug, e.g. to build a lookup of IDs already in use.
+     *
+     * @return a list of drug IDs, or an empty list if an error occurs
+     */
+    public List<String> getDrugIds() {
+        return DatabaseManager.queryColumn(connection, "SELECT drugid FROM drug");
+    }
+
+    /**
+     * Checks whether a drug with the given ID exists without loading the record.
+     *
+     * @param drugId the ID to look up
+     * @return true if a matching row exists, otherwise false
+     */
+    public boolean drugExists(String drugId) {
+        String sql = "SELECT 1 FROM drug WHERE drugid = ?";
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setString(1, drugId);
+            ResultSet rs = stmt.executeQuery();
+            return rs.next();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return false;
     }
 
     /**
      * Adds a drug to the database.
      *
      * @param drug the drug to be added
-     * @return a Map.Entry containing a status message and an alert type
+     * @return an OperationResult containing a status message
      */
-    public Map.Entry<String, Alert.AlertType> addDrug(Drug drug) {
-        if (getDrugById(drug.getId()) != null) {
-            return Map.entry("Error: A drug with this ID already exists.", Alert.AlertType.ERROR);
+    public OperationResult addDrug(Drug drug) {
+        if (drugExists(drug.getId())) {
+            return OperationResult.duplicate("Error: A drug with this ID already exists.");
         }
 
         String sql = "INSERT INTO drug (drugid, drugname, sideeffects, benefits) VALUES (?, ?, ?, ?)";
@@ -101,12 +277,14 @@ public class DrugDAO {
             stmt.setString(3, drug.getSideEffects());
             stmt.setString(4, drug.getBenefits());
 
-            return stmt.executeUpdate() > 0
-                    ? Map.entry("Drug added successfully!", Alert.AlertType.INFORMATION)
-                    : Map.entry("Error: Drug could not be added.", Alert.AlertType.ERROR);
+            if (stmt.executeUpdate() == 0) {
+                return OperationResult.failed("Error: Drug could not be added.");
+            }
+            events.publish(EntityEvent.created(Drug.class, drug.getId(), drug));
+            return OperationResult.success("Drug added successfully!");
         } catch (SQLException e) {
             e.printStackTrace();
-            return Map.entry("Database error occurred. Please try again.", Alert.AlertType.ERROR);
+            return OperationResult.failed("Database error occurred. Please try again.");
         }
     }
 
@@ -114,26 +292,31 @@ public class DrugDAO {
      * Updates the details of an existing drug in the database.
      *
      * @param drug the Drug object containing updated information
-     * @return a Map.Entry with a status message and corresponding Alert.AlertType
+     * @return an OperationResult with a status message and corresponding status
      */
-    public Map.Entry<String, Alert.AlertType> updateDrug(Drug drug) {
-        if (getDrugById(drug.getId()) == null) {
-            return Map.entry("Error: Drug with this ID does not exist.", Alert.AlertType.ERROR);
+    public OperationResult updateDrug(Drug drug) {
+        if (!drugExists(drug.getId())) {
+            return OperationResult.notFound("Error: Drug with this ID does not exist.");
         }
 
-        String sql = "UPDATE drug SET drugname = ?, sideeffects = ?, benefits = ? WHERE drugid = ?";
+        String sql = "UPDATE drug SET drugname = ?, sideeffects = ?, benefits = ?, version = version + 1 WHERE drugid = ? AND version = ?";
         try (PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setString(1, drug.getDrugName());
             stmt.setString(2, drug.getSideEffects());
             stmt.setString(3, drug.getBenefits());
             stmt.setString(4, drug.getId());
+            stmt.setInt(5, drug.getVersion());
 
-            return stmt.executeUpdate() > 0
-                    ? Map.entry("Drug updated successfully!", Alert.AlertType.INFORMATION)
-                    : Map.entry("Error: No drug was updated.", Alert.AlertType.ERROR);
+            if (stmt.executeUpdate() == 0) {
+                // The row exists (checked above), so its version no longer matches: someone else saved it first
+                return OperationResult.conflict("Error: This drug was changed by another user after you opened it.");
+            }
+            drug.setVersion(drug.getVersion() + 1);
+            events.publish(EntityEvent.updated(Drug.class, drug.getId(), drug));
+            return OperationResult.success("Drug updated successfully!");
         } catch (SQLException e) {
             e.printStackTrace();
-            return Map.entry("Database error occurred. Please try again.", Alert.AlertType.ERROR);
+            return OperationResult.failed("Database error occurred. Please try again.");
         }
     }
 
@@ -141,21 +324,40 @@ public class DrugDAO {
      * Deletes a drug from the database based on the provided drug ID.
      *
      * @param drugId the ID of the drug to delete
-     * @return a status message indicating success or an error
+     * @return an OperationResult indicating success or an error
      */
-    public String deleteDrug(String drugId) {
-        if (getDrugById(drugId) == null) {
-            return "Error: Drug with this ID does not exist.";
+    public OperationResult deleteDrug(String drugId) {
+        return deleteDrug(drugId, null);
+    }
+
+    /**
+     * Deletes a drug from the database based on the provided drug ID.
+     * If a version is given, the record is only deleted while it is still at that version.
+     *
+     * @param drugId the ID of the drug to delete
+     * @param expectedVersion the version the caller last saw, or null to delete regardless of later changes
+     * @return an OperationResult indicating success or an error
+     */
+    public OperationResult deleteDrug(String drugId, Integer expectedVersion) {
+        if (!drugExists(drugId)) {
+            return OperationResult.notFound("Error: Drug with this ID does not exist.");
         }
 
-        String sql = "DELETE FROM drug WHERE drugid = ?";
+        String sql = "DELETE FROM drug WHERE drugid = ?" + (expectedVersion != null ? " AND version = ?" : "");
         try (PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setString(1, drugId);
-            int rowsAffected = stmt.executeUpdate();
-            return rowsAffected > 0 ? "Drug deleted successfully!" : "Error: No drug was deleted.";
+            if (expectedVersion != null) {
+                stmt.setInt(2, expectedVersion);
+            }
+            if (stmt.executeUpdate() == 0) {
+                // The row exists (checked above), so its version no longer matches: someone else saved it first
+                return OperationResult.conflict("Error: This drug was changed by another user after you opened it.");
+            }
+            events.publish(EntityEvent.deleted(Drug.class, drugId));
+            return OperationResult.success("Drug deleted successfully!");
         } catch (SQLException e) {
             e.printStackTrace();
-            return "Database error occurred. Please try again.";
+            return OperationResult.failed("Database error occurred. Please try again.");
         }
     }
 }
@@ -0,0 +1,51 @@
+package com.example.hospitalassessment.database;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * DrugInteractionDAO reads the pairs of drugs that must not be taken at the same time.
+ * See {@code sql/add_drug_interactions.sql} for the table.
+ */
+public class DrugInteractionDAO {
+    private final Connection connection; // Represents the database connection.
+
+    /**
+     * Initializes DrugInteractionDAO with a database connection.
+     *
+     * @param dbManager the DatabaseManager providing the database connection
+     */
+    public DrugInteractionDAO(DatabaseManager dbManager) {
+        this.connection = dbManager.getConnection();
+    }
+
+    /**
+     * Retrieves every known drug interaction.
+     *
+     * @return the interactions, each listed once, or an empty list if an error occurs
+     */
+    public List<Interaction> getAllInteractions() {
+        List<Interaction> interactions = new ArrayList<>();
+        String sql = "SELECT drugid, other_drugid, description FROM drug_interaction";
+        try (PreparedStatement stmt = connection.prepareStatement(sql);
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                interactions.add(new Interaction(rs.getString("drugid"), rs.getString("other_drugid"), rs.getString("description")));
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return interactions;
+    }
+
+    /**
+     * Two drugs that must not be taken at the same time. The order of the drugs does not matter.
+     *
+     * @param drugId      the ID of one drug
+     * @param otherDrugId the ID of the other drug
+     * @param description what happens when both are taken, or null if not recorded
+     */
+    public record Interaction(String drugId, String otherDrugId, String description) {
+    }
+}
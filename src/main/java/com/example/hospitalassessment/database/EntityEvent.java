@@ -0,0 +1,34 @@
+package com.example.hospitalassessment.database;
+
+/**
+ * Announces that a record was created, updated or deleted.
+ * Events are published on the {@link EntityEventBus} of a {@link DataAccessContext} after each successful DAO write,
+ * and for changes other users made once they are noticed in the change log.
+ *
+ * @param type   the class of the changed record, e.g. {@code Doctor.class}
+ * @param kind   what happened to the record
+ * @param key    the key of the record; composite keys are joined with "|" as in the change log
+ * @param entity the record as written, or null if it was deleted or changed elsewhere
+ * @param <T>    the record type
+ */
+public record EntityEvent<T>(Class<T> type, Kind kind, String key, T entity) {
+
+    /**
+     * What happened to a record.
+     */
+    public enum Kind {
+        CREATED, UPDATED, DELETED
+    }
+
+    public static <T> EntityEvent<T> created(Class<T> type, String key, T entity) {
+        return new EntityEvent<>(type, Kind.CREATED, key, entity);
+    }
+
+    public static <T> EntityEvent<T> updated(Class<T> type, String key, T entity) {
+        return new EntityEvent<>(type, Kind.UPDATED, key, entity);
+    }
+
+    public static <T> EntityEvent<T> deleted(Class<T> type, String key) {
+        return new EntityEvent<>(type, Kind.DELETED, key, null);
+    }
+}
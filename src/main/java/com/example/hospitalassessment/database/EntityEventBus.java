@@ -0,0 +1,66 @@
+package com.example.hospitalassessment.database;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Delivers {@link EntityEvent}s to the listeners registered for the changed record type,
+ * so that caches and views drop exactly the records that changed instead of everything they hold.
+ * Listeners run synchronously on the publishing thread; a failing listener does not affect the others or the write.
+ */
+public class EntityEventBus {
+    private final Map<Class<?>, List<Consumer<EntityEvent<?>>>> listeners = new ConcurrentHashMap<>(); // Listeners by record type.
+    private final List<Consumer<EntityEvent<?>>> allListeners = new CopyOnWriteArrayList<>(); // Listeners for every record type.
+
+    /**
+     * Registers a listener for changes to one type of record.
+     *
+     * @param type     the record type to follow
+     * @param listener the listener to notify
+     * @param <T>      the record type
+     * @return an action that unregisters the listener
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Runnable subscribe(Class<T> type, Consumer<? super EntityEvent<T>> listener) {
+        Consumer<EntityEvent<?>> untyped = event -> listener.accept((EntityEvent<T>) event);
+        List<Consumer<EntityEvent<?>>> typeListeners = listeners.computeIfAbsent(type, t -> new CopyOnWriteArrayList<>());
+        typeListeners.add(untyped);
+        return () -> typeListeners.remove(untyped);
+    }
+
+    /**
+     * Registers a listener for changes to every type of record.
+     *
+     * @param listener the listener to notify
+     * @return an action that unregisters the listener
+     */
+    public Runnable subscribeAll(Consumer<EntityEvent<?>> listener) {
+        allListeners.add(listener);
+        return () -> allListeners.remove(listener);
+    }
+
+    /**
+     * Notifies the listeners of the event's record type, then the listeners of every type.
+     *
+     * @param event the change to announce
+     */
+    public void publish(EntityEvent<?> event) {
+        for (Consumer<EntityEvent<?>> listener : listeners.getOrDefault(event.type(), List.of())) {
+            deliver(listener, event);
+        }
+        for (Consumer<EntityEvent<?>> listener : allListeners) {
+            deliver(listener, event);
+        }
+    }
+
+    private static void deliver(Consumer<EntityEvent<?>> listener, EntityEvent<?> event) {
+        try {
+            listener.accept(event);
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.example.hospitalassessment.database;
+
+import java.sql.*;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * FeatureDAO streams the visit and prescription columns used to build per-patient feature vectors.
+ * Rows are read for a range of patient IDs in patient order and handed to a callback one at a time as they arrive,
+ * fetched from the server in batches rather than collected into lists, so a range of any size is read in constant memory.
+ */
+public class FeatureDAO {
+    private static final int FETCH_SIZE = 10_000; // Rows fetched from the server per round trip while streaming.
+
+    private final Connection connection; // Represents the database connection.
+
+    /**
+     * Initializes FeatureDAO with a database connection.
+     *
+     * @param dbManager the DatabaseManager providing the database connection
+     */
+    public FeatureDAO(DatabaseManager dbManager) {
+        this.connection = dbManager.getConnection();
+    }
+
+    /**
+     * Retrieves every patient in patient ID order, with whether they are insured.
+     *
+     * @return the patients, or an empty list if an error occurs
+     */
+    public List<PatientKey> getPatientKeys() {
+        List<PatientKey> patients = new ArrayList<>();
+        String sql = "SELECT patientid, insuranceid IS NOT NULL AND insuranceid <> '' AS insured FROM patient ORDER BY patientid";
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setFetchSize(FETCH_SIZE);
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                patients.add(new PatientKey(rs.getString("patientid"), rs.getBoolean("insured")));
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return patients;
+    }
+
+    /**
+     * Retrieves the IDs of the most prescribed drugs.
+     *
+     * @param limit the most drugs to return
+     * @return the drug IDs, most prescribed first, or an empty list if an error occurs
+     */
+    public List<String> getMostPrescribedDrugs(int limit) {
+        List<String> drugs = new ArrayList<>();
+        String sql = "SELECT drugid FROM prescription WHERE drugid IS NOT NULL GROUP BY drugid ORDER BY COUNT(*) DESC, drugid LIMIT ?";
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setInt(1, limit);
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                drugs.add(rs.getString("drugid"));
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return drugs;
+    }
+
+    /**
+     * Streams the visits of the patients whose IDs fall in a range, up to a day, ordered by patient and then doctor.
+     *
+     * @param firstPatientId the lowest patient ID of the range
+     * @param lastPatientId  the highest patient ID of the range
+     * @param asOf           the last day to include
+     * @param handler        receives each visit
+     * @return the number of visits streamed, or -1 if an error occurs
+     */
+    public long streamVisits(String firstPatientId, String lastPatientId, LocalDate asOf, VisitHandler handler) {
+        String sql = "SELECT patientid, doctorid, dateofvisit FROM visit WHERE patientid BETWEEN ? AND ? AND dateofvisit <= ? "
+                + "ORDER BY patientid, doctorid";
+        long rows = 0;
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setString(1, firstPatientId);
+            stmt.setString(2, lastPatientId);
+            stmt.setDate(3, Date.valueOf(asOf));
+            stmt.setFetchSize(FETCH_SIZE);
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                handler.accept(rs.getString(1), rs.getString(2), rs.getDate(3).toLocalDate().toEpochDay());
+                rows++;
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return -1;
+        }
+        return rows;
+    }
+
+    /**
+     * Streams the prescriptions of the patients whose IDs fall in a range, up to a day, ordered by patient and then drug.
+     *
+     * @param firstPatientId the lowest patient ID of the range
+     * @param lastPatientId  the highest patient ID of the range
+     * @param asOf           the last day to include
+     * @param handler        receives each prescription
+     * @return the number of prescriptions streamed, or -1 if an error occurs
+     */
+    public long streamPrescriptions(String firstPatientId, String lastPatientId, LocalDate asOf, PrescriptionHandler handler) {
+        String sql = "SELECT patientid, drugid, dateprescribed, duration FROM prescription "
+                + "WHERE patientid BETWEEN ? AND ? AND dateprescribed <= ? ORDER BY patientid, drugid";
+        long rows = 0;
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setString(1, firstPatientId);
+            stmt.setString(2, lastPatientId);
+            stmt.setDate(3, Date.valueOf(asOf));
+            stmt.setFetchSize(FETCH_SIZE);
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                handler.accept(rs.getString(1), rs.getString(2), rs.getDate(3).toLocalDate().toEpochDay(), rs.getInt(4));
+                rows++;
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return -1;
+        }
+        return rows;
+    }
+
+    /**
+     * A patient as features are built for them.
+     *
+     * @param patientId the ID of the patient
+     * @param insured   whether the patient has an insurer
+     */
+    public record PatientKey(String patientId, boolean insured) {
+    }
+
+    /**
+     * Receives streamed visits.
+     */
+    @FunctionalInterface
+    public interface VisitHandler {
+        void accept(String patientId, String doctorId, long epochDay);
+    }
+
+    /**
+     * Receives streamed prescriptions.
+     */
+    @FunctionalInterface
+    public interface PrescriptionHandler {
+        void accept(String patientId, String drugId, long epochDay, int duration);
+    }
+}
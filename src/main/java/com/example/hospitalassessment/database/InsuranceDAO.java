@@ -1,21 +1,23 @@
 package com.example.hospitalassessment.database;
 
 import com.example.hospitalassessment.models.Insurance;
-import javafx.scene.control.Alert;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
-import java.util.Map;
 
 /**
  * Data Access Object (DAO) for managing Insurance entities in the database.
  */
 public class InsuranceDAO {
+    private static final String COLUMNS = "insuranceid, company, address, phone, version"; // Columns of a full insurance record.
+
     private final Connection connection; // Represents the database connection.
+    private final EntityEventBus events; // Announces successful writes.
 
     /**
      * Constructs an InsuranceDAO instance with a database connection.
@@ -23,7 +25,17 @@ public class InsuranceDAO {
      * @param dbManager the DatabaseManager providing the database connection
      */
     public InsuranceDAO(DatabaseManager dbManager) {
-        this.connection = dbManager.getConnection();
+        this(new DataAccessContext(dbManager));
+    }
+
+    /**
+     * Initializes InsuranceDAO within a shared data access context, announcing writes on its event bus.
+     *
+     * @param context the context providing the connection and the event bus
+     */
+    public InsuranceDAO(DataAccessContext context) {
+        this.connection = context.getDatabaseManager().getConnection();
+        this.events = context.events();
     }
 
     /**
@@ -33,7 +45,7 @@ public class InsuranceDAO {
      */
     public List<Insurance> getAllInsurance() {
         List<Insurance> insurances = new ArrayList<>();
-        String sql = "SELECT * FROM insurance";
+        String sql = "SELECT " + COLUMNS + " FROM insurance";
 
         try (PreparedStatement stmt = connection.prepareStatement(sql);
              ResultSet rs = stmt.executeQuery()) {
@@ -47,6 +59,32 @@ public class InsuranceDAO {
         return insurances;
     }
 
+    /**
+     * Retrieves a page of insurances whose ID or company name contains the given text.
+     *
+     * @param query  the text to search for, or null to match every insurance
+     * @param limit  the maximum number of insurances to return
+     * @param offset the number of matching insurances to skip
+     * @return a list of matching Insurance objects ordered by ID
+     */
+    public List<Insurance> searchInsurance(String query, int limit, int offset) {
+        List<Insurance> insurances = new ArrayList<>();
+        String sql = "SELECT " + COLUMNS + " FROM insurance WHERE CONCAT_WS(' ', insuranceid, company) LIKE ? ORDER BY insuranceid LIMIT ? OFFSET ?";
+
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setString(1, DatabaseManager.toLikePattern(query));
+            stmt.setInt(2, limit);
+            stmt.setInt(3, offset);
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                insurances.add(extractInsuranceFromResultSet(rs));
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return insurances;
+    }
+
     /**
      * Retrieves an Insurance object based on the specified insurance ID.
      *
@@ -54,7 +92,7 @@ public class InsuranceDAO {
      * @return the Insurance object if found, otherwise null
      */
     public Insurance getInsuranceById(String insuranceId) {
-        String sql = "SELECT * FROM insurance WHERE insuranceid = ?";
+        String sql = "SELECT " + COLUMNS + " FROM insurance WHERE insuranceid = ?";
         try (PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setString(1, insuranceId);
             ResultSet rs = stmt.executeQuery();
@@ -67,6 +105,34 @@ public class InsuranceDAO {
         return null;
     }
 
+    /**
+     * Retrieves every insurance record whose IDs are in the given collection with a single query.
+     *
+     * @param ids the IDs to look up; IDs that do not exist are skipped
+     * @return a list of the matching Insurance objects in no particular order
+     */
+    public List<Insurance> getInsuranceByIds(Collection<String> ids) {
+        List<Insurance> insurances = new ArrayList<>();
+        if (ids.isEmpty()) {
+            return insurances;
+        }
+        String sql = "SELECT " + COLUMNS + " FROM insurance WHERE insuranceid IN (" + DatabaseManager.placeholders(ids.size()) + ")";
+
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            int index = 1;
+            for (String id : ids) {
+                stmt.setString(index++, id);
+            }
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                insurances.add(extractInsuranceFromResultSet(rs));
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return insurances;
+    }
+
     /**
      * Retrieves an Insurance object based on the specified company name.
      *
@@ -74,7 +140,7 @@ public class InsuranceDAO {
      * @return the Insurance object if found, otherwise null
      */
     public Insurance getInsuranceByCompany(String companyName) {
-        String sql = "SELECT * FROM insurance WHERE company = ?";
+        String sql = "SELECT " + COLUMNS + " FROM insurance WHERE company = ?";
         try (PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setString(1, companyName);
             ResultSet rs = stmt.executeQuery();
@@ -95,23 +161,52 @@ public class InsuranceDAO {
      * @throws SQLException if a database access error occurs
      */
     private Insurance extractInsuranceFromResultSet(ResultSet rs) throws SQLException {
-        return new Insurance(
+        Insurance insurance = new Insurance(
                 rs.getString("insuranceid"),
                 rs.getString("company"),
                 rs.getString("address"),
                 rs.getString("phone")
         );
+        insurance.setVersion(rs.getInt("version"));
+        return insurance;
+    }
+
+    /**
+     * Retrieves the ID of every insurance company, e.g. to build a lookup of IDs already in use.
+     *
+     * @return a list of insurance IDs, or an empty list if an error occurs
+     */
+    public List<String> getInsuranceIds() {
+        return DatabaseManager.queryColumn(connection, "SELECT insuranceid FROM insurance");
+    }
+
+    /**
+     * Checks whether an insurance with the given ID exists without loading the record.
+     *
+     * @param insuranceId the ID to look up
+     * @return true if a matching row exists, otherwise false
+     */
+    public boolean insuranceExists(String insuranceId) {
+        String sql = "SELECT 1 FROM insurance WHERE insuranceid = ?";
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setString(1, insuranceId);
+            ResultSet rs = stmt.executeQuery();
+            return rs.next();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return false;
     }
 
     /**
      * Adds a new insurance record to the database.
      *
      * @param insurance the Insurance object to be added
-     * @return a map entry containing a message and alert type, indicating success or failure
+     * @return an OperationResult containing a message and status, indicating success or failure
      */
-    public Map.Entry<String, Alert.AlertType> addInsurance(Insurance insurance) {
-        if (getInsuranceById(insurance.getId()) != null) {
-            return Map.entry("Error: An insurance with this ID already exists.", Alert.AlertType.ERROR);
+    public OperationResult addInsurance(Insurance insurance) {
+        if (insuranceExists(insurance.getId())) {
+            return OperationResult.duplicate("Error: An insurance with this ID already exists.");
         }
 
         String sql = "INSERT INTO insurance (insuranceid, company, address, phone) VALUES (?, ?, ?, ?)";
@@ -121,12 +216,14 @@ public class InsuranceDAO {
             stmt.setString(3, insurance.getAddress());
             stmt.setString(4, insurance.getPhone());
 
-            return stmt.executeUpdate() > 0
-                    ? Map.entry("Insurance added successfully!", Alert.AlertType.INFORMATION)
-                    : Map.entry("Error: Insurance could not be added.", Alert.AlertType.ERROR);
+            if (stmt.executeUpdate() == 0) {
+                return OperationResult.failed("Error: Insurance could not be added.");
+            }
+            events.publish(EntityEvent.created(Insurance.class, insurance.getId(), insurance));
+            return OperationResult.success("Insurance added successfully!");
         } catch (SQLException e) {
             e.printStackTrace();
-            return Map.entry("Database error occurred. Please try again.", Alert.AlertType.ERROR);
+            return OperationResult.failed("Database error occurred. Please try again.");
         }
     }
 
@@ -134,26 +231,31 @@ public class InsuranceDAO {
      * Updates the details of an existing insurance record in the database.
      *
      * @param insurance the Insurance object containing updated data
-     * @return a map entry with a message and alert type indicating success or failure
+     * @return an OperationResult with a message and status indicating success or failure
      */
-    public Map.Entry<String, Alert.AlertType> updateInsurance(Insurance insurance) {
-        if (getInsuranceById(insurance.getId()) == null) {
-            return Map.entry("Error: Insurance with this ID does not exist.", Alert.AlertType.ERROR);
+    public OperationResult updateInsurance(Insurance insurance) {
+        if (!insuranceExists(insurance.getId())) {
+            return OperationResult.notFound("Error: Insurance with this ID does not exist.");
         }
 
-        String sql = "UPDATE insurance SET company = ?, address = ?, phone = ? WHERE insuranceid = ?";
+        String sql = "UPDATE insurance SET company = ?, address = ?, phone = ?, version = version + 1 WHERE insuranceid = ? AND version = ?";
         try (PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setString(1, insurance.getCompany());
             stmt.setString(2, insurance.getAddress());
             stmt.setString(3, insurance.getPhone());
             stmt.setString(4, insurance.getId());
+            stmt.setInt(5, insurance.getVersion());
 
-            return stmt.executeUpdate() > 0
-                    ? Map.entry("Insurance updated successfully!", Alert.AlertType.INFORMATION)
-                    : Map.entry("Error: No insurance was updated.", Alert.AlertType.ERROR);
+            if (stmt.executeUpdate() == 0) {
+                // The row exists (checked above), so its version no longer matches: someone else saved it first
+                return OperationResult.conflict("Error: This insurance was changed by another user after you opened it.");
+            }
+            insurance.setVersion(insurance.getVersion() + 1);
+            events.publish(EntityEvent.updated(Insurance.class, insurance.getId(), insurance));
+            return OperationResult.success("Insurance updated successfully!");
         } catch (SQLException e) {
             e.printStackTrace();
-            return Map.entry("Database error occurred. Please try again.", Alert.AlertType.ERROR);
+            return OperationResult.failed("Database error occurred. Please try again.");
         }
     }
 
@@ -161,21 +263,40 @@ public class InsuranceDAO {
      * Deletes an insurance record from the database based on the provided insurance ID.
      *
      * @param insuranceId the ID of the insurance to delete
-     * @return a message indicating the outcome of the operation
+     * @return an OperationResult indicating the outcome of the operation
+     */
+    public OperationResult deleteInsurance(String insuranceId) {
+        return deleteInsurance(insuranceId, null);
+    }
+
+    /**
+     * Deletes an insurance record from the database based on the provided insurance ID.
+     * If a version is given, the record is only deleted while it is still at that version.
+     *
+     * @param insuranceId the ID of the insurance to delete
+     * @param expectedVersion the version the caller last saw, or null to delete regardless of later changes
+     * @return an OperationResult indicating the outcome of the operation
      */
-    public String deleteInsurance(String insuranceId) {
-        if (getInsuranceById(insuranceId) == null) {
-            return "Error: Insurance with this ID does not exist.";
+    public OperationResult deleteInsurance(String insuranceId, Integer expectedVersion) {
+        if (!insuranceExists(insuranceId)) {
+            return OperationResult.notFound("Error: Insurance with this ID does not exist.");
         }
 
-        String sql = "DELETE FROM insurance WHERE insuranceid = ?";
+        String sql = "DELETE FROM insurance WHERE insuranceid = ?" + (expectedVersion != null ? " AND version = ?" : "");
         try (PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setString(1, insuranceId);
-            int rowsAffected = stmt.executeUpdate();
-            return rowsAffected > 0 ? "Insurance deleted successfully!" : "Error: No insurance was deleted.";
+            if (expectedVersion != null) {
+                stmt.setInt(2, expectedVersion);
+            }
+            if (stmt.executeUpdate() == 0) {
+                // The row exists (checked above), so its version no longer matches: someone else saved it first
+                return OperationResult.conflict("Error: This insurance was changed by another user after you opened it.");
+            }
+            events.publish(EntityEvent.deleted(Insurance.class, insuranceId));
+            return OperationResult.success("Insurance deleted successfully!");
         } catch (SQLException e) {
             e.printStackTrace();
-            return "Database error occurred. Please try again.";
+            return OperationResult.failed("Database error occurred. Please try again.");
         }
     }
 }
@@ -0,0 +1,67 @@
+package com.example.hospitalassessment.database;
+
+/**
+ * Describes the outcome of a data-changing DAO operation without depending on any UI toolkit.
+ * Callers decide how to present it, e.g. as an alert in the desktop app or an HTTP status in the REST service.
+ */
+public class OperationResult {
+
+    /**
+     * The kind of outcome of an operation.
+     */
+    public enum Status {
+        SUCCESS, // The operation was applied.
+        NOT_FOUND, // The record to change does not exist.
+        DUPLICATE, // A record with the same key or unique value already exists.
+        CONFLICT, // The record was changed by someone else since the caller loaded it.
+        FAILED // The database rejected the operation or could not be reached.
+    }
+
+    private final Status status; // Outcome of the operation.
+    private final String message; // Human-readable description of the outcome.
+
+    private OperationResult(Status status, String message) {
+        this.status = status;
+        this.message = message;
+    }
+
+    public static OperationResult success(String message) {
+        return new OperationResult(Status.SUCCESS, message);
+    }
+
+    public static OperationResult notFound(String message) {
+        return new OperationResult(Status.NOT_FOUND, message);
+    }
+
+    public static OperationResult duplicate(String message) {
+        return new OperationResult(Status.DUPLICATE, message);
+    }
+
+    public static OperationResult conflict(String message) {
+        return new OperationResult(Status.CONFLICT, message);
+    }
+
+    public static OperationResult failed(String message) {
+        return new OperationResult(Status.FAILED, message);
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public boolean isSuccess() {
+        return status == Status.SUCCESS;
+    }
+
+    @Override
+    public String toString() {
+        return "OperationResult{" +
+                "status=" + status +
+                ", message='" + message + '\'' +
+                '}';
+    }
+}
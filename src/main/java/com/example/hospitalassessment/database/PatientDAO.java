@@ -1,16 +1,20 @@
 package com.example.hospitalassessment.database;
 
+import com.example.hospitalassessment.models.Doctor;
+import com.example.hospitalassessment.models.Drug;
+import com.example.hospitalassessment.models.EntityRef;
 import com.example.hospitalassessment.models.Insurance;
 import com.example.hospitalassessment.models.Patient;
-import javafx.scene.control.Alert;
+import com.example.hospitalassessment.models.Prescription;
+import com.example.hospitalassessment.models.Visit;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
-import java.util.Map;
 
 /**
  * Manages operations related to patient data in the database, including retrieval, insertion,
@@ -18,8 +22,15 @@ import java.util.Map;
  * Relies on an InsuranceDAO to handle associated insurance information.
  */
 public class PatientDAO {
+    private static final String COLUMNS = "patientid, firstname, surname, postcode, address, phone, email, insuranceid, version"; // Columns of a full patient record.
+    private static final String SUMMARY_COLUMNS = "patientid, firstname, surname"; // Columns needed to reference a patient by name.
+    private static final String DOCTOR_COLUMNS = "d.doctorid, d.firstname AS doctor_firstname, d.surname AS doctor_surname,"
+            + " d.address AS doctor_address, d.email AS doctor_email, d.specialization, d.hospital, d.version AS doctor_version"; // Doctor of a visit or prescription in a patient's history.
+
     private final Connection connection; // Represents the database connection.
+    private final EntityEventBus events; // Announces successful writes.
     private final InsuranceDAO insuranceDAO; // Manages insurance-related data operations.
+    private final ReferenceCache<Insurance> insuranceRefs; // Insurance records referenced by loaded patients.
 
     /**
      * Constructs a PatientDAO instance with a database connection and initializes the InsuranceDAO.
@@ -27,8 +38,19 @@ public class PatientDAO {
      * @param dbManager The DatabaseManager providing the database connection.
      */
     public PatientDAO(DatabaseManager dbManager) {
-        this.connection = dbManager.getConnection();
-        this.insuranceDAO = new InsuranceDAO(dbManager);
+        this(new DataAccessContext(dbManager));
+    }
+
+    /**
+     * Initializes PatientDAO within a shared data access context, using its related DAOs and reference caches and announcing writes on its event bus.
+     *
+     * @param context the context providing the connection, related DAOs and the event bus
+     */
+    public PatientDAO(DataAccessContext context) {
+        this.connection = context.getDatabaseManager().getConnection();
+        this.events = context.events();
+        this.insuranceDAO = context.insurance();
+        this.insuranceRefs = context.insuranceReferences();
     }
 
     /**
@@ -38,7 +60,7 @@ public class PatientDAO {
      */
     public List<Patient> getAllPatients() {
         List<Patient> patients = new ArrayList<>();
-        String sql = "SELECT * FROM patient";
+        String sql = "SELECT " + COLUMNS + " FROM patient";
 
         try (PreparedStatement stmt = connection.prepareStatement(sql);
              ResultSet rs = stmt.executeQuery()) {
@@ -52,6 +74,32 @@ public class PatientDAO {
         return patients;
     }
 
+    /**
+     * Retrieves a page of patients whose ID, name, postcode or email contains the given text.
+     *
+     * @param query  the text to search for, or null to match every patient
+     * @param limit  the maximum number of patients to return
+     * @param offset the number of matching patients to skip
+     * @return a list of matching Patient objects ordered by ID
+     */
+    public List<Patient> searchPatients(String query, int limit, int offset) {
+        List<Patient> patients = new ArrayList<>();
+        String sql = "SELECT " + COLUMNS + " FROM patient WHERE CONCAT_WS(' ', patientid, firstname, surname, postcode, email) LIKE ? ORDER BY patientid LIMIT ? OFFSET ?";
+
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setString(1, DatabaseManager.toLikePattern(query));
+            stmt.setInt(2, limit);
+            stmt.setInt(3, offset);
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                patients.add(extractPatientFromResultSet(rs));
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return patients;
+    }
+
     /**
      * Retrieves a patient by their unique ID from the database.
      *
@@ -59,7 +107,7 @@ public class PatientDAO {
      * @return A Patient object representing the retrieved patient, or null if no patient is found.
      */
     public Patient getPatientById(String patientId) {
-        String sql = "SELECT * FROM patient WHERE patientid = ?";
+        String sql = "SELECT " + COLUMNS + " FROM patient WHERE patientid = ?";
         try (PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setString(1, patientId);
             ResultSet rs = stmt.executeQuery();
@@ -72,6 +120,184 @@ public class PatientDAO {
         return null;
     }
 
+    /**
+     * Retrieves a patient together with their insurance, every visit with its doctor, and every prescription
+     * with its drug and doctor. A single query joins the patient to the union of their visits and prescriptions,
+     * one row per visit or prescription, so the whole history costs a single round trip. Full texts are returned,
+     * and every record is complete, so the history can be shown without further queries.
+     *
+     * @param patientId the ID of the patient
+     * @return the patient's history with visits and prescriptions newest first, or null if the patient does not exist or an error occurs
+     */
+    public PatientHistory getPatientHistory(String patientId) {
+        String sql = "SELECT p.patientid, p.firstname, p.surname, p.postcode, p.address, p.phone, p.email, p.version,"
+                + " i.insuranceid, i.company, i.address AS insurance_address, i.phone AS insurance_phone, i.version AS insurance_version, h.*"
+                + " FROM patient p LEFT JOIN insurance i ON i.insuranceid = p.insuranceid LEFT JOIN ("
+                + "SELECT 'V' AS kind, v.dateofvisit AS record_date, v.version AS record_version, v.symptoms, v.diagnosis,"
+                + " NULL AS prescriptionid, NULL AS dosage, NULL AS duration, NULL AS comment,"
+                + " NULL AS drugid, NULL AS drugname, NULL AS sideeffects, NULL AS benefits, NULL AS drug_version, " + DOCTOR_COLUMNS
+                + " FROM visit v JOIN doctor d ON d.doctorid = v.doctorid WHERE v.patientid = ?"
+                + " UNION ALL SELECT 'P', pr.dateprescribed, pr.version, NULL, NULL,"
+                + " pr.prescriptionid, pr.dosage, pr.duration, pr.comment,"
+                + " dr.drugid, dr.drugname, dr.sideeffects, dr.benefits, dr.version, " + DOCTOR_COLUMNS
+                + " FROM prescription pr JOIN drug dr ON dr.drugid = pr.drugid JOIN doctor d ON d.doctorid = pr.doctorid"
+                + " WHERE pr.patientid = ?"
+                + ") h ON TRUE WHERE p.patientid = ? ORDER BY h.kind DESC, h.record_date DESC, h.prescriptionid";
+
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setString(1, patientId);
+            stmt.setString(2, patientId);
+            stmt.setString(3, patientId);
+            ResultSet rs = stmt.executeQuery();
+            if (!rs.next()) {
+                return null;
+            }
+
+            Insurance insurance = null;
+            if (rs.getString("insuranceid") != null) {
+                insurance = new Insurance(rs.getString("insuranceid"), rs.getString("company"),
+                        rs.getString("insurance_address"), rs.getString("insurance_phone"));
+                insurance.setVersion(rs.getInt("insurance_version"));
+            }
+            Patient patient = new Patient(rs.getString("patientid"), rs.getString("firstname"), rs.getString("surname"),
+                    rs.getString("postcode"), rs.getString("address"), rs.getString("phone"), rs.getString("email"), insurance);
+            patient.setVersion(rs.getInt("version"));
+
+            // Every row repeats the patient; a patient without visits or prescriptions has a single row without a kind
+            List<Visit> visits = new ArrayList<>();
+            List<Prescription> prescriptions = new ArrayList<>();
+            do {
+                String kind = rs.getString("kind");
+                if ("V".equals(kind)) {
+                    Visit visit = new Visit(patient, extractHistoryDoctor(rs), rs.getDate("record_date"),
+                            rs.getString("symptoms"), rs.getString("diagnosis"));
+                    visit.setVersion(rs.getInt("record_version"));
+                    visits.add(visit);
+                } else if ("P".equals(kind)) {
+                    Drug drug = new Drug(rs.getString("drugid"), rs.getString("drugname"), rs.getString("sideeffects"), rs.getString("benefits"));
+                    drug.setVersion(rs.getInt("drug_version"));
+                    Prescription prescription = new Prescription(rs.getString("prescriptionid"), rs.getDate("record_date"),
+                            rs.getInt("dosage"), rs.getInt("duration"), rs.getString("comment"), drug, extractHistoryDoctor(rs), patient);
+                    prescription.setVersion(rs.getInt("record_version"));
+                    prescriptions.add(prescription);
+                }
+            } while (rs.next());
+            return new PatientHistory(patient, visits, prescriptions);
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Extracts the doctor of a visit or prescription row read by {@link #getPatientHistory(String)}.
+     */
+    private static Doctor extractHistoryDoctor(ResultSet rs) throws SQLException {
+        Doctor doctor = new Doctor(rs.getString("doctorid"), rs.getString("doctor_firstname"), rs.getString("doctor_surname"),
+                rs.getString("doctor_address"), rs.getString("doctor_email"), rs.getString("specialization"), rs.getString("hospital"));
+        doctor.setVersion(rs.getInt("doctor_version"));
+        return doctor;
+    }
+
+    /**
+     * Retrieves the ID and name of every patient, for pickers and other name-only listings.
+     * Insurance details are not looked up.
+     *
+     * @return A list of summary Patient objects in which only the ID, first name and surname are set.
+     */
+    public List<Patient> getPatientSummaries() {
+        List<Patient> patients = new ArrayList<>();
+        String sql = "SELECT " + SUMMARY_COLUMNS + " FROM patient";
+
+        try (PreparedStatement stmt = connection.prepareStatement(sql);
+             ResultSet rs = stmt.executeQuery()) {
+
+            while (rs.next()) {
+                patients.add(extractPatientSummaryFromResultSet(rs));
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return patients;
+    }
+
+    /**
+     * Retrieves the ID and name of a patient, for use when the patient is only referenced from another record.
+     * Insurance details are not looked up.
+     *
+     * @param patientId The unique identifier of the patient.
+     * @return A summary Patient object in which only the ID, first name and surname are set, or null if not found.
+     */
+    public Patient getPatientSummaryById(String patientId) {
+        String sql = "SELECT " + SUMMARY_COLUMNS + " FROM patient WHERE patientid = ?";
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setString(1, patientId);
+            ResultSet rs = stmt.executeQuery();
+            if (rs.next()) {
+                return extractPatientSummaryFromResultSet(rs);
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Retrieves the ID and name of every patient whose IDs are in the given collection with a single query.
+     *
+     * @param ids the IDs to look up; IDs that do not exist are skipped
+     * @return a list of the matching Patient objects in no particular order
+     */
+    public List<Patient> getPatientSummariesByIds(Collection<String> ids) {
+        List<Patient> patients = new ArrayList<>();
+        if (ids.isEmpty()) {
+            return patients;
+        }
+        String sql = "SELECT " + SUMMARY_COLUMNS + " FROM patient WHERE patientid IN (" + DatabaseManager.placeholders(ids.size()) + ")";
+
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            int index = 1;
+            for (String id : ids) {
+                stmt.setString(index++, id);
+            }
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                patients.add(extractPatientSummaryFromResultSet(rs));
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return patients;
+    }
+
+    /**
+     * Retrieves the full record of every patient whose ID is in the given collection with a single query.
+     *
+     * @param ids the IDs to look up; IDs that do not exist are skipped
+     * @return a list of the matching Patient objects in no particular order
+     */
+    public List<Patient> getPatientsByIds(Collection<String> ids) {
+        List<Patient> patients = new ArrayList<>();
+        if (ids.isEmpty()) {
+            return patients;
+        }
+        String sql = "SELECT " + COLUMNS + " FROM patient WHERE patientid IN (" + DatabaseManager.placeholders(ids.size()) + ")";
+
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            int index = 1;
+            for (String id : ids) {
+                stmt.setString(index++, id);
+            }
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                patients.add(extractPatientFromResultSet(rs));
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return patients;
+    }
+
     /**
      * Retrieves a patient from the database by their email address.
      *
@@ -79,7 +305,7 @@ public class PatientDAO {
      * @return The Patient object if found, or null if no patient is found with the given email.
      */
     public Patient getPatientByEmail(String email) {
-        String sql = "SELECT * FROM patient WHERE email = ?";
+        String sql = "SELECT " + COLUMNS + " FROM patient WHERE email = ?";
         try (PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setString(1, email);
             ResultSet rs = stmt.executeQuery();
@@ -99,7 +325,7 @@ public class PatientDAO {
      * @return The Patient object if found, or null if no patient matches the given full name.
      */
     public Patient getPatientByFullName(String fullName) {
-        String sql = "SELECT * FROM patient WHERE CONCAT(firstname, ' ', surname) = ?";
+        String sql = "SELECT " + COLUMNS + " FROM patient WHERE CONCAT(firstname, ' ', surname) = ?";
         try (PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setString(1, fullName);
             ResultSet rs = stmt.executeQuery();
@@ -113,6 +339,43 @@ public class PatientDAO {
     }
 
 
+    /**
+     * Provides the cache through which the insurance of loaded patients is resolved.
+     *
+     * @return the insurance reference cache
+     */
+    public ReferenceCache<Insurance> getInsuranceReferences() {
+        return insuranceRefs;
+    }
+
+    /**
+     * Loads the insurance of every given patient with a single query, so reading it later costs nothing.
+     *
+     * @param patients the patients whose insurance will be read
+     */
+    public void resolveReferences(Collection<Patient> patients) {
+        List<EntityRef<Insurance>> refs = new ArrayList<>();
+        for (Patient patient : patients) {
+            refs.add(patient.getInsuranceRef());
+        }
+        insuranceRefs.loadAllRefs(refs);
+    }
+
+    /**
+     * Loads the insurance of every given patient and fixes each patient's reference to it, so the patients can be read
+     * after the connection is given back to its pool without querying it again.
+     *
+     * @param patients the patients to detach from this DAO's connection
+     */
+    public void detachReferences(Collection<Patient> patients) {
+        resolveReferences(patients);
+        for (Patient patient : patients) {
+            if (patient.getInsuranceRef() != null) {
+                patient.setInsuranceRef(patient.getInsuranceRef().detach());
+            }
+        }
+    }
+
     /**
      * Extracts and constructs a Patient object from the given ResultSet.
      *
@@ -121,9 +384,7 @@ public class PatientDAO {
      * @throws SQLException if an SQL error occurs while accessing the ResultSet
      */
     private Patient extractPatientFromResultSet(ResultSet rs) throws SQLException {
-        Insurance insurance = insuranceDAO.getInsuranceById(rs.getString("insuranceid"));
-
-        return new Patient(
+        Patient patient = new Patient(
                 rs.getString("patientid"),
                 rs.getString("firstname"),
                 rs.getString("surname"),
@@ -131,24 +392,121 @@ public class PatientDAO {
                 rs.getString("postcode"),
                 rs.getString("phone"),
                 rs.getString("email"),
-                insurance
+                null
         );
+        patient.setVersion(rs.getInt("version"));
+
+        String insuranceId = rs.getString("insuranceid");
+        patient.setInsuranceRef(insuranceId != null ? insuranceRefs.ref(insuranceId) : null);
+        return patient;
+    }
+
+    /**
+     * Extracts a summary Patient object holding only the columns in SUMMARY_COLUMNS.
+     *
+     * @param rs the ResultSet containing patient summary data
+     * @return a Patient object with its contact and insurance details left null
+     * @throws SQLException if an SQL error occurs while accessing the ResultSet
+     */
+    private Patient extractPatientSummaryFromResultSet(ResultSet rs) throws SQLException {
+        return new Patient(rs.getString("patientid"), rs.getString("firstname"), rs.getString("surname"), null, null, null, null, null);
+    }
+
+    /**
+     * Retrieves the ID of every patient, e.g. to build a lookup of IDs already in use.
+     *
+     * @return a list of patient IDs, or an empty list if an error occurs
+     */
+    public List<String> getPatientIds() {
+        return DatabaseManager.queryColumn(connection, "SELECT patientid FROM patient");
+    }
+
+    /**
+     * Retrieves the email address of every patient, e.g. to build a lookup of addresses already in use.
+     *
+     * @return a list of email addresses, or an empty list if an error occurs
+     */
+    public List<String> getPatientEmails() {
+        return DatabaseManager.queryColumn(connection, "SELECT email FROM patient");
+    }
+
+    /**
+     * Retrieves the email addresses of the patients whose IDs are in the given collection with a single query.
+     *
+     * @param ids the IDs to look up; IDs that do not exist are skipped
+     * @return a list of email addresses in no particular order, or an empty list if an error occurs
+     */
+    public List<String> getPatientEmailsByIds(Collection<String> ids) {
+        List<String> emails = new ArrayList<>();
+        if (ids.isEmpty()) {
+            return emails;
+        }
+        String sql = "SELECT email FROM patient WHERE patientid IN (" + DatabaseManager.placeholders(ids.size()) + ")";
+
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            int index = 1;
+            for (String id : ids) {
+                stmt.setString(index++, id);
+            }
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                emails.add(rs.getString("email"));
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return emails;
+    }
+
+    /**
+     * Checks whether a patient with the given ID exists without loading the record.
+     *
+     * @param patientId the ID to look up
+     * @return true if a matching row exists, otherwise false
+     */
+    public boolean patientExists(String patientId) {
+        String sql = "SELECT 1 FROM patient WHERE patientid = ?";
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setString(1, patientId);
+            ResultSet rs = stmt.executeQuery();
+            return rs.next();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return false;
+    }
+
+    /**
+     * Checks whether a patient with the given email address exists without loading the record.
+     *
+     * @param email the email address to look up
+     * @return true if a matching row exists, otherwise false
+     */
+    public boolean patientEmailExists(String email) {
+        String sql = "SELECT 1 FROM patient WHERE email = ?";
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setString(1, email);
+            ResultSet rs = stmt.executeQuery();
+            return rs.next();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return false;
     }
 
     /**
      * Attempts to add a new patient record to the database.
      *
      * @param patient The patient object containing details to be added.
-     * @return A map entry where the key is a message indicating the result of the operation,
-     * and the value is the alert type (success or error).
+     * @return An OperationResult with a message and a status indicating the result of the operation.
      */
-    public Map.Entry<String, Alert.AlertType> addPatient(Patient patient) {
-        if (getPatientById(patient.getId()) != null) {
-            return Map.entry("Error: A patient with this ID already exists.", Alert.AlertType.ERROR);
+    public OperationResult addPatient(Patient patient) {
+        if (patientExists(patient.getId())) {
+            return OperationResult.duplicate("Error: A patient with this ID already exists.");
         }
 
-        if (getPatientByEmail(patient.getEmail()) != null) {
-            return Map.entry("Error: A patient with this email already exists.", Alert.AlertType.ERROR);
+        if (patientEmailExists(patient.getEmail())) {
+            return OperationResult.duplicate("Error: A patient with this email already exists.");
         }
 
         String sql = "INSERT INTO patient (patientid, firstname, surname, postcode, address, phone, email, insuranceid) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
@@ -162,12 +520,14 @@ public class PatientDAO {
             stmt.setString(7, patient.getEmail());
             stmt.setString(8, patient.getInsurance() == null ? "NHS" : patient.getInsurance().getId());
 
-            return stmt.executeUpdate() > 0
-                    ? Map.entry("Patient added successfully!", Alert.AlertType.INFORMATION)
-                    : Map.entry("Error: Patient could not be added.", Alert.AlertType.ERROR);
+            if (stmt.executeUpdate() == 0) {
+                return OperationResult.failed("Error: Patient could not be added.");
+            }
+            events.publish(EntityEvent.created(Patient.class, patient.getId(), patient));
+            return OperationResult.success("Patient added successfully!");
         } catch (SQLException e) {
             e.printStackTrace();
-            return Map.entry("Database error occurred. Please try again.", Alert.AlertType.ERROR);
+            return OperationResult.failed("Database error occurred. Please try again.");
         }
     }
 
@@ -175,19 +535,18 @@ public class PatientDAO {
      * Updates an existing patient's details in the database.
      *
      * @param patient The patient object containing updated details.
-     * @return A Map.Entry where the key is a message indicating the result of the update operation,
-     * and the value is the alert type (success or error).
+     * @return An OperationResult with a message and a status indicating the result of the update operation.
      */
-    public Map.Entry<String, Alert.AlertType> updatePatient(Patient patient) {
-        if (getPatientById(patient.getId()) == null) {
-            return Map.entry("Error: Patient with this ID does not exist.", Alert.AlertType.ERROR);
+    public OperationResult updatePatient(Patient patient) {
+        if (!patientExists(patient.getId())) {
+            return OperationResult.notFound("Error: Patient with this ID does not exist.");
         }
 
         if (getPatientByEmail(patient.getEmail()) != null && !getPatientByEmail(patient.getEmail()).getId().equals(patient.getId())) {
-            return Map.entry("Error: A patient with this email already exists.", Alert.AlertType.ERROR);
+            return OperationResult.duplicate("Error: A patient with this email already exists.");
         }
 
-        String sql = "UPDATE patient SET firstname = ?, surname = ?, postcode = ?, address = ?, phone = ?, email = ?, insuranceid = ? WHERE patientid = ?";
+        String sql = "UPDATE patient SET firstname = ?, surname = ?, postcode = ?, address = ?, phone = ?, email = ?, insuranceid = ?, version = version + 1 WHERE patientid = ? AND version = ?";
         try (PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setString(1, patient.getFirstName());
             stmt.setString(2, patient.getSurname());
@@ -197,13 +556,18 @@ public class PatientDAO {
             stmt.setString(6, patient.getEmail());
             stmt.setString(7, patient.getInsurance() == null ? "NHS" : patient.getInsurance().getId());
             stmt.setString(8, patient.getId());
+            stmt.setInt(9, patient.getVersion());
 
-            return stmt.executeUpdate() > 0
-                    ? Map.entry("Patient updated successfully!", Alert.AlertType.INFORMATION)
-                    : Map.entry("Error: No patient was updated.", Alert.AlertType.ERROR);
+            if (stmt.executeUpdate() == 0) {
+                // The row exists (checked above), so its version no longer matches: someone else saved it first
+                return OperationResult.conflict("Error: This patient was changed by another user after you opened it.");
+            }
+            patient.setVersion(patient.getVersion() + 1);
+            events.publish(EntityEvent.updated(Patient.class, patient.getId(), patient));
+            return OperationResult.success("Patient updated successfully!");
         } catch (SQLException e) {
             e.printStackTrace();
-            return Map.entry("Database error occurred. Please try again.", Alert.AlertType.ERROR);
+            return OperationResult.failed("Database error occurred. Please try again.");
         }
     }
 
@@ -211,20 +575,50 @@ public class PatientDAO {
      * Deletes a patient record from the database by their unique ID.
      *
      * @param patientId The unique identifier of the patient to delete.
-     * @return A string indicating the result of the deletion operation.
+     * @return An OperationResult indicating the result of the deletion operation.
+     */
+    public OperationResult deletePatient(String patientId) {
+        return deletePatient(patientId, null);
+    }
+
+    /**
+     * Deletes a patient record from the database by their unique ID.
+     * If a version is given, the record is only deleted while it is still at that version.
+     *
+     * @param patientId The unique identifier of the patient to delete.
+     * @param expectedVersion the version the caller last saw, or null to delete regardless of later changes
+     * @return An OperationResult indicating the result of the deletion operation.
      */
-    public String deletePatient(String patientId) {
-        if (getPatientById(patientId) == null) {
-            return "Error: Patient with this ID does not exist.";
+    public OperationResult deletePatient(String patientId, Integer expectedVersion) {
+        if (!patientExists(patientId)) {
+            return OperationResult.notFound("Error: Patient with this ID does not exist.");
         }
 
-        String sql = "DELETE FROM patient WHERE patientid = ?";
+        String sql = "DELETE FROM patient WHERE patientid = ?" + (expectedVersion != null ? " AND version = ?" : "");
         try (PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setString(1, patientId);
-            return stmt.executeUpdate() > 0 ? "Patient deleted successfully!" : "Error: No patient was deleted.";
+            if (expectedVersion != null) {
+                stmt.setInt(2, expectedVersion);
+            }
+            if (stmt.executeUpdate() == 0) {
+                // The row exists (checked above), so its version no longer matches: someone else saved it first
+                return OperationResult.conflict("Error: This patient was changed by another user after you opened it.");
+            }
+            events.publish(EntityEvent.deleted(Patient.class, patientId));
+            return OperationResult.success("Patient deleted successfully!");
         } catch (SQLException e) {
             e.printStackTrace();
-            return "Database error occurred. Please try again.";
+            return OperationResult.failed("Database error occurred. Please try again.");
         }
     }
+
+    /**
+     * Everything recorded about one patient, read by {@link #getPatientHistory(String)}.
+     *
+     * @param patient       the patient, with their insurance if they have one
+     * @param visits        the patient's visits with their doctors, newest first
+     * @param prescriptions the patient's prescriptions with their drugs and doctors, newest first
+     */
+    public record PatientHistory(Patient patient, List<Visit> visits, List<Prescription> prescriptions) {
+    }
 }
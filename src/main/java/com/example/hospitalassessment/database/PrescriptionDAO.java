@@ -2,17 +2,18 @@ package com.example.hospitalassessment.database;
 
 import com.example.hospitalassessment.models.Doctor;
 import com.example.hospitalassessment.models.Drug;
+import com.example.hospitalassessment.models.EntityRef;
 import com.example.hospitalassessment.models.Patient;
 import com.example.hospitalassessment.models.Prescription;
-import javafx.scene.control.Alert;
 
 import java.sql.Connection;
+import java.sql.Date;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
-import java.util.Map;
 
 /**
  * Manages CRUD operations for prescription-related data in the database.
@@ -20,10 +21,18 @@ import java.util.Map;
  * Utilizes a database connection to execute SQL queries.
  */
 public class PrescriptionDAO {
+    private static final String COLUMNS = "prescriptionid, dateprescribed, dosage, duration, comment, drugid, doctorid, patientid, version"; // Columns of a full prescription record.
+    private static final String LIST_COLUMNS = "prescriptionid, dateprescribed, dosage, duration, version, "
+            + DatabaseManager.previewColumn("comment") + ", drugid, doctorid, patientid"; // Columns for list views, with the comment shortened.
+
     private final Connection connection; // Represents the database connection.
+    private final EntityEventBus events; // Announces successful writes.
     private final DoctorDAO doctorDAO; // Manages doctor-related data operations.
     private final PatientDAO patientDAO; // Manages patient-related data operations.
     private final DrugDAO drugDAO; // Manages drug-related data operations.
+    private final ReferenceCache<Drug> drugRefs; // Drugs referenced by loaded prescriptions.
+    private final ReferenceCache<Doctor> doctorRefs; // Doctors referenced by loaded prescriptions.
+    private final ReferenceCache<Patient> patientRefs; // Patients referenced by loaded prescriptions.
 
     /**
      * Initializes a PrescriptionDAO instance with the provided DatabaseManager.
@@ -31,20 +40,36 @@ public class PrescriptionDAO {
      * @param dbManager the DatabaseManager instance for managing the database connection
      */
     public PrescriptionDAO(DatabaseManager dbManager) {
-        this.connection = dbManager.getConnection();
-        this.doctorDAO = new DoctorDAO(dbManager);
-        this.patientDAO = new PatientDAO(dbManager);
-        this.drugDAO = new DrugDAO(dbManager);
+        this(new DataAccessContext(dbManager));
+    }
+
+    /**
+     * Initializes PrescriptionDAO within a shared data access context, using its related DAOs and reference caches and announcing writes on its event bus.
+     *
+     * @param context the context providing the connection, related DAOs and the event bus
+     */
+    public PrescriptionDAO(DataAccessContext context) {
+        this.connection = context.getDatabaseManager().getConnection();
+        this.events = context.events();
+        this.doctorDAO = context.doctors();
+        this.patientDAO = context.patients();
+        this.drugDAO = context.drugs();
+        this.drugRefs = context.drugReferences();
+        this.doctorRefs = context.doctorReferences();
+        this.patientRefs = context.patientReferences();
     }
 
     /**
      * Retrieves all prescriptions from the database.
      *
+     * Comments longer than {@link DatabaseManager#PREVIEW_LENGTH} characters are shortened;
+     * use {@link #loadFullComment(Prescription)} before editing a prescription.
+     *
      * @return a list of Prescription objects representing all prescriptions in the database.
      */
     public List<Prescription> getAllPrescriptions() {
         List<Prescription> prescriptions = new ArrayList<>();
-        String sql = "SELECT * FROM prescription";
+        String sql = "SELECT " + LIST_COLUMNS + " FROM prescription";
 
         try (PreparedStatement stmt = connection.prepareStatement(sql);
              ResultSet rs = stmt.executeQuery()) {
@@ -58,6 +83,91 @@ public class PrescriptionDAO {
         return prescriptions;
     }
 
+    /**
+     * Retrieves a page of prescriptions whose ID, drug ID, doctor ID, patient ID or comment contains the given text.
+     * Long comments are shortened as in {@link #getAllPrescriptions()}.
+     *
+     * @param query  the text to search for, or null to match every prescription
+     * @param limit  the maximum number of prescriptions to return
+     * @param offset the number of matching prescriptions to skip
+     * @return a list of matching Prescription objects ordered by ID
+     */
+    public List<Prescription> searchPrescriptions(String query, int limit, int offset) {
+        List<Prescription> prescriptions = new ArrayList<>();
+        String sql = "SELECT " + LIST_COLUMNS + " FROM prescription WHERE CONCAT_WS(' ', prescriptionid, drugid, doctorid, patientid, comment) LIKE ? ORDER BY prescriptionid LIMIT ? OFFSET ?";
+
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setString(1, DatabaseManager.toLikePattern(query));
+            stmt.setInt(2, limit);
+            stmt.setInt(3, offset);
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                prescriptions.add(extractPrescriptionFromResultSet(rs));
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return prescriptions;
+    }
+
+    /**
+     * Retrieves the prescriptions whose IDs are in the given collection with a single query.
+     * Long comments are shortened as in {@link #getAllPrescriptions()}.
+     *
+     * @param ids the IDs to look up; IDs that do not exist are skipped
+     * @return a list of the matching Prescription objects in no particular order
+     */
+    public List<Prescription> getPrescriptionsByIds(Collection<String> ids) {
+        List<Prescription> prescriptions = new ArrayList<>();
+        if (ids.isEmpty()) {
+            return prescriptions;
+        }
+        String sql = "SELECT " + LIST_COLUMNS + " FROM prescription WHERE prescriptionid IN (" + DatabaseManager.placeholders(ids.size()) + ")";
+
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            int index = 1;
+            for (String id : ids) {
+                stmt.setString(index++, id);
+            }
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                prescriptions.add(extractPrescriptionFromResultSet(rs));
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return prescriptions;
+    }
+
+    /**
+     * Retrieves a patient's prescriptions that are taken during any part of the given period.
+     * A prescription is taken from the day it was prescribed for its duration in days, and for at least one day.
+     * Long comments are shortened as in {@link #getAllPrescriptions()}.
+     *
+     * @param patientId the ID of the patient
+     * @param from      the first day of the period
+     * @param until     the day after the last day of the period
+     * @return the prescriptions taken during the period, or an empty list if an error occurs
+     */
+    public List<Prescription> getActivePrescriptions(String patientId, Date from, Date until) {
+        List<Prescription> prescriptions = new ArrayList<>();
+        String sql = "SELECT " + LIST_COLUMNS + " FROM prescription WHERE patientid = ? AND dateprescribed < ?"
+                + " AND DATE_ADD(dateprescribed, INTERVAL GREATEST(duration, 1) DAY) > ?";
+
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setString(1, patientId);
+            stmt.setDate(2, until);
+            stmt.setDate(3, from);
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                prescriptions.add(extractPrescriptionFromResultSet(rs));
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return prescriptions;
+    }
+
     /**
      * Retrieves a prescription by its unique identifier from the database.
      *
@@ -65,7 +175,7 @@ public class PrescriptionDAO {
      * @return the Prescription corresponding to the specified ID, or null if not found
      */
     public Prescription getPrescriptionById(String prescriptionId) {
-        String sql = "SELECT * FROM prescription WHERE prescriptionid = ?";
+        String sql = "SELECT " + COLUMNS + " FROM prescription WHERE prescriptionid = ?";
         try (PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setString(1, prescriptionId);
             ResultSet rs = stmt.executeQuery();
@@ -78,39 +188,148 @@ public class PrescriptionDAO {
         return null;
     }
 
+    /**
+     * Replaces the shortened comment of a prescription loaded for a list view with the full text.
+     *
+     * @param prescription the prescription to complete
+     * @return the same prescription with its full comment, or null if it no longer exists
+     */
+    public Prescription loadFullComment(Prescription prescription) {
+        String sql = "SELECT comment FROM prescription WHERE prescriptionid = ?";
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setString(1, prescription.getId());
+            ResultSet rs = stmt.executeQuery();
+            if (rs.next()) {
+                prescription.setComment(rs.getString("comment"));
+                return prescription;
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Provides the cache through which the drugs of loaded prescriptions are resolved.
+     *
+     * @return the drug reference cache
+     */
+    public ReferenceCache<Drug> getDrugReferences() {
+        return drugRefs;
+    }
+
+    /**
+     * Provides the cache through which the doctors of loaded prescriptions are resolved.
+     *
+     * @return the doctor reference cache
+     */
+    public ReferenceCache<Doctor> getDoctorReferences() {
+        return doctorRefs;
+    }
+
+    /**
+     * Provides the cache through which the patients of loaded prescriptions are resolved.
+     *
+     * @return the patient reference cache
+     */
+    public ReferenceCache<Patient> getPatientReferences() {
+        return patientRefs;
+    }
+
+    /**
+     * Loads the drugs, doctors and patients of every given prescription with one query per table,
+     * so reading them later costs nothing.
+     *
+     * @param prescriptions the prescriptions whose references will be read
+     */
+    public void resolveReferences(Collection<Prescription> prescriptions) {
+        List<EntityRef<Drug>> drugs = new ArrayList<>();
+        List<EntityRef<Doctor>> doctors = new ArrayList<>();
+        List<EntityRef<Patient>> patients = new ArrayList<>();
+        for (Prescription prescription : prescriptions) {
+            drugs.add(prescription.getDrugRef());
+            doctors.add(prescription.getDoctorRef());
+            patients.add(prescription.getPatientRef());
+        }
+        drugRefs.loadAllRefs(drugs);
+        doctorRefs.loadAllRefs(doctors);
+        patientRefs.loadAllRefs(patients);
+    }
+
+    /**
+     * Loads the drugs, doctors and patients of every given prescription and fixes each prescription's references to them,
+     * so the prescriptions can be read after the connection is given back to its pool without querying it again.
+     *
+     * @param prescriptions the prescriptions to detach from this DAO's connection
+     */
+    public void detachReferences(Collection<Prescription> prescriptions) {
+        resolveReferences(prescriptions);
+        for (Prescription prescription : prescriptions) {
+            prescription.setDrugRef(prescription.getDrugRef().detach());
+            prescription.setDoctorRef(prescription.getDoctorRef().detach());
+            prescription.setPatientRef(prescription.getPatientRef().detach());
+        }
+    }
+
     /**
      * Extracts a Prescription object from the given ResultSet.
+     * The drug, doctor and patient are referenced lazily and loaded through the reference caches when first read.
      *
      * @param rs the ResultSet containing prescription data.
      * @return a Prescription object populated with data from the ResultSet.
      * @throws SQLException if a database access error occurs.
      */
     private Prescription extractPrescriptionFromResultSet(ResultSet rs) throws SQLException {
-        Doctor doctor = doctorDAO.getDoctorById(rs.getString("doctorid"));
-        Patient patient = patientDAO.getPatientById(rs.getString("patientid"));
-        Drug drug = drugDAO.getDrugById(rs.getString("drugid"));
-
-        return new Prescription(
+        Prescription prescription = new Prescription(
                 rs.getString("prescriptionid"),
                 rs.getDate("dateprescribed"),
                 rs.getInt("dosage"),
                 rs.getInt("duration"),
                 rs.getString("comment"),
-                drug,
-                doctor,
-                patient
+                drugRefs.ref(rs.getString("drugid")),
+                doctorRefs.ref(rs.getString("doctorid")),
+                patientRefs.ref(rs.getString("patientid"))
         );
+        prescription.setVersion(rs.getInt("version"));
+        return prescription;
+    }
+
+    /**
+     * Retrieves the ID of every prescription, e.g. to build a lookup of IDs already in use.
+     *
+     * @return a list of prescription IDs, or an empty list if an error occurs
+     */
+    public List<String> getPrescriptionIds() {
+        return DatabaseManager.queryColumn(connection, "SELECT prescriptionid FROM prescription");
+    }
+
+    /**
+     * Checks whether a prescription with the given ID exists without loading the record.
+     *
+     * @param prescriptionId the ID to look up
+     * @return true if a matching row exists, otherwise false
+     */
+    public boolean prescriptionExists(String prescriptionId) {
+        String sql = "SELECT 1 FROM prescription WHERE prescriptionid = ?";
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setString(1, prescriptionId);
+            ResultSet rs = stmt.executeQuery();
+            return rs.next();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return false;
     }
 
     /**
      * Adds a new prescription to the database.
      *
      * @param prescription the Prescription object to be added
-     * @return a Map.Entry containing a message as key and an alert type as value
+     * @return an OperationResult containing a message and a status
      */
-    public Map.Entry<String, Alert.AlertType> addPrescription(Prescription prescription) {
-        if (getPrescriptionById(prescription.getId()) != null) {
-            return Map.entry("Error: A prescription with this ID already exists.", Alert.AlertType.ERROR);
+    public OperationResult addPrescription(Prescription prescription) {
+        if (prescriptionExists(prescription.getId())) {
+            return OperationResult.duplicate("Error: A prescription with this ID already exists.");
         }
 
         String sql = "INSERT INTO prescription (prescriptionid, dateprescribed, dosage, duration, comment, drugid, doctorid, patientid) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
@@ -124,12 +343,14 @@ public class PrescriptionDAO {
             stmt.setString(7, prescription.getDoctor().getId());
             stmt.setString(8, prescription.getPatient().getId());
 
-            return stmt.executeUpdate() > 0
-                    ? Map.entry("Prescription added successfully!", Alert.AlertType.INFORMATION)
-                    : Map.entry("Error: Prescription could not be added.", Alert.AlertType.ERROR);
+            if (stmt.executeUpdate() == 0) {
+                return OperationResult.failed("Error: Prescription could not be added.");
+            }
+            events.publish(EntityEvent.created(Prescription.class, prescription.getId(), prescription));
+            return OperationResult.success("Prescription added successfully!");
         } catch (SQLException e) {
             e.printStackTrace();
-            return Map.entry("Database error occurred. Please try again.", Alert.AlertType.ERROR);
+            return OperationResult.failed("Database error occurred. Please try again.");
         }
     }
 
@@ -137,14 +358,14 @@ public class PrescriptionDAO {
      * Updates an existing prescription in the database.
      *
      * @param prescription the Prescription object containing updated data
-     * @return a Map.Entry containing a message and an AlertType indicating success or error
+     * @return an OperationResult containing a message and a status indicating success or error
      */
-    public Map.Entry<String, Alert.AlertType> updatePrescription(Prescription prescription) {
-        if (getPrescriptionById(prescription.getId()) == null) {
-            return Map.entry("Error: Prescription with this ID does not exist.", Alert.AlertType.ERROR);
+    public OperationResult updatePrescription(Prescription prescription) {
+        if (!prescriptionExists(prescription.getId())) {
+            return OperationResult.notFound("Error: Prescription with this ID does not exist.");
         }
 
-        String sql = "UPDATE prescription SET dateprescribed = ?, dosage = ?, duration = ?, comment = ?, drugid = ?, doctorid = ?, patientid = ? WHERE prescriptionid = ?";
+        String sql = "UPDATE prescription SET dateprescribed = ?, dosage = ?, duration = ?, comment = ?, drugid = ?, doctorid = ?, patientid = ?, version = version + 1 WHERE prescriptionid = ? AND version = ?";
         try (PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setDate(1, prescription.getDatePrescribed());
             stmt.setInt(2, prescription.getDosage());
@@ -154,13 +375,18 @@ public class PrescriptionDAO {
             stmt.setString(6, prescription.getDoctor().getId());
             stmt.setString(7, prescription.getPatient().getId());
             stmt.setString(8, prescription.getId());
+            stmt.setInt(9, prescription.getVersion());
 
-            return stmt.executeUpdate() > 0
-                    ? Map.entry("Prescription updated successfully!", Alert.AlertType.INFORMATION)
-                    : Map.entry("Error: No prescription was updated.", Alert.AlertType.ERROR);
+            if (stmt.executeUpdate() == 0) {
+                // The row exists (checked above), so its version no longer matches: someone else saved it first
+                return OperationResult.conflict("Error: This prescription was changed by another user after you opened it.");
+            }
+            prescription.setVersion(prescription.getVersion() + 1);
+            events.publish(EntityEvent.updated(Prescription.class, prescription.getId(), prescription));
+            return OperationResult.success("Prescription updated successfully!");
         } catch (SQLException e) {
             e.printStackTrace();
-            return Map.entry("Database error occurred. Please try again.", Alert.AlertType.ERROR);
+            return OperationResult.failed("Database error occurred. Please try again.");
         }
     }
 
@@ -168,21 +394,40 @@ public class PrescriptionDAO {
      * Deletes a prescription from the database based on the provided prescription ID.
      *
      * @param prescriptionId the unique identifier of the prescription to delete
-     * @return a message indicating whether the deletion was successful or an error occurred
+     * @return an OperationResult indicating whether the deletion was successful or an error occurred
      */
-    public String deletePrescription(String prescriptionId) {
-        if (getPrescriptionById(prescriptionId) == null) {
-            return "Error: Prescription with this ID does not exist.";
+    public OperationResult deletePrescription(String prescriptionId) {
+        return deletePrescription(prescriptionId, null);
+    }
+
+    /**
+     * Deletes a prescription from the database based on the provided prescription ID.
+     * If a version is given, the record is only deleted while it is still at that version.
+     *
+     * @param prescriptionId the unique identifier of the prescription to delete
+     * @param expectedVersion the version the caller last saw, or null to delete regardless of later changes
+     * @return an OperationResult indicating whether the deletion was successful or an error occurred
+     */
+    public OperationResult deletePrescription(String prescriptionId, Integer expectedVersion) {
+        if (!prescriptionExists(prescriptionId)) {
+            return OperationResult.notFound("Error: Prescription with this ID does not exist.");
         }
 
-        String sql = "DELETE FROM prescription WHERE prescriptionid = ?";
+        String sql = "DELETE FROM prescription WHERE prescriptionid = ?" + (expectedVersion != null ? " AND version = ?" : "");
         try (PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setString(1, prescriptionId);
-            int rowsAffected = stmt.executeUpdate();
-            return rowsAffected > 0 ? "Prescription deleted successfully!" : "Error: No prescription was deleted.";
+            if (expectedVersion != null) {
+                stmt.setInt(2, expectedVersion);
+            }
+            if (stmt.executeUpdate() == 0) {
+                // The row exists (checked above), so its version no longer matches: someone else saved it first
+                return OperationResult.conflict("Error: This prescription was changed by another user after you opened it.");
+            }
+            events.publish(EntityEvent.deleted(Prescription.class, prescriptionId));
+            return OperationResult.success("Prescription deleted successfully!");
         } catch (SQLException e) {
             e.printStackTrace();
-            return "Database error occurred. Please try again.";
+            return OperationResult.failed("Database error occurred. Please try again.");
         }
     }
 }
@@ -0,0 +1,164 @@
+package com.example.hospitalassessment.database;
+
+import com.example.hospitalassessment.models.BaseEntity;
+import com.example.hospitalassessment.models.EntityRef;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+
+/**
+ * Caches entities referenced from other records and hands out lazy references to them.
+ * References resolve through the cache, and missing entries can be loaded for many IDs at once
+ * with a single IN query, so a list of records costs one query per referenced table instead of one per row.
+ * Entries are usually keyed by the entity's ID; {@link #keyed} creates a cache keyed by something else, such as the
+ * main doctor of each patient keyed by patient ID.
+ *
+ * @param <T> the type of the referenced entity
+ */
+public class ReferenceCache<T extends BaseEntity> {
+    private static final int MAX_BATCH_SIZE = 500; // Largest number of IDs sent in one IN query.
+
+    private final Function<Collection<String>, Map<String, T>> batchLoader; // Loads the entity of every key in the given collection, by key.
+    private final BooleanSupplier connected; // Tells whether IDs missing from a load really do not exist.
+    private final Map<String, Optional<T>> entries = new ConcurrentHashMap<>(); // Loaded entities by ID; empty if the ID does not exist.
+
+    /**
+     * Creates a cache that loads entities through the given batch query.
+     *
+     * @param batchLoader a function returning the entities whose IDs are in the given collection
+     */
+    public ReferenceCache(Function<Collection<String>, List<T>> batchLoader) {
+        this(batchLoader, () -> true);
+    }
+
+    /**
+     * Creates a cache that loads entities through the given batch query, and remembers IDs as missing
+     * only while the database can be reached, so that an outage does not hide records once it is over.
+     *
+     * @param batchLoader a function returning the entities whose IDs are in the given collection
+     * @param connected   tells whether the database can currently be reached
+     */
+    public ReferenceCache(Function<Collection<String>, List<T>> batchLoader, BooleanSupplier connected) {
+        this(connected, ids -> byId(batchLoader.apply(ids)));
+    }
+
+    private ReferenceCache(BooleanSupplier connected, Function<Collection<String>, Map<String, T>> batchLoader) {
+        this.batchLoader = batchLoader;
+        this.connected = connected;
+    }
+
+    /**
+     * Creates a cache whose entries are keyed by something other than the entity's ID.
+     *
+     * @param batchLoader a function returning the entity of every given key that has one, by key
+     * @param connected   tells whether the database can currently be reached
+     * @param <T>         the type of the cached entity
+     * @return a cache loading through the given batch query
+     */
+    public static <T extends BaseEntity> ReferenceCache<T> keyed(Function<Collection<String>, Map<String, T>> batchLoader, BooleanSupplier connected) {
+        return new ReferenceCache<>(connected, batchLoader);
+    }
+
+    private static <T extends BaseEntity> Map<String, T> byId(List<T> entities) {
+        Map<String, T> byId = new HashMap<>();
+        for (T entity : entities) {
+            byId.put(entity.getId(), entity);
+        }
+        return byId;
+    }
+
+    /**
+     * Creates a reference to the entity with the given ID.
+     * The reference reads through this cache, so it reflects invalidations and loads the entity when it is missing.
+     *
+     * @param id the ID of the referenced entity
+     * @return a reference resolving through this cache
+     */
+    public EntityRef<T> ref(String id) {
+        return EntityRef.lazy(id, this::get, this::isLoaded);
+    }
+
+    /**
+     * Checks whether the entity with the given ID can be read without a query.
+     *
+     * @param id the ID of the entity
+     * @return true if the entity, or the fact that it does not exist, is cached
+     */
+    public boolean isLoaded(String id) {
+        return entries.containsKey(id);
+    }
+
+    /**
+     * Provides the entity with the given ID, loading it if it is not cached.
+     *
+     * @param id the ID of the entity
+     * @return the entity, or null if it does not exist
+     */
+    public T get(String id) {
+        if (id == null) {
+            return null;
+        }
+        if (!entries.containsKey(id)) {
+            loadAll(List.of(id));
+        }
+        return entries.getOrDefault(id, Optional.empty()).orElse(null);
+    }
+
+    /**
+     * Loads every entity in the collection that is not cached yet, in as few queries as possible.
+     *
+     * @param ids the IDs to load
+     */
+    public void loadAll(Collection<String> ids) {
+        List<String> missing = new ArrayList<>();
+        for (String id : new LinkedHashSet<>(ids)) {
+            if (id != null && !entries.containsKey(id)) {
+                missing.add(id);
+            }
+        }
+
+        for (int start = 0; start < missing.size(); start += MAX_BATCH_SIZE) {
+            List<String> batch = missing.subList(start, Math.min(start + MAX_BATCH_SIZE, missing.size()));
+            batchLoader.apply(batch).forEach((key, entity) -> entries.put(key, Optional.of(entity)));
+            if (!connected.getAsBoolean()) {
+                continue; // The load failed; try the missing IDs again next time
+            }
+            for (String id : batch) {
+                entries.putIfAbsent(id, Optional.empty());
+            }
+        }
+    }
+
+    /**
+     * Loads the targets of every unresolved reference in the collection.
+     *
+     * @param refs the references to prepare
+     */
+    public void loadAllRefs(Collection<EntityRef<T>> refs) {
+        List<String> ids = new ArrayList<>();
+        for (EntityRef<T> ref : refs) {
+            if (ref != null && !ref.isResolved()) {
+                ids.add(ref.getId());
+            }
+        }
+        loadAll(ids);
+    }
+
+    /**
+     * Removes an entity from the cache so that new references load it again.
+     *
+     * @param id the ID of the entity to forget
+     */
+    public void invalidate(String id) {
+        entries.remove(id);
+    }
+
+    /**
+     * Removes every entity from the cache.
+     */
+    public void clear() {
+        entries.clear();
+    }
+}
@@ -0,0 +1,221 @@
+package com.example.hospitalassessment.database;
+
+import java.sql.*;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ReportDAO computes workload figures with SQL aggregates, so that only one row per doctor, hospital or
+ * specialization leaves the database. The date ranges are served by the covering indexes in
+ * {@code sql/add_report_indexes.sql}. It also streams the prescriptions of a period for figures SQL cannot compute,
+ * such as percentiles, handing them to a callback one at a time as they arrive.
+ */
+public class ReportDAO {
+    private static final int FETCH_SIZE = 10_000; // Rows fetched from the server per round trip while streaming.
+
+    private final Connection connection; // Represents the database connection.
+
+    /**
+     * Initializes ReportDAO with a database connection.
+     *
+     * @param dbManager the DatabaseManager providing the database connection
+     */
+    public ReportDAO(DatabaseManager dbManager) {
+        this.connection = dbManager.getConnection();
+    }
+
+    /**
+     * Retrieves the workload of every doctor within a period.
+     *
+     * @param from  the first day of the period
+     * @param until the day after the last day of the period
+     * @return one entry per doctor, including doctors without visits or prescriptions, or an empty list if an error occurs
+     */
+    public List<DoctorWorkload> getDoctorWorkloads(LocalDate from, LocalDate until) {
+        List<DoctorWorkload> workloads = new ArrayList<>();
+        String sql = "SELECT d.doctorid, CONCAT(d.firstname, ' ', d.surname) AS name, d.specialization, d.hospital, "
+                + "COALESCE(v.visits, 0) AS visits, COALESCE(v.days, 0) AS days, COALESCE(v.patients, 0) AS patients, "
+                + "COALESCE(p.prescriptions, 0) AS prescriptions FROM doctor d "
+                + "LEFT JOIN (SELECT doctorid, COUNT(*) AS visits, COUNT(DISTINCT dateofvisit) AS days, COUNT(DISTINCT patientid) AS patients "
+                + "FROM visit WHERE dateofvisit >= ? AND dateofvisit < ? GROUP BY doctorid) v ON v.doctorid = d.doctorid "
+                + "LEFT JOIN (SELECT doctorid, COUNT(*) AS prescriptions FROM prescription "
+                + "WHERE dateprescribed >= ? AND dateprescribed < ? GROUP BY doctorid) p ON p.doctorid = d.doctorid "
+                + "ORDER BY visits DESC, d.doctorid";
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            setPeriod(stmt, 1, from, until);
+            setPeriod(stmt, 3, from, until);
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                workloads.add(new DoctorWorkload(
+                        rs.getString("doctorid"),
+                        rs.getString("name"),
+                        rs.getString("specialization"),
+                        rs.getString("hospital"),
+                        rs.getInt("visits"),
+                        rs.getInt("days"),
+                        rs.getInt("patients"),
+                        rs.getInt("prescriptions")
+                ));
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return workloads;
+    }
+
+    /**
+     * Retrieves the combined workload of the doctors of each hospital or specialization within a period.
+     * A patient seen by several doctors of the group is counted once.
+     *
+     * @param grouping what to group the doctors by
+     * @param from     the first day of the period
+     * @param until    the day after the last day of the period
+     * @return one entry per group, largest first, or an empty list if an error occurs
+     */
+    public List<GroupWorkload> getGroupWorkloads(Grouping grouping, LocalDate from, LocalDate until) {
+        List<GroupWorkload> workloads = new ArrayList<>();
+        String group = "COALESCE(d." + grouping.column + ", '')";
+        String sql = "SELECT g.name, g.doctors, COALESCE(v.visits, 0) AS visits, COALESCE(v.patients, 0) AS patients, "
+                + "COALESCE(p.prescriptions, 0) AS prescriptions "
+                + "FROM (SELECT " + group + " AS name, COUNT(*) AS doctors FROM doctor d GROUP BY name) g "
+                + "LEFT JOIN (SELECT " + group + " AS name, COUNT(*) AS visits, COUNT(DISTINCT vi.patientid) AS patients "
+                + "FROM visit vi JOIN doctor d ON d.doctorid = vi.doctorid WHERE vi.dateofvisit >= ? AND vi.dateofvisit < ? GROUP BY name) v "
+                + "ON v.name = g.name "
+                + "LEFT JOIN (SELECT " + group + " AS name, COUNT(*) AS prescriptions "
+                + "FROM prescription pr JOIN doctor d ON d.doctorid = pr.doctorid WHERE pr.dateprescribed >= ? AND pr.dateprescribed < ? GROUP BY name) p "
+                + "ON p.name = g.name "
+                + "ORDER BY visits DESC, g.name";
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            setPeriod(stmt, 1, from, until);
+            setPeriod(stmt, 3, from, until);
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                workloads.add(new GroupWorkload(
+                        rs.getString("name"),
+                        rs.getInt("doctors"),
+                        rs.getInt("visits"),
+                        rs.getInt("patients"),
+                        rs.getInt("prescriptions")
+                ));
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return workloads;
+    }
+
+    /**
+     * Streams the prescriptions written within a period, in no particular order.
+     *
+     * @param from    the first day of the period
+     * @param until   the day after the last day of the period
+     * @param handler receives each prescription
+     * @return the number of prescriptions streamed, or -1 if an error occurs
+     */
+    public long streamPrescriptions(LocalDate from, LocalDate until, PrescriptionHandler handler) {
+        String sql = "SELECT drugid, doctorid, dateprescribed, dosage, duration FROM prescription "
+                + "WHERE dateprescribed >= ? AND dateprescribed < ?";
+        long rows = 0;
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            setPeriod(stmt, 1, from, until);
+            stmt.setFetchSize(FETCH_SIZE);
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                handler.accept(rs.getString(1), rs.getString(2), rs.getDate(3).toLocalDate().toEpochDay(), rs.getInt(4), rs.getInt(5));
+                rows++;
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return -1;
+        }
+        return rows;
+    }
+
+    /**
+     * Retrieves the name of every drug.
+     *
+     * @return drug names by drug ID, or an empty map if an error occurs
+     */
+    public Map<String, String> getDrugNames() {
+        return getNames("SELECT drugid, drugname FROM drug");
+    }
+
+    /**
+     * Retrieves the full name of every doctor.
+     *
+     * @return doctor names by doctor ID, or an empty map if an error occurs
+     */
+    public Map<String, String> getDoctorNames() {
+        return getNames("SELECT doctorid, CONCAT(firstname, ' ', surname) FROM doctor");
+    }
+
+    private Map<String, String> getNames(String sql) {
+        Map<String, String> names = new HashMap<>();
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                names.put(rs.getString(1), rs.getString(2));
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return names;
+    }
+
+    private static void setPeriod(PreparedStatement stmt, int index, LocalDate from, LocalDate until) throws SQLException {
+        stmt.setDate(index, Date.valueOf(from));
+        stmt.setDate(index + 1, Date.valueOf(until));
+    }
+
+    /**
+     * What doctors are grouped by in a combined workload.
+     */
+    public enum Grouping {
+        HOSPITAL("hospital"), SPECIALIZATION("specialization");
+
+        private final String column; // Doctor column the doctors are grouped by.
+
+        Grouping(String column) {
+            this.column = column;
+        }
+    }
+
+    /**
+     * A doctor's workload within a period.
+     *
+     * @param doctorId       the ID of the doctor
+     * @param name           the doctor's full name
+     * @param specialization the doctor's specialization
+     * @param hospital       the hospital the doctor works at
+     * @param visits         the number of visits
+     * @param activeDays     the number of days with at least one visit
+     * @param patients       the number of distinct patients visiting
+     * @param prescriptions  the number of prescriptions written
+     */
+    public record DoctorWorkload(String doctorId, String name, String specialization, String hospital,
+                                 int visits, int activeDays, int patients, int prescriptions) {
+    }
+
+    /**
+     * The combined workload of a hospital's or specialization's doctors within a period.
+     *
+     * @param name          the hospital or specialization, empty for doctors without one
+     * @param doctors       the number of doctors in the group
+     * @param visits        the number of visits
+     * @param patients      the number of distinct patients visiting
+     * @param prescriptions the number of prescriptions written
+     */
+    public record GroupWorkload(String name, int doctors, int visits, int patients, int prescriptions) {
+    }
+
+    /**
+     * Receives streamed prescriptions.
+     */
+    @FunctionalInterface
+    public interface PrescriptionHandler {
+        void accept(String drugId, String doctorId, long epochDay, int dosage, int duration);
+    }
+}
@@ -0,0 +1,299 @@
+package com.example.hospitalassessment.database;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Backs the Connection handed out by a DatabaseManager, so that DAOs holding on to it survive a database restart
+ * or a network failure. The physical connection underneath is checked before use once it has been idle, replaced
+ * when it turns out to be broken, and queries that fail because the connection was lost are retried on a new
+ * connection with exponential backoff. Updates are not retried, as the lost connection may already have applied them.
+ * Every call goes through a {@link CircuitBreaker}, so an unreachable database is reported at once
+ * instead of after a timeout per call.
+ */
+final class ResilientConnection implements InvocationHandler {
+    private static final int MAX_ATTEMPTS = 3; // Tries of a query before its failure is reported.
+    private static final long INITIAL_BACKOFF_MILLIS = 200; // Pause before the first retry, doubled for each further one.
+    private static final long VALIDATE_AFTER_IDLE_MILLIS = 30_000; // Idle time after which the connection is checked before use.
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2; // Longest wait for the check to be answered.
+    private static final int CONNECT_TIMEOUT_MILLIS = Integer.getInteger("hospital.db.connectTimeoutMillis", 5_000); // Longest wait for a new connection.
+    private static final int NETWORK_TIMEOUT_MILLIS = Integer.getInteger("hospital.db.networkTimeoutMillis", 15_000); // Longest wait for a reply before the connection counts as lost.
+
+    private final String url; // The database URL.
+    private final Properties credentials; // User, password and connection options.
+    private final CircuitBreaker breaker; // Shared with every other connection to the database.
+    private final Connection proxy; // The connection handed to DAOs.
+
+    private Connection physical; // The current physical connection, or null after it was lost. Guarded by this.
+    private long lastUsed; // When the physical connection was last handed out. Guarded by this.
+    private boolean closed; // Whether the connection was closed by its owner. Guarded by this.
+    private volatile boolean healthy = true; // Whether the last call reached the database.
+
+    private ResilientConnection(String url, String user, String password, CircuitBreaker breaker) {
+        this.url = url;
+        this.credentials = new Properties();
+        credentials.setProperty("user", user);
+        credentials.setProperty("password", password);
+        credentials.setProperty("connectTimeout", String.valueOf(CONNECT_TIMEOUT_MILLIS));
+        this.breaker = breaker;
+        this.proxy = (Connection) Proxy.newProxyInstance(ResilientConnection.class.getClassLoader(), new Class<?>[]{Connection.class}, this);
+    }
+
+    /**
+     * Opens a connection to the database.
+     *
+     * @param url      the database URL
+     * @param user     the username for the database
+     * @param password the password for the database
+     * @param breaker  the circuit breaker shared by every connection to the database
+     * @return the handler of the new connection
+     * @throws SQLException if the database cannot be reached
+     */
+    static ResilientConnection open(String url, String user, String password, CircuitBreaker breaker) throws SQLException {
+        ResilientConnection connection = new ResilientConnection(url, user, password, breaker);
+        connection.call(connection::current, false);
+        return connection;
+    }
+
+    /**
+     * Provides the connection to hand to DAOs.
+     */
+    Connection connection() {
+        return proxy;
+    }
+
+    /**
+     * Tells whether the last call on this connection reached the database.
+     */
+    boolean isHealthy() {
+        return healthy;
+    }
+
+    @Override
+    public Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        switch (method.getName()) {
+            case "equals":
+                return target == args[0];
+            case "hashCode":
+                return System.identityHashCode(target);
+            case "toString":
+                return "ResilientConnection[" + url + "]";
+            case "close":
+                close();
+                return null;
+            case "isClosed":
+                synchronized (this) {
+                    return closed;
+                }
+            case "prepareStatement":
+                PreparedStatementHandler handler = new PreparedStatementHandler(method, args);
+                call(handler::statement, false);
+                return Proxy.newProxyInstance(ResilientConnection.class.getClassLoader(), new Class<?>[]{PreparedStatement.class}, handler);
+            default:
+                return call(() -> invokeOn(current(), method, args), false);
+        }
+    }
+
+    /**
+     * Provides the physical connection, checking it after idle time and reconnecting if it was lost.
+     */
+    private synchronized Connection current() throws SQLException {
+        if (closed) {
+            throw new SQLNonTransientConnectionException("The connection has been closed.", "08003");
+        }
+        long now = System.currentTimeMillis();
+        if (physical != null && now - lastUsed > VALIDATE_AFTER_IDLE_MILLIS && !physical.isValid(VALIDATION_TIMEOUT_SECONDS)) {
+            discard();
+        }
+        if (physical == null || physical.isClosed()) {
+            physical = DriverManager.getConnection(url, credentials);
+            physical.setNetworkTimeout(Runnable::run, NETWORK_TIMEOUT_MILLIS);
+        }
+        lastUsed = now;
+        return physical;
+    }
+
+    private synchronized Connection physical() {
+        return physical;
+    }
+
+    /**
+     * Runs a call against the database through the circuit breaker.
+     * A call that fails because the connection was lost drops the connection, and is retried after a growing pause
+     * if it is safe to repeat. Any other outcome, including SQL errors the database itself reports, counts as a success.
+     *
+     * @param call      the call to run
+     * @param retryable whether the call may be repeated without changing its effect
+     * @return the result of the call
+     * @throws SQLException if the breaker is open, the connection failed on the last attempt, or the database reported an error
+     */
+    private <R> R call(SqlCall<R> call, boolean retryable) throws SQLException {
+        long backoff = INITIAL_BACKOFF_MILLIS;
+        for (int attempt = 1; ; attempt++) {
+            breaker.acquire();
+            boolean connectionLost = false;
+            try {
+                return call.run();
+            } catch (SQLException e) {
+                connectionLost = isConnectionFailure(e);
+                if (!connectionLost || !retryable || attempt == MAX_ATTEMPTS) {
+                    throw e;
+                }
+            } finally {
+                if (connectionLost) {
+                    synchronized (this) {
+                        discard();
+                    }
+                    healthy = false;
+                    breaker.recordFailure();
+                } else {
+                    healthy = true;
+                    breaker.recordSuccess();
+                }
+            }
+            pause(backoff);
+            backoff *= 2;
+        }
+    }
+
+    /**
+     * Tells whether an error means the connection itself was lost, rather than a statement being rejected.
+     */
+    private static boolean isConnectionFailure(SQLException e) {
+        return e instanceof SQLTransientConnectionException
+                || e instanceof SQLNonTransientConnectionException
+                || e instanceof SQLRecoverableException
+                || (e.getSQLState() != null && e.getSQLState().startsWith("08"));
+    }
+
+    private static void pause(long millis) throws SQLException {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLTransientConnectionException("Interrupted while waiting to reconnect.", "08001", e);
+        }
+    }
+
+    /**
+     * Closes the physical connection quietly, so that the next call opens a new one. Caller holds the lock.
+     */
+    private void discard() {
+        if (physical != null) {
+            try {
+                physical.close();
+            } catch (SQLException ignored) {
+                // The connection is already broken
+            }
+            physical = null;
+        }
+    }
+
+    private synchronized void close() throws SQLException {
+        closed = true;
+        if (physical != null) {
+            try {
+                physical.close();
+            } finally {
+                physical = null;
+            }
+        }
+    }
+
+    /**
+     * Calls a method on a JDBC object, rethrowing what the method threw.
+     */
+    private static Object invokeOn(Object target, Method method, Object[] args) throws SQLException {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof SQLException sqlException) {
+                throw sqlException;
+            }
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new SQLException(e.getCause());
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * A call against the database.
+     */
+    @FunctionalInterface
+    private interface SqlCall<R> {
+        R run() throws SQLException;
+    }
+
+    /**
+     * Backs a PreparedStatement, remembering its parameters so that it can be prepared again on a new connection.
+     */
+    private final class PreparedStatementHandler implements InvocationHandler {
+        private final Method prepare; // The prepareStatement overload that created the statement.
+        private final Object[] prepareArgs; // The SQL and options it was called with.
+        private final List<Object[]> parameters = new ArrayList<>(); // Parameter setters called so far, as method and arguments.
+
+        private PreparedStatement statement; // The statement on the physical connection it was prepared on.
+        private Connection preparedOn; // The physical connection the statement belongs to.
+
+        private PreparedStatementHandler(Method prepare, Object[] prepareArgs) {
+            this.prepare = prepare;
+            this.prepareArgs = prepareArgs;
+        }
+
+        @Override
+        public Object invoke(Object target, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            switch (name) {
+                case "equals":
+                    return target == args[0];
+                case "hashCode":
+                    return System.identityHashCode(target);
+                case "toString":
+                    return "ResilientStatement[" + prepareArgs[0] + "]";
+                case "getConnection":
+                    return proxy;
+                case "close":
+                    statement.close();
+                    return null;
+                case "clearParameters":
+                    parameters.clear();
+                    return invokeOn(statement, method, args);
+                case "executeQuery":
+                    return call(() -> invokeOn(statement(), method, args), true);
+                default:
+                    if (name.startsWith("set") && method.getDeclaringClass() == PreparedStatement.class) {
+                        parameters.add(new Object[]{method, args});
+                        if (preparedOn == physical()) {
+                            invokeOn(statement, method, args);
+                        } // Otherwise the connection was replaced, and the parameter is set when the statement is prepared again
+                        return null;
+                    }
+                    return call(() -> invokeOn(statement(), method, args), false);
+            }
+        }
+
+        /**
+         * Provides the physical statement, preparing it again with its parameters if the connection was replaced.
+         */
+        private PreparedStatement statement() throws SQLException {
+            Connection connection = current();
+            if (statement == null || preparedOn != connection) {
+                statement = (PreparedStatement) invokeOn(connection, prepare, prepareArgs);
+                preparedOn = connection;
+                for (Object[] parameter : parameters) {
+                    invokeOn(statement, (Method) parameter[0], (Object[]) parameter[1]);
+                }
+            }
+            return statement;
+        }
+    }
+}
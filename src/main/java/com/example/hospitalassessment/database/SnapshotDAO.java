@@ -0,0 +1,86 @@
+package com.example.hospitalassessment.database;
+
+import java.sql.*;
+
+/**
+ * SnapshotDAO streams only the visit and prescription columns the analytical snapshot is built from.
+ * Rows are handed to a callback one at a time as they arrive, fetched from the server in batches rather than collected
+ * into lists of records, so the snapshot is built without holding a second copy of either table.
+ */
+public class SnapshotDAO {
+    private static final int FETCH_SIZE = 10_000; // Rows fetched from the server per round trip while streaming.
+
+    private final Connection connection; // Represents the database connection.
+
+    /**
+     * Initializes SnapshotDAO with a database connection.
+     *
+     * @param dbManager the DatabaseManager providing the database connection
+     */
+    public SnapshotDAO(DatabaseManager dbManager) {
+        this.connection = dbManager.getConnection();
+    }
+
+    /**
+     * Streams the patient, doctor, day and diagnosis of every visit, with the diagnosis trimmed and cut to
+     * {@link CohortDAO#DIAGNOSIS_LENGTH} characters.
+     *
+     * @param handler receives each visit
+     * @return the number of visits streamed, or -1 if an error occurs
+     */
+    public long streamVisits(VisitHandler handler) {
+        String sql = "SELECT patientid, doctorid, dateofvisit, LEFT(TRIM(diagnosis), " + CohortDAO.DIAGNOSIS_LENGTH + ") FROM visit";
+        long rows = 0;
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setFetchSize(FETCH_SIZE);
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                handler.accept(rs.getString(1), rs.getString(2), rs.getDate(3), rs.getString(4));
+                rows++;
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return -1;
+        }
+        return rows;
+    }
+
+    /**
+     * Streams the patient, doctor, drug, day, dosage and duration of every prescription.
+     *
+     * @param handler receives each prescription
+     * @return the number of prescriptions streamed, or -1 if an error occurs
+     */
+    public long streamPrescriptions(PrescriptionHandler handler) {
+        String sql = "SELECT patientid, doctorid, drugid, dateprescribed, dosage, duration FROM prescription";
+        long rows = 0;
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setFetchSize(FETCH_SIZE);
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                handler.accept(rs.getString(1), rs.getString(2), rs.getString(3), rs.getDate(4), rs.getInt(5), rs.getInt(6));
+                rows++;
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return -1;
+        }
+        return rows;
+    }
+
+    /**
+     * Receives streamed visits. IDs, the day and the diagnosis are null where the row has none.
+     */
+    @FunctionalInterface
+    public interface VisitHandler {
+        void accept(String patientId, String doctorId, Date dateOfVisit, String diagnosis);
+    }
+
+    /**
+     * Receives streamed prescriptions. IDs and the day are null where the row has none.
+     */
+    @FunctionalInterface
+    public interface PrescriptionHandler {
+        void accept(String patientId, String doctorId, String drugId, Date datePrescribed, int dosage, int duration);
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.hospitalassessment.database;
+
+import java.sql.*;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * TrendDAO reads the visit and prescription counts kept per day, week and month in {@code trend_rollup}.
+ * The counts are maintained by triggers as rows are written; see {@code sql/add_trend_rollups.sql}.
+ */
+public class TrendDAO {
+    private final Connection connection; // Represents the database connection.
+
+    /**
+     * Initializes TrendDAO with a database connection.
+     *
+     * @param dbManager the DatabaseManager providing the database connection
+     */
+    public TrendDAO(DatabaseManager dbManager) {
+        this.connection = dbManager.getConnection();
+    }
+
+    /**
+     * Retrieves the counts of a metric in the periods starting within a range, labelled with the name of what was counted.
+     *
+     * @param metric      what to count
+     * @param granularity the length of each period
+     * @param from        the earliest period start to include
+     * @param until       the day after the latest period start to include
+     * @return the non-zero counts, or an empty list if an error occurs
+     */
+    public List<Rollup> getRollups(Metric metric, Granularity granularity, LocalDate from, LocalDate until) {
+        List<Rollup> rollups = new ArrayList<>();
+        String sql = "SELECT r.dimension, " + metric.labelColumn + " AS label, r.period_start, r.count FROM trend_rollup r "
+                + metric.labelJoin + " WHERE r.metric = ? AND r.granularity = ? AND r.period_start >= ? AND r.period_start < ? AND r.count <> 0";
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setString(1, metric.name());
+            stmt.setString(2, granularity.name());
+            stmt.setDate(3, Date.valueOf(from));
+            stmt.setDate(4, Date.valueOf(until));
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                rollups.add(new Rollup(
+                        rs.getString("dimension"),
+                        rs.getString("label"),
+                        rs.getDate("period_start").toLocalDate(),
+                        rs.getInt("count")
+                ));
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return rollups;
+    }
+
+    /**
+     * What a rollup counts, and how the value it is counted by is named.
+     */
+    public enum Metric {
+        VISITS_BY_DOCTOR("Visits by doctor", "CONCAT(d.firstname, ' ', d.surname)", "LEFT JOIN doctor d ON d.doctorid = r.dimension"),
+        VISITS_BY_DIAGNOSIS("Visits by diagnosis", "NULLIF(r.dimension, '')", ""),
+        PRESCRIPTIONS_BY_DRUG("Prescriptions by drug", "dr.drugname", "LEFT JOIN drug dr ON dr.drugid = r.dimension"),
+        PRESCRIPTIONS_BY_INSURER("Prescriptions by insurer", "IF(r.dimension = '', 'NHS', i.company)", "LEFT JOIN insurance i ON i.insuranceid = r.dimension");
+
+        private final String title; // Shown where a metric is chosen.
+        private final String labelColumn; // Select expression naming the dimension.
+        private final String labelJoin; // Join providing the name, or empty.
+
+        Metric(String title, String labelColumn, String labelJoin) {
+            this.title = title;
+            this.labelColumn = labelColumn;
+            this.labelJoin = labelJoin;
+        }
+
+        @Override
+        public String toString() {
+            return title;
+        }
+    }
+
+    /**
+     * The length of the periods counts are kept for. Weeks start on Monday.
+     */
+    public enum Granularity {
+        DAY, WEEK, MONTH
+    }
+
+    /**
+     * The count of a metric for one value in one period.
+     *
+     * @param dimension   the value counted by, e.g. a doctor ID; empty for a missing diagnosis or insurer
+     * @param label       the name of the value, or null if it has none
+     * @param periodStart the first day of the period
+     * @param count       the number of visits or prescriptions
+     */
+    public record Rollup(String dimension, String label, LocalDate periodStart, int count) {
+    }
+}
@@ -1,12 +1,15 @@
 package com.example.hospitalassessment.database;
 
 import com.example.hospitalassessment.models.Doctor;
+import com.example.hospitalassessment.models.EntityRef;
 import com.example.hospitalassessment.models.Patient;
 import com.example.hospitalassessment.models.Visit;
-import javafx.scene.control.Alert;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -15,9 +18,16 @@ import java.util.Map;
  * It interacts with the database to perform CRUD operations.
  */
 public class VisitDAO {
+    private static final String COLUMNS = "patientid, doctorid, dateofvisit, symptoms, diagnosis, version"; // Columns of a full visit record.
+    private static final String LIST_COLUMNS = "patientid, doctorid, dateofvisit, version, "
+            + DatabaseManager.previewColumn("symptoms") + ", " + DatabaseManager.previewColumn("diagnosis"); // Columns for list views, with long text shortened.
+
     private final Connection connection; // Represents the database connection.
+    private final EntityEventBus events; // Announces successful writes.
     private final DoctorDAO doctorDAO; // Manages doctor-related data operations.
     private final PatientDAO patientDAO; // Manages patient-related data operations.
+    private final ReferenceCache<Doctor> doctorRefs; // Doctors referenced by loaded visits.
+    private final ReferenceCache<Patient> patientRefs; // Patients referenced by loaded visits.
 
     /**
      * Constructs a VisitDAO object for managing visits in the database.
@@ -25,19 +35,34 @@ public class VisitDAO {
      * @param dbManager the DatabaseManager object used to manage the database connection
      */
     public VisitDAO(DatabaseManager dbManager) {
-        this.connection = dbManager.getConnection();
-        this.doctorDAO = new DoctorDAO(dbManager);
-        this.patientDAO = new PatientDAO(dbManager);
+        this(new DataAccessContext(dbManager));
+    }
+
+    /**
+     * Initializes VisitDAO within a shared data access context, using its related DAOs and reference caches and announcing writes on its event bus.
+     *
+     * @param context the context providing the connection, related DAOs and the event bus
+     */
+    public VisitDAO(DataAccessContext context) {
+        this.connection = context.getDatabaseManager().getConnection();
+        this.events = context.events();
+        this.doctorDAO = context.doctors();
+        this.patientDAO = context.patients();
+        this.doctorRefs = context.doctorReferences();
+        this.patientRefs = context.patientReferences();
     }
 
     /**
      * Retrieves a list of all visits from the database.
      *
+     * Symptoms and diagnoses longer than {@link DatabaseManager#PREVIEW_LENGTH} characters are shortened;
+     * use {@link #loadFullText(Visit)} before editing a visit.
+     *
      * @return a list of Visit objects representing all visits.
      */
     public List<Visit> getAllVisits() {
         List<Visit> visits = new ArrayList<>();
-        String sql = "SELECT * FROM visit";
+        String sql = "SELECT " + LIST_COLUMNS + " FROM visit";
 
         try (PreparedStatement stmt = connection.prepareStatement(sql);
              ResultSet rs = stmt.executeQuery()) {
@@ -51,6 +76,76 @@ public class VisitDAO {
         return visits;
     }
 
+    /**
+     * Retrieves a page of visits whose patient ID, doctor ID, symptoms or diagnosis contains the given text.
+     * Long text is shortened as in {@link #getAllVisits()}.
+     *
+     * @param query  the text to search for, or null to match every visit
+     * @param limit  the maximum number of visits to return
+     * @param offset the number of matching visits to skip
+     * @return a list of matching Visit objects ordered from the most recent
+     */
+    public List<Visit> searchVisits(String query, int limit, int offset) {
+        List<Visit> visits = new ArrayList<>();
+        String sql = "SELECT " + LIST_COLUMNS + " FROM visit WHERE CONCAT_WS(' ', patientid, doctorid, symptoms, diagnosis) LIKE ? ORDER BY dateofvisit DESC, patientid, doctorid LIMIT ? OFFSET ?";
+
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setString(1, DatabaseManager.toLikePattern(query));
+            stmt.setInt(2, limit);
+            stmt.setInt(3, offset);
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                visits.add(extractVisitFromResultSet(rs));
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return visits;
+    }
+
+    /**
+     * Retrieves the visits with the given change keys (see {@link #changeKey(Visit)}) with a single query.
+     * Long text is shortened as in {@link #getAllVisits()}.
+     *
+     * @param keys the keys to look up; keys that do not exist are skipped
+     * @return a list of the matching Visit objects in no particular order
+     */
+    public List<Visit> getVisitsByKeys(Collection<String> keys) {
+        List<Visit> visits = new ArrayList<>();
+        if (keys.isEmpty()) {
+            return visits;
+        }
+        String sql = "SELECT " + LIST_COLUMNS + " FROM visit WHERE (patientid, doctorid, dateofvisit) IN ("
+                + String.join(", ", Collections.nCopies(keys.size(), "(?, ?, ?)")) + ")";
+
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            int index = 1;
+            for (String key : keys) {
+                String[] parts = key.split("\\|", 3);
+                stmt.setString(index++, parts[0]);
+                stmt.setString(index++, parts[1]);
+                stmt.setDate(index++, Date.valueOf(parts[2]));
+            }
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                visits.add(extractVisitFromResultSet(rs));
+            }
+        } catch (SQLException | IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            e.printStackTrace();
+        }
+        return visits;
+    }
+
+    /**
+     * Builds the single-text key under which a visit is recorded in the change log: "patientId|doctorId|yyyy-mm-dd".
+     *
+     * @param visit the visit
+     * @return the visit's change key
+     */
+    public static String changeKey(Visit visit) {
+        return visit.getPatientRef().getId() + "|" + visit.getDoctorRef().getId() + "|" + visit.getDateOfVisit();
+    }
+
     /**
      * Retrieves a Visit object based on the provided patient ID, doctor ID, and date of visit.
      *
@@ -60,7 +155,7 @@ public class VisitDAO {
      * @return the Visit object if found, otherwise null
      */
     public Visit getVisitByPrimaryKey(String patientId, String doctorId, Date dateOfVisit) {
-        String sql = "SELECT * FROM visit WHERE patientid = ? AND doctorid = ? AND dateofvisit = ?";
+        String sql = "SELECT " + COLUMNS + " FROM visit WHERE patientid = ? AND doctorid = ? AND dateofvisit = ?";
         try (PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setString(1, patientId);
             stmt.setString(2, doctorId);
@@ -75,6 +170,93 @@ public class VisitDAO {
         return null;
     }
 
+    /**
+     * Replaces the shortened symptoms and diagnosis of a visit loaded for a list view with the full text.
+     *
+     * @param visit the visit to complete
+     * @return the same visit with its full text, or null if it no longer exists
+     */
+    public Visit loadFullText(Visit visit) {
+        String sql = "SELECT symptoms, diagnosis FROM visit WHERE patientid = ? AND doctorid = ? AND dateofvisit = ?";
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setString(1, visit.getPatient().getId());
+            stmt.setString(2, visit.getDoctor().getId());
+            stmt.setDate(3, visit.getDateOfVisit());
+            ResultSet rs = stmt.executeQuery();
+            if (rs.next()) {
+                visit.setSymptoms(rs.getString("symptoms"));
+                visit.setDiagnosis(rs.getString("diagnosis"));
+                return visit;
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Checks whether a visit with the given key exists without loading the record.
+     *
+     * @param patientId   the ID of the patient
+     * @param doctorId    the ID of the doctor
+     * @param dateOfVisit the date of the visit
+     * @return true if a matching row exists, otherwise false
+     */
+    private boolean visitExists(String patientId, String doctorId, Date dateOfVisit) {
+        String sql = "SELECT 1 FROM visit WHERE patientid = ? AND doctorid = ? AND dateofvisit = ?";
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setString(1, patientId);
+            stmt.setString(2, doctorId);
+            stmt.setDate(3, dateOfVisit);
+            ResultSet rs = stmt.executeQuery();
+            return rs.next();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return false;
+    }
+
+    /**
+     * Finds the doctor each of the given patients has visited most with a single aggregate query.
+     * Ties go to the doctor with the lowest ID.
+     *
+     * @param patientIds the IDs of the patients
+     * @return the main doctor of every given patient who has visits, by patient ID
+     */
+    public Map<String, Doctor> getMainDoctorsForPatients(Collection<String> patientIds) {
+        Map<String, String> doctorIds = new HashMap<>();
+        if (patientIds.isEmpty()) {
+            return new HashMap<>();
+        }
+        String sql = "SELECT patientid, doctorid FROM (SELECT patientid, doctorid,"
+                + " ROW_NUMBER() OVER (PARTITION BY patientid ORDER BY COUNT(*) DESC, doctorid) AS doctor_rank"
+                + " FROM visit WHERE patientid IN (" + DatabaseManager.placeholders(patientIds.size()) + ")"
+                + " GROUP BY patientid, doctorid) ranked WHERE doctor_rank = 1";
+
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            int index = 1;
+            for (String id : patientIds) {
+                stmt.setString(index++, id);
+            }
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                doctorIds.put(rs.getString("patientid"), rs.getString("doctorid"));
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+
+        doctorRefs.loadAll(doctorIds.values());
+        Map<String, Doctor> doctors = new HashMap<>();
+        doctorIds.forEach((patientId, doctorId) -> {
+            Doctor doctor = doctorRefs.get(doctorId);
+            if (doctor != null) {
+                doctors.put(patientId, doctor);
+            }
+        });
+        return doctors;
+    }
+
     public Doctor getMainDoctorForPatient(String patientId) {
         String sql = "SELECT doctorid, COUNT(*) AS visit_count FROM visit WHERE patientid = ? GROUP BY doctorid ORDER BY visit_count DESC LIMIT 1";
 
@@ -92,35 +274,84 @@ public class VisitDAO {
     }
 
 
+    /**
+     * Provides the cache through which the doctors of loaded visits are resolved.
+     *
+     * @return the doctor reference cache
+     */
+    public ReferenceCache<Doctor> getDoctorReferences() {
+        return doctorRefs;
+    }
+
+    /**
+     * Provides the cache through which the patients of loaded visits are resolved.
+     *
+     * @return the patient reference cache
+     */
+    public ReferenceCache<Patient> getPatientReferences() {
+        return patientRefs;
+    }
+
+    /**
+     * Loads the patients and doctors of every given visit with one query per table,
+     * so reading them later costs nothing.
+     *
+     * @param visits the visits whose references will be read
+     */
+    public void resolveReferences(Collection<Visit> visits) {
+        List<EntityRef<Patient>> patients = new ArrayList<>();
+        List<EntityRef<Doctor>> doctors = new ArrayList<>();
+        for (Visit visit : visits) {
+            patients.add(visit.getPatientRef());
+            doctors.add(visit.getDoctorRef());
+        }
+        patientRefs.loadAllRefs(patients);
+        doctorRefs.loadAllRefs(doctors);
+    }
+
+    /**
+     * Loads the patients and doctors of every given visit and fixes each visit's references to them, so the visits can
+     * be read after the connection is given back to its pool without querying it again.
+     *
+     * @param visits the visits to detach from this DAO's connection
+     */
+    public void detachReferences(Collection<Visit> visits) {
+        resolveReferences(visits);
+        for (Visit visit : visits) {
+            visit.setPatientRef(visit.getPatientRef().detach());
+            visit.setDoctorRef(visit.getDoctorRef().detach());
+        }
+    }
+
     /**
      * Extracts a Visit object from the given ResultSet.
+     * The patient and doctor are referenced lazily and loaded through the reference caches when first read.
      *
      * @param rs the ResultSet containing visit-related data.
      * @return a Visit object populated with the data from the ResultSet.
      * @throws SQLException if an error occurs while accessing the ResultSet.
      */
     private Visit extractVisitFromResultSet(ResultSet rs) throws SQLException {
-        Doctor doctor = doctorDAO.getDoctorById(rs.getString("doctorid"));
-        Patient patient = patientDAO.getPatientById(rs.getString("patientid"));
-
-        return new Visit(
-                patient,
-                doctor,
+        Visit visit = new Visit(
+                patientRefs.ref(rs.getString("patientid")),
+                doctorRefs.ref(rs.getString("doctorid")),
                 rs.getDate("dateofvisit"),
                 rs.getString("symptoms"),
                 rs.getString("diagnosis")
         );
+        visit.setVersion(rs.getInt("version"));
+        return visit;
     }
 
     /**
      * Adds a new visit to the database if it does not already exist.
      *
      * @param visit the Visit object containing patient, doctor, and visit details to add
-     * @return a Map.Entry containing a status message and an Alert.AlertType indicating the result
+     * @return an OperationResult containing a status message and a status indicating the result
      */
-    public Map.Entry<String, Alert.AlertType> addVisit(Visit visit) {
-        if (getVisitByPrimaryKey(visit.getPatient().getId(), visit.getDoctor().getId(), visit.getDateOfVisit()) != null) {
-            return Map.entry("Error: A visit with this patient, doctor, and date already exists.", Alert.AlertType.ERROR);
+    public OperationResult addVisit(Visit visit) {
+        if (visitExists(visit.getPatient().getId(), visit.getDoctor().getId(), visit.getDateOfVisit())) {
+            return OperationResult.duplicate("Error: A visit with this patient, doctor, and date already exists.");
         }
 
         String sql = "INSERT INTO visit (patientid, doctorid, dateofvisit, symptoms, diagnosis) VALUES (?, ?, ?, ?, ?)";
@@ -131,12 +362,14 @@ public class VisitDAO {
             stmt.setString(4, visit.getSymptoms());
             stmt.setString(5, visit.getDiagnosis());
 
-            return stmt.executeUpdate() > 0
-                    ? Map.entry("Visit added successfully!", Alert.AlertType.INFORMATION)
-                    : Map.entry("Error: Visit could not be added.", Alert.AlertType.ERROR);
+            if (stmt.executeUpdate() == 0) {
+                return OperationResult.failed("Error: Visit could not be added.");
+            }
+            events.publish(EntityEvent.created(Visit.class, changeKey(visit), visit));
+            return OperationResult.success("Visit added successfully!");
         } catch (SQLException e) {
             e.printStackTrace();
-            return Map.entry("Database error occurred. Please try again.", Alert.AlertType.ERROR);
+            return OperationResult.failed("Database error occurred. Please try again.");
         }
     }
 
@@ -144,27 +377,32 @@ public class VisitDAO {
      * Updates an existing visit record in the database.
      *
      * @param visit the Visit object containing updated patient, doctor, date, symptoms, and diagnosis details
-     * @return a Map.Entry containing a status message and an alert type indicating the result of the update operation
+     * @return an OperationResult containing a status message and a status indicating the result of the update operation
      */
-    public Map.Entry<String, Alert.AlertType> updateVisit(Visit visit) {
-        if (getVisitByPrimaryKey(visit.getPatient().getId(), visit.getDoctor().getId(), visit.getDateOfVisit()) == null) {
-            return Map.entry("Error: Visit with this patient, doctor, and date does not exist.", Alert.AlertType.ERROR);
+    public OperationResult updateVisit(Visit visit) {
+        if (!visitExists(visit.getPatient().getId(), visit.getDoctor().getId(), visit.getDateOfVisit())) {
+            return OperationResult.notFound("Error: Visit with this patient, doctor, and date does not exist.");
         }
 
-        String sql = "UPDATE visit SET symptoms = ?, diagnosis = ? WHERE patientid = ? AND doctorid = ? AND dateofvisit = ?";
+        String sql = "UPDATE visit SET symptoms = ?, diagnosis = ?, version = version + 1 WHERE patientid = ? AND doctorid = ? AND dateofvisit = ? AND version = ?";
         try (PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setString(1, visit.getSymptoms());
             stmt.setString(2, visit.getDiagnosis());
             stmt.setString(3, visit.getPatient().getId());
             stmt.setString(4, visit.getDoctor().getId());
             stmt.setDate(5, visit.getDateOfVisit());
+            stmt.setInt(6, visit.getVersion());
 
-            return stmt.executeUpdate() > 0
-                    ? Map.entry("Visit updated successfully!", Alert.AlertType.INFORMATION)
-                    : Map.entry("Error: No visit was updated.", Alert.AlertType.ERROR);
+            if (stmt.executeUpdate() == 0) {
+                // The row exists (checked above), so its version no longer matches: someone else saved it first
+                return OperationResult.conflict("Error: This visit was changed by another user after you opened it.");
+            }
+            visit.setVersion(visit.getVersion() + 1);
+            events.publish(EntityEvent.updated(Visit.class, changeKey(visit), visit));
+            return OperationResult.success("Visit updated successfully!");
         } catch (SQLException e) {
             e.printStackTrace();
-            return Map.entry("Database error occurred. Please try again.", Alert.AlertType.ERROR);
+            return OperationResult.failed("Database error occurred. Please try again.");
         }
     }
 
@@ -174,23 +412,44 @@ public class VisitDAO {
      * @param patientId   the ID of the patient
      * @param doctorId    the ID of the doctor
      * @param dateOfVisit the date of the visit
-     * @return a message indicating the result of the deletion
+     * @return an OperationResult indicating the result of the deletion
+     */
+    public OperationResult deleteVisit(String patientId, String doctorId, Date dateOfVisit) {
+        return deleteVisit(patientId, doctorId, dateOfVisit, null);
+    }
+
+    /**
+     * Deletes a visit from the database based on patient ID, doctor ID, and visit date.
+     * If a version is given, the record is only deleted while it is still at that version.
+     *
+     * @param patientId   the ID of the patient
+     * @param doctorId    the ID of the doctor
+     * @param dateOfVisit the date of the visit
+     * @param expectedVersion the version the caller last saw, or null to delete regardless of later changes
+     * @return an OperationResult indicating the result of the deletion
      */
-    public String deleteVisit(String patientId, String doctorId, Date dateOfVisit) {
-        if (getVisitByPrimaryKey(patientId, doctorId, dateOfVisit) == null) {
-            return "Error: Visit with this patient, doctor, and date does not exist.";
+    public OperationResult deleteVisit(String patientId, String doctorId, Date dateOfVisit, Integer expectedVersion) {
+        if (!visitExists(patientId, doctorId, dateOfVisit)) {
+            return OperationResult.notFound("Error: Visit with this patient, doctor, and date does not exist.");
         }
 
-        String sql = "DELETE FROM visit WHERE patientid = ? AND doctorid = ? AND dateofvisit = ?";
+        String sql = "DELETE FROM visit WHERE patientid = ? AND doctorid = ? AND dateofvisit = ?" + (expectedVersion != null ? " AND version = ?" : "");
         try (PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setString(1, patientId);
             stmt.setString(2, doctorId);
             stmt.setDate(3, dateOfVisit);
-            int rowsAffected = stmt.executeUpdate();
-            return rowsAffected > 0 ? "Visit deleted successfully!" : "Error: No visit was deleted.";
+            if (expectedVersion != null) {
+                stmt.setInt(4, expectedVersion);
+            }
+            if (stmt.executeUpdate() == 0) {
+                // The row exists (checked above), so its version no longer matches: someone else saved it first
+                return OperationResult.conflict("Error: This visit was changed by another user after you opened it.");
+            }
+            events.publish(EntityEvent.deleted(Visit.class, patientId + "|" + doctorId + "|" + dateOfVisit));
+            return OperationResult.success("Visit deleted successfully!");
         } catch (SQLException e) {
             e.printStackTrace();
-            return "Database error occurred. Please try again.";
+            return OperationResult.failed("Database error occurred. Please try again.");
         }
     }
 }
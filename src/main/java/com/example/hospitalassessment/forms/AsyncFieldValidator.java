@@ -0,0 +1,21 @@
+package com.example.hospitalassessment.forms;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Checks the typed value of a single form field without blocking, for checks that need the database.
+ * Asynchronous validators only run once every synchronous validator of the field has passed, and only for values
+ * the user changed: the values of the record being edited are not checked again. A validator may abandon a check
+ * in favour of a newer one for the same field by completing with a {@link java.util.concurrent.CancellationException}.
+ */
+@FunctionalInterface
+public interface AsyncFieldValidator {
+
+    /**
+     * Starts checking a field value.
+     *
+     * @param value the typed value of the field, or null if it is empty
+     * @return a future completed with a description of the problem, or null if the value is valid
+     */
+    CompletableFuture<String> validate(Object value);
+}
@@ -0,0 +1,88 @@
+package com.example.hospitalassessment.forms;
+
+import com.example.hospitalassessment.services.PickerOptionsService.OptionType;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Describes one field of an entry form: its name, the kind of value it holds, where its options come from
+ * and how its value is checked. Descriptors are immutable and created through {@link FormSchema.Builder}.
+ */
+public final class FieldDescriptor {
+
+    /**
+     * The kinds of values a field can hold, each rendered with its own input control.
+     */
+    public enum Type {
+        TEXT,    // Free text, read as a String
+        INTEGER, // Whole number, read as an Integer
+        DATE,    // Calendar date, read as a LocalDate
+        CHOICE   // One of a list of options, read as the selected String
+    }
+
+    private final String name; // Name of the field, also used as its label.
+    private final Type type; // Kind of value the field holds.
+    private final int order; // Position of the field on the form.
+    private final OptionType pickerSource; // Option list offered by a choice field, or null.
+    private final String firstOption; // Extra option listed before the picker options, or null.
+    private final Object defaultValue; // Value shown when the form is bound without one.
+    private final List<FieldValidator> validators; // Checks run when the form is saved.
+    private final List<AsyncFieldValidator> asyncValidators; // Checks needing the database, run after the others pass.
+
+    FieldDescriptor(String name, Type type, int order, OptionType pickerSource, String firstOption, Object defaultValue,
+                    List<FieldValidator> validators, List<AsyncFieldValidator> asyncValidators) {
+        this.name = name;
+        this.type = type;
+        this.order = order;
+        this.pickerSource = pickerSource;
+        this.firstOption = firstOption;
+        this.defaultValue = defaultValue;
+        this.validators = List.copyOf(validators);
+        this.asyncValidators = List.copyOf(asyncValidators);
+    }
+
+    /**
+     * Creates a copy of this descriptor with an additional asynchronous validator.
+     *
+     * @param validator the validator to add
+     * @return the extended descriptor
+     */
+    FieldDescriptor withAsyncValidator(AsyncFieldValidator validator) {
+        List<AsyncFieldValidator> extended = new ArrayList<>(asyncValidators);
+        extended.add(validator);
+        return new FieldDescriptor(name, type, order, pickerSource, firstOption, defaultValue, validators, extended);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public int getOrder() {
+        return order;
+    }
+
+    public OptionType getPickerSource() {
+        return pickerSource;
+    }
+
+    public String getFirstOption() {
+        return firstOption;
+    }
+
+    public Object getDefaultValue() {
+        return defaultValue;
+    }
+
+    public List<FieldValidator> getValidators() {
+        return validators;
+    }
+
+    public List<AsyncFieldValidator> getAsyncValidators() {
+        return asyncValidators;
+    }
+}
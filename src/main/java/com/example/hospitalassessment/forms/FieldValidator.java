@@ -0,0 +1,51 @@
+package com.example.hospitalassessment.forms;
+
+import java.util.regex.Pattern;
+
+/**
+ * Checks the typed value of a single form field.
+ * A validator returns a short description of the problem, e.g. "is required", which the form
+ * shows after the field name, or null if the value is acceptable.
+ */
+@FunctionalInterface
+public interface FieldValidator {
+
+    /**
+     * Checks a field value.
+     *
+     * @param value the typed value of the field, or null if it is empty
+     * @return a description of the problem, or null if the value is valid
+     */
+    String validate(Object value);
+
+    /**
+     * Provides a validator rejecting empty values.
+     *
+     * @return a validator requiring a value
+     */
+    static FieldValidator required() {
+        return value -> value == null || value.toString().isBlank() ? "is required" : null;
+    }
+
+    /**
+     * Provides a validator rejecting numbers below a minimum. Empty values are accepted.
+     *
+     * @param min the smallest allowed value
+     * @return a validator enforcing the minimum
+     */
+    static FieldValidator atLeast(int min) {
+        return value -> value instanceof Integer number && number < min ? "must be at least " + min : null;
+    }
+
+    /**
+     * Provides a validator rejecting text that does not match a pattern. Empty values are accepted.
+     *
+     * @param pattern     the pattern the whole text must match
+     * @param description what the value should look like, e.g. "an email address"
+     * @return a validator enforcing the pattern
+     */
+    static FieldValidator matches(Pattern pattern, String description) {
+        return value -> value == null || value.toString().isEmpty() || pattern.matcher(value.toString()).matches()
+                ? null : "must be " + description;
+    }
+}
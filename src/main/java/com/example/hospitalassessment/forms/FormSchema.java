@@ -0,0 +1,182 @@
+package com.example.hospitalassessment.forms;
+
+import com.example.hospitalassessment.services.PickerOptionsService.OptionType;
+
+import java.util.*;
+
+/**
+ * Declarative description of an entry form: its fields in display order with their types, option lists and validators.
+ * A schema is built once per kind of record and shared by every form showing that kind of record,
+ * so forms only need to be rebound to new values rather than rebuilt.
+ */
+public final class FormSchema {
+    private final String name; // Kind of record the form edits, e.g. "Doctor".
+    private final List<FieldDescriptor> fields; // Fields in display order.
+    private final Map<String, FieldDescriptor> fieldsByName; // Fields by name for lookups.
+    private final Set<OptionType> pickerSources; // Option lists the form needs before it can be shown.
+
+    private FormSchema(String name, List<FieldDescriptor> fields) {
+        this.name = name;
+        this.fields = List.copyOf(fields);
+
+        Map<String, FieldDescriptor> byName = new LinkedHashMap<>();
+        Set<OptionType> sources = EnumSet.noneOf(OptionType.class);
+        for (FieldDescriptor field : fields) {
+            byName.put(field.getName(), field);
+            if (field.getPickerSource() != null) {
+                sources.add(field.getPickerSource());
+            }
+        }
+        this.fieldsByName = Collections.unmodifiableMap(byName);
+        this.pickerSources = Collections.unmodifiableSet(sources);
+    }
+
+    /**
+     * Starts describing a form.
+     *
+     * @param name the kind of record the form edits
+     * @return a builder for the form's fields
+     */
+    public static Builder builder(String name) {
+        return new Builder(name);
+    }
+
+    /**
+     * Creates a copy of this schema in which a field also runs an asynchronous validator,
+     * e.g. one that needs a DAO only available once the database is connected.
+     *
+     * @param field     the name of the field
+     * @param validator the validator to add
+     * @return the extended schema
+     * @throws IllegalArgumentException if the schema has no such field
+     */
+    public FormSchema withAsyncValidator(String field, AsyncFieldValidator validator) {
+        if (!fieldsByName.containsKey(field)) {
+            throw new IllegalArgumentException("Unknown field: " + field);
+        }
+        List<FieldDescriptor> extended = new ArrayList<>();
+        for (FieldDescriptor descriptor : fields) {
+            extended.add(descriptor.getName().equals(field) ? descriptor.withAsyncValidator(validator) : descriptor);
+        }
+        return new FormSchema(name, extended);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public List<FieldDescriptor> getFields() {
+        return fields;
+    }
+
+    public FieldDescriptor getField(String name) {
+        return fieldsByName.get(name);
+    }
+
+    public Set<OptionType> getPickerSources() {
+        return pickerSources;
+    }
+
+    /**
+     * Builder adding fields to a schema in display order.
+     */
+    public static final class Builder {
+        private final String name; // Kind of record the form edits.
+        private final List<FieldDescriptor> fields = new ArrayList<>(); // Fields declared so far.
+
+        private Builder(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Adds a free text field.
+         *
+         * @param name       the name of the field
+         * @param validators checks run on the text when the form is saved
+         * @return this builder
+         */
+        public Builder text(String name, FieldValidator... validators) {
+            return add(name, FieldDescriptor.Type.TEXT, null, null, null, validators);
+        }
+
+        /**
+         * Adds a whole number field. Values that are not whole numbers are rejected before the validators run.
+         *
+         * @param name       the name of the field
+         * @param validators checks run on the number when the form is saved
+         * @return this builder
+         */
+        public Builder integer(String name, FieldValidator... validators) {
+            return add(name, FieldDescriptor.Type.INTEGER, null, null, null, validators);
+        }
+
+        /**
+         * Adds a date field.
+         *
+         * @param name       the name of the field
+         * @param validators checks run on the date when the form is saved
+         * @return this builder
+         */
+        public Builder date(String name, FieldValidator... validators) {
+            return add(name, FieldDescriptor.Type.DATE, null, null, null, validators);
+        }
+
+        /**
+         * Adds a dropdown field offering one of the picker option lists.
+         *
+         * @param name       the name of the field
+         * @param source     the option list offered
+         * @param validators checks run on the selection when the form is saved
+         * @return this builder
+         */
+        public Builder choice(String name, OptionType source, FieldValidator... validators) {
+            return add(name, FieldDescriptor.Type.CHOICE, source, null, null, validators);
+        }
+
+        /**
+         * Adds a dropdown field offering an extra option before the picker options, selected by default.
+         *
+         * @param name        the name of the field
+         * @param source      the option list offered
+         * @param firstOption the extra option, e.g. "NHS"
+         * @param validators  checks run on the selection when the form is saved
+         * @return this builder
+         */
+        public Builder choice(String name, OptionType source, String firstOption, FieldValidator... validators) {
+            return add(name, FieldDescriptor.Type.CHOICE, source, firstOption, firstOption, validators);
+        }
+
+        /**
+         * Adds an asynchronous validator to a field declared earlier.
+         *
+         * @param field     the name of the field
+         * @param validator the validator to add
+         * @return this builder
+         * @throws IllegalArgumentException if no such field has been declared
+         */
+        public Builder asyncValidator(String field, AsyncFieldValidator validator) {
+            for (int i = 0; i < fields.size(); i++) {
+                if (fields.get(i).getName().equals(field)) {
+                    fields.set(i, fields.get(i).withAsyncValidator(validator));
+                    return this;
+                }
+            }
+            throw new IllegalArgumentException("Unknown field: " + field);
+        }
+
+        /**
+         * Completes the schema.
+         *
+         * @return the schema with the declared fields
+         */
+        public FormSchema build() {
+            return new FormSchema(name, fields);
+        }
+
+        private Builder add(String name, FieldDescriptor.Type type, OptionType source, String firstOption, Object defaultValue,
+                            FieldValidator... validators) {
+            fields.add(new FieldDescriptor(name, type, fields.size(), source, firstOption, defaultValue, List.of(validators), List.of()));
+            return this;
+        }
+    }
+}
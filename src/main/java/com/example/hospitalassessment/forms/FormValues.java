@@ -0,0 +1,63 @@
+package com.example.hospitalassessment.forms;
+
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The typed values of a saved entry form, keyed by field name.
+ * Hidden fields keep the value the form was bound with, so callers do not need to merge in the original data.
+ */
+public final class FormValues {
+    private final Map<String, Object> values; // Field values by name, in form order.
+
+    /**
+     * Creates the values of a saved form.
+     *
+     * @param values the typed field values by field name
+     */
+    public FormValues(Map<String, Object> values) {
+        this.values = Collections.unmodifiableMap(new LinkedHashMap<>(values));
+    }
+
+    /**
+     * Provides the value of a field as text.
+     *
+     * @param field the name of the field
+     * @return the value as text, or an empty string if the field is empty
+     */
+    public String getText(String field) {
+        Object value = values.get(field);
+        return value == null ? "" : value.toString();
+    }
+
+    /**
+     * Provides the value of a whole number field.
+     *
+     * @param field the name of the field
+     * @return the number, or null if the field is empty
+     */
+    public Integer getInteger(String field) {
+        return (Integer) values.get(field);
+    }
+
+    /**
+     * Provides the value of a date field.
+     *
+     * @param field the name of the field
+     * @return the date, or null if the field is empty
+     */
+    public LocalDate getDate(String field) {
+        return (LocalDate) values.get(field);
+    }
+
+    /**
+     * Provides every field value.
+     *
+     * @return the typed values by field name
+     */
+    public Map<String, Object> asMap() {
+        return values;
+    }
+}
@@ -2,6 +2,7 @@ package com.example.hospitalassessment.models;
 
 public abstract class BaseEntity {
     protected String id; // Unique identifier
+    protected int version; // Row version loaded from the database, bumped on every update
 
     public BaseEntity(String id) {
         this.id = id;
@@ -15,6 +16,14 @@ public abstract class BaseEntity {
         this.id = id;
     }
 
+    public int getVersion() {
+        return version;
+    }
+
+    public void setVersion(int version) {
+        this.version = version;
+    }
+
     @Override
     public String toString() {
         // Returns a simple string representation with class name and ID
@@ -0,0 +1,57 @@
+package com.example.hospitalassessment.models;
+
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+// Reference from one entity to another that holds the target's ID and loads the target only when it is needed
+public class EntityRef<T extends BaseEntity> {
+    private final String id; // ID of the referenced entity
+    private final Function<String, T> resolver; // Looks the entity up by ID; null when the entity was supplied up front
+    private final Predicate<String> loaded; // Tells whether the resolver can answer without a query
+    private final T value; // The entity supplied up front, if any
+
+    private EntityRef(String id, Function<String, T> resolver, Predicate<String> loaded, T value) {
+        this.id = id;
+        this.resolver = resolver;
+        this.loaded = loaded;
+        this.value = value;
+    }
+
+    // Creates a reference to an entity that is already loaded
+    public static <T extends BaseEntity> EntityRef<T> of(T entity) {
+        return new EntityRef<>(entity != null ? entity.getId() : null, null, null, entity);
+    }
+
+    // Creates a reference that is looked up through the resolver, typically backed by a cache, every time it is read
+    public static <T extends BaseEntity> EntityRef<T> lazy(String id, Function<String, T> resolver, Predicate<String> loaded) {
+        return new EntityRef<>(id, resolver, loaded, null);
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    // Returns true if reading the entity will not need a database query
+    public boolean isResolved() {
+        return resolver == null || id == null || loaded.test(id);
+    }
+
+    // Returns the referenced entity, or null if it does not exist
+    public T get() {
+        if (resolver == null || id == null) {
+            return value;
+        }
+        return resolver.apply(id);
+    }
+
+    // Returns a reference fixed to the entity this one resolves to now, which no longer reads through the cache
+    public EntityRef<T> detach() {
+        return resolver == null ? this : new EntityRef<>(id, null, null, get());
+    }
+
+    @Override
+    public String toString() {
+        // Shows the entity if it has been loaded, otherwise just the ID
+        return isResolved() ? String.valueOf(get()) : "EntityRef{id='" + id + "'}";
+    }
+}
@@ -7,7 +7,7 @@ public class Patient extends BaseEntity {
     private String address;
     private String phone;
     private String email;
-    private Insurance insurance; // Patient's insurance details
+    private EntityRef<Insurance> insurance; // Patient's insurance details, or null for NHS patients
 
 
     // Constructor to initialize patient details
@@ -19,7 +19,7 @@ public class Patient extends BaseEntity {
         this.address = address;
         this.phone = phone;
         this.email = email;
-        this.insurance = insurance;
+        this.insurance = insurance != null ? EntityRef.of(insurance) : null;
     }
 
     // Getters and setters
@@ -72,10 +72,19 @@ public class Patient extends BaseEntity {
     }
 
     public Insurance getInsurance() {
-        return insurance;
+        return insurance != null ? insurance.get() : null;
     }
 
     public void setInsurance(Insurance insurance) {
+        this.insurance = insurance != null ? EntityRef.of(insurance) : null;
+    }
+
+    // Returns the insurance reference without loading the insurance, or null for NHS patients
+    public EntityRef<Insurance> getInsuranceRef() {
+        return insurance;
+    }
+
+    public void setInsuranceRef(EntityRef<Insurance> insurance) {
         this.insurance = insurance;
     }
 
@@ -7,9 +7,9 @@ public class Prescription extends BaseEntity {
     private int dosage;
     private int duration;
     private String comment;
-    private Drug drug; // Prescribed drug
-    private Doctor doctor; // Doctor who prescribed the drug
-    private Patient patient; // Patient receiving the prescription
+    private EntityRef<Drug> drug; // Prescribed drug
+    private EntityRef<Doctor> doctor; // Doctor who prescribed the drug
+    private EntityRef<Patient> patient; // Patient receiving the prescription
 
     // Constructor to initialize prescription details
     public Prescription(String id, Date datePrescribed, int dosage, int duration, String comment, Drug drug, Doctor doctor, Patient patient) {
@@ -18,6 +18,19 @@ public class Prescription extends BaseEntity {
         this.dosage = dosage;
         this.duration = duration;
         this.comment = comment;
+        this.drug = EntityRef.of(drug);
+        this.doctor = EntityRef.of(doctor);
+        this.patient = EntityRef.of(patient);
+    }
+
+    // Constructor for a prescription whose drug, doctor and patient are loaded on first access
+    public Prescription(String id, Date datePrescribed, int dosage, int duration, String comment,
+                        EntityRef<Drug> drug, EntityRef<Doctor> doctor, EntityRef<Patient> patient) {
+        super(id);
+        this.datePrescribed = datePrescribed;
+        this.dosage = dosage;
+        this.duration = duration;
+        this.comment = comment;
         this.drug = drug;
         this.doctor = doctor;
         this.patient = patient;
@@ -57,26 +70,53 @@ public class Prescription extends BaseEntity {
     }
 
     public Drug getDrug() {
-        return drug;
+        return drug.get();
     }
 
     public void setDrug(Drug drug) {
+        this.drug = EntityRef.of(drug);
+    }
+
+    // Returns the drug reference without loading the drug
+    public EntityRef<Drug> getDrugRef() {
+        return drug;
+    }
+
+    public void setDrugRef(EntityRef<Drug> drug) {
         this.drug = drug;
     }
 
     public Doctor getDoctor() {
-        return doctor;
+        return doctor.get();
     }
 
     public void setDoctor(Doctor doctor) {
+        this.doctor = EntityRef.of(doctor);
+    }
+
+    // Returns the doctor reference without loading the doctor
+    public EntityRef<Doctor> getDoctorRef() {
+        return doctor;
+    }
+
+    public void setDoctorRef(EntityRef<Doctor> doctor) {
         this.doctor = doctor;
     }
 
     public Patient getPatient() {
-        return patient;
+        return patient.get();
     }
 
     public void setPatient(Patient patient) {
+        this.patient = EntityRef.of(patient);
+    }
+
+    // Returns the patient reference without loading the patient
+    public EntityRef<Patient> getPatientRef() {
+        return patient;
+    }
+
+    public void setPatientRef(EntityRef<Patient> patient) {
         this.patient = patient;
     }
 
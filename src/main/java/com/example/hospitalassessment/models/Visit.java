@@ -3,14 +3,24 @@ package com.example.hospitalassessment.models;
 import java.sql.Date;
 
 public class Visit {
-    private Patient patient; // The patient who had the visit
-    private Doctor doctor; // The doctor who conducted the visit
+    private EntityRef<Patient> patient; // The patient who had the visit
+    private EntityRef<Doctor> doctor; // The doctor who conducted the visit
     private Date dateOfVisit;
     private String symptoms;
     private String diagnosis;
+    private int version; // Row version loaded from the database, bumped on every update
 
     // Constructor to initialize visit details
     public Visit(Patient patient, Doctor doctor, Date dateOfVisit, String symptoms, String diagnosis) {
+        this.patient = EntityRef.of(patient);
+        this.doctor = EntityRef.of(doctor);
+        this.dateOfVisit = dateOfVisit;
+        this.symptoms = symptoms;
+        this.diagnosis = diagnosis;
+    }
+
+    // Constructor for a visit whose patient and doctor are loaded on first access
+    public Visit(EntityRef<Patient> patient, EntityRef<Doctor> doctor, Date dateOfVisit, String symptoms, String diagnosis) {
         this.patient = patient;
         this.doctor = doctor;
         this.dateOfVisit = dateOfVisit;
@@ -20,18 +30,36 @@ public class Visit {
 
     // Getters and setters
     public Patient getPatient() {
-        return patient;
+        return patient.get();
     }
 
     public void setPatient(Patient patient) {
+        this.patient = EntityRef.of(patient);
+    }
+
+    // Returns the patient reference without loading the patient
+    public EntityRef<Patient> getPatientRef() {
+        return patient;
+    }
+
+    public void setPatientRef(EntityRef<Patient> patient) {
         this.patient = patient;
     }
 
     public Doctor getDoctor() {
-        return doctor;
+        return doctor.get();
     }
 
     public void setDoctor(Doctor doctor) {
+        this.doctor = EntityRef.of(doctor);
+    }
+
+    // Returns the doctor reference without loading the doctor
+    public EntityRef<Doctor> getDoctorRef() {
+        return doctor;
+    }
+
+    public void setDoctorRef(EntityRef<Doctor> doctor) {
         this.doctor = doctor;
     }
 
@@ -70,4 +98,12 @@ public class Visit {
                 ", diagnosis='" + diagnosis + '\'' +
                 '}';
     }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public void setVersion(int version) {
+        this.version = version;
+    }
 }
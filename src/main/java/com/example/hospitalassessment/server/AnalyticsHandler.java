@@ -0,0 +1,143 @@
+package com.example.hospitalassessment.server;
+
+import com.example.hospitalassessment.server.ApiHandler.ApiException;
+import com.example.hospitalassessment.services.ColumnarSnapshot;
+import com.example.hospitalassessment.services.ColumnarSnapshot.Column;
+import com.example.hospitalassessment.services.ColumnarSnapshot.Group;
+import com.example.hospitalassessment.services.ColumnarSnapshot.Kind;
+import com.example.hospitalassessment.services.ColumnarSnapshot.Selection;
+import com.example.hospitalassessment.services.ColumnarSnapshot.Table;
+import com.example.hospitalassessment.services.ColumnarSnapshotService;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Answers ad-hoc aggregations over the columnar snapshot of visits and prescriptions.
+ * {@code GET /api/analytics/<visits|prescriptions>?groupBy=<column>} counts the rows of each value of a column.
+ * Optional parameters narrow and extend the query:
+ * {@code from} and {@code until} keep the rows dated from one day up to but excluding another,
+ * a parameter named after a text column (e.g. {@code doctor=D1}) keeps the rows holding that value,
+ * {@code sum=<column>} totals a number column over each group, and {@code limit} caps the number of groups returned.
+ */
+class AnalyticsHandler implements HttpHandler {
+    private static final String BASE_PATH = "/api/analytics"; // Context path the handler is registered under.
+    private static final int DEFAULT_LIMIT = 50; // Groups returned when the client does not say.
+    private static final int MAX_LIMIT = 500; // Most groups a client may request.
+    private static final Set<String> QUERY_PARAMS = Set.of("groupBy", "sum", "from", "until", "limit"); // Parameters that are not column filters.
+
+    private final ColumnarSnapshotService snapshots; // Provides the snapshot queries run on.
+
+    /**
+     * Creates the handler.
+     *
+     * @param snapshots the service keeping the columnar snapshot
+     */
+    AnalyticsHandler(ColumnarSnapshotService snapshots) {
+        this.snapshots = snapshots;
+    }
+
+    /**
+     * Runs the aggregation described by the request and writes the groups as JSON.
+     *
+     * @param exchange the HTTP exchange to handle
+     * @throws IOException if the response cannot be written
+     */
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (!exchange.getRequestMethod().equals("GET")) {
+                throw new ApiException(405, "Method " + exchange.getRequestMethod() + " is not allowed here.");
+            }
+            String table = exchange.getRequestURI().getPath().substring(BASE_PATH.length()).replace("/", "");
+            Map<String, String> params = ApiHandler.queryParams(exchange);
+            ColumnarSnapshot snapshot = snapshots.getSnapshot();
+            Map<String, Object> response = switch (table) {
+                case "visits" -> query(snapshot.visits(), params);
+                case "prescriptions" -> query(snapshot.prescriptions(), params);
+                default -> throw new ApiException(404, "Unknown resource path " + exchange.getRequestURI().getPath() + ".");
+            };
+            ApiHandler.sendJson(exchange, 200, response);
+        } catch (ApiException e) {
+            ApiHandler.sendError(exchange, e.status, e.getMessage());
+        } catch (IllegalArgumentException e) {
+            ApiHandler.sendError(exchange, 400, e.getMessage());
+        } catch (CompletionException e) {
+            e.printStackTrace();
+            ApiHandler.sendError(exchange, 503, "The data could not be loaded. Please try again shortly.");
+        } catch (Exception e) {
+            e.printStackTrace();
+            ApiHandler.sendError(exchange, 500, "Internal server error.");
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static <C extends Enum<C> & Column> Map<String, Object> query(Table<C> table, Map<String, String> params) {
+        String groupBy = params.get("groupBy");
+        if (groupBy == null || groupBy.isBlank()) {
+            throw new ApiException(400, "groupBy is required.");
+        }
+        C group = table.column(groupBy);
+        C sum = params.containsKey("sum") ? table.column(params.get("sum")) : null;
+        int limit = Math.min(ApiHandler.intParam(params, "limit", DEFAULT_LIMIT), MAX_LIMIT);
+        if (limit < 1) {
+            throw new ApiException(400, "limit must be positive.");
+        }
+
+        long started = System.nanoTime();
+        Selection rows = table.all();
+        LocalDate from = dateParam(params, "from");
+        LocalDate until = dateParam(params, "until");
+        if (from != null || until != null) {
+            rows = rows.and(table.whereBetween(table.column("day"), from, until));
+        }
+        for (Map.Entry<String, String> filter : params.entrySet()) {
+            if (!QUERY_PARAMS.contains(filter.getKey())) {
+                C column = table.column(filter.getKey());
+                if (column.kind() != Kind.TEXT) {
+                    throw new ApiException(400, "Only text columns can be filtered by value; use from and until for days.");
+                }
+                rows = rows.and(table.whereEquals(column, filter.getValue()));
+            }
+        }
+        List<Group> groups = sum != null ? table.sumBy(group, sum, rows) : table.countBy(group, rows);
+        long elapsed = System.nanoTime() - started;
+
+        List<Map<String, Object>> items = new ArrayList<>();
+        for (Group g : groups.subList(0, Math.min(groups.size(), limit))) {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("key", g.key());
+            item.put("count", g.count());
+            if (sum != null) {
+                item.put("sum", g.sum());
+            }
+            items.add(item);
+        }
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("rows", table.rows());
+        response.put("matched", rows.count());
+        response.put("groupCount", groups.size());
+        response.put("groups", items);
+        response.put("queryMicros", elapsed / 1_000);
+        return response;
+    }
+
+    private static LocalDate dateParam(Map<String, String> params, String name) {
+        String value = params.get(name);
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        try {
+            return LocalDate.parse(value);
+        } catch (DateTimeParseException e) {
+            throw new ApiException(400, name + " must be a date in yyyy-mm-dd format.");
+        }
+    }
+}
@@ -0,0 +1,318 @@
+package com.example.hospitalassessment.server;
+
+import com.example.hospitalassessment.database.ConnectionPool;
+import com.example.hospitalassessment.database.DataAccessContext;
+import com.example.hospitalassessment.database.DatabaseManager;
+import com.example.hospitalassessment.database.OperationResult;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Base handler for a REST resource backed by a DAO.
+ * Routes requests of the form {@code /api/<resource>[/<key>...]} to list, read, create, update and delete
+ * operations, borrowing a pooled database connection for the duration of each request. Operations take their DAOs
+ * from the connection's long-lived data access context, whose reference caches stay warm between requests.
+ *
+ * @param <T> the entity type exposed by the resource
+ */
+abstract class ApiHandler<T> implements HttpHandler {
+    private static final int DEFAULT_LIMIT = 50; // Page size used when the client does not provide one.
+    private static final int MAX_LIMIT = 500; // Upper bound on the page size a client may request.
+
+    private final ConnectionPool connectionPool; // Source of database connections for each request.
+    private final String basePath; // Context path the handler is registered under.
+    private final int keyLength; // Number of path segments that identify a single entity.
+
+    /**
+     * Creates a handler for a resource.
+     *
+     * @param connectionPool the pool providing database connections
+     * @param basePath       the context path of the resource, e.g. "/api/patients"
+     * @param keyLength      the number of path segments forming the entity key
+     */
+    protected ApiHandler(ConnectionPool connectionPool, String basePath, int keyLength) {
+        this.connectionPool = connectionPool;
+        this.basePath = basePath;
+        this.keyLength = keyLength;
+    }
+
+    /**
+     * Retrieves a page of entities matching the search text.
+     */
+    protected abstract List<T> search(DataAccessContext dataAccess, String query, int limit, int offset);
+
+    /**
+     * Retrieves a single entity by its key, or null if it does not exist.
+     */
+    protected abstract T find(DataAccessContext dataAccess, List<String> key);
+
+    /**
+     * Creates a new entity from the request body.
+     */
+    protected abstract OperationResult create(DataAccessContext dataAccess, Map<String, Object> body);
+
+    /**
+     * Applies the fields present in the request body to an existing entity and saves it.
+     * A {@code version} in the body makes the update fail with a conflict if the record has changed since then.
+     */
+    protected abstract OperationResult update(DataAccessContext dataAccess, T existing, Map<String, Object> body);
+
+    /**
+     * Deletes the entity identified by the key, only while it is still at the expected version if one is given.
+     */
+    protected abstract OperationResult delete(DataAccessContext dataAccess, List<String> key, Integer expectedVersion);
+
+    /**
+     * Converts an entity into a JSON-ready map.
+     */
+    protected abstract Map<String, Object> toJson(T entity);
+
+    /**
+     * Dispatches an HTTP request to the matching operation and writes a JSON response.
+     *
+     * @param exchange the HTTP exchange to handle
+     * @throws IOException if the response cannot be written
+     */
+    @Override
+    public final void handle(HttpExchange exchange) throws IOException {
+        try {
+            List<String> key = pathKey(exchange);
+            String method = exchange.getRequestMethod();
+
+            if (!connectionPool.getCircuitBreaker().isAvailable()) {
+                throw new ApiException(503, "The database is unavailable. Please try again shortly.");
+            }
+
+            DatabaseManager dbManager = connectionPool.borrow();
+            try {
+                DataAccessContext dataAccess = connectionPool.context(dbManager);
+                if (key.isEmpty()) {
+                    switch (method) {
+                        case "GET" -> handleList(exchange, dataAccess);
+                        case "POST" -> sendResult(exchange, create(dataAccess, readBody(exchange)), 201);
+                        default -> throw new ApiException(405, "Method " + method + " is not allowed here.");
+                    }
+                } else {
+                    switch (method) {
+                        case "GET" -> sendJson(exchange, 200, toJson(findExisting(dataAccess, key)));
+                        case "PUT" -> sendResult(exchange, update(dataAccess, findExisting(dataAccess, key), readBody(exchange)), 200);
+                        case "DELETE" -> sendResult(exchange, delete(dataAccess, key, versionParam(exchange)), 200);
+                        default -> throw new ApiException(405, "Method " + method + " is not allowed here.");
+                    }
+                }
+            } finally {
+                connectionPool.release(dbManager);
+            }
+        } catch (ApiException e) {
+            sendError(exchange, e.status, e.getMessage());
+        } catch (IllegalArgumentException e) {
+            sendError(exchange, 400, e.getMessage());
+        } catch (Exception e) {
+            e.printStackTrace();
+            sendError(exchange, 500, "Internal server error.");
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Writes a page of entities along with the paging parameters that produced it.
+     */
+    private void handleList(HttpExchange exchange, DataAccessContext dataAccess) throws IOException {
+        Map<String, String> params = queryParams(exchange);
+        int limit = Math.min(intParam(params, "limit", DEFAULT_LIMIT), MAX_LIMIT);
+        int offset = intParam(params, "offset", 0);
+        if (limit < 1 || offset < 0) {
+            throw new ApiException(400, "limit must be positive and offset must not be negative.");
+        }
+
+        // Fetch one extra row to tell the client whether another page exists.
+        List<T> rows = search(dataAccess, params.get("q"), limit + 1, offset);
+        boolean hasMore = rows.size() > limit;
+
+        List<Map<String, Object>> items = new ArrayList<>();
+        for (T row : rows.subList(0, Math.min(rows.size(), limit))) {
+            items.add(toJson(row));
+        }
+
+        Map<String, Object> page = new LinkedHashMap<>();
+        page.put("items", items);
+        page.put("offset", offset);
+        page.put("limit", limit);
+        page.put("hasMore", hasMore);
+        sendJson(exchange, 200, page);
+    }
+
+    private T findExisting(DataAccessContext dataAccess, List<String> key) {
+        T entity = find(dataAccess, key);
+        if (entity == null) {
+            throw new ApiException(404, "No record found for " + String.join("/", key) + ".");
+        }
+        return entity;
+    }
+
+    /**
+     * Splits the path after the base path into decoded key segments.
+     */
+    private List<String> pathKey(HttpExchange exchange) {
+        String path = exchange.getRequestURI().getRawPath();
+        String rest = path.length() > basePath.length() ? path.substring(basePath.length()) : "";
+
+        List<String> key = new ArrayList<>();
+        for (String segment : rest.split("/")) {
+            if (!segment.isEmpty()) {
+                key.add(URLDecoder.decode(segment, StandardCharsets.UTF_8));
+            }
+        }
+        if (!key.isEmpty() && key.size() != keyLength) {
+            throw new ApiException(404, "Unknown resource path " + path + ".");
+        }
+        return key;
+    }
+
+    static Map<String, String> queryParams(HttpExchange exchange) {
+        Map<String, String> params = new HashMap<>();
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null) {
+            return params;
+        }
+        for (String pair : query.split("&")) {
+            int eq = pair.indexOf('=');
+            String name = eq < 0 ? pair : pair.substring(0, eq);
+            String value = eq < 0 ? "" : pair.substring(eq + 1);
+            params.put(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return params;
+    }
+
+    static int intParam(Map<String, String> params, String name, int defaultValue) {
+        String value = params.get(name);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new ApiException(400, name + " must be a whole number.");
+        }
+    }
+
+    /**
+     * Reads the optional {@code version} query parameter of a delete request.
+     */
+    private static Integer versionParam(HttpExchange exchange) {
+        Map<String, String> params = queryParams(exchange);
+        return params.containsKey("version") ? intParam(params, "version", 0) : null;
+    }
+
+    private static Map<String, Object> readBody(HttpExchange exchange) throws IOException {
+        String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+        if (body.isBlank()) {
+            throw new ApiException(400, "A JSON request body is required.");
+        }
+        return Json.parseObject(body);
+    }
+
+    /**
+     * Maps a DAO result onto an HTTP status and writes it as a JSON message.
+     */
+    private static void sendResult(HttpExchange exchange, OperationResult result, int successStatus) throws IOException {
+        int status = switch (result.getStatus()) {
+            case SUCCESS -> successStatus;
+            case NOT_FOUND -> 404;
+            case DUPLICATE, CONFLICT -> 409;
+            case FAILED -> 500;
+        };
+        sendJson(exchange, status, Map.of("message", result.getMessage()));
+    }
+
+    static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        sendJson(exchange, status, Map.of("error", message == null ? "Unknown error." : message));
+    }
+
+    static void sendJson(HttpExchange exchange, int status, Object body) throws IOException {
+        byte[] bytes = Json.write(body).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(bytes);
+        }
+    }
+
+    /**
+     * Reads a required text field from a request body.
+     */
+    protected static String requiredString(Map<String, Object> body, String field) {
+        Object value = body.get(field);
+        if (value == null || value.toString().isBlank()) {
+            throw new ApiException(400, "Field '" + field + "' is required.");
+        }
+        return value.toString();
+    }
+
+    /**
+     * Reads an optional text field from a request body, falling back to a default when absent.
+     */
+    protected static String optionalString(Map<String, Object> body, String field, String defaultValue) {
+        return body.containsKey(field) ? (body.get(field) == null ? null : body.get(field).toString()) : defaultValue;
+    }
+
+    /**
+     * Reads an optional whole-number field from a request body, falling back to a default when absent.
+     */
+    protected static int optionalInt(Map<String, Object> body, String field, int defaultValue) {
+        Object value = body.get(field);
+        if (value == null) {
+            return defaultValue;
+        }
+        if (value instanceof Number number) {
+            return number.intValue();
+        }
+        try {
+            return Integer.parseInt(value.toString());
+        } catch (NumberFormatException e) {
+            throw new ApiException(400, "Field '" + field + "' must be a whole number.");
+        }
+    }
+
+    /**
+     * Parses a date in yyyy-mm-dd format.
+     */
+    protected static java.sql.Date parseDate(String value, String field) {
+        try {
+            return java.sql.Date.valueOf(value);
+        } catch (IllegalArgumentException e) {
+            throw new ApiException(400, "Field '" + field + "' must be a date in yyyy-mm-dd format.");
+        }
+    }
+
+    /**
+     * Builds a compact JSON reference to a related entity.
+     */
+    protected static Map<String, Object> reference(String id, String name) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("id", id);
+        json.put("name", name);
+        return json;
+    }
+
+    /**
+     * Raised by handlers to abort a request with a specific HTTP status.
+     */
+    static class ApiException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        final int status; // HTTP status code to respond with.
+
+        ApiException(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+}
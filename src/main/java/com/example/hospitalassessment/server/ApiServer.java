@@ -0,0 +1,64 @@
+package com.example.hospitalassessment.server;
+
+import com.example.hospitalassessment.database.ConnectionPool;
+import com.example.hospitalassessment.services.ChangeFeedService;
+import com.example.hospitalassessment.services.ColumnarSnapshotService;
+import com.sun.net.httpserver.HttpServer;
+import io.github.cdimascio.dotenv.Dotenv;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * ApiServer is the entry point for the headless mode of the hospital database management system.
+ * It serves the DAO layer over HTTP as JSON without starting the JavaFX user interface.
+ */
+public class ApiServer {
+    private static final long CHANGE_POLL_MILLIS = Long.getLong("hospital.changeFeed.intervalMillis", 5000); // Pause between checks for changes made elsewhere.
+
+    /**
+     * Loads the database configuration, opens the connection pool and starts the HTTP server.
+     * Each request is handled on its own virtual thread. Changes made by the desktop application or other servers are
+     * followed through the change log, so the pool's reference caches drop the records they change.
+     *
+     * @param args command-line arguments passed to the application
+     * @throws IOException if the server socket cannot be opened
+     */
+    public static void main(String[] args) throws IOException {
+        Dotenv dotenv = Dotenv.load();
+        int port = Integer.parseInt(dotenv.get("SERVER_PORT", "8080"));
+        int poolSize = Integer.parseInt(dotenv.get("DB_POOL_SIZE", "8"));
+
+        ConnectionPool connectionPool = new ConnectionPool(dotenv.get("DB_URL"), dotenv.get("DB_USER"), dotenv.get("DB_PASSWORD"), poolSize);
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        ChangeFeedService changeFeed = new ChangeFeedService(connectionPool, CHANGE_POLL_MILLIS);
+        changeFeed.subscribe(changes -> changes.publishTo(connectionPool.events()));
+
+        HttpServer server = HttpServer.create(new InetSocketAddress(port), 0);
+        server.createContext("/api/patients", new PatientHandler(connectionPool));
+        server.createContext("/api/doctors", new DoctorHandler(connectionPool));
+        server.createContext("/api/drugs", new DrugHandler(connectionPool));
+        server.createContext("/api/insurance", new InsuranceHandler(connectionPool));
+        server.createContext("/api/visits", new VisitHandler(connectionPool));
+        server.createContext("/api/prescriptions", new PrescriptionHandler(connectionPool));
+
+        ColumnarSnapshotService snapshots = new ColumnarSnapshotService(connectionPool);
+        snapshots.prefetch();
+        server.createContext("/api/analytics", new AnalyticsHandler(snapshots));
+        server.setExecutor(executor);
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            System.out.println("Stopping REST service...");
+            server.stop(1);
+            changeFeed.stop();
+            executor.shutdown();
+            connectionPool.close();
+        }));
+
+        changeFeed.start();
+        server.start();
+        System.out.println("REST service listening on port " + port + " with " + poolSize + " database connections.");
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.hospitalassessment.server;
+
+import com.example.hospitalassessment.database.ConnectionPool;
+import com.example.hospitalassessment.database.DataAccessContext;
+import com.example.hospitalassessment.database.OperationResult;
+import com.example.hospitalassessment.models.Doctor;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * REST resource for doctors, served under {@code /api/doctors/{doctorId}}.
+ */
+class DoctorHandler extends ApiHandler<Doctor> {
+
+    DoctorHandler(ConnectionPool connectionPool) {
+        super(connectionPool, "/api/doctors", 1);
+    }
+
+    @Override
+    protected List<Doctor> search(DataAccessContext dataAccess, String query, int limit, int offset) {
+        return dataAccess.doctors().searchDoctors(query, limit, offset);
+    }
+
+    @Override
+    protected Doctor find(DataAccessContext dataAccess, List<String> key) {
+        return dataAccess.doctors().getDoctorById(key.get(0));
+    }
+
+    @Override
+    protected OperationResult create(DataAccessContext dataAccess, Map<String, Object> body) {
+        Doctor doctor = new Doctor(
+                requiredString(body, "id"),
+                requiredString(body, "firstName"),
+                requiredString(body, "surname"),
+                optionalString(body, "address", null),
+                optionalString(body, "email", null),
+                optionalString(body, "specialization", null),
+                optionalString(body, "hospital", null)
+        );
+        return dataAccess.doctors().addDoctor(doctor);
+    }
+
+    @Override
+    protected OperationResult update(DataAccessContext dataAccess, Doctor doctor, Map<String, Object> body) {
+        doctor.setFirstName(optionalString(body, "firstName", doctor.getFirstName()));
+        doctor.setSurname(optionalString(body, "surname", doctor.getSurname()));
+        doctor.setAddress(optionalString(body, "address", doctor.getAddress()));
+        doctor.setEmail(optionalString(body, "email", doctor.getEmail()));
+        doctor.setSpecialization(optionalString(body, "specialization", doctor.getSpecialization()));
+        doctor.setHospital(optionalString(body, "hospital", doctor.getHospital()));
+        doctor.setVersion(optionalInt(body, "version", doctor.getVersion()));
+        return dataAccess.doctors().updateDoctor(doctor);
+    }
+
+    @Override
+    protected OperationResult delete(DataAccessContext dataAccess, List<String> key, Integer expectedVersion) {
+        return dataAccess.doctors().deleteDoctor(key.get(0), expectedVersion);
+    }
+
+    @Override
+    protected Map<String, Object> toJson(Doctor doctor) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("id", doctor.getId());
+        json.put("firstName", doctor.getFirstName());
+        json.put("surname", doctor.getSurname());
+        json.put("address", doctor.getAddress());
+        json.put("email", doctor.getEmail());
+        json.put("specialization", doctor.getSpecialization());
+        json.put("hospital", doctor.getHospital());
+        json.put("version", doctor.getVersion());
+        return json;
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.hospitalassessment.server;
+
+import com.example.hospitalassessment.database.ConnectionPool;
+import com.example.hospitalassessment.database.DataAccessContext;
+import com.example.hospitalassessment.database.OperationResult;
+import com.example.hospitalassessment.models.Drug;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * REST resource for drugs, served under {@code /api/drugs/{drugId}}.
+ */
+class DrugHandler extends ApiHandler<Drug> {
+
+    DrugHandler(ConnectionPool connectionPool) {
+        super(connectionPool, "/api/drugs", 1);
+    }
+
+    @Override
+    protected List<Drug> search(DataAccessContext dataAccess, String query, int limit, int offset) {
+        return dataAccess.drugs().searchDrugs(query, limit, offset);
+    }
+
+    @Override
+    protected Drug find(DataAccessContext dataAccess, List<String> key) {
+        return dataAccess.drugs().getDrugById(key.get(0));
+    }
+
+    @Override
+    protected OperationResult create(DataAccessContext dataAccess, Map<String, Object> body) {
+        Drug drug = new Drug(
+                requiredString(body, "id"),
+                requiredString(body, "drugName"),
+                optionalString(body, "sideEffects", null),
+                optionalString(body, "benefits", null)
+        );
+        return dataAccess.drugs().addDrug(drug);
+    }
+
+    @Override
+    protected OperationResult update(DataAccessContext dataAccess, Drug drug, Map<String, Object> body) {
+        drug.setDrugName(optionalString(body, "drugName", drug.getDrugName()));
+        drug.setSideEffects(optionalString(body, "sideEffects", drug.getSideEffects()));
+        drug.setBenefits(optionalString(body, "benefits", drug.getBenefits()));
+        drug.setVersion(optionalInt(body, "version", drug.getVersion()));
+        return dataAccess.drugs().updateDrug(drug);
+    }
+
+    @Override
+    protected OperationResult delete(DataAccessContext dataAccess, List<String> key, Integer expectedVersion) {
+        return dataAccess.drugs().deleteDrug(key.get(0), expectedVersion);
+    }
+
+    @Override
+    protected Map<String, Object> toJson(Drug drug) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("id", drug.getId());
+        json.put("drugName", drug.getDrugName());
+        json.put("sideEffects", drug.getSideEffects());
+        json.put("benefits", drug.getBenefits());
+        json.put("version", drug.getVersion());
+        return json;
+    }
+}
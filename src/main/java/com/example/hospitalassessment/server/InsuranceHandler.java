@@ -0,0 +1,66 @@
+package com.example.hospitalassessment.server;
+
+import com.example.hospitalassessment.database.ConnectionPool;
+import com.example.hospitalassessment.database.DataAccessContext;
+import com.example.hospitalassessment.database.OperationResult;
+import com.example.hospitalassessment.models.Insurance;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * REST resource for insurance companies, served under {@code /api/insurance/{insuranceId}}.
+ */
+class InsuranceHandler extends ApiHandler<Insurance> {
+
+    InsuranceHandler(ConnectionPool connectionPool) {
+        super(connectionPool, "/api/insurance", 1);
+    }
+
+    @Override
+    protected List<Insurance> search(DataAccessContext dataAccess, String query, int limit, int offset) {
+        return dataAccess.insurance().searchInsurance(query, limit, offset);
+    }
+
+    @Override
+    protected Insurance find(DataAccessContext dataAccess, List<String> key) {
+        return dataAccess.insurance().getInsuranceById(key.get(0));
+    }
+
+    @Override
+    protected OperationResult create(DataAccessContext dataAccess, Map<String, Object> body) {
+        Insurance insurance = new Insurance(
+                requiredString(body, "id"),
+                requiredString(body, "company"),
+                optionalString(body, "address", null),
+                optionalString(body, "phone", null)
+        );
+        return dataAccess.insurance().addInsurance(insurance);
+    }
+
+    @Override
+    protected OperationResult update(DataAccessContext dataAccess, Insurance insurance, Map<String, Object> body) {
+        insurance.setCompany(optionalString(body, "company", insurance.getCompany()));
+        insurance.setAddress(optionalString(body, "address", insurance.getAddress()));
+        insurance.setPhone(optionalString(body, "phone", insurance.getPhone()));
+        insurance.setVersion(optionalInt(body, "version", insurance.getVersion()));
+        return dataAccess.insurance().updateInsurance(insurance);
+    }
+
+    @Override
+    protected OperationResult delete(DataAccessContext dataAccess, List<String> key, Integer expectedVersion) {
+        return dataAccess.insurance().deleteInsurance(key.get(0), expectedVersion);
+    }
+
+    @Override
+    protected Map<String, Object> toJson(Insurance insurance) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("id", insurance.getId());
+        json.put("company", insurance.getCompany());
+        json.put("address", insurance.getAddress());
+        json.put("phone", insurance.getPhone());
+        json.put("version", insurance.getVersion());
+        return json;
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.hospitalassessment.server;
+
+import com.example.hospitalassessment.database.ConnectionPool;
+import com.example.hospitalassessment.database.DataAccessContext;
+import com.example.hospitalassessment.database.OperationResult;
+import com.example.hospitalassessment.database.PatientDAO;
+import com.example.hospitalassessment.models.Insurance;
+import com.example.hospitalassessment.models.Patient;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * REST resource for patients, served under {@code /api/patients/{patientId}}.
+ */
+class PatientHandler extends ApiHandler<Patient> {
+
+    PatientHandler(ConnectionPool connectionPool) {
+        super(connectionPool, "/api/patients", 1);
+    }
+
+    @Override
+    protected List<Patient> search(DataAccessContext dataAccess, String query, int limit, int offset) {
+        PatientDAO dao = dataAccess.patients();
+        List<Patient> patients = dao.searchPatients(query, limit, offset);
+        dao.resolveReferences(patients); // Load related records for the whole page in one query per table
+        return patients;
+    }
+
+    @Override
+    protected Patient find(DataAccessContext dataAccess, List<String> key) {
+        return dataAccess.patients().getPatientById(key.get(0));
+    }
+
+    @Override
+    protected OperationResult create(DataAccessContext dataAccess, Map<String, Object> body) {
+        Patient patient = new Patient(
+                requiredString(body, "id"),
+                requiredString(body, "firstName"),
+                requiredString(body, "surname"),
+                optionalString(body, "postcode", null),
+                optionalString(body, "address", null),
+                optionalString(body, "phone", null),
+                optionalString(body, "email", null),
+                findInsurance(dataAccess, optionalString(body, "insuranceId", null))
+        );
+        return dataAccess.patients().addPatient(patient);
+    }
+
+    @Override
+    protected OperationResult update(DataAccessContext dataAccess, Patient patient, Map<String, Object> body) {
+        patient.setFirstName(optionalString(body, "firstName", patient.getFirstName()));
+        patient.setSurname(optionalString(body, "surname", patient.getSurname()));
+        patient.setPostcode(optionalString(body, "postcode", patient.getPostcode()));
+        patient.setAddress(optionalString(body, "address", patient.getAddress()));
+        patient.setPhone(optionalString(body, "phone", patient.getPhone()));
+        patient.setEmail(optionalString(body, "email", patient.getEmail()));
+        if (body.containsKey("insuranceId")) {
+            patient.setInsurance(findInsurance(dataAccess, optionalString(body, "insuranceId", null)));
+        }
+        patient.setVersion(optionalInt(body, "version", patient.getVersion()));
+        return dataAccess.patients().updatePatient(patient);
+    }
+
+    @Override
+    protected OperationResult delete(DataAccessContext dataAccess, List<String> key, Integer expectedVersion) {
+        return dataAccess.patients().deletePatient(key.get(0), expectedVersion);
+    }
+
+    @Override
+    protected Map<String, Object> toJson(Patient patient) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("id", patient.getId());
+        json.put("firstName", patient.getFirstName());
+        json.put("surname", patient.getSurname());
+        json.put("postcode", patient.getPostcode());
+        json.put("address", patient.getAddress());
+        json.put("phone", patient.getPhone());
+        json.put("email", patient.getEmail());
+        json.put("insuranceId", patient.getInsurance() != null ? patient.getInsurance().getId() : null);
+        json.put("insuranceCompany", patient.getInsurance() != null ? patient.getInsurance().getCompany() : "NHS");
+        json.put("version", patient.getVersion());
+        return json;
+    }
+
+    /**
+     * Resolves an insurance ID from a request, treating a missing ID as NHS cover.
+     */
+    private static Insurance findInsurance(DataAccessContext dataAccess, String insuranceId) {
+        if (insuranceId == null || insuranceId.isBlank()) {
+            return null;
+        }
+        Insurance insurance = dataAccess.insurance().getInsuranceById(insuranceId);
+        if (insurance == null) {
+            throw new ApiException(400, "Insurance " + insuranceId + " does not exist.");
+        }
+        return insurance;
+    }
+}
@@ -0,0 +1,140 @@
+package com.example.hospitalassessment.server;
+
+import com.example.hospitalassessment.database.*;
+import com.example.hospitalassessment.models.Doctor;
+import com.example.hospitalassessment.models.Drug;
+import com.example.hospitalassessment.models.Patient;
+import com.example.hospitalassessment.models.Prescription;
+import com.example.hospitalassessment.services.PrescriptionConflictService;
+import com.example.hospitalassessment.services.PrescriptionConflictService.Conflict;
+
+import java.sql.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * REST resource for prescriptions, served under {@code /api/prescriptions/{prescriptionId}}.
+ */
+class PrescriptionHandler extends ApiHandler<Prescription> {
+    private final PrescriptionConflictService prescriptionConflicts; // Checks saved prescriptions for interacting drugs.
+
+    PrescriptionHandler(ConnectionPool connectionPool) {
+        super(connectionPool, "/api/prescriptions", 1);
+        this.prescriptionConflicts = new PrescriptionConflictService(connectionPool);
+    }
+
+    @Override
+    protected List<Prescription> search(DataAccessContext dataAccess, String query, int limit, int offset) {
+        PrescriptionDAO dao = dataAccess.prescriptions();
+        List<Prescription> prescriptions = dao.searchPrescriptions(query, limit, offset);
+        dao.resolveReferences(prescriptions); // Load related records for the whole page in one query per table
+        return prescriptions;
+    }
+
+    @Override
+    protected Prescription find(DataAccessContext dataAccess, List<String> key) {
+        return dataAccess.prescriptions().getPrescriptionById(key.get(0));
+    }
+
+    @Override
+    protected OperationResult create(DataAccessContext dataAccess, Map<String, Object> body) {
+        Prescription prescription = new Prescription(
+                requiredString(body, "id"),
+                parseDate(requiredString(body, "datePrescribed"), "datePrescribed"),
+                optionalInt(body, "dosage", 0),
+                optionalInt(body, "duration", 0),
+                optionalString(body, "comment", null),
+                findDrug(dataAccess, requiredString(body, "drugId")),
+                findDoctor(dataAccess, requiredString(body, "doctorId")),
+                findPatient(dataAccess, requiredString(body, "patientId"))
+        );
+        checkInteractions(dataAccess, prescription, body);
+        return dataAccess.prescriptions().addPrescription(prescription);
+    }
+
+    @Override
+    protected OperationResult update(DataAccessContext dataAccess, Prescription prescription, Map<String, Object> body) {
+        if (body.containsKey("datePrescribed")) {
+            prescription.setDatePrescribed(parseDate(requiredString(body, "datePrescribed"), "datePrescribed"));
+        }
+        prescription.setDosage(optionalInt(body, "dosage", prescription.getDosage()));
+        prescription.setDuration(optionalInt(body, "duration", prescription.getDuration()));
+        prescription.setComment(optionalString(body, "comment", prescription.getComment()));
+        if (body.containsKey("drugId")) {
+            prescription.setDrug(findDrug(dataAccess, requiredString(body, "drugId")));
+        }
+        if (body.containsKey("doctorId")) {
+            prescription.setDoctor(findDoctor(dataAccess, requiredString(body, "doctorId")));
+        }
+        if (body.containsKey("patientId")) {
+            prescription.setPatient(findPatient(dataAccess, requiredString(body, "patientId")));
+        }
+        prescription.setVersion(optionalInt(body, "version", prescription.getVersion()));
+        checkInteractions(dataAccess, prescription, body);
+        return dataAccess.prescriptions().updatePrescription(prescription);
+    }
+
+    @Override
+    protected OperationResult delete(DataAccessContext dataAccess, List<String> key, Integer expectedVersion) {
+        return dataAccess.prescriptions().deletePrescription(key.get(0), expectedVersion);
+    }
+
+    @Override
+    protected Map<String, Object> toJson(Prescription prescription) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("id", prescription.getId());
+        json.put("datePrescribed", prescription.getDatePrescribed());
+        json.put("dosage", prescription.getDosage());
+        json.put("duration", prescription.getDuration());
+        json.put("comment", prescription.getComment());
+        json.put("drug", reference(prescription.getDrug().getId(), prescription.getDrug().getDrugName()));
+        json.put("doctor", reference(prescription.getDoctor().getId(), prescription.getDoctor().getFirstName() + " " + prescription.getDoctor().getSurname()));
+        json.put("patient", reference(prescription.getPatient().getId(), prescription.getPatient().getFirstName() + " " + prescription.getPatient().getSurname()));
+        json.put("version", prescription.getVersion());
+        return json;
+    }
+
+    /**
+     * Rejects a prescription whose drug interacts with another drug the patient takes at the same time,
+     * unless the request sets {@code "acknowledgeInteractions": true}.
+     */
+    private void checkInteractions(DataAccessContext dataAccess, Prescription prescription, Map<String, Object> body) {
+        if (Boolean.TRUE.equals(body.get("acknowledgeInteractions"))) {
+            return;
+        }
+        Date from = prescription.getDatePrescribed();
+        Date until = Date.valueOf(from.toLocalDate().plusDays(Math.max(1, prescription.getDuration())));
+        List<Conflict> conflicts = prescriptionConflicts.check(prescription,
+                dataAccess.prescriptions().getActivePrescriptions(prescription.getPatientRef().getId(), from, until));
+        if (!conflicts.isEmpty()) {
+            throw new ApiException(409, "The drug interacts with prescriptions "
+                    + String.join(", ", conflicts.stream().map(conflict -> conflict.conflictsWith().getId()).toList())
+                    + " taken at the same time. Send \"acknowledgeInteractions\": true to save it anyway.");
+        }
+    }
+
+    private static Drug findDrug(DataAccessContext dataAccess, String drugId) {
+        Drug drug = dataAccess.drugs().getDrugById(drugId);
+        if (drug == null) {
+            throw new ApiException(400, "Drug " + drugId + " does not exist.");
+        }
+        return drug;
+    }
+
+    private static Doctor findDoctor(DataAccessContext dataAccess, String doctorId) {
+        Doctor doctor = dataAccess.doctors().getDoctorById(doctorId);
+        if (doctor == null) {
+            throw new ApiException(400, "Doctor " + doctorId + " does not exist.");
+        }
+        return doctor;
+    }
+
+    private static Patient findPatient(DataAccessContext dataAccess, String patientId) {
+        Patient patient = dataAccess.patients().getPatientById(patientId);
+        if (patient == null) {
+            throw new ApiException(400, "Patient " + patientId + " does not exist.");
+        }
+        return patient;
+    }
+}
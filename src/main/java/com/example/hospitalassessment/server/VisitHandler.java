@@ -0,0 +1,79 @@
+package com.example.hospitalassessment.server;
+
+import com.example.hospitalassessment.database.ConnectionPool;
+import com.example.hospitalassessment.database.DataAccessContext;
+import com.example.hospitalassessment.database.OperationResult;
+import com.example.hospitalassessment.database.VisitDAO;
+import com.example.hospitalassessment.models.Doctor;
+import com.example.hospitalassessment.models.Patient;
+import com.example.hospitalassessment.models.Visit;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * REST resource for visits, served under {@code /api/visits/{patientId}/{doctorId}/{dateOfVisit}}.
+ */
+class VisitHandler extends ApiHandler<Visit> {
+
+    VisitHandler(ConnectionPool connectionPool) {
+        super(connectionPool, "/api/visits", 3);
+    }
+
+    @Override
+    protected List<Visit> search(DataAccessContext dataAccess, String query, int limit, int offset) {
+        VisitDAO dao = dataAccess.visits();
+        List<Visit> visits = dao.searchVisits(query, limit, offset);
+        dao.resolveReferences(visits); // Load related records for the whole page in one query per table
+        return visits;
+    }
+
+    @Override
+    protected Visit find(DataAccessContext dataAccess, List<String> key) {
+        return dataAccess.visits().getVisitByPrimaryKey(key.get(0), key.get(1), parseDate(key.get(2), "dateOfVisit"));
+    }
+
+    @Override
+    protected OperationResult create(DataAccessContext dataAccess, Map<String, Object> body) {
+        Patient patient = dataAccess.patients().getPatientById(requiredString(body, "patientId"));
+        Doctor doctor = dataAccess.doctors().getDoctorById(requiredString(body, "doctorId"));
+        if (patient == null || doctor == null) {
+            throw new ApiException(400, "Invalid doctor or patient selection.");
+        }
+
+        Visit visit = new Visit(
+                patient,
+                doctor,
+                parseDate(requiredString(body, "dateOfVisit"), "dateOfVisit"),
+                optionalString(body, "symptoms", null),
+                optionalString(body, "diagnosis", null)
+        );
+        return dataAccess.visits().addVisit(visit);
+    }
+
+    @Override
+    protected OperationResult update(DataAccessContext dataAccess, Visit visit, Map<String, Object> body) {
+        visit.setSymptoms(optionalString(body, "symptoms", visit.getSymptoms()));
+        visit.setDiagnosis(optionalString(body, "diagnosis", visit.getDiagnosis()));
+        visit.setVersion(optionalInt(body, "version", visit.getVersion()));
+        return dataAccess.visits().updateVisit(visit);
+    }
+
+    @Override
+    protected OperationResult delete(DataAccessContext dataAccess, List<String> key, Integer expectedVersion) {
+        return dataAccess.visits().deleteVisit(key.get(0), key.get(1), parseDate(key.get(2), "dateOfVisit"), expectedVersion);
+    }
+
+    @Override
+    protected Map<String, Object> toJson(Visit visit) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("patient", reference(visit.getPatient().getId(), visit.getPatient().getFirstName() + " " + visit.getPatient().getSurname()));
+        json.put("doctor", reference(visit.getDoctor().getId(), visit.getDoctor().getFirstName() + " " + visit.getDoctor().getSurname()));
+        json.put("dateOfVisit", visit.getDateOfVisit());
+        json.put("symptoms", visit.getSymptoms());
+        json.put("diagnosis", visit.getDiagnosis());
+        json.put("version", visit.getVersion());
+        return json;
+    }
+}
@@ -0,0 +1,297 @@
+package com.example.hospitalassessment.services;
+
+import com.example.hospitalassessment.database.AsyncPrescriptionDAO;
+import com.example.hospitalassessment.database.ConnectionPool;
+import com.example.hospitalassessment.database.EntityEvent;
+import com.example.hospitalassessment.database.EntityEventBus;
+import com.example.hospitalassessment.models.Prescription;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Answers which drugs a patient takes on a day or during a period without reading the patient's prescriptions.
+ * A prescription is taken from the day it was prescribed for its duration in days, and for at least one day.
+ * Every prescription is loaded once in the background and kept per patient, sorted by first day together with the
+ * latest end day of the courses sorted before it, so a query bisects to the last course that starts in time and walks
+ * back only while an earlier course can still be running. Writes announced on an {@link EntityEventBus} update the
+ * index in place, rebuilding only the changed patient's courses.
+ */
+public class ActiveMedicationIndex {
+    private final AsyncPrescriptionDAO prescriptionDAO; // Loads prescriptions through pooled connections.
+    private final Map<String, PatientCourses> byPatient = new ConcurrentHashMap<>(); // Each patient's courses, replaced as a whole on change.
+    private final Map<String, Course> byPrescription = new HashMap<>(); // Every indexed course by prescription ID. Guarded by this.
+    private final Map<String, Map<String, Course>> coursesByPatient = new HashMap<>(); // Each patient's courses by prescription ID. Guarded by this.
+    private Set<String> changedWhileLoading; // Prescriptions written during the initial load, or null outside it. Guarded by this.
+    private CompletableFuture<Void> loading; // The initial load, or null before it starts. Guarded by this.
+    private volatile boolean ready; // Whether the initial load has completed.
+
+    /**
+     * Creates the index, loading prescriptions through pooled connections.
+     *
+     * @param connectionPool the pool providing database connections for background loads
+     */
+    public ActiveMedicationIndex(ConnectionPool connectionPool) {
+        this.prescriptionDAO = new AsyncPrescriptionDAO(connectionPool);
+    }
+
+    /**
+     * Keeps the index up to date with prescription writes announced on an event bus.
+     * Writes without the written prescription, such as changes by other users, reload that prescription.
+     *
+     * @param events the event bus to follow
+     * @return an action that stops following the bus
+     */
+    public Runnable follow(EntityEventBus events) {
+        return events.subscribe(Prescription.class, this::apply);
+    }
+
+    /**
+     * Starts loading every prescription unless the index is loaded or loading already.
+     */
+    public synchronized void prefetch() {
+        if (loading != null) {
+            return;
+        }
+        changedWhileLoading = new HashSet<>();
+        loading = prescriptionDAO.getAllPrescriptions()
+                .thenAccept(this::finishLoad)
+                .exceptionally(error -> {
+                    error.printStackTrace();
+                    synchronized (this) {
+                        changedWhileLoading = null;
+                        loading = null; // Allow a later prefetch to try again
+                    }
+                    return null;
+                });
+    }
+
+    private synchronized void finishLoad(List<Prescription> prescriptions) {
+        Set<String> changedPatients = new HashSet<>();
+        for (Prescription prescription : prescriptions) {
+            Course course = Course.of(prescription);
+            if (course != null && !changedWhileLoading.contains(course.prescriptionId())) {
+                add(course);
+                changedPatients.add(course.patientId());
+            }
+        }
+        changedWhileLoading = null;
+        changedPatients.forEach(this::rebuild);
+        ready = true;
+    }
+
+    /**
+     * Tells whether every prescription has been loaded, so that queries give complete answers.
+     *
+     * @return true once the initial load has completed
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Lists the courses a patient is taking on a day.
+     *
+     * @param patientId the ID of the patient
+     * @param day       the day
+     * @return the courses running on the day, latest first day first
+     */
+    public List<Course> activeOn(String patientId, LocalDate day) {
+        long epochDay = day.toEpochDay();
+        return activeDuring(patientId, epochDay, epochDay + 1);
+    }
+
+    /**
+     * Lists the courses a patient is taking on any day of a period.
+     *
+     * @param patientId the ID of the patient
+     * @param from      the first day of the period
+     * @param until     the day after the last day of the period
+     * @return the courses running during the period, latest first day first
+     */
+    public List<Course> activeDuring(String patientId, LocalDate from, LocalDate until) {
+        return activeDuring(patientId, from.toEpochDay(), until.toEpochDay());
+    }
+
+    private List<Course> activeDuring(String patientId, long from, long until) {
+        PatientCourses courses = patientId == null ? null : byPatient.get(patientId);
+        return courses == null ? List.of() : courses.overlapping(from, until);
+    }
+
+    /**
+     * Lists every course of a patient.
+     *
+     * @param patientId the ID of the patient
+     * @return the patient's courses in order of their first day
+     */
+    public List<Course> coursesOf(String patientId) {
+        PatientCourses courses = patientId == null ? null : byPatient.get(patientId);
+        return courses == null ? List.of() : List.of(courses.courses);
+    }
+
+    /**
+     * Applies a prescription write to the index.
+     */
+    private void apply(EntityEvent<Prescription> event) {
+        if (event.kind() == EntityEvent.Kind.DELETED) {
+            put(event.key(), null);
+        } else if (event.entity() != null) {
+            put(event.key(), Course.of(event.entity()));
+        } else {
+            prescriptionDAO.getPrescriptionById(event.key())
+                    .thenAccept(prescription -> put(event.key(), prescription != null ? Course.of(prescription) : null))
+                    .exceptionally(error -> {
+                        error.printStackTrace();
+                        return null;
+                    });
+        }
+    }
+
+    /**
+     * Replaces or removes a prescription's course, rebuilding the courses of the patients it moved between.
+     *
+     * @param prescriptionId the ID of the prescription
+     * @param course         its new course, or null if it was deleted
+     */
+    private synchronized void put(String prescriptionId, Course course) {
+        if (changedWhileLoading != null) {
+            changedWhileLoading.add(prescriptionId);
+        }
+        Course previous = byPrescription.remove(prescriptionId);
+        if (previous != null) {
+            Map<String, Course> courses = coursesByPatient.get(previous.patientId());
+            courses.remove(prescriptionId);
+            if (courses.isEmpty()) {
+                coursesByPatient.remove(previous.patientId());
+            }
+        }
+        if (course != null) {
+            add(course);
+            rebuild(course.patientId());
+        }
+        if (previous != null && (course == null || !previous.patientId().equals(course.patientId()))) {
+            rebuild(previous.patientId());
+        }
+    }
+
+    /**
+     * Adds a course to the maps by prescription and patient. Caller holds the lock and rebuilds the patient's courses.
+     */
+    private void add(Course course) {
+        byPrescription.put(course.prescriptionId(), course);
+        coursesByPatient.computeIfAbsent(course.patientId(), id -> new HashMap<>()).put(course.prescriptionId(), course);
+    }
+
+    /**
+     * Publishes a patient's sorted courses after they changed. Caller holds the lock.
+     */
+    private void rebuild(String patientId) {
+        Map<String, Course> courses = coursesByPatient.get(patientId);
+        if (courses == null) {
+            byPatient.remove(patientId);
+        } else {
+            byPatient.put(patientId, new PatientCourses(courses.values()));
+        }
+    }
+
+    /**
+     * The days a prescription's drug is taken, from its first day up to but excluding its end day,
+     * counted in days since the epoch.
+     *
+     * @param prescriptionId the ID of the prescription
+     * @param patientId      the patient taking the drug
+     * @param drugId         the drug taken
+     * @param start          the first day the drug is taken
+     * @param end            the day after the last day the drug is taken
+     */
+    public record Course(String prescriptionId, String patientId, String drugId, long start, long end) {
+
+        /**
+         * Describes the course of a prescription.
+         *
+         * @param prescription the prescription
+         * @return the course, or null if the prescription has no date, patient or drug
+         */
+        public static Course of(Prescription prescription) {
+            if (prescription.getDatePrescribed() == null || prescription.getPatientRef() == null || prescription.getDrugRef() == null) {
+                return null;
+            }
+            long start = prescription.getDatePrescribed().toLocalDate().toEpochDay();
+            return new Course(prescription.getId(), prescription.getPatientRef().getId(), prescription.getDrugRef().getId(),
+                    start, start + Math.max(1, prescription.getDuration()));
+        }
+
+        /**
+         * Provides the first day the drug is taken.
+         */
+        public LocalDate firstDay() {
+            return LocalDate.ofEpochDay(start);
+        }
+
+        /**
+         * Provides the last day the drug is taken.
+         */
+        public LocalDate lastDay() {
+            return LocalDate.ofEpochDay(end - 1);
+        }
+    }
+
+    /**
+     * One patient's courses sorted by first day, with the latest end day among each course and those before it.
+     * Immutable, so readers need no lock.
+     */
+    private static final class PatientCourses {
+        private final Course[] courses; // Courses sorted by first day.
+        private final long[] starts; // First day of each course.
+        private final long[] maxEnds; // Latest end day of the course at each position and every course before it.
+
+        PatientCourses(Collection<Course> unsorted) {
+            courses = unsorted.toArray(new Course[0]);
+            Arrays.sort(courses, Comparator.comparingLong(Course::start));
+            starts = new long[courses.length];
+            maxEnds = new long[courses.length];
+            long maxEnd = Long.MIN_VALUE;
+            for (int i = 0; i < courses.length; i++) {
+                starts[i] = courses[i].start();
+                maxEnd = Math.max(maxEnd, courses[i].end());
+                maxEnds[i] = maxEnd;
+            }
+        }
+
+        /**
+         * Lists the courses running on any day from {@code from} up to but excluding {@code until}.
+         * Courses starting on or after {@code until} are skipped by bisection; the walk back stops as soon as
+         * no course at or before the current position ends after {@code from}.
+         */
+        List<Course> overlapping(long from, long until) {
+            List<Course> found = new ArrayList<>();
+            for (int i = lastStartBefore(until); i >= 0 && maxEnds[i] > from; i--) {
+                if (courses[i].end() > from) {
+                    found.add(courses[i]);
+                }
+            }
+            return found;
+        }
+
+        /**
+         * Finds the position of the last course starting before a day.
+         *
+         * @return the position, or -1 if every course starts on or after the day
+         */
+        private int lastStartBefore(long day) {
+            int low = 0;
+            int high = starts.length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (starts[middle] < day) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low - 1;
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.hospitalassessment.services;
+
+import com.example.hospitalassessment.database.ConnectionPool;
+
+/**
+ * Holds the services shared by every view of the main window, all loading through one {@link ConnectionPool}.
+ * Views take the services they need from here, so adding a service does not change how views are set up.
+ */
+public class ApplicationServices {
+    private final PickerOptionsService pickerOptions; // Keeps entry form dropdown options warm in the background.
+    private final UniqueKeyService uniqueKeys; // Checks entry form keys for uniqueness as they are typed.
+    private final PrescriptionConflictService prescriptionConflicts; // Checks prescriptions for interacting drugs.
+    private final ClaimEligibilityService claimEligibility; // Decides whether visits and prescriptions are covered by insurance.
+    private final ActiveMedicationIndex activeMedications; // The drugs each patient takes on each day.
+    private final PatientHistoryService patientHistory; // Patients' full histories, kept between opens until they change.
+    private final TrendService trends; // Reads visit and prescription trends from the rollups.
+    private final CohortIndex cohorts; // Patients by insurer, drug, doctor, specialization and diagnosis.
+    private final ReportService reports; // Computes workload reports in the database and keeps them for a while.
+
+    /**
+     * Creates the shared services.
+     *
+     * @param connectionPool the ConnectionPool the services load through
+     */
+    public ApplicationServices(ConnectionPool connectionPool) {
+        this.pickerOptions = new PickerOptionsService(connectionPool);
+        this.uniqueKeys = new UniqueKeyService(connectionPool);
+        this.prescriptionConflicts = new PrescriptionConflictService(connectionPool);
+        this.claimEligibility = new ClaimEligibilityService(connectionPool);
+        this.activeMedications = new ActiveMedicationIndex(connectionPool);
+        this.patientHistory = new PatientHistoryService(connectionPool);
+        this.trends = new TrendService(connectionPool);
+        this.cohorts = new CohortIndex(connectionPool);
+        this.reports = new ReportService(connectionPool);
+    }
+
+    public PickerOptionsService pickerOptions() {
+        return pickerOptions;
+    }
+
+    public UniqueKeyService uniqueKeys() {
+        return uniqueKeys;
+    }
+
+    public PrescriptionConflictService prescriptionConflicts() {
+        return prescriptionConflicts;
+    }
+
+    public ClaimEligibilityService claimEligibility() {
+        return claimEligibility;
+    }
+
+    public ActiveMedicationIndex activeMedications() {
+        return activeMedications;
+    }
+
+    public PatientHistoryService patientHistory() {
+        return patientHistory;
+    }
+
+    public TrendService trends() {
+        return trends;
+    }
+
+    public CohortIndex cohorts() {
+        return cohorts;
+    }
+
+    public ReportService reports() {
+        return reports;
+    }
+}
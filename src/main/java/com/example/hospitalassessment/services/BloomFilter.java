@@ -0,0 +1,92 @@
+package com.example.hospitalassessment.services;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A fixed-size Bloom filter of strings.
+ * It answers whether a string might have been added: "no" is always correct, while "maybe" is wrong
+ * for roughly the configured fraction of strings that were never added. Strings cannot be removed.
+ */
+public class BloomFilter {
+    private final long[] bits; // Bit array, 64 bits per element.
+    private final int bitCount; // Number of usable bits.
+    private final int hashCount; // Number of bits set per string.
+    private final int capacity; // Number of strings the filter was sized for.
+    private int size; // Number of strings added so far.
+
+    /**
+     * Creates a filter sized for the expected number of strings and false positive rate.
+     *
+     * @param expectedSize      the number of strings expected to be added
+     * @param falsePositiveRate the acceptable fraction of false "maybe" answers, between 0 and 1
+     */
+    public BloomFilter(int expectedSize, double falsePositiveRate) {
+        this.capacity = Math.max(expectedSize, 1);
+        // Optimal sizes: m = -n ln p / (ln 2)^2 bits and k = m / n ln 2 hash functions
+        long optimalBits = (long) Math.ceil(-capacity * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        this.bitCount = (int) Math.min(Math.max(optimalBits, 64), Integer.MAX_VALUE - 63);
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / capacity * Math.log(2)));
+        this.bits = new long[(bitCount + 63) / 64];
+    }
+
+    /**
+     * Adds a string to the filter.
+     *
+     * @param value the string to add
+     */
+    public synchronized void put(String value) {
+        long hash = hash(value);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < hashCount; i++) {
+            int bit = Math.floorMod(h1 + i * h2, bitCount);
+            bits[bit >>> 6] |= 1L << bit;
+        }
+        size++;
+    }
+
+    /**
+     * Checks whether a string might have been added.
+     *
+     * @param value the string to look up
+     * @return false if the string was definitely never added, true if it may have been
+     */
+    public synchronized boolean mightContain(String value) {
+        long hash = hash(value);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < hashCount; i++) {
+            int bit = Math.floorMod(h1 + i * h2, bitCount);
+            if ((bits[bit >>> 6] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks whether more strings have been added than the filter was sized for,
+     * in which case its false positive rate is higher than configured.
+     *
+     * @return true if the filter should be rebuilt with a larger size
+     */
+    public synchronized boolean isSaturated() {
+        return size > capacity;
+    }
+
+    /**
+     * Hashes a string to 64 bits using FNV-1a over its UTF-8 bytes followed by a final mixing step,
+     * so that both 32-bit halves can be used as independent hashes.
+     */
+    private static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
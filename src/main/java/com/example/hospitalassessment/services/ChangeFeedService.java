@@ -0,0 +1,225 @@
+package com.example.hospitalassessment.services;
+
+import com.example.hospitalassessment.database.ChangeLogDAO;
+import com.example.hospitalassessment.database.ChangeLogDAO.Change;
+import com.example.hospitalassessment.database.ConnectionPool;
+import com.example.hospitalassessment.database.DatabaseManager;
+import com.example.hospitalassessment.database.EntityEvent;
+import com.example.hospitalassessment.database.EntityEventBus;
+import com.example.hospitalassessment.models.*;
+
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Polls the change log in the background and reports which rows other users have inserted, updated or deleted.
+ * Each poll asks only for the entries written since the last one seen, so an idle database costs one indexed
+ * query per interval, and listeners reload only the rows named in a change instead of whole tables.
+ * <p>
+ * Sequence numbers are taken when an entry is written, not when its transaction commits, so an entry can become visible
+ * after later ones were already read. Numbers skipped over are therefore remembered as gaps, and polls read again from
+ * the oldest gap, reporting entries that fill one. Gaps are forgotten after {@link #GAP_TIMEOUT_MILLIS}, as rolled back
+ * transactions leave numbers that are never filled.
+ */
+public class ChangeFeedService {
+
+    /**
+     * The tables whose changes are reported, with the record type each holds.
+     */
+    public enum Table {
+        DOCTOR(Doctor.class), PATIENT(Patient.class), DRUG(Drug.class),
+        INSURANCE(Insurance.class), VISIT(Visit.class), PRESCRIPTION(Prescription.class);
+
+        private final Class<?> entityType; // Record type of the table's rows.
+
+        Table(Class<?> entityType) {
+            this.entityType = entityType;
+        }
+
+        public Class<?> getEntityType() {
+            return entityType;
+        }
+    }
+
+    private static final int BATCH_SIZE = 500; // Most change log entries read by one query.
+    private static final long GAP_TIMEOUT_MILLIS = 60_000; // How long a skipped sequence number is waited for.
+    private static final int MAX_GAPS = 10_000; // Most skipped sequence numbers remembered; the oldest are forgotten first.
+
+    private final ConnectionPool connectionPool; // Source of the connection used by each poll.
+    private final long intervalMillis; // Pause between the end of one poll and the start of the next.
+    private final List<Consumer<TableChanges>> listeners = new CopyOnWriteArrayList<>(); // Notified of each table's changes.
+    private final ScheduledExecutorService poller = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "change-feed");
+        thread.setDaemon(true);
+        return thread;
+    }); // Runs the polls one after another.
+
+    private long watermark = -1; // Sequence number of the newest entry seen, or -1 before the first poll. Poller thread only.
+    private final TreeMap<Long, Long> gaps = new TreeMap<>(); // Skipped sequence numbers below the watermark, with when they were skipped. Poller thread only.
+    private volatile boolean live; // Whether the last poll read the change log successfully.
+
+    /**
+     * Creates the service, polling through pooled connections.
+     *
+     * @param connectionPool the pool providing database connections for polls
+     * @param intervalMillis the pause between polls in milliseconds
+     */
+    public ChangeFeedService(ConnectionPool connectionPool, long intervalMillis) {
+        this.connectionPool = connectionPool;
+        this.intervalMillis = intervalMillis;
+    }
+
+    /**
+     * Registers a listener for changes. Listeners are called on the polling thread, once per changed table and poll.
+     *
+     * @param listener the listener to notify
+     */
+    public void subscribe(Consumer<TableChanges> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Starts polling. The first poll only records the newest entry; changes are reported from then on.
+     */
+    public void start() {
+        poller.scheduleWithFixedDelay(this::poll, 0, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops polling.
+     */
+    public void stop() {
+        poller.shutdownNow();
+    }
+
+    /**
+     * Tells whether changes are currently being reported, so that callers can fall back to full reloads otherwise.
+     *
+     * @return true if the last poll succeeded
+     */
+    public boolean isLive() {
+        return live;
+    }
+
+    /**
+     * Reads the entries written since the last poll, and those filling gaps, and reports them, reading in batches until
+     * the log is drained.
+     */
+    private void poll() {
+        try {
+            DatabaseManager dbManager = connectionPool.borrow();
+            try {
+                ChangeLogDAO changeLogDAO = new ChangeLogDAO(dbManager);
+                if (watermark < 0) {
+                    Long latest = changeLogDAO.getLatestSequence();
+                    if (latest == null && !dbManager.isAvailable()) {
+                        return; // The database is unreachable; try again at the next poll
+                    }
+                    if (latest == null) {
+                        // Without the change log (see sql/add_change_log.sql) views are only refreshed when reselected
+                        System.err.println("Change log is not available; live updates are disabled.");
+                        poller.shutdown();
+                        return;
+                    }
+                    watermark = latest;
+                    live = true;
+                    return;
+                }
+
+                long now = System.currentTimeMillis();
+                gaps.values().removeIf(skippedAt -> now - skippedAt > GAP_TIMEOUT_MILLIS);
+                long cursor = gaps.isEmpty() ? watermark : Math.min(watermark, gaps.firstKey() - 1);
+                List<Change> changes;
+                do {
+                    changes = changeLogDAO.getChangesSince(cursor, BATCH_SIZE);
+                    live = changes != null;
+                    if (changes == null || changes.isEmpty()) {
+                        return;
+                    }
+                    List<Change> unseen = new ArrayList<>();
+                    for (Change change : changes) {
+                        if (change.sequence() > watermark) {
+                            for (long skipped = Math.max(watermark + 1, change.sequence() - MAX_GAPS); skipped < change.sequence(); skipped++) {
+                                gaps.put(skipped, now);
+                            }
+                            watermark = change.sequence();
+                            unseen.add(change);
+                        } else if (gaps.remove(change.sequence()) != null) {
+                            unseen.add(change);
+                        }
+                    }
+                    while (gaps.size() > MAX_GAPS) {
+                        gaps.pollFirstEntry();
+                    }
+                    if (!unseen.isEmpty()) {
+                        publish(unseen);
+                    }
+                    cursor = changes.get(changes.size() - 1).sequence();
+                } while (changes.size() == BATCH_SIZE);
+            } finally {
+                connectionPool.release(dbManager);
+            }
+        } catch (RuntimeException e) {
+            // An exception escaping would cancel every later poll
+            e.printStackTrace();
+            live = false;
+        }
+    }
+
+    /**
+     * Groups change log entries by table, keeping only the latest kind of change for each row, and notifies listeners.
+     */
+    private void publish(List<Change> changes) {
+        Map<Table, Set<String>> changed = new EnumMap<>(Table.class);
+        Map<Table, Set<String>> deleted = new EnumMap<>(Table.class);
+        for (Change change : changes) {
+            Table table;
+            try {
+                table = Table.valueOf(change.table().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                continue; // A table no view shows
+            }
+            Set<String> changedKeys = changed.computeIfAbsent(table, t -> new LinkedHashSet<>());
+            Set<String> deletedKeys = deleted.computeIfAbsent(table, t -> new LinkedHashSet<>());
+            if (change.deleted()) {
+                changedKeys.remove(change.key());
+                deletedKeys.add(change.key());
+            } else {
+                deletedKeys.remove(change.key());
+                changedKeys.add(change.key());
+            }
+        }
+
+        for (Table table : changed.keySet()) {
+            TableChanges tableChanges = new TableChanges(table, Set.copyOf(changed.get(table)), Set.copyOf(deleted.get(table)));
+            for (Consumer<TableChanges> listener : listeners) {
+                listener.accept(tableChanges);
+            }
+        }
+    }
+
+    /**
+     * The rows of one table changed since the previous report.
+     *
+     * @param table       the changed table
+     * @param changedKeys the keys of rows inserted or updated
+     * @param deletedKeys the keys of rows deleted
+     */
+    public record TableChanges(Table table, Set<String> changedKeys, Set<String> deletedKeys) {
+
+        /**
+         * Announces every changed and deleted row on an event bus, so reference caches drop exactly those records.
+         *
+         * @param events the bus to publish on
+         */
+        public void publishTo(EntityEventBus events) {
+            Class<?> type = table.getEntityType();
+            changedKeys.forEach(key -> events.publish(EntityEvent.updated(type, key, null)));
+            deletedKeys.forEach(key -> events.publish(EntityEvent.deleted(type, key)));
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package com.example.hospitalassessment.services;
+
+import com.example.hospitalassessment.database.AsyncClaimDAO;
+import com.example.hospitalassessment.database.ClaimDAO.Claim;
+import com.example.hospitalassessment.database.ConnectionPool;
+import com.example.hospitalassessment.models.Prescription;
+import com.example.hospitalassessment.models.Visit;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Decides whether visits and prescriptions can be claimed from the patient's insurer.
+ * Each insurer's coverage rules are compiled into a {@link CoveragePolicy}, loaded once in the background and
+ * reloaded when they get old, so a single claim is decided in memory as a record is saved.
+ * Whole tables are evaluated in parallel on the fork/join common pool.
+ */
+public class ClaimEligibilityService {
+    private static final long MAX_AGE_MILLIS = Long.getLong("hospital.claims.maxAgeMillis", 300_000); // Age after which coverage rules are reloaded.
+    private static final int BATCH_THRESHOLD = 1024; // Claims evaluated by one task before the work is split.
+
+    private final AsyncClaimDAO claimDAO; // Loads rules and claims through pooled connections.
+    private volatile Map<String, CoveragePolicy> policies; // The latest compiled rules by insurance ID, or null before the first load.
+    private CompletableFuture<Map<String, CoveragePolicy>> loading; // The load in progress, or null. Guarded by this.
+    private long loadedAt; // When the latest load was started. Guarded by this.
+
+    /**
+     * Creates the service, loading rules and claims through pooled connections.
+     *
+     * @param connectionPool the pool providing database connections for background loads
+     */
+    public ClaimEligibilityService(ConnectionPool connectionPool) {
+        this.claimDAO = new AsyncClaimDAO(connectionPool);
+    }
+
+    /**
+     * Starts loading the coverage rules unless they are loaded or loading already.
+     */
+    public void prefetch() {
+        load();
+    }
+
+    /**
+     * Provides the compiled coverage rules, waiting for the first load if necessary.
+     * Rules older than the maximum age are returned while newer ones load in the background.
+     *
+     * @return the policy of each insurer that has rules, by insurance ID
+     */
+    public Map<String, CoveragePolicy> getPolicies() {
+        CompletableFuture<Map<String, CoveragePolicy>> pending = load();
+        Map<String, CoveragePolicy> current = policies;
+        return current != null ? current : pending.join();
+    }
+
+    /**
+     * Starts a load if there are no rules yet or they are too old, unless one is already in progress.
+     *
+     * @return the load in progress, or a completed future holding the current rules
+     */
+    private synchronized CompletableFuture<Map<String, CoveragePolicy>> load() {
+        long now = System.currentTimeMillis();
+        if (loading == null && (policies == null || now - loadedAt > MAX_AGE_MILLIS)) {
+            loadedAt = now;
+            CompletableFuture<Map<String, CoveragePolicy>> started = claimDAO.getCoverageRules()
+                    .thenApply(CoveragePolicy::compile)
+                    .exceptionally(error -> {
+                        error.printStackTrace();
+                        return policies != null ? policies : Map.of();
+                    });
+            loading = started;
+            started.thenAccept(loaded -> finishLoad(started, loaded));
+        }
+        return loading != null ? loading : CompletableFuture.completedFuture(policies);
+    }
+
+    private synchronized void finishLoad(CompletableFuture<Map<String, CoveragePolicy>> load, Map<String, CoveragePolicy> loaded) {
+        policies = loaded;
+        if (loading == load) {
+            loading = null;
+        }
+    }
+
+    /**
+     * Decides a single claim, e.g. for a record about to be saved.
+     *
+     * @param claim the claim to decide
+     * @return the decision
+     */
+    public Decision evaluate(Claim claim) {
+        return evaluate(claim, getPolicies());
+    }
+
+    /**
+     * Decides whether the patient's insurer covers a visit without blocking the caller: the claim is read and the
+     * rules are awaited in the background.
+     *
+     * @param visit the visit, typically just saved
+     * @return a future completing with the decision, or with null if the claim could not be read
+     */
+    public CompletableFuture<Decision> evaluateVisit(Visit visit) {
+        return claimDAO.getVisitClaim(visit).thenCombine(load(), (claim, rules) -> claim == null ? null : evaluate(claim, rules));
+    }
+
+    /**
+     * Decides whether the patient's insurer covers a prescription without blocking the caller: the claim is read and
+     * the rules are awaited in the background.
+     *
+     * @param prescription the prescription, typically just saved
+     * @return a future completing with the decision, or with null if the claim could not be read
+     */
+    public CompletableFuture<Decision> evaluatePrescription(Prescription prescription) {
+        return claimDAO.getPrescriptionClaim(prescription).thenCombine(load(), (claim, rules) -> claim == null ? null : evaluate(claim, rules));
+    }
+
+    private static Decision evaluate(Claim claim, Map<String, CoveragePolicy> policies) {
+        if (claim.insuranceId() == null || claim.insuranceId().isBlank()) {
+            return new Decision(claim, false, "The patient has no insurance.");
+        }
+        String reason = policies.getOrDefault(claim.insuranceId(), CoveragePolicy.COVERS_ALL).reject(claim);
+        return new Decision(claim, reason == null, reason);
+    }
+
+    /**
+     * Decides every visit and prescription. Visits and prescriptions are loaded in parallel on pooled connections,
+     * then decided in parallel on the fork/join common pool.
+     *
+     * @return a future completing with the report of the run
+     */
+    public CompletableFuture<BatchReport> evaluateAll() {
+        long started = System.nanoTime();
+        CompletableFuture<List<Claim>> visits = claimDAO.getVisitClaims();
+        CompletableFuture<List<Claim>> prescriptions = claimDAO.getPrescriptionClaims();
+        CompletableFuture<Map<String, CoveragePolicy>> rules = load();
+        return CompletableFuture.allOf(visits, prescriptions, rules).thenApplyAsync(ignored -> {
+            List<Claim> claims = new ArrayList<>(visits.join().size() + prescriptions.join().size());
+            claims.addAll(visits.join());
+            claims.addAll(prescriptions.join());
+            long loaded = System.nanoTime();
+            Tally tally = ForkJoinPool.commonPool().invoke(new EvaluateTask(claims, 0, claims.size(), rules.join()));
+            long evaluated = System.nanoTime();
+            return new BatchReport(claims.size(), tally.covered, tally.claimsByInsurer, tally.coveredByInsurer,
+                    tally.rejected, (loaded - started) / 1_000_000, (evaluated - loaded) / 1_000_000,
+                    claims.size() * 1_000_000_000.0 / Math.max(1, evaluated - loaded));
+        }, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * The decision on a claim.
+     *
+     * @param claim   the claim decided
+     * @param covered whether the patient's insurer covers the claim
+     * @param reason  why the claim is not covered, or null if it is
+     */
+    public record Decision(Claim claim, boolean covered, String reason) {
+    }
+
+    /**
+     * The outcome of deciding every visit and prescription.
+     *
+     * @param claims           the number of claims decided
+     * @param covered          the number of claims covered
+     * @param claimsByInsurer  the number of claims of each insurer, by insurance ID; claims of uninsured patients are not counted
+     * @param coveredByInsurer the number of covered claims of each insurer, by insurance ID
+     * @param rejected         the decisions on the claims that are not covered
+     * @param loadMillis       the time taken to load the claims and rules
+     * @param evaluateMillis   the time taken to decide the claims
+     * @param claimsPerSecond  the number of claims decided per second, not counting the load
+     */
+    public record BatchReport(int claims, int covered, Map<String, Integer> claimsByInsurer, Map<String, Integer> coveredByInsurer,
+                              List<Decision> rejected, long loadMillis, long evaluateMillis, double claimsPerSecond) {
+    }
+
+    /**
+     * Counts of one range of claims, merged as the ranges are joined.
+     */
+    private static final class Tally {
+        private int covered; // Claims covered.
+        private final Map<String, Integer> claimsByInsurer = new HashMap<>(); // Claims by insurance ID.
+        private final Map<String, Integer> coveredByInsurer = new HashMap<>(); // Covered claims by insurance ID.
+        private final List<Decision> rejected = new ArrayList<>(); // Decisions on claims not covered.
+
+        void add(Decision decision) {
+            String insuranceId = decision.claim().insuranceId();
+            if (insuranceId != null && !insuranceId.isBlank()) {
+                claimsByInsurer.merge(insuranceId, 1, Integer::sum);
+            }
+            if (decision.covered()) {
+                covered++;
+                coveredByInsurer.merge(insuranceId, 1, Integer::sum);
+            } else {
+                rejected.add(decision);
+            }
+        }
+
+        Tally merge(Tally other) {
+            covered += other.covered;
+            other.claimsByInsurer.forEach((id, count) -> claimsByInsurer.merge(id, count, Integer::sum));
+            other.coveredByInsurer.forEach((id, count) -> coveredByInsurer.merge(id, count, Integer::sum));
+            rejected.addAll(other.rejected);
+            return this;
+        }
+    }
+
+    /**
+     * Decides a range of claims, splitting it in half while it is larger than {@link #BATCH_THRESHOLD}.
+     */
+    private static final class EvaluateTask extends RecursiveTask<Tally> {
+        private static final long serialVersionUID = 1L;
+
+        private final transient List<Claim> claims; // Every claim of the run; tasks are never serialized.
+        private final int from; // First claim of the range.
+        private final int to; // End of the range, exclusive.
+        private final transient Map<String, CoveragePolicy> policies; // Compiled rules by insurance ID.
+
+        EvaluateTask(List<Claim> claims, int from, int to, Map<String, CoveragePolicy> policies) {
+            this.claims = claims;
+            this.from = from;
+            this.to = to;
+            this.policies = policies;
+        }
+
+        @Override
+        protected Tally compute() {
+            if (to - from <= BATCH_THRESHOLD) {
+                Tally tally = new Tally();
+                for (int i = from; i < to; i++) {
+                    tally.add(evaluate(claims.get(i), policies));
+                }
+                return tally;
+            }
+            int middle = (from + to) >>> 1;
+            EvaluateTask right = new EvaluateTask(claims, middle, to, policies);
+            right.fork();
+            Tally left = new EvaluateTask(claims, from, middle, policies).compute();
+            return left.merge(right.join());
+        }
+    }
+}
@@ -0,0 +1,424 @@
+package com.example.hospitalassessment.services;
+
+import com.example.hospitalassessment.database.*;
+import com.example.hospitalassessment.database.CohortDAO.PrescriptionEntry;
+import com.example.hospitalassessment.database.CohortDAO.VisitEntry;
+import com.example.hospitalassessment.models.*;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Keeps, for every insurer, drug, doctor, specialization and diagnosis, the set of patients it applies to as a
+ * {@link CompressedBitmap} of patient ordinals, so that cohorts such as "insured by I1, prescribed D7 and seen by a
+ * cardiologist" are combined and counted in microseconds without a query.
+ * A patient belongs to their insurer, to every drug prescribed to them, to every doctor they visited and that doctor's
+ * specialization, and to every diagnosis made at their visits. Specializations and diagnoses match ignoring case.
+ * Everything is loaded once in the background; writes announced on an {@link EntityEventBus}, which the DAOs publish
+ * on every save and delete, then recompute only the memberships of the patient written.
+ */
+public class CohortIndex {
+    private final AsyncCohortDAO cohortDAO; // Loads what cohorts are formed by.
+    private final AsyncPatientDAO patientDAO; // Reloads patients changed by other users.
+    private final AsyncVisitDAO visitDAO; // Reloads visits changed by other users.
+    private final AsyncPrescriptionDAO prescriptionDAO; // Reloads prescriptions changed by other users.
+    private final AsyncDoctorDAO doctorDAO; // Reloads doctors changed by other users.
+
+    private final Map<Dimension, Map<String, CompressedBitmap>> bitmaps = new EnumMap<>(Dimension.class); // Patients of each value of each dimension; the bitmaps are replaced, never changed.
+    private volatile CompressedBitmap allPatients = CompressedBitmap.EMPTY; // Every patient in the patient table.
+    private final Map<String, Integer> ordinals = new HashMap<>(); // Ordinal of each patient ID. Guarded by this.
+    private final List<String> patientIds = new ArrayList<>(); // Patient ID of each ordinal. Guarded by this.
+    private final Map<String, PatientEntries> byPatient = new HashMap<>(); // What each patient belongs to. Guarded by this.
+    private final Map<String, VisitEntry> visits = new HashMap<>(); // Every visit by change key. Guarded by this.
+    private final Map<String, PrescriptionEntry> prescriptions = new HashMap<>(); // Every prescription by ID. Guarded by this.
+    private final Map<String, String> specializations = new HashMap<>(); // Normalised specialization of each doctor. Guarded by this.
+    private List<EntityEvent<?>> pendingEvents; // Writes announced during the initial load, or null outside it. Guarded by this.
+    private CompletableFuture<Void> loading; // The initial load, or null before it starts. Guarded by this.
+    private volatile boolean ready; // Whether the initial load has completed.
+
+    /**
+     * Creates the index, loading through pooled connections.
+     *
+     * @param connectionPool the pool providing database connections for background loads
+     */
+    public CohortIndex(ConnectionPool connectionPool) {
+        this.cohortDAO = new AsyncCohortDAO(connectionPool);
+        this.patientDAO = new AsyncPatientDAO(connectionPool);
+        this.visitDAO = new AsyncVisitDAO(connectionPool);
+        this.prescriptionDAO = new AsyncPrescriptionDAO(connectionPool);
+        this.doctorDAO = new AsyncDoctorDAO(connectionPool);
+        for (Dimension dimension : Dimension.values()) {
+            bitmaps.put(dimension, new ConcurrentHashMap<>());
+        }
+    }
+
+    /**
+     * Keeps the index up to date with the patient, visit, prescription and doctor writes announced on an event bus.
+     * Writes without the written record, such as changes by other users, reload that record.
+     *
+     * @param events the event bus to follow
+     * @return an action that stops following the bus
+     */
+    public Runnable follow(EntityEventBus events) {
+        return events.subscribeAll(this::apply);
+    }
+
+    /**
+     * Starts loading unless the index is loaded or loading already.
+     */
+    public synchronized void prefetch() {
+        if (loading != null) {
+            return;
+        }
+        pendingEvents = new ArrayList<>();
+        CompletableFuture<Map<String, String>> insurers = cohortDAO.getPatientInsurers();
+        CompletableFuture<List<VisitEntry>> visitEntries = cohortDAO.getVisitEntries();
+        CompletableFuture<List<PrescriptionEntry>> prescriptionEntries = cohortDAO.getPrescriptionEntries();
+        CompletableFuture<Map<String, String>> doctors = cohortDAO.getDoctorSpecializations();
+        loading = CompletableFuture.allOf(insurers, visitEntries, prescriptionEntries, doctors)
+                .thenRun(() -> finishLoad(insurers.join(), visitEntries.join(), prescriptionEntries.join(), doctors.join()))
+                .exceptionally(error -> {
+                    error.printStackTrace();
+                    synchronized (this) {
+                        pendingEvents = null;
+                        loading = null; // Allow a later prefetch to try again
+                    }
+                    return null;
+                });
+    }
+
+    private synchronized void finishLoad(Map<String, String> insurers, List<VisitEntry> visitEntries,
+                                         List<PrescriptionEntry> prescriptionEntries, Map<String, String> doctors) {
+        doctors.forEach((doctorId, specialization) -> specializations.put(doctorId, normalise(specialization)));
+        insurers.forEach((patientId, insuranceId) -> entriesOf(patientId).insurer = insuranceId);
+        for (VisitEntry visit : visitEntries) {
+            visits.put(visit.key(), visit);
+            entriesOf(visit.patientId()).visits.put(visit.key(), visit);
+        }
+        for (PrescriptionEntry prescription : prescriptionEntries) {
+            if (prescription.patientId() == null) {
+                continue;
+            }
+            prescriptions.put(prescription.prescriptionId(), prescription);
+            entriesOf(prescription.patientId()).drugs.put(prescription.prescriptionId(), prescription.drugId());
+        }
+
+        // Collect each value's patients in ordinal order, then build every bitmap at once
+        Map<Dimension, Map<String, IntList>> members = new EnumMap<>(Dimension.class);
+        for (Dimension dimension : Dimension.values()) {
+            members.put(dimension, new HashMap<>());
+        }
+        int[] present = new int[insurers.size()];
+        int presentCount = 0;
+        for (int ordinal = 0; ordinal < patientIds.size(); ordinal++) {
+            String patientId = patientIds.get(ordinal);
+            if (insurers.containsKey(patientId)) {
+                present[presentCount++] = ordinal;
+            }
+            PatientEntries entries = byPatient.get(patientId);
+            for (Dimension dimension : Dimension.values()) {
+                for (String value : entries.values(dimension, specializations)) {
+                    members.get(dimension).computeIfAbsent(value, key -> new IntList()).add(ordinal);
+                }
+            }
+        }
+        members.forEach((dimension, values) -> values.forEach((value, ordinalList) ->
+                bitmaps.get(dimension).put(value, CompressedBitmap.of(ordinalList.toArray()))));
+        allPatients = CompressedBitmap.of(Arrays.copyOf(present, presentCount));
+
+        List<EntityEvent<?>> replay = pendingEvents;
+        pendingEvents = null;
+        ready = true;
+        replay.forEach(this::apply);
+    }
+
+    /**
+     * Tells whether everything has been loaded, so that cohorts are complete.
+     *
+     * @return true once the initial load has completed
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Provides every patient.
+     *
+     * @return the ordinals of every patient in the patient table
+     */
+    public CompressedBitmap allPatients() {
+        return allPatients;
+    }
+
+    /**
+     * Provides the patients a value of a dimension applies to.
+     *
+     * @param dimension what the patients are grouped by
+     * @param value     an insurance, drug or doctor ID, a specialization or a diagnosis
+     * @return the ordinals of the patients, empty if there are none
+     */
+    public CompressedBitmap patients(Dimension dimension, String value) {
+        String key = dimension.ignoresCase ? normalise(value) : value;
+        return key == null ? CompressedBitmap.EMPTY : bitmaps.get(dimension).getOrDefault(key, CompressedBitmap.EMPTY);
+    }
+
+    /**
+     * Lists the IDs of the patients in a cohort.
+     *
+     * @param cohort the ordinals of the patients
+     * @param limit  the most IDs to list
+     * @return the IDs of up to {@code limit} patients, in ordinal order
+     */
+    public synchronized List<String> patientIds(CompressedBitmap cohort, int limit) {
+        List<String> ids = new ArrayList<>(Math.min(limit, cohort.cardinality()));
+        cohort.forEach(ordinal -> {
+            if (ids.size() < limit) {
+                ids.add(patientIds.get(ordinal));
+            }
+        });
+        return ids;
+    }
+
+    /**
+     * Applies a write to the index, or keeps it for after the initial load.
+     */
+    private synchronized void apply(EntityEvent<?> event) {
+        if (pendingEvents != null) {
+            pendingEvents.add(event);
+            return;
+        }
+        if (!ready) {
+            return; // The initial load will read the change
+        }
+        boolean deleted = event.kind() == EntityEvent.Kind.DELETED;
+        if (event.type() == Patient.class) {
+            if (deleted) {
+                putInsurer(event.key(), null, false);
+            } else if (event.entity() instanceof Patient patient) {
+                putInsurer(patient.getId(), patient.getInsuranceRef() != null ? patient.getInsuranceRef().getId() : null, true);
+            } else {
+                reload(patientDAO.getPatientById(event.key()), patient -> patient == null ? () -> putInsurer(event.key(), null, false)
+                        : () -> putInsurer(patient.getId(), patient.getInsuranceRef() != null ? patient.getInsuranceRef().getId() : null, true));
+            }
+        } else if (event.type() == Visit.class) {
+            if (deleted) {
+                putVisit(event.key(), null);
+            } else if (event.entity() instanceof Visit visit) {
+                putVisit(event.key(), entryOf(visit));
+            } else {
+                String[] key = event.key().split("\\|", 3);
+                reload(visitDAO.getVisitByPrimaryKey(key[0], key[1], java.sql.Date.valueOf(key[2])),
+                        visit -> () -> putVisit(event.key(), visit != null ? entryOf(visit) : null));
+            }
+        } else if (event.type() == Prescription.class) {
+            if (deleted) {
+                putPrescription(event.key(), null);
+            } else if (event.entity() instanceof Prescription prescription) {
+                putPrescription(event.key(), entryOf(prescription));
+            } else {
+                reload(prescriptionDAO.getPrescriptionById(event.key()),
+                        prescription -> () -> putPrescription(event.key(), prescription != null ? entryOf(prescription) : null));
+            }
+        } else if (event.type() == Doctor.class) {
+            if (deleted) {
+                putSpecialization(event.key(), null);
+            } else if (event.entity() instanceof Doctor doctor) {
+                putSpecialization(doctor.getId(), doctor.getSpecialization());
+            } else {
+                reload(doctorDAO.getDoctorById(event.key()),
+                        doctor -> () -> putSpecialization(event.key(), doctor != null ? doctor.getSpecialization() : null));
+            }
+        }
+    }
+
+    /**
+     * Applies a record reloaded after another user's change, once it arrives.
+     */
+    private <T> void reload(CompletableFuture<T> record, Function<T, Runnable> update) {
+        record.thenAccept(loaded -> {
+                    synchronized (this) {
+                        update.apply(loaded).run();
+                    }
+                })
+                .exceptionally(error -> {
+                    error.printStackTrace();
+                    return null;
+                });
+    }
+
+    private void putInsurer(String patientId, String insuranceId, boolean present) {
+        update(patientId, entries -> entries.insurer = insuranceId);
+        int ordinal = ordinalOf(patientId);
+        allPatients = present ? allPatients.with(ordinal) : allPatients.without(ordinal);
+    }
+
+    private void putVisit(String key, VisitEntry visit) {
+        VisitEntry previous = visit != null ? visits.put(key, visit) : visits.remove(key);
+        if (previous != null) {
+            update(previous.patientId(), entries -> entries.visits.remove(key));
+        }
+        if (visit != null) {
+            update(visit.patientId(), entries -> entries.visits.put(key, visit));
+        }
+    }
+
+    private void putPrescription(String prescriptionId, PrescriptionEntry entry) {
+        PrescriptionEntry prescription = entry != null && entry.patientId() != null ? entry : null; // One without a patient is in no cohort
+        PrescriptionEntry previous = prescription != null ? prescriptions.put(prescriptionId, prescription) : prescriptions.remove(prescriptionId);
+        if (previous != null) {
+            update(previous.patientId(), entries -> entries.drugs.remove(prescriptionId));
+        }
+        if (prescription != null) {
+            update(prescription.patientId(), entries -> entries.drugs.put(prescriptionId, prescription.drugId()));
+        }
+    }
+
+    /**
+     * Records a doctor's specialization and moves the doctor's patients to it.
+     */
+    private void putSpecialization(String doctorId, String specialization) {
+        String normalised = normalise(specialization);
+        if (Objects.equals(specializations.get(doctorId), normalised)) {
+            return;
+        }
+        List<String> patients = patientIds(patients(Dimension.DOCTOR, doctorId), Integer.MAX_VALUE);
+        Map<String, Set<String>> before = new HashMap<>();
+        patients.forEach(patientId -> before.put(patientId, byPatient.get(patientId).values(Dimension.SPECIALIZATION, specializations)));
+        if (normalised == null) {
+            specializations.remove(doctorId);
+        } else {
+            specializations.put(doctorId, normalised);
+        }
+        patients.forEach(patientId -> move(Dimension.SPECIALIZATION, ordinalOf(patientId), before.get(patientId),
+                byPatient.get(patientId).values(Dimension.SPECIALIZATION, specializations)));
+    }
+
+    /**
+     * Changes what a patient belongs to and moves the patient between the bitmaps of every dimension accordingly.
+     */
+    private void update(String patientId, Consumer<PatientEntries> change) {
+        PatientEntries entries = entriesOf(patientId);
+        Map<Dimension, Set<String>> before = new EnumMap<>(Dimension.class);
+        for (Dimension dimension : Dimension.values()) {
+            before.put(dimension, entries.values(dimension, specializations));
+        }
+        change.accept(entries);
+        int ordinal = ordinalOf(patientId);
+        for (Dimension dimension : Dimension.values()) {
+            move(dimension, ordinal, before.get(dimension), entries.values(dimension, specializations));
+        }
+    }
+
+    private void move(Dimension dimension, int ordinal, Set<String> before, Set<String> after) {
+        Map<String, CompressedBitmap> values = bitmaps.get(dimension);
+        for (String value : before) {
+            if (!after.contains(value)) {
+                CompressedBitmap remaining = values.getOrDefault(value, CompressedBitmap.EMPTY).without(ordinal);
+                if (remaining.isEmpty()) {
+                    values.remove(value);
+                } else {
+                    values.put(value, remaining);
+                }
+            }
+        }
+        for (String value : after) {
+            if (!before.contains(value)) {
+                values.put(value, values.getOrDefault(value, CompressedBitmap.EMPTY).with(ordinal));
+            }
+        }
+    }
+
+    private PatientEntries entriesOf(String patientId) {
+        ordinalOf(patientId);
+        return byPatient.computeIfAbsent(patientId, id -> new PatientEntries());
+    }
+
+    private int ordinalOf(String patientId) {
+        return ordinals.computeIfAbsent(patientId, id -> {
+            patientIds.add(id);
+            return patientIds.size() - 1;
+        });
+    }
+
+    private static VisitEntry entryOf(Visit visit) {
+        String diagnosis = visit.getDiagnosis() != null ? visit.getDiagnosis().trim() : null;
+        if (diagnosis != null && diagnosis.length() > CohortDAO.DIAGNOSIS_LENGTH) {
+            diagnosis = diagnosis.substring(0, CohortDAO.DIAGNOSIS_LENGTH);
+        }
+        return new VisitEntry(VisitDAO.changeKey(visit), visit.getPatientRef().getId(), visit.getDoctorRef().getId(), diagnosis);
+    }
+
+    private static PrescriptionEntry entryOf(Prescription prescription) {
+        return new PrescriptionEntry(prescription.getId(), prescription.getPatientRef() != null ? prescription.getPatientRef().getId() : null,
+                prescription.getDrugRef() != null ? prescription.getDrugRef().getId() : null);
+    }
+
+    /**
+     * Provides the form a specialization or diagnosis is matched in: trimmed and lower case, or null if blank.
+     */
+    private static String normalise(String value) {
+        return value == null || value.isBlank() ? null : value.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * What patients are grouped by.
+     */
+    public enum Dimension {
+        INSURER(false), DRUG(false), DOCTOR(false), SPECIALIZATION(true), DIAGNOSIS(true);
+
+        private final boolean ignoresCase; // Whether values match ignoring case.
+
+        Dimension(boolean ignoresCase) {
+            this.ignoresCase = ignoresCase;
+        }
+    }
+
+    /**
+     * What one patient belongs to. Guarded by the index.
+     */
+    private static final class PatientEntries {
+        private String insurer; // Insurance ID, or null.
+        private final Map<String, VisitEntry> visits = new HashMap<>(); // The patient's visits by change key.
+        private final Map<String, String> drugs = new HashMap<>(); // Drug ID of each of the patient's prescriptions.
+
+        Set<String> values(Dimension dimension, Map<String, String> specializations) {
+            Set<String> values = new HashSet<>();
+            switch (dimension) {
+                case INSURER -> {
+                    if (insurer != null && !insurer.isBlank()) {
+                        values.add(insurer);
+                    }
+                }
+                case DRUG -> drugs.values().stream().filter(Objects::nonNull).forEach(values::add);
+                case DOCTOR -> visits.values().forEach(visit -> values.add(visit.doctorId()));
+                case SPECIALIZATION -> visits.values().stream().map(visit -> specializations.get(visit.doctorId()))
+                        .filter(Objects::nonNull).forEach(values::add);
+                case DIAGNOSIS -> visits.values().stream().map(visit -> normalise(visit.diagnosis()))
+                        .filter(Objects::nonNull).forEach(values::add);
+            }
+            return values;
+        }
+    }
+
+    /**
+     * A growable array of ints.
+     */
+    private static final class IntList {
+        private int[] values = new int[4]; // The values, followed by unused space.
+        private int size; // Number of values.
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
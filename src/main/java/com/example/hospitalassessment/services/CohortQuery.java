@@ -0,0 +1,167 @@
+package com.example.hospitalassessment.services;
+
+import com.example.hospitalassessment.services.CohortIndex.Dimension;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * A cohort written as text and evaluated against a {@link CohortIndex}, for example
+ * {@code insurer:I1 AND drug:D7 AND NOT (specialization:cardiology OR diagnosis:"type 2 diabetes")}.
+ * A condition names a dimension and a value, quoted if it contains spaces or parentheses; conditions are combined with
+ * NOT, AND and OR, binding in that order, and grouped with parentheses. Keywords and dimensions ignore case.
+ * NOT keeps every patient the condition does not apply to.
+ */
+public final class CohortQuery {
+    private final Node root; // The parsed query.
+    private final String text; // The query as written.
+
+    private CohortQuery(Node root, String text) {
+        this.root = root;
+        this.text = text;
+    }
+
+    /**
+     * Parses a query.
+     *
+     * @param text the query
+     * @return the parsed query
+     * @throws IllegalArgumentException if the query is not well formed
+     */
+    public static CohortQuery parse(String text) {
+        Parser parser = new Parser(tokenize(text));
+        Node root = parser.or();
+        if (parser.position < parser.tokens.size()) {
+            throw new IllegalArgumentException("Unexpected '" + parser.tokens.get(parser.position) + "'.");
+        }
+        return new CohortQuery(root, text);
+    }
+
+    /**
+     * Finds the patients the query applies to.
+     *
+     * @param index the index to evaluate against
+     * @return the ordinals of the patients
+     */
+    public CompressedBitmap evaluate(CohortIndex index) {
+        return root.evaluate(index);
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+
+    private static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        int i = 0;
+        while (i < text.length()) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == '(' || c == ')') {
+                tokens.add(String.valueOf(c));
+                i++;
+            } else {
+                StringBuilder token = new StringBuilder();
+                while (i < text.length() && !Character.isWhitespace(text.charAt(i)) && text.charAt(i) != '(' && text.charAt(i) != ')') {
+                    if (text.charAt(i) == '"') {
+                        int close = text.indexOf('"', i + 1);
+                        if (close < 0) {
+                            throw new IllegalArgumentException("A quoted value is not closed.");
+                        }
+                        token.append(text, i + 1, close);
+                        i = close + 1;
+                    } else {
+                        token.append(text.charAt(i++));
+                    }
+                }
+                tokens.add(token.toString());
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * Part of a parsed query.
+     */
+    @FunctionalInterface
+    private interface Node {
+        CompressedBitmap evaluate(CohortIndex index);
+    }
+
+    /**
+     * Parses tokens by recursive descent, one method per level of precedence.
+     */
+    private static final class Parser {
+        private final List<String> tokens; // The tokens of the query.
+        private int position; // The next token to read.
+
+        Parser(List<String> tokens) {
+            this.tokens = tokens;
+        }
+
+        Node or() {
+            Node left = and();
+            while (accept("OR")) {
+                Node l = left;
+                Node r = and();
+                left = index -> l.evaluate(index).or(r.evaluate(index));
+            }
+            return left;
+        }
+
+        Node and() {
+            Node left = not();
+            while (accept("AND")) {
+                Node l = left;
+                Node r = not();
+                left = index -> l.evaluate(index).and(r.evaluate(index));
+            }
+            return left;
+        }
+
+        Node not() {
+            if (accept("NOT")) {
+                Node negated = not();
+                return index -> index.allPatients().andNot(negated.evaluate(index));
+            }
+            return condition();
+        }
+
+        Node condition() {
+            if (position == tokens.size()) {
+                throw new IllegalArgumentException("The query ends too early.");
+            }
+            String token = tokens.get(position++);
+            if (token.equals("(")) {
+                Node inner = or();
+                if (!accept(")")) {
+                    throw new IllegalArgumentException("A parenthesis is not closed.");
+                }
+                return inner;
+            }
+            int colon = token.indexOf(':');
+            if (colon < 0) {
+                throw new IllegalArgumentException("Expected dimension:value but found '" + token + "'.");
+            }
+            Dimension dimension;
+            try {
+                dimension = Dimension.valueOf(token.substring(0, colon).toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown dimension '" + token.substring(0, colon) + "'.");
+            }
+            String value = token.substring(colon + 1);
+            return index -> index.patients(dimension, value);
+        }
+
+        private boolean accept(String keyword) {
+            if (position < tokens.size() && tokens.get(position).equalsIgnoreCase(keyword)) {
+                position++;
+                return true;
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,573 @@
+package com.example.hospitalassessment.services;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * A read-only, column-oriented copy of the visit and prescription tables for ad-hoc aggregation.
+ * Every column is a primitive int array: dates as days since the epoch, numbers as they are, and IDs and diagnoses
+ * as codes into a dictionary of the column's distinct values. Filters scan one column into a bitset of the matching
+ * rows and group-bys count and sum into arrays indexed by group; both run over plain arrays in tight loops the JIT can
+ * unroll and vectorise, split into contiguous ranges of rows scanned in parallel on the fork/join common pool.
+ * Instances are immutable, so any number of queries can run on one snapshot at once.
+ */
+public final class ColumnarSnapshot {
+    private static final int MIN_SPLIT_WORDS = 1024; // Fewest bitset words, 64 rows each, scanned by one task.
+    private static final int MAX_NUMBER_GROUPS = 1 << 20; // Widest range of values a number column can be grouped by.
+    private static final int INITIAL_ROWS = 1024; // Rows a table builder has room for before its columns first grow.
+
+    private final Table<VisitColumn> visits; // One row per visit.
+    private final Table<PrescriptionColumn> prescriptions; // One row per prescription.
+
+    private ColumnarSnapshot(Table<VisitColumn> visits, Table<PrescriptionColumn> prescriptions) {
+        this.visits = visits;
+        this.prescriptions = prescriptions;
+    }
+
+    /**
+     * Collects rows as they are read into a new snapshot. Missing IDs and diagnoses are encoded as the empty string,
+     * missing dates as day 0. Visits and prescriptions may be added from different threads, but rows of one table
+     * must come from one thread at a time, and {@link #build()} must only be called once both have finished.
+     */
+    public static final class Builder {
+        private final TableBuilder<VisitColumn> visits = new TableBuilder<>(VisitColumn.class); // Visit rows so far.
+        private final TableBuilder<PrescriptionColumn> prescriptions = new TableBuilder<>(PrescriptionColumn.class); // Prescription rows so far.
+
+        /**
+         * Adds a visit.
+         *
+         * @param patientId   the patient visiting
+         * @param doctorId    the doctor seen
+         * @param dateOfVisit the day of the visit
+         * @param diagnosis   the diagnosis, already trimmed and shortened to the length rows are grouped by
+         */
+        public void addVisit(String patientId, String doctorId, java.sql.Date dateOfVisit, String diagnosis) {
+            visits.text(VisitColumn.PATIENT, patientId);
+            visits.text(VisitColumn.DOCTOR, doctorId);
+            visits.day(VisitColumn.DAY, dateOfVisit);
+            visits.text(VisitColumn.DIAGNOSIS, diagnosis);
+            visits.endRow();
+        }
+
+        /**
+         * Adds a prescription.
+         *
+         * @param patientId      the patient it was written for
+         * @param doctorId       the prescribing doctor
+         * @param drugId         the drug prescribed
+         * @param datePrescribed the day it was written
+         * @param dosage         the dosage
+         * @param duration       the duration in days
+         */
+        public void addPrescription(String patientId, String doctorId, String drugId, java.sql.Date datePrescribed, int dosage, int duration) {
+            prescriptions.text(PrescriptionColumn.PATIENT, patientId);
+            prescriptions.text(PrescriptionColumn.DOCTOR, doctorId);
+            prescriptions.text(PrescriptionColumn.DRUG, drugId);
+            prescriptions.day(PrescriptionColumn.DAY, datePrescribed);
+            prescriptions.number(PrescriptionColumn.DOSAGE, dosage);
+            prescriptions.number(PrescriptionColumn.DURATION, duration);
+            prescriptions.endRow();
+        }
+
+        /**
+         * Builds the snapshot from the rows added.
+         */
+        public ColumnarSnapshot build() {
+            return new ColumnarSnapshot(visits.build(), prescriptions.build());
+        }
+    }
+
+    /**
+     * Provides the visit table.
+     */
+    public Table<VisitColumn> visits() {
+        return visits;
+    }
+
+    /**
+     * Provides the prescription table.
+     */
+    public Table<PrescriptionColumn> prescriptions() {
+        return prescriptions;
+    }
+
+    /**
+     * How the values of a column are stored.
+     */
+    public enum Kind {
+        TEXT, // Codes into the column's dictionary
+        DAY, // Days since the epoch
+        NUMBER // The values themselves
+    }
+
+    /**
+     * A column of one of the tables.
+     */
+    public interface Column {
+
+        /**
+         * Provides how the column's values are stored.
+         */
+        Kind kind();
+    }
+
+    /**
+     * The columns of the visit table.
+     */
+    public enum VisitColumn implements Column {
+        PATIENT(Kind.TEXT), DOCTOR(Kind.TEXT), DAY(Kind.DAY), DIAGNOSIS(Kind.TEXT);
+
+        private final Kind kind; // How the column's values are stored.
+
+        VisitColumn(Kind kind) {
+            this.kind = kind;
+        }
+
+        @Override
+        public Kind kind() {
+            return kind;
+        }
+    }
+
+    /**
+     * The columns of the prescription table.
+     */
+    public enum PrescriptionColumn implements Column {
+        PATIENT(Kind.TEXT), DOCTOR(Kind.TEXT), DRUG(Kind.TEXT), DAY(Kind.DAY), DOSAGE(Kind.NUMBER), DURATION(Kind.NUMBER);
+
+        private final Kind kind; // How the column's values are stored.
+
+        PrescriptionColumn(Kind kind) {
+            this.kind = kind;
+        }
+
+        @Override
+        public Kind kind() {
+            return kind;
+        }
+    }
+
+    /**
+     * The distinct values of a text column, each identified by a code from 0 in order of first appearance.
+     */
+    public static final class Dictionary {
+        private final Map<String, Integer> codes = new HashMap<>(); // Code of each value.
+        private final List<String> values = new ArrayList<>(); // Value of each code.
+
+        private int encode(String value) {
+            return codes.computeIfAbsent(value == null ? "" : value, key -> {
+                values.add(key);
+                return values.size() - 1;
+            });
+        }
+
+        /**
+         * Provides the code of a value.
+         *
+         * @param value the value
+         * @return the code, or -1 if no row has the value
+         */
+        public int code(String value) {
+            return codes.getOrDefault(value == null ? "" : value, -1);
+        }
+
+        /**
+         * Provides the value of a code.
+         *
+         * @param code the code
+         * @return the value
+         */
+        public String value(int code) {
+            return values.get(code);
+        }
+
+        /**
+         * Provides the number of distinct values.
+         */
+        public int size() {
+            return values.size();
+        }
+    }
+
+    /**
+     * The rows of a query as a bitset over the rows of a table.
+     */
+    public static final class Selection {
+        private final long[] words; // Bit i of word i / 64 is set when row i is selected.
+        private final int rows; // Rows of the table.
+
+        private Selection(long[] words, int rows) {
+            this.words = words;
+            this.rows = rows;
+        }
+
+        /**
+         * Selects the rows in both this and another selection of the same table.
+         *
+         * @param other the other selection
+         * @return a new selection
+         */
+        public Selection and(Selection other) {
+            requireSameTable(other);
+            long[] result = new long[words.length];
+            for (int i = 0; i < words.length; i++) {
+                result[i] = words[i] & other.words[i];
+            }
+            return new Selection(result, rows);
+        }
+
+        /**
+         * Selects the rows in either this or another selection of the same table.
+         *
+         * @param other the other selection
+         * @return a new selection
+         */
+        public Selection or(Selection other) {
+            requireSameTable(other);
+            long[] result = new long[words.length];
+            for (int i = 0; i < words.length; i++) {
+                result[i] = words[i] | other.words[i];
+            }
+            return new Selection(result, rows);
+        }
+
+        private void requireSameTable(Selection other) {
+            if (other.rows != rows) {
+                throw new IllegalArgumentException("Selections of different tables cannot be combined.");
+            }
+        }
+
+        /**
+         * Counts the selected rows.
+         */
+        public int count() {
+            int count = 0;
+            for (long word : words) {
+                count += Long.bitCount(word);
+            }
+            return count;
+        }
+    }
+
+    /**
+     * The rows of one group of a query.
+     *
+     * @param key   the value the rows share, as text: the value itself, or a day in yyyy-mm-dd format
+     * @param count the number of rows
+     * @param sum   the total of the summed column over the rows, or 0 when no column is summed
+     */
+    public record Group(String key, long count, long sum) {
+    }
+
+    /**
+     * One table of the snapshot, stored by column.
+     *
+     * @param <C> the columns of the table
+     */
+    public static final class Table<C extends Enum<C> & Column> {
+        private final Class<C> columnType; // The table's column enum.
+        private final int rows; // Number of rows.
+        private final int[][] columns; // Values of each column by ordinal.
+        private final Dictionary[] dictionaries; // Dictionary of each text column by ordinal; null for other columns.
+        private final int[] minValues; // Smallest value of each column by ordinal, or 0 when the table is empty.
+        private final int[] maxValues; // Largest value of each column by ordinal, or -1 when the table is empty.
+
+        private Table(Class<C> columnType, int rows, int[][] columns, Dictionary[] dictionaries, int[] minValues, int[] maxValues) {
+            this.columnType = columnType;
+            this.rows = rows;
+            this.columns = columns;
+            this.dictionaries = dictionaries;
+            this.minValues = minValues;
+            this.maxValues = maxValues;
+        }
+
+        /**
+         * Provides the number of rows.
+         */
+        public int rows() {
+            return rows;
+        }
+
+        /**
+         * Looks up a column by name, ignoring case.
+         *
+         * @param name the name of the column, e.g. "doctor"
+         * @return the column
+         * @throws IllegalArgumentException if the table has no such column
+         */
+        public C column(String name) {
+            for (C column : columnType.getEnumConstants()) {
+                if (column.name().equalsIgnoreCase(name)) {
+                    return column;
+                }
+            }
+            throw new IllegalArgumentException("Unknown column '" + name + "'.");
+        }
+
+        /**
+         * Provides the dictionary of a text column.
+         *
+         * @param column a text column
+         * @return the dictionary
+         */
+        public Dictionary dictionary(C column) {
+            requireKind(column, Kind.TEXT);
+            return dictionaries[column.ordinal()];
+        }
+
+        /**
+         * Selects every row.
+         */
+        public Selection all() {
+            long[] words = new long[wordCount()];
+            Arrays.fill(words, -1L);
+            if ((rows & 63) != 0) {
+                words[words.length - 1] = -1L >>> (64 - (rows & 63));
+            }
+            return new Selection(words, rows);
+        }
+
+        /**
+         * Selects the rows of a text column holding a value.
+         *
+         * @param column a text column
+         * @param value  the value
+         * @return the matching rows, none if no row holds the value
+         */
+        public Selection whereEquals(C column, String value) {
+            int code = dictionary(column).code(value);
+            return code < 0 ? new Selection(new long[wordCount()], rows) : scan(columns[column.ordinal()], code, code + 1L);
+        }
+
+        /**
+         * Selects the rows of a day column from one day up to but excluding another.
+         *
+         * @param column a day column
+         * @param from   the first day, or null for no lower bound
+         * @param until  the day after the last day, or null for no upper bound
+         * @return the matching rows
+         */
+        public Selection whereBetween(C column, LocalDate from, LocalDate until) {
+            requireKind(column, Kind.DAY);
+            return scan(columns[column.ordinal()], from != null ? from.toEpochDay() : Integer.MIN_VALUE,
+                    until != null ? until.toEpochDay() : Integer.MAX_VALUE + 1L);
+        }
+
+        /**
+         * Selects the rows of a number column from one value up to but excluding another.
+         *
+         * @param column a number column
+         * @param from   the smallest value
+         * @param until  the value after the largest value
+         * @return the matching rows
+         */
+        public Selection whereBetween(C column, long from, long until) {
+            requireKind(column, Kind.NUMBER);
+            return scan(columns[column.ordinal()], from, until);
+        }
+
+        /**
+         * Counts the selected rows by the value of a column.
+         *
+         * @param group the column to group by; number columns must span at most about a million values
+         * @param rows  the rows to count
+         * @return the groups with at least one row, largest first
+         */
+        public List<Group> countBy(C group, Selection rows) {
+            return aggregate(group, null, rows);
+        }
+
+        /**
+         * Counts the selected rows by the value of a column and totals another column over each group.
+         *
+         * @param group the column to group by; number columns must span at most about a million values
+         * @param value the number or day column to total
+         * @param rows  the rows to count
+         * @return the groups with at least one row, largest first
+         */
+        public List<Group> sumBy(C group, C value, Selection rows) {
+            if (value.kind() == Kind.TEXT) {
+                throw new IllegalArgumentException("Column '" + value.name().toLowerCase() + "' cannot be summed.");
+            }
+            return aggregate(group, value, rows);
+        }
+
+        private List<Group> aggregate(C group, C value, Selection selection) {
+            int[] keys = columns[group.ordinal()];
+            int[] values = value != null ? columns[value.ordinal()] : null;
+            int offset = group.kind() == Kind.TEXT ? 0 : minValues[group.ordinal()];
+            long span = group.kind() == Kind.TEXT ? dictionaries[group.ordinal()].size() : (long) maxValues[group.ordinal()] - offset + 1;
+            if (span > MAX_NUMBER_GROUPS) {
+                throw new IllegalArgumentException("Column '" + group.name().toLowerCase() + "' has too many values to group by.");
+            }
+            int groups = (int) span;
+
+            // Each task fills its own arrays, merged once every task is done
+            int splits = splits();
+            long[][] partials = IntStream.range(0, splits).parallel().mapToObj(split -> {
+                long[] counts = new long[groups];
+                long[] sums = new long[values != null ? groups : 0];
+                for (int word = splitStart(split, splits); word < splitStart(split + 1, splits); word++) {
+                    long bits = selection.words[word];
+                    int base = word << 6;
+                    while (bits != 0) {
+                        int row = base + Long.numberOfTrailingZeros(bits);
+                        int slot = keys[row] - offset;
+                        counts[slot]++;
+                        if (values != null) {
+                            sums[slot] += values[row];
+                        }
+                        bits &= bits - 1;
+                    }
+                }
+                return new long[][]{counts, sums};
+            }).reduce((left, right) -> {
+                for (int i = 0; i < groups; i++) {
+                    left[0][i] += right[0][i];
+                }
+                for (int i = 0; i < left[1].length; i++) {
+                    left[1][i] += right[1][i];
+                }
+                return left;
+            }).orElse(new long[][]{new long[groups], new long[0]});
+
+            List<Group> result = new ArrayList<>();
+            for (int slot = 0; slot < groups; slot++) {
+                if (partials[0][slot] > 0) {
+                    result.add(new Group(label(group, slot + offset), partials[0][slot], values != null ? partials[1][slot] : 0));
+                }
+            }
+            result.sort(Comparator.comparingLong(Group::count).reversed().thenComparing(Group::key));
+            return result;
+        }
+
+        /**
+         * Scans a column for values from {@code from} up to but excluding {@code until}, 64 rows to a bitset word.
+         * Each task writes only its own words, so no word is shared between threads.
+         */
+        private Selection scan(int[] column, long from, long until) {
+            long[] words = new long[wordCount()];
+            int splits = splits();
+            IntStream.range(0, splits).parallel().forEach(split -> {
+                for (int word = splitStart(split, splits); word < splitStart(split + 1, splits); word++) {
+                    int base = word << 6;
+                    int end = Math.min(rows, base + 64);
+                    long bits = 0;
+                    for (int row = base; row < end; row++) {
+                        int value = column[row];
+                        bits |= (value >= from && value < until ? 1L : 0L) << (row - base);
+                    }
+                    words[word] = bits;
+                }
+            });
+            return new Selection(words, rows);
+        }
+
+        private String label(C column, int value) {
+            return switch (column.kind()) {
+                case TEXT -> dictionaries[column.ordinal()].value(value);
+                case DAY -> LocalDate.ofEpochDay(value).toString();
+                case NUMBER -> Integer.toString(value);
+            };
+        }
+
+        private void requireKind(C column, Kind kind) {
+            if (column.kind() != kind) {
+                throw new IllegalArgumentException("Column '" + column.name().toLowerCase() + "' is not a " + kind.name().toLowerCase() + " column.");
+            }
+        }
+
+        private int wordCount() {
+            return (rows + 63) >>> 6;
+        }
+
+        /**
+         * Provides the number of ranges the rows are split into: enough to keep every core busy,
+         * and few enough that each task scans a worthwhile number of rows.
+         */
+        private int splits() {
+            return Math.max(1, Math.min(ForkJoinPool.getCommonPoolParallelism() * 4, wordCount() / MIN_SPLIT_WORDS));
+        }
+
+        /**
+         * Provides the first bitset word of a range of rows.
+         */
+        private int splitStart(int split, int splits) {
+            return (int) ((long) wordCount() * split / splits);
+        }
+    }
+
+    /**
+     * Collects rows one value at a time into growing column arrays.
+     */
+    private static final class TableBuilder<C extends Enum<C> & Column> {
+        private final Class<C> columnType; // The table's column enum.
+        private final int[][] columns; // Values of each column by ordinal.
+        private final Dictionary[] dictionaries; // Dictionary of each text column by ordinal.
+        private int rows; // Rows completed so far.
+
+        TableBuilder(Class<C> columnType) {
+            this.columnType = columnType;
+            C[] constants = columnType.getEnumConstants();
+            this.columns = new int[constants.length][INITIAL_ROWS];
+            this.dictionaries = new Dictionary[constants.length];
+            for (C column : constants) {
+                if (column.kind() == Kind.TEXT) {
+                    dictionaries[column.ordinal()] = new Dictionary();
+                }
+            }
+        }
+
+        void text(C column, String value) {
+            ensureRoom();
+            columns[column.ordinal()][rows] = dictionaries[column.ordinal()].encode(value);
+        }
+
+        void day(C column, java.sql.Date date) {
+            ensureRoom();
+            columns[column.ordinal()][rows] = date != null ? (int) date.toLocalDate().toEpochDay() : 0;
+        }
+
+        void number(C column, int value) {
+            ensureRoom();
+            columns[column.ordinal()][rows] = value;
+        }
+
+        void endRow() {
+            rows++;
+        }
+
+        /**
+         * Doubles the columns once the current row no longer fits.
+         */
+        private void ensureRoom() {
+            if (rows == columns[0].length) {
+                for (int c = 0; c < columns.length; c++) {
+                    columns[c] = Arrays.copyOf(columns[c], rows * 2);
+                }
+            }
+        }
+
+        Table<C> build() {
+            // Trim the spare room left by growing
+            for (int c = 0; c < columns.length; c++) {
+                columns[c] = Arrays.copyOf(columns[c], rows);
+            }
+            int[] minValues = new int[columns.length];
+            int[] maxValues = new int[columns.length];
+            for (int c = 0; c < columns.length; c++) {
+                int min = rows > 0 ? Integer.MAX_VALUE : 0;
+                int max = rows > 0 ? Integer.MIN_VALUE : -1;
+                for (int row = 0; row < rows; row++) {
+                    min = Math.min(min, columns[c][row]);
+                    max = Math.max(max, columns[c][row]);
+                }
+                minValues[c] = min;
+                maxValues[c] = max;
+            }
+            return new Table<>(columnType, rows, columns, dictionaries, minValues, maxValues);
+        }
+    }
+}
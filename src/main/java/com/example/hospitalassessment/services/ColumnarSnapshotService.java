@@ -0,0 +1,84 @@
+package com.example.hospitalassessment.services;
+
+import com.example.hospitalassessment.database.AsyncSnapshotDAO;
+import com.example.hospitalassessment.database.ConnectionPool;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Keeps a {@link ColumnarSnapshot} of the visit and prescription tables for analytical queries.
+ * The snapshot is built in the background from every visit and prescription, streamed in parallel straight into its
+ * columns with only the columns it holds read from the database, and rebuilt when it gets old; queries meanwhile keep using the previous one, so they never wait on the database
+ * once the first snapshot is built.
+ */
+public class ColumnarSnapshotService {
+    private static final long MAX_AGE_MILLIS = Long.getLong("hospital.columnar.maxAgeMillis", 60_000); // Age after which the snapshot is rebuilt.
+
+    private final AsyncSnapshotDAO snapshotDAO; // Streams the snapshot's columns through pooled connections.
+    private volatile ColumnarSnapshot snapshot; // The latest snapshot, or null before the first one is built.
+    private CompletableFuture<ColumnarSnapshot> loading; // The build in progress, or null. Guarded by this.
+    private long loadedAt; // When the latest build was started. Guarded by this.
+
+    /**
+     * Creates the service, loading rows through pooled connections.
+     *
+     * @param connectionPool the pool providing database connections for background loads
+     */
+    public ColumnarSnapshotService(ConnectionPool connectionPool) {
+        this.snapshotDAO = new AsyncSnapshotDAO(connectionPool);
+    }
+
+    /**
+     * Starts building the snapshot unless it is built or building already.
+     */
+    public void prefetch() {
+        load();
+    }
+
+    /**
+     * Provides the latest snapshot, waiting for the first one to be built if necessary.
+     * A snapshot older than the maximum age is returned while a newer one is built in the background.
+     *
+     * @return the snapshot
+     * @throws java.util.concurrent.CompletionException if there is no snapshot yet and it cannot be built
+     */
+    public ColumnarSnapshot getSnapshot() {
+        CompletableFuture<ColumnarSnapshot> pending = load();
+        ColumnarSnapshot current = snapshot;
+        return current != null ? current : pending.join();
+    }
+
+    /**
+     * Starts a build if there is no snapshot yet or it is too old, unless one is already in progress.
+     *
+     * @return the build in progress, or a completed future holding the current snapshot
+     */
+    private synchronized CompletableFuture<ColumnarSnapshot> load() {
+        long now = System.currentTimeMillis();
+        if (loading == null && (snapshot == null || now - loadedAt > MAX_AGE_MILLIS)) {
+            loadedAt = now;
+            ColumnarSnapshot.Builder builder = new ColumnarSnapshot.Builder();
+            CompletableFuture<ColumnarSnapshot> started = snapshotDAO.streamVisits(builder::addVisit)
+                    .thenCombine(snapshotDAO.streamPrescriptions(builder::addPrescription), (visits, prescriptions) -> {
+                        if (visits < 0 || prescriptions < 0) {
+                            throw new IllegalStateException("The visits and prescriptions could not be read");
+                        }
+                        return builder.build();
+                    });
+            loading = started;
+            started.whenComplete((built, error) -> finishLoad(started, built, error));
+        }
+        return loading != null ? loading : CompletableFuture.completedFuture(snapshot);
+    }
+
+    private synchronized void finishLoad(CompletableFuture<ColumnarSnapshot> load, ColumnarSnapshot built, Throwable error) {
+        if (error != null) {
+            error.printStackTrace(); // The previous snapshot, if any, stays in use
+        } else {
+            snapshot = built;
+        }
+        if (loading == load) {
+            loading = null;
+        }
+    }
+}
@@ -0,0 +1,485 @@
+package com.example.hospitalassessment.services;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * An immutable set of non-negative ints stored in the manner of a Roaring bitmap.
+ * The values are split by their high 16 bits into chunks of 65536. A chunk holding at most 4096 values keeps them as
+ * a sorted array of their low 16 bits; a fuller chunk keeps a 65536-bit bitset. Sparse sets therefore take two bytes
+ * a value and dense sets one bit a value, and AND, OR and AND NOT work chunk by chunk, skipping chunks only one side has.
+ * Adding or removing a value copies only the chunk it falls in; the other chunks are shared with the original.
+ */
+public final class CompressedBitmap {
+    public static final CompressedBitmap EMPTY = new CompressedBitmap(new char[0], new Chunk[0]); // The set without values.
+
+    private static final int ARRAY_LIMIT = 4096; // Most values a chunk keeps as an array.
+    private static final int WORDS = 1024; // Words in a chunk's bitset.
+
+    private final char[] keys; // High 16 bits of each chunk, ascending.
+    private final Chunk[] chunks; // The chunk of each key; none is empty.
+
+    private CompressedBitmap(char[] keys, Chunk[] chunks) {
+        this.keys = keys;
+        this.chunks = chunks;
+    }
+
+    /**
+     * Creates a set of values.
+     *
+     * @param values the values, in any order and possibly repeated
+     * @return the set
+     */
+    public static CompressedBitmap of(int... values) {
+        int[] sorted = values.clone();
+        Arrays.sort(sorted);
+        char[] keys = new char[sorted.length];
+        Chunk[] chunks = new Chunk[sorted.length];
+        int count = 0;
+        int from = 0;
+        while (from < sorted.length) {
+            char key = high(sorted[from]);
+            char[] low = new char[Math.min(sorted.length - from, 1 << 16)];
+            int size = 0;
+            int i = from;
+            for (; i < sorted.length && high(sorted[i]) == key; i++) {
+                if (size == 0 || low[size - 1] != low(sorted[i])) {
+                    low[size++] = low(sorted[i]);
+                }
+            }
+            keys[count] = key;
+            chunks[count++] = Chunk.ofSorted(low, size);
+            from = i;
+        }
+        return new CompressedBitmap(Arrays.copyOf(keys, count), Arrays.copyOf(chunks, count));
+    }
+
+    /**
+     * Tells whether the set holds a value.
+     */
+    public boolean contains(int value) {
+        int index = indexOf(high(value));
+        return index >= 0 && chunks[index].contains(low(value));
+    }
+
+    /**
+     * Provides the set with a value added.
+     *
+     * @param value a non-negative value
+     * @return this set if it holds the value already, otherwise a new set
+     */
+    public CompressedBitmap with(int value) {
+        int index = indexOf(high(value));
+        if (index >= 0) {
+            Chunk chunk = chunks[index].with(low(value));
+            if (chunk == chunks[index]) {
+                return this;
+            }
+            Chunk[] copy = chunks.clone();
+            copy[index] = chunk;
+            return new CompressedBitmap(keys, copy);
+        }
+        int insert = -index - 1;
+        char[] newKeys = new char[keys.length + 1];
+        Chunk[] newChunks = new Chunk[chunks.length + 1];
+        System.arraycopy(keys, 0, newKeys, 0, insert);
+        System.arraycopy(chunks, 0, newChunks, 0, insert);
+        newKeys[insert] = high(value);
+        newChunks[insert] = new ArrayChunk(new char[]{low(value)});
+        System.arraycopy(keys, insert, newKeys, insert + 1, keys.length - insert);
+        System.arraycopy(chunks, insert, newChunks, insert + 1, chunks.length - insert);
+        return new CompressedBitmap(newKeys, newChunks);
+    }
+
+    /**
+     * Provides the set with a value removed.
+     *
+     * @param value a value
+     * @return this set if it does not hold the value, otherwise a new set
+     */
+    public CompressedBitmap without(int value) {
+        int index = indexOf(high(value));
+        if (index < 0 || !chunks[index].contains(low(value))) {
+            return this;
+        }
+        Chunk chunk = chunks[index].without(low(value));
+        if (chunk != null) {
+            Chunk[] copy = chunks.clone();
+            copy[index] = chunk;
+            return new CompressedBitmap(keys, copy);
+        }
+        char[] newKeys = new char[keys.length - 1];
+        Chunk[] newChunks = new Chunk[chunks.length - 1];
+        System.arraycopy(keys, 0, newKeys, 0, index);
+        System.arraycopy(chunks, 0, newChunks, 0, index);
+        System.arraycopy(keys, index + 1, newKeys, index, keys.length - index - 1);
+        System.arraycopy(chunks, index + 1, newChunks, index, chunks.length - index - 1);
+        return new CompressedBitmap(newKeys, newChunks);
+    }
+
+    /**
+     * Provides the values in both this set and another.
+     */
+    public CompressedBitmap and(CompressedBitmap other) {
+        char[] newKeys = new char[Math.min(keys.length, other.keys.length)];
+        Chunk[] newChunks = new Chunk[newKeys.length];
+        int count = 0;
+        for (int i = 0, j = 0; i < keys.length && j < other.keys.length; ) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                Chunk chunk = chunks[i].and(other.chunks[j]);
+                if (chunk != null) {
+                    newKeys[count] = keys[i];
+                    newChunks[count++] = chunk;
+                }
+                i++;
+                j++;
+            }
+        }
+        return new CompressedBitmap(Arrays.copyOf(newKeys, count), Arrays.copyOf(newChunks, count));
+    }
+
+    /**
+     * Provides the values in this set, another, or both.
+     */
+    public CompressedBitmap or(CompressedBitmap other) {
+        char[] newKeys = new char[keys.length + other.keys.length];
+        Chunk[] newChunks = new Chunk[newKeys.length];
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < keys.length || j < other.keys.length) {
+            if (j == other.keys.length || (i < keys.length && keys[i] < other.keys[j])) {
+                newKeys[count] = keys[i];
+                newChunks[count++] = chunks[i++];
+            } else if (i == keys.length || keys[i] > other.keys[j]) {
+                newKeys[count] = other.keys[j];
+                newChunks[count++] = other.chunks[j++];
+            } else {
+                newKeys[count] = keys[i];
+                newChunks[count++] = chunks[i++].or(other.chunks[j++]);
+            }
+        }
+        return new CompressedBitmap(Arrays.copyOf(newKeys, count), Arrays.copyOf(newChunks, count));
+    }
+
+    /**
+     * Provides the values in this set that are not in another.
+     */
+    public CompressedBitmap andNot(CompressedBitmap other) {
+        char[] newKeys = new char[keys.length];
+        Chunk[] newChunks = new Chunk[keys.length];
+        int count = 0;
+        int j = 0;
+        for (int i = 0; i < keys.length; i++) {
+            while (j < other.keys.length && other.keys[j] < keys[i]) {
+                j++;
+            }
+            Chunk chunk = j < other.keys.length && other.keys[j] == keys[i] ? chunks[i].andNot(other.chunks[j]) : chunks[i];
+            if (chunk != null) {
+                newKeys[count] = keys[i];
+                newChunks[count++] = chunk;
+            }
+        }
+        return new CompressedBitmap(Arrays.copyOf(newKeys, count), Arrays.copyOf(newChunks, count));
+    }
+
+    /**
+     * Counts the values in the set.
+     */
+    public int cardinality() {
+        int cardinality = 0;
+        for (Chunk chunk : chunks) {
+            cardinality += chunk.cardinality();
+        }
+        return cardinality;
+    }
+
+    /**
+     * Tells whether the set has no values.
+     */
+    public boolean isEmpty() {
+        return keys.length == 0;
+    }
+
+    /**
+     * Passes every value to an action in ascending order.
+     *
+     * @param action the action to run for each value
+     */
+    public void forEach(IntConsumer action) {
+        for (int i = 0; i < keys.length; i++) {
+            chunks[i].forEach(keys[i] << 16, action);
+        }
+    }
+
+    private int indexOf(char key) {
+        return Arrays.binarySearch(keys, key);
+    }
+
+    private static char high(int value) {
+        return (char) (value >>> 16);
+    }
+
+    private static char low(int value) {
+        return (char) value;
+    }
+
+    /**
+     * The values of one chunk, by their low 16 bits. Operations return null instead of an empty chunk.
+     */
+    private interface Chunk {
+        boolean contains(char value);
+
+        Chunk with(char value);
+
+        Chunk without(char value);
+
+        Chunk and(Chunk other);
+
+        Chunk or(Chunk other);
+
+        Chunk andNot(Chunk other);
+
+        int cardinality();
+
+        void forEach(int base, IntConsumer action);
+
+        /**
+         * Picks the form for sorted, distinct values: an array when there are few enough, otherwise a bitset.
+         */
+        static Chunk ofSorted(char[] values, int size) {
+            if (size == 0) {
+                return null;
+            }
+            if (size <= ARRAY_LIMIT) {
+                return new ArrayChunk(Arrays.copyOf(values, size));
+            }
+            long[] words = new long[WORDS];
+            for (int i = 0; i < size; i++) {
+                words[values[i] >>> 6] |= 1L << values[i];
+            }
+            return new BitsetChunk(words, size);
+        }
+
+        /**
+         * Picks the form for a bitset: an array when it holds few enough values, otherwise the bitset itself.
+         */
+        static Chunk ofWords(long[] words) {
+            int cardinality = 0;
+            for (long word : words) {
+                cardinality += Long.bitCount(word);
+            }
+            if (cardinality == 0) {
+                return null;
+            }
+            if (cardinality > ARRAY_LIMIT) {
+                return new BitsetChunk(words, cardinality);
+            }
+            char[] values = new char[cardinality];
+            int size = 0;
+            for (int w = 0; w < words.length; w++) {
+                for (long bits = words[w]; bits != 0; bits &= bits - 1) {
+                    values[size++] = (char) ((w << 6) + Long.numberOfTrailingZeros(bits));
+                }
+            }
+            return new ArrayChunk(values);
+        }
+    }
+
+    /**
+     * A chunk of at most {@link #ARRAY_LIMIT} values kept as a sorted array.
+     */
+    private record ArrayChunk(char[] values) implements Chunk {
+
+        @Override
+        public boolean contains(char value) {
+            return Arrays.binarySearch(values, value) >= 0;
+        }
+
+        @Override
+        public Chunk with(char value) {
+            int index = Arrays.binarySearch(values, value);
+            if (index >= 0) {
+                return this;
+            }
+            int insert = -index - 1;
+            char[] added = new char[values.length + 1];
+            System.arraycopy(values, 0, added, 0, insert);
+            added[insert] = value;
+            System.arraycopy(values, insert, added, insert + 1, values.length - insert);
+            return Chunk.ofSorted(added, added.length);
+        }
+
+        @Override
+        public Chunk without(char value) {
+            int index = Arrays.binarySearch(values, value);
+            if (index < 0) {
+                return this;
+            }
+            char[] removed = new char[values.length - 1];
+            System.arraycopy(values, 0, removed, 0, index);
+            System.arraycopy(values, index + 1, removed, index, values.length - index - 1);
+            return removed.length == 0 ? null : new ArrayChunk(removed);
+        }
+
+        @Override
+        public Chunk and(Chunk other) {
+            char[] result = new char[values.length];
+            int size = 0;
+            if (other instanceof ArrayChunk array) {
+                for (int i = 0, j = 0; i < values.length && j < array.values.length; ) {
+                    if (values[i] < array.values[j]) {
+                        i++;
+                    } else if (values[i] > array.values[j]) {
+                        j++;
+                    } else {
+                        result[size++] = values[i];
+                        i++;
+                        j++;
+                    }
+                }
+            } else {
+                for (char value : values) {
+                    if (other.contains(value)) {
+                        result[size++] = value;
+                    }
+                }
+            }
+            return Chunk.ofSorted(result, size);
+        }
+
+        @Override
+        public Chunk or(Chunk other) {
+            if (other instanceof BitsetChunk) {
+                return other.or(this);
+            }
+            char[] others = ((ArrayChunk) other).values;
+            char[] result = new char[values.length + others.length];
+            int size = 0;
+            int i = 0;
+            int j = 0;
+            while (i < values.length || j < others.length) {
+                if (j == others.length || (i < values.length && values[i] < others[j])) {
+                    result[size++] = values[i++];
+                } else if (i == values.length || values[i] > others[j]) {
+                    result[size++] = others[j++];
+                } else {
+                    result[size++] = values[i++];
+                    j++;
+                }
+            }
+            return Chunk.ofSorted(result, size);
+        }
+
+        @Override
+        public Chunk andNot(Chunk other) {
+            char[] result = new char[values.length];
+            int size = 0;
+            for (char value : values) {
+                if (!other.contains(value)) {
+                    result[size++] = value;
+                }
+            }
+            return size == values.length ? this : Chunk.ofSorted(result, size);
+        }
+
+        @Override
+        public int cardinality() {
+            return values.length;
+        }
+
+        @Override
+        public void forEach(int base, IntConsumer action) {
+            for (char value : values) {
+                action.accept(base | value);
+            }
+        }
+    }
+
+    /**
+     * A chunk of more than {@link #ARRAY_LIMIT} values kept as a bitset of 65536 bits.
+     */
+    private record BitsetChunk(long[] words, int cardinality) implements Chunk {
+
+        @Override
+        public boolean contains(char value) {
+            return (words[value >>> 6] & (1L << value)) != 0;
+        }
+
+        @Override
+        public Chunk with(char value) {
+            if (contains(value)) {
+                return this;
+            }
+            long[] copy = words.clone();
+            copy[value >>> 6] |= 1L << value;
+            return new BitsetChunk(copy, cardinality + 1);
+        }
+
+        @Override
+        public Chunk without(char value) {
+            if (!contains(value)) {
+                return this;
+            }
+            long[] copy = words.clone();
+            copy[value >>> 6] &= ~(1L << value);
+            return cardinality - 1 > ARRAY_LIMIT ? new BitsetChunk(copy, cardinality - 1) : Chunk.ofWords(copy);
+        }
+
+        @Override
+        public Chunk and(Chunk other) {
+            if (other instanceof ArrayChunk) {
+                return other.and(this);
+            }
+            long[] others = ((BitsetChunk) other).words;
+            long[] result = new long[WORDS];
+            for (int w = 0; w < WORDS; w++) {
+                result[w] = words[w] & others[w];
+            }
+            return Chunk.ofWords(result);
+        }
+
+        @Override
+        public Chunk or(Chunk other) {
+            long[] result = words.clone();
+            if (other instanceof BitsetChunk bitset) {
+                for (int w = 0; w < WORDS; w++) {
+                    result[w] |= bitset.words[w];
+                }
+            } else {
+                for (char value : ((ArrayChunk) other).values) {
+                    result[value >>> 6] |= 1L << value;
+                }
+            }
+            return Chunk.ofWords(result);
+        }
+
+        @Override
+        public Chunk andNot(Chunk other) {
+            long[] result = words.clone();
+            if (other instanceof BitsetChunk bitset) {
+                for (int w = 0; w < WORDS; w++) {
+                    result[w] &= ~bitset.words[w];
+                }
+            } else {
+                for (char value : ((ArrayChunk) other).values) {
+                    result[value >>> 6] &= ~(1L << value);
+                }
+            }
+            return Chunk.ofWords(result);
+        }
+
+        @Override
+        public void forEach(int base, IntConsumer action) {
+            for (int w = 0; w < WORDS; w++) {
+                for (long bits = words[w]; bits != 0; bits &= bits - 1) {
+                    action.accept(base | (w << 6) + Long.numberOfTrailingZeros(bits));
+                }
+            }
+        }
+    }
+}
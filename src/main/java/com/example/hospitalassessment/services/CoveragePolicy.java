@@ -0,0 +1,138 @@
+package com.example.hospitalassessment.services;
+
+import com.example.hospitalassessment.database.ClaimDAO.Claim;
+import com.example.hospitalassessment.database.ClaimDAO.CoverageRule;
+
+import java.util.*;
+
+/**
+ * The coverage rules of one insurer, compiled into the checks a claim has to pass.
+ * Only the kinds of rule the insurer has become checks, each holding its rules in the form it is tested against:
+ * drug lists as hash sets, the visit limit as a number, and coverage periods as merged, sorted day ranges
+ * searched by bisection. An insurer without rules covers every claim.
+ * Instances are immutable, so one compiled set of policies can be shared by parallel evaluations.
+ */
+public final class CoveragePolicy {
+    static final CoveragePolicy COVERS_ALL = new CoveragePolicy(List.of()); // Policy of an insurer without rules.
+
+    private final List<Check> checks; // Checks a claim must pass, cheapest first.
+
+    private CoveragePolicy(List<Check> checks) {
+        this.checks = checks;
+    }
+
+    /**
+     * Compiles the rules of every insurer.
+     *
+     * @param rules the coverage rules of all insurers; rules of unknown type are ignored
+     * @return the policy of each insurer that has rules, by insurance ID
+     */
+    public static Map<String, CoveragePolicy> compile(Collection<CoverageRule> rules) {
+        Map<String, List<CoverageRule>> byInsurer = new HashMap<>();
+        for (CoverageRule rule : rules) {
+            byInsurer.computeIfAbsent(rule.insuranceId(), id -> new ArrayList<>()).add(rule);
+        }
+
+        Map<String, CoveragePolicy> policies = new HashMap<>();
+        byInsurer.forEach((insuranceId, insurerRules) -> policies.put(insuranceId, compileInsurer(insurerRules)));
+        return Map.copyOf(policies);
+    }
+
+    private static CoveragePolicy compileInsurer(List<CoverageRule> rules) {
+        Set<String> covered = new HashSet<>();
+        Set<String> excluded = new HashSet<>();
+        int maxVisits = Integer.MAX_VALUE;
+        List<long[]> periods = new ArrayList<>();
+        for (CoverageRule rule : rules) {
+            switch (rule.type()) {
+                case "COVERED_DRUG" -> covered.add(rule.drugId());
+                case "EXCLUDED_DRUG" -> excluded.add(rule.drugId());
+                case "VISIT_LIMIT" -> {
+                    if (rule.maxVisits() != null) {
+                        maxVisits = Math.min(maxVisits, rule.maxVisits());
+                    }
+                }
+                case "COVERAGE_PERIOD" -> periods.add(new long[]{
+                        rule.validFrom() != null ? rule.validFrom().toEpochDay() : Long.MIN_VALUE,
+                        rule.validUntil() != null ? rule.validUntil().toEpochDay() : Long.MAX_VALUE});
+                default -> {
+                    // Unknown rule types are left to newer versions of the application
+                }
+            }
+        }
+
+        List<Check> checks = new ArrayList<>();
+        if (!excluded.isEmpty()) {
+            Set<String> drugs = Set.copyOf(excluded);
+            checks.add(claim -> claim.drugId() != null && drugs.contains(claim.drugId())
+                    ? "Drug " + claim.drugId() + " is excluded from cover." : null);
+        }
+        if (!covered.isEmpty()) {
+            Set<String> drugs = Set.copyOf(covered);
+            checks.add(claim -> claim.drugId() != null && !drugs.contains(claim.drugId())
+                    ? "Drug " + claim.drugId() + " is not on the insurer's drug list." : null);
+        }
+        if (maxVisits != Integer.MAX_VALUE) {
+            int limit = maxVisits;
+            checks.add(claim -> claim.type() == Claim.Type.VISIT && claim.visitNumber() > limit
+                    ? "Visit " + claim.visitNumber() + " of " + claim.date().getYear() + " exceeds the limit of " + limit + " visits a year." : null);
+        }
+        if (!periods.isEmpty()) {
+            checks.add(periodCheck(periods));
+        }
+        return new CoveragePolicy(List.copyOf(checks));
+    }
+
+    /**
+     * Merges overlapping and adjacent periods, then finds the period a claim falls into by bisecting their start days.
+     */
+    private static Check periodCheck(List<long[]> periods) {
+        periods.sort(Comparator.comparingLong(period -> period[0]));
+        List<long[]> merged = new ArrayList<>();
+        for (long[] period : periods) {
+            long[] last = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+            if (last != null && (last[1] == Long.MAX_VALUE || period[0] <= last[1] + 1)) {
+                last[1] = Math.max(last[1], period[1]);
+            } else {
+                merged.add(period.clone());
+            }
+        }
+
+        long[] starts = new long[merged.size()];
+        long[] ends = new long[merged.size()];
+        for (int i = 0; i < merged.size(); i++) {
+            starts[i] = merged.get(i)[0];
+            ends[i] = merged.get(i)[1];
+        }
+        return claim -> {
+            long day = claim.date().toEpochDay();
+            int found = Arrays.binarySearch(starts, day);
+            int period = found >= 0 ? found : -found - 2; // The last period starting on or before the day
+            return period >= 0 && day <= ends[period] ? null : "Claims dated " + claim.date() + " are outside the coverage period.";
+        };
+    }
+
+    /**
+     * Checks a claim against the policy.
+     *
+     * @param claim the claim to check
+     * @return why the claim is not covered, or null if it is
+     */
+    public String reject(Claim claim) {
+        for (Check check : checks) {
+            String reason = check.reject(claim);
+            if (reason != null) {
+                return reason;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * One compiled rule kind, returning why a claim fails it, or null if the claim passes.
+     */
+    @FunctionalInterface
+    private interface Check {
+        String reject(Claim claim);
+    }
+}
@@ -0,0 +1,329 @@
+package com.example.hospitalassessment.services;
+
+import com.example.hospitalassessment.database.ConnectionPool;
+import com.example.hospitalassessment.database.DatabaseManager;
+import com.example.hospitalassessment.database.FeatureDAO;
+import com.example.hospitalassessment.database.FeatureDAO.PatientKey;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Function;
+
+/**
+ * Builds one feature vector per patient from their visits and prescriptions and writes them as a training matrix.
+ * Patients are split, in patient ID order, into chunks of consecutive IDs. Each chunk is handled by a worker on its own
+ * pooled connection: the chunk's visits and then its prescriptions are streamed in patient order and folded into
+ * flat int arrays, one slot per patient and feature, so memory depends only on the chunk size. Chunks run in parallel
+ * and are written in order as they complete, with only a few more in flight than there are workers.
+ * Only rows dated on or before the reference day are read, so a matrix built for a past day holds no later information.
+ */
+public class FeatureExtractionPipeline {
+    private static final byte[] BINARY_MAGIC = {'H', 'F', 'M', '1'}; // Starts every binary matrix.
+    private static final String[] BASE_COLUMNS = {
+            "insured", "visits_30d", "visits_90d", "visits_365d", "visits_total", "distinct_doctors", "days_since_last_visit",
+            "prescriptions_365d", "prescriptions_total", "distinct_drugs", "days_since_first_record"
+    }; // Features of every matrix, followed by one exposure column per drug.
+    private static final int INSURED = 0, VISITS_30D = 1, VISITS_90D = 2, VISITS_365D = 3, VISITS_TOTAL = 4,
+            DISTINCT_DOCTORS = 5, DAYS_SINCE_LAST_VISIT = 6, PRESCRIPTIONS_365D = 7, PRESCRIPTIONS_TOTAL = 8,
+            DISTINCT_DRUGS = 9, DAYS_SINCE_FIRST_RECORD = 10; // Position of each base feature in a vector.
+
+    private final ConnectionPool connectionPool; // Provides a connection to each worker.
+    private final int workers; // Chunks processed at once.
+
+    /**
+     * Creates a pipeline.
+     *
+     * @param connectionPool the pool providing database connections; it should have at least {@code workers} connections
+     * @param workers        the number of chunks to process at once
+     */
+    public FeatureExtractionPipeline(ConnectionPool connectionPool, int workers) {
+        if (workers < 1) {
+            throw new IllegalArgumentException("At least one worker is required");
+        }
+        this.connectionPool = connectionPool;
+        this.workers = workers;
+    }
+
+    /**
+     * Builds the feature vector of every patient and writes the matrix.
+     *
+     * @param settings what to build and how
+     * @param out      where to write the matrix; it is flushed but not closed
+     * @return the report of the run
+     * @throws IOException           if the matrix cannot be written
+     * @throws IllegalStateException if the rows of a chunk cannot be read; the matrix written so far is incomplete
+     */
+    public Report run(Settings settings, OutputStream out) throws IOException {
+        long started = System.nanoTime();
+        List<PatientKey> patients;
+        List<String> drugs;
+        DatabaseManager dbManager = connectionPool.borrow();
+        try {
+            FeatureDAO featureDAO = new FeatureDAO(dbManager);
+            patients = featureDAO.getPatientKeys();
+            drugs = settings.drugColumns() > 0 ? featureDAO.getMostPrescribedDrugs(settings.drugColumns()) : List.of();
+        } finally {
+            connectionPool.release(dbManager);
+        }
+
+        String[] columns = Arrays.copyOf(BASE_COLUMNS, BASE_COLUMNS.length + drugs.size());
+        Map<String, Integer> drugColumns = new HashMap<>();
+        for (int i = 0; i < drugs.size(); i++) {
+            columns[BASE_COLUMNS.length + i] = "drug_" + drugs.get(i) + "_days";
+            drugColumns.put(drugs.get(i), BASE_COLUMNS.length + i);
+        }
+        Function<Chunk, byte[]> encoder = settings.format() == Format.CSV
+                ? FeatureExtractionPipeline::encodeCsv : FeatureExtractionPipeline::encodeBinary;
+
+        BufferedOutputStream buffered = new BufferedOutputStream(out, 1 << 16);
+        writeHeader(settings.format(), columns, buffered);
+
+        ExecutorService executor = Executors.newFixedThreadPool(workers);
+        long visits = 0;
+        long prescriptions = 0;
+        try {
+            Deque<Future<Chunk>> inFlight = new ArrayDeque<>();
+            int next = 0;
+            while (next < patients.size() || !inFlight.isEmpty()) {
+                // Keep every worker busy with one chunk queued behind it, so finished chunks wait only briefly to be written
+                while (next < patients.size() && inFlight.size() < workers * 2) {
+                    List<PatientKey> chunkPatients = patients.subList(next, Math.min(patients.size(), next + settings.chunkSize()));
+                    inFlight.add(executor.submit(() -> extract(chunkPatients, columns.length, drugColumns, settings.asOf(), encoder)));
+                    next += chunkPatients.size();
+                }
+                Chunk chunk = inFlight.removeFirst().get();
+                buffered.write(chunk.encoded);
+                visits += chunk.visits;
+                prescriptions += chunk.prescriptions;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while building features", e);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException runtime ? runtime : new IllegalStateException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        buffered.flush();
+
+        long elapsed = System.nanoTime() - started;
+        return new Report(patients.size(), columns.length, visits, prescriptions, elapsed / 1_000_000,
+                (visits + prescriptions) * 1_000_000_000.0 / Math.max(1, elapsed));
+    }
+
+    /**
+     * Builds the feature vectors of a chunk of consecutive patients on a pooled connection and encodes them.
+     */
+    private Chunk extract(List<PatientKey> patients, int width, Map<String, Integer> drugColumns, LocalDate asOf,
+                          Function<Chunk, byte[]> encoder) {
+        Chunk chunk = new Chunk(patients, width);
+        long today = asOf.toEpochDay();
+        String first = patients.get(0).patientId();
+        String last = patients.get(patients.size() - 1).patientId();
+
+        DatabaseManager dbManager = connectionPool.borrow();
+        try {
+            FeatureDAO featureDAO = new FeatureDAO(dbManager);
+            // Rows arrive ordered by patient, then by doctor or drug, so distinct values are counted as they change
+            Cursor cursor = new Cursor(chunk);
+            chunk.visits = featureDAO.streamVisits(first, last, asOf, (patientId, doctorId, day) -> {
+                int base = cursor.moveTo(patientId, doctorId);
+                if (base < 0) {
+                    return; // Added after the patients were listed
+                }
+                int[] values = chunk.values;
+                long age = today - day;
+                values[base + VISITS_TOTAL]++;
+                values[base + VISITS_365D] += age < 365 ? 1 : 0;
+                values[base + VISITS_90D] += age < 90 ? 1 : 0;
+                values[base + VISITS_30D] += age < 30 ? 1 : 0;
+                values[base + DISTINCT_DOCTORS] += cursor.newValue ? 1 : 0;
+                chunk.lastVisit[base / width] = Math.max(chunk.lastVisit[base / width], day);
+                chunk.firstRecord[base / width] = Math.min(chunk.firstRecord[base / width], day);
+            });
+            if (chunk.visits < 0) {
+                throw new IllegalStateException("Could not read the visits of patients " + first + " to " + last + ".");
+            }
+
+            Cursor drugCursor = new Cursor(chunk);
+            chunk.prescriptions = featureDAO.streamPrescriptions(first, last, asOf, (patientId, drugId, day, duration) -> {
+                int base = drugCursor.moveTo(patientId, drugId);
+                if (base < 0) {
+                    return;
+                }
+                int[] values = chunk.values;
+                values[base + PRESCRIPTIONS_TOTAL]++;
+                values[base + PRESCRIPTIONS_365D] += today - day < 365 ? 1 : 0;
+                values[base + DISTINCT_DRUGS] += drugCursor.newValue ? 1 : 0;
+                if (drugCursor.newValue) {
+                    drugCursor.column = drugColumns.getOrDefault(drugId, -1);
+                }
+                if (drugCursor.column >= 0) {
+                    values[base + drugCursor.column] += Math.max(1, duration);
+                }
+                chunk.firstRecord[base / width] = Math.min(chunk.firstRecord[base / width], day);
+            });
+            if (chunk.prescriptions < 0) {
+                throw new IllegalStateException("Could not read the prescriptions of patients " + first + " to " + last + ".");
+            }
+        } finally {
+            connectionPool.release(dbManager);
+        }
+
+        for (int i = 0; i < patients.size(); i++) {
+            int base = i * width;
+            chunk.values[base + INSURED] = patients.get(i).insured() ? 1 : 0;
+            chunk.values[base + DAYS_SINCE_LAST_VISIT] = chunk.lastVisit[i] == Long.MIN_VALUE ? -1 : (int) (today - chunk.lastVisit[i]);
+            chunk.values[base + DAYS_SINCE_FIRST_RECORD] = chunk.firstRecord[i] == Long.MAX_VALUE ? -1 : (int) (today - chunk.firstRecord[i]);
+        }
+        chunk.encoded = encoder.apply(chunk);
+        return chunk;
+    }
+
+    private static void writeHeader(Format format, String[] columns, OutputStream out) throws IOException {
+        if (format == Format.CSV) {
+            out.write(("patient_id," + String.join(",", columns) + "\n").getBytes(StandardCharsets.UTF_8));
+        } else {
+            DataOutputStream data = new DataOutputStream(out);
+            data.write(BINARY_MAGIC);
+            data.writeInt(columns.length);
+            for (String column : columns) {
+                data.writeUTF(column);
+            }
+            data.flush();
+        }
+    }
+
+    private static byte[] encodeCsv(Chunk chunk) {
+        StringBuilder csv = new StringBuilder(chunk.patients.size() * (chunk.width * 3 + 16));
+        for (int i = 0; i < chunk.patients.size(); i++) {
+            String patientId = chunk.patients.get(i).patientId();
+            if (patientId.contains(",") || patientId.contains("\"") || patientId.contains("\n")) {
+                csv.append('"').append(patientId.replace("\"", "\"\"")).append('"');
+            } else {
+                csv.append(patientId);
+            }
+            for (int f = 0; f < chunk.width; f++) {
+                csv.append(',').append(chunk.values[i * chunk.width + f]);
+            }
+            csv.append('\n');
+        }
+        return csv.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] encodeBinary(Chunk chunk) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(chunk.patients.size() * (chunk.width * 4 + 16));
+        try (DataOutputStream data = new DataOutputStream(bytes)) {
+            for (int i = 0; i < chunk.patients.size(); i++) {
+                data.writeUTF(chunk.patients.get(i).patientId());
+                for (int f = 0; f < chunk.width; f++) {
+                    data.writeInt(chunk.values[i * chunk.width + f]);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // Not thrown by in-memory streams
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * How the matrix is written.
+     */
+    public enum Format {
+        CSV, // A header line, then one line per patient: the patient ID and the features, separated by commas
+        BINARY // "HFM1", the column count and names, then per patient its ID and one big-endian int per feature, until the end
+    }
+
+    /**
+     * What a run builds.
+     *
+     * @param asOf        the reference day; later rows are ignored and windows end on it
+     * @param chunkSize   the number of patients per chunk
+     * @param drugColumns the number of most prescribed drugs to add an exposure column for, counting days prescribed
+     * @param format      how the matrix is written
+     */
+    public record Settings(LocalDate asOf, int chunkSize, int drugColumns, Format format) {
+        public Settings {
+            if (chunkSize < 1 || drugColumns < 0) {
+                throw new IllegalArgumentException("The chunk size must be positive and the drug column count not negative");
+            }
+        }
+    }
+
+    /**
+     * The outcome of a run.
+     *
+     * @param patients      the number of patients written
+     * @param features      the number of features per patient
+     * @param visits        the number of visits read
+     * @param prescriptions the number of prescriptions read
+     * @param millis        the time the run took
+     * @param rowsPerSecond the visits and prescriptions read per second
+     */
+    public record Report(int patients, int features, long visits, long prescriptions, long millis, double rowsPerSecond) {
+    }
+
+    /**
+     * The feature vectors of a chunk of patients as they are built.
+     */
+    private static final class Chunk {
+        private final List<PatientKey> patients; // The chunk's patients in ID order.
+        private final int width; // Features per patient.
+        private final int[] values; // Features of patient i at i * width onwards.
+        private final long[] lastVisit; // Latest visit day of each patient, or Long.MIN_VALUE.
+        private final long[] firstRecord; // Earliest visit or prescription day of each patient, or Long.MAX_VALUE.
+        private final Map<String, Integer> positions = new HashMap<>(); // Position of each patient ID in the chunk.
+        private long visits; // Visits read.
+        private long prescriptions; // Prescriptions read.
+        private byte[] encoded; // The chunk written in the output format.
+
+        Chunk(List<PatientKey> patients, int width) {
+            this.patients = patients;
+            this.width = width;
+            this.values = new int[patients.size() * width];
+            this.lastVisit = new long[patients.size()];
+            this.firstRecord = new long[patients.size()];
+            Arrays.fill(lastVisit, Long.MIN_VALUE);
+            Arrays.fill(firstRecord, Long.MAX_VALUE);
+            for (int i = 0; i < patients.size(); i++) {
+                positions.put(patients.get(i).patientId(), i);
+            }
+        }
+    }
+
+    /**
+     * Follows a stream ordered by patient and then by a second value, looking each patient up only when it changes.
+     */
+    private static final class Cursor {
+        private final Chunk chunk; // The chunk the stream belongs to.
+        private String patientId; // The patient of the previous row.
+        private String value; // The second value of the previous row.
+        private int base = -1; // Offset of the current patient's features, or -1 if not in the chunk.
+        private boolean newValue; // Whether the current row starts a new patient or second value.
+        private int column = -1; // Per-value column chosen by the caller when the value changed.
+
+        Cursor(Chunk chunk) {
+            this.chunk = chunk;
+        }
+
+        /**
+         * Moves to a row, telling through {@link #newValue} whether it is the first of its patient and value.
+         *
+         * @return the offset of the patient's features, or -1 if the patient is not in the chunk
+         */
+        int moveTo(String rowPatientId, String rowValue) {
+            boolean newPatient = !rowPatientId.equals(patientId);
+            if (newPatient) {
+                patientId = rowPatientId;
+                Integer position = chunk.positions.get(rowPatientId);
+                base = position == null ? -1 : position * chunk.width;
+            }
+            newValue = newPatient || !Objects.equals(rowValue, value);
+            value = rowValue;
+            return base;
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.example.hospitalassessment.services;
+
+import com.example.hospitalassessment.database.DrugInteractionDAO.Interaction;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * An immutable table of which drugs interact, held as one bitset row per drug.
+ * Every drug that interacts with at least one other is numbered, and bit j of row i is set when drugs i and j interact,
+ * so a lookup is a hash lookup and a bit test, and checking a drug against a whole set of drugs taken at the same time
+ * is one AND per 64 drugs. Drugs without interactions are not numbered and take no space.
+ */
+public class InteractionMatrix {
+    static final InteractionMatrix EMPTY = new InteractionMatrix(Map.of(), new long[0][], Map.of());
+
+    private final Map<String, Integer> indexes; // Number of each drug that has interactions, by drug ID.
+    private final long[][] rows; // Row i has bit j set when drugs i and j interact.
+    private final Map<Long, String> descriptions; // Description of each interaction, by pairKey.
+
+    private InteractionMatrix(Map<String, Integer> indexes, long[][] rows, Map<Long, String> descriptions) {
+        this.indexes = indexes;
+        this.rows = rows;
+        this.descriptions = descriptions;
+    }
+
+    /**
+     * Builds the matrix from a list of interactions. Pairs may be listed in either order, or both.
+     *
+     * @param interactions the known interactions
+     * @return the matrix
+     */
+    public static InteractionMatrix of(Collection<Interaction> interactions) {
+        Map<String, Integer> indexes = new HashMap<>();
+        for (Interaction interaction : interactions) {
+            indexes.putIfAbsent(interaction.drugId(), indexes.size());
+            indexes.putIfAbsent(interaction.otherDrugId(), indexes.size());
+        }
+
+        int words = (indexes.size() + 63) / 64;
+        long[][] rows = new long[indexes.size()][words];
+        Map<Long, String> descriptions = new HashMap<>();
+        for (Interaction interaction : interactions) {
+            int a = indexes.get(interaction.drugId());
+            int b = indexes.get(interaction.otherDrugId());
+            rows[a][b >>> 6] |= 1L << b;
+            rows[b][a >>> 6] |= 1L << a;
+            if (interaction.description() != null) {
+                descriptions.put(pairKey(a, b), interaction.description());
+            }
+        }
+        return new InteractionMatrix(Map.copyOf(indexes), rows, Map.copyOf(descriptions));
+    }
+
+    /**
+     * Provides the number of a drug in the matrix.
+     *
+     * @param drugId the ID of the drug
+     * @return the drug's number, or -1 if it interacts with no other drug
+     */
+    public int indexOf(String drugId) {
+        return drugId == null ? -1 : indexes.getOrDefault(drugId, -1);
+    }
+
+    /**
+     * Tells whether two drugs interact.
+     *
+     * @param drugId      the ID of one drug
+     * @param otherDrugId the ID of the other drug
+     * @return true if the drugs must not be taken at the same time
+     */
+    public boolean interacts(String drugId, String otherDrugId) {
+        int a = indexOf(drugId);
+        int b = indexOf(otherDrugId);
+        return a >= 0 && b >= 0 && interacts(a, b);
+    }
+
+    /**
+     * Tells whether two numbered drugs interact.
+     */
+    boolean interacts(int a, int b) {
+        return (rows[a][b >>> 6] & (1L << b)) != 0;
+    }
+
+    /**
+     * Tells whether a numbered drug interacts with any drug in a set made by {@link #newDrugSet()}.
+     */
+    boolean interactsWithAny(int drug, long[] drugSet) {
+        long[] row = rows[drug];
+        for (int word = 0; word < row.length; word++) {
+            if ((row[word] & drugSet[word]) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Creates an empty set of numbered drugs, one bit per drug.
+     */
+    long[] newDrugSet() {
+        return new long[(indexes.size() + 63) / 64];
+    }
+
+    /**
+     * Describes the interaction of two numbered drugs.
+     *
+     * @return the recorded description, or null if there is none
+     */
+    String description(int a, int b) {
+        return descriptions.get(pairKey(a, b));
+    }
+
+    /**
+     * Provides the number of drugs that interact with at least one other.
+     *
+     * @return the number of rows of the matrix
+     */
+    public int size() {
+        return indexes.size();
+    }
+
+    /**
+     * Combines the numbers of two drugs into a key that does not depend on their order.
+     */
+    private static long pairKey(int a, int b) {
+        return ((long) Math.min(a, b) << 32) | Math.max(a, b);
+    }
+}
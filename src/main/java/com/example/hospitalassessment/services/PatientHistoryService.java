@@ -0,0 +1,116 @@
+package com.example.hospitalassessment.services;
+
+import com.example.hospitalassessment.database.AsyncPatientDAO;
+import com.example.hospitalassessment.database.ConnectionPool;
+import com.example.hospitalassessment.database.EntityEvent;
+import com.example.hospitalassessment.database.EntityEventBus;
+import com.example.hospitalassessment.database.PatientDAO.PatientHistory;
+import com.example.hospitalassessment.models.*;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Predicate;
+
+/**
+ * Provides each patient's full history, read in the background with a single round trip and kept for later opens.
+ * The most recently opened histories are kept; writes announced on an {@link EntityEventBus} drop the histories
+ * they affect, so an open after a change reads the patient again.
+ */
+public class PatientHistoryService {
+    private static final int CACHE_SIZE = Integer.getInteger("hospital.patientHistory.cacheSize", 50); // Most histories kept between opens.
+
+    private final AsyncPatientDAO patientDAO; // Reads histories through pooled connections.
+    private final Map<String, CompletableFuture<PatientHistory>> histories = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CompletableFuture<PatientHistory>> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    }; // Histories loaded or loading by patient ID, in least-recently-opened order. Guarded by this.
+
+    /**
+     * Creates the service, reading histories through pooled connections.
+     *
+     * @param connectionPool the pool providing database connections for background loads
+     */
+    public PatientHistoryService(ConnectionPool connectionPool) {
+        this.patientDAO = new AsyncPatientDAO(connectionPool);
+    }
+
+    /**
+     * Drops kept histories when the records they show are written.
+     * A visit or prescription drops its patient's history, and a prescription moved to another patient also drops
+     * the history it was in; a changed doctor, drug or insurer drops every history, as any of them may show it.
+     *
+     * @param events the event bus to follow
+     * @return an action that stops following the bus
+     */
+    public Runnable follow(EntityEventBus events) {
+        return events.subscribeAll(this::apply);
+    }
+
+    /**
+     * Provides a patient's history, reading it unless it is kept already.
+     *
+     * @param patientId the ID of the patient
+     * @return a future completing with the history, or with null if the patient does not exist
+     */
+    public synchronized CompletableFuture<PatientHistory> getHistory(String patientId) {
+        CompletableFuture<PatientHistory> history = histories.get(patientId);
+        if (history == null || history.isCompletedExceptionally()) {
+            CompletableFuture<PatientHistory> started = patientDAO.getPatientHistory(patientId);
+            histories.put(patientId, started);
+            started.thenAccept(loaded -> {
+                if (loaded == null) {
+                    invalidate(patientId, started); // Nothing to keep for a missing patient or a failed read
+                }
+            });
+            history = started;
+        }
+        return history;
+    }
+
+    /**
+     * Drops a patient's history so that the next open reads it again.
+     *
+     * @param patientId the ID of the patient
+     */
+    public synchronized void invalidate(String patientId) {
+        histories.remove(patientId);
+    }
+
+    private synchronized void invalidate(String patientId, CompletableFuture<PatientHistory> history) {
+        histories.remove(patientId, history);
+    }
+
+    private synchronized void apply(EntityEvent<?> event) {
+        if (event.type() == Patient.class) {
+            histories.remove(event.key());
+        } else if (event.type() == Visit.class) {
+            histories.remove(event.key().split("\\|", 2)[0]); // Visit keys start with the patient ID
+        } else if (event.type() == Prescription.class) {
+            if (event.entity() instanceof Prescription prescription && prescription.getPatientRef() != null) {
+                histories.remove(prescription.getPatientRef().getId());
+            } else if (event.kind() != EntityEvent.Kind.DELETED) {
+                histories.clear(); // Changed elsewhere, so the patient it now belongs to is unknown
+                return;
+            }
+            removeIf(history -> history.prescriptions().stream().anyMatch(p -> p.getId().equals(event.key())));
+        } else {
+            histories.clear(); // A doctor, drug or insurer may appear in any history
+        }
+    }
+
+    /**
+     * Drops the loaded histories that match a condition. Caller holds the lock.
+     */
+    private void removeIf(Predicate<PatientHistory> condition) {
+        for (Iterator<CompletableFuture<PatientHistory>> it = histories.values().iterator(); it.hasNext(); ) {
+            CompletableFuture<PatientHistory> history = it.next();
+            if (history.isDone() && !history.isCompletedExceptionally() && history.join() != null && condition.test(history.join())) {
+                it.remove();
+            }
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.example.hospitalassessment.services;
+
+import com.example.hospitalassessment.database.*;
+import com.example.hospitalassessment.models.Doctor;
+import com.example.hospitalassessment.models.Drug;
+import com.example.hospitalassessment.models.Insurance;
+import com.example.hospitalassessment.models.Patient;
+
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Keeps the option lists shown in entry form dropdowns warm in the background.
+ * Lists are loaded in parallel when a table view asks for them, served from memory when a form opens,
+ * and reloaded whenever the underlying table is written to.
+ */
+public class PickerOptionsService {
+
+    /**
+     * The kinds of option lists offered by entry forms.
+     */
+    public enum OptionType {
+        DRUGS, DOCTORS, PATIENTS, INSURANCE
+    }
+
+    private final Map<OptionType, Supplier<CompletableFuture<List<String>>>> loaders = new EnumMap<>(OptionType.class); // Loads each list from the database.
+    private final Map<OptionType, CompletableFuture<List<String>>> options = new ConcurrentHashMap<>(); // Current (possibly in-flight) lists.
+    private final CircuitBreaker circuitBreaker; // Tells an empty list from one that could not be loaded.
+
+    /**
+     * Creates the service, loading option lists through pooled connections.
+     *
+     * @param connectionPool the pool providing database connections for background loads
+     */
+    public PickerOptionsService(ConnectionPool connectionPool) {
+        AsyncDrugDAO drugDAO = new AsyncDrugDAO(connectionPool);
+        AsyncDoctorDAO doctorDAO = new AsyncDoctorDAO(connectionPool);
+        AsyncPatientDAO patientDAO = new AsyncPatientDAO(connectionPool);
+        AsyncInsuranceDAO insuranceDAO = new AsyncInsuranceDAO(connectionPool);
+        this.circuitBreaker = connectionPool.getCircuitBreaker();
+
+        loaders.put(OptionType.DRUGS, () -> drugDAO.getDrugSummaries()
+                .thenApply(drugs -> drugs.stream().map(PickerOptionsService::drugLabel).toList()));
+        loaders.put(OptionType.DOCTORS, () -> doctorDAO.getDoctorSummaries()
+                .thenApply(doctors -> doctors.stream().map(PickerOptionsService::doctorLabel).toList()));
+        loaders.put(OptionType.PATIENTS, () -> patientDAO.getPatientSummaries()
+                .thenApply(patients -> patients.stream().map(PickerOptionsService::patientLabel).toList()));
+        loaders.put(OptionType.INSURANCE, () -> insuranceDAO.getAllInsurance()
+                .thenApply(insurances -> insurances.stream().map(Insurance::getCompany).toList()));
+    }
+
+    /**
+     * Starts loading the given option lists in parallel unless they are already loaded or loading.
+     *
+     * @param types the option lists to warm
+     */
+    public void prefetch(OptionType... types) {
+        for (OptionType type : types) {
+            getOptions(type);
+        }
+    }
+
+    /**
+     * Provides an option list. The returned future is already complete when the list is warm.
+     * A list whose previous load failed is loaded again.
+     *
+     * @param type the option list to provide
+     * @return a future completed with the option labels
+     */
+    public CompletableFuture<List<String>> getOptions(OptionType type) {
+        return options.compute(type, (key, current) ->
+                current == null || current.isCompletedExceptionally() ? load(key) : current);
+    }
+
+    /**
+     * Provides several option lists at once, loading any that are not warm in parallel.
+     *
+     * @param types the option lists to provide
+     * @return a future completed with the option labels of every requested list
+     */
+    public CompletableFuture<Map<OptionType, List<String>>> getOptions(Collection<OptionType> types) {
+        Map<OptionType, CompletableFuture<List<String>>> pending = new EnumMap<>(OptionType.class);
+        for (OptionType type : types) {
+            pending.put(type, getOptions(type));
+        }
+        return CompletableFuture.allOf(pending.values().toArray(CompletableFuture[]::new)).thenApply(ignored -> {
+            Map<OptionType, List<String>> loaded = new EnumMap<>(OptionType.class);
+            pending.forEach((type, future) -> loaded.put(type, future.join()));
+            return loaded;
+        });
+    }
+
+    /**
+     * Marks an option list as stale after a write and reloads it in the background.
+     *
+     * @param type the option list affected by the write
+     */
+    public void invalidate(OptionType type) {
+        options.put(type, load(type));
+    }
+
+    /**
+     * Loads an option list, failing the load if it came back empty because the database could not be reached,
+     * so that the list is loaded again when next asked for instead of staying empty.
+     */
+    private CompletableFuture<List<String>> load(OptionType type) {
+        return loaders.get(type).get().thenApply(labels -> {
+            if (labels.isEmpty() && !circuitBreaker.isAvailable()) {
+                throw new IllegalStateException("The database is unavailable");
+            }
+            return labels;
+        });
+    }
+
+    /**
+     * Formats a drug as it appears in dropdowns, e.g. "D01 - Paracetamol".
+     */
+    public static String drugLabel(Drug drug) {
+        return drug.getId() + " - " + drug.getDrugName();
+    }
+
+    /**
+     * Formats a doctor as it appears in dropdowns.
+     */
+    public static String doctorLabel(Doctor doctor) {
+        return doctor.getFirstName() + " " + doctor.getSurname();
+    }
+
+    /**
+     * Formats a patient as it appears in dropdowns.
+     */
+    public static String patientLabel(Patient patient) {
+        return patient.getFirstName() + " " + patient.getSurname();
+    }
+}
@@ -0,0 +1,239 @@
+package com.example.hospitalassessment.services;
+
+import com.example.hospitalassessment.database.AsyncDrugInteractionDAO;
+import com.example.hospitalassessment.database.AsyncPrescriptionDAO;
+import com.example.hospitalassessment.database.ConnectionPool;
+import com.example.hospitalassessment.models.Prescription;
+
+import java.sql.Date;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Checks prescriptions for drugs that interact with another drug the same patient takes at the same time.
+ * A prescription is taken from the day it was prescribed for its duration in days, and for at least one day.
+ * Interactions are held in memory as an {@link InteractionMatrix}, loaded once in the background and reloaded
+ * when it gets old, so checking a prescription costs no query beyond reading the patient's other prescriptions.
+ */
+public class PrescriptionConflictService {
+    private static final long MAX_AGE_MILLIS = Long.getLong("hospital.interactions.maxAgeMillis", 300_000); // Age after which interactions are reloaded.
+
+    private final AsyncDrugInteractionDAO interactionDAO; // Loads the interactions through pooled connections.
+    private final AsyncPrescriptionDAO prescriptionDAO; // Reads the prescriptions a new one is checked against through pooled connections.
+    private volatile InteractionMatrix matrix; // The latest loaded interactions, or null before the first load.
+    private CompletableFuture<InteractionMatrix> loading; // The load in progress, or null. Guarded by this.
+    private long loadedAt; // When the latest load was started. Guarded by this.
+
+    /**
+     * Creates the service, loading interactions through pooled connections.
+     *
+     * @param connectionPool the pool providing database connections for background loads
+     */
+    public PrescriptionConflictService(ConnectionPool connectionPool) {
+        this.interactionDAO = new AsyncDrugInteractionDAO(connectionPool);
+        this.prescriptionDAO = new AsyncPrescriptionDAO(connectionPool);
+    }
+
+    /**
+     * Starts loading the interactions unless they are loaded or loading already.
+     */
+    public void prefetch() {
+        load();
+    }
+
+    /**
+     * Provides the interactions, waiting for the first load if necessary.
+     * Interactions older than the maximum age are returned while newer ones load in the background.
+     *
+     * @return the drug interaction matrix
+     */
+    public InteractionMatrix getMatrix() {
+        CompletableFuture<InteractionMatrix> pending = load();
+        InteractionMatrix current = matrix;
+        return current != null ? current : pending.join();
+    }
+
+    /**
+     * Provides the interactions without waiting for them.
+     *
+     * @return a future completing with the drug interaction matrix once it is loaded
+     */
+    public CompletableFuture<InteractionMatrix> whenLoaded() {
+        InteractionMatrix current = matrix;
+        return current != null ? CompletableFuture.completedFuture(current) : load();
+    }
+
+    /**
+     * Starts a load if there are no interactions yet or they are too old, unless one is already in progress.
+     *
+     * @return the load in progress, or a completed future holding the current interactions
+     */
+    private synchronized CompletableFuture<InteractionMatrix> load() {
+        long now = System.currentTimeMillis();
+        if (loading == null && (matrix == null || now - loadedAt > MAX_AGE_MILLIS)) {
+            loadedAt = now;
+            CompletableFuture<InteractionMatrix> started = interactionDAO.getAllInteractions()
+                    .thenApply(InteractionMatrix::of)
+                    .exceptionally(error -> {
+                        error.printStackTrace();
+                        return matrix != null ? matrix : InteractionMatrix.EMPTY;
+                    });
+            loading = started;
+            started.thenAccept(loaded -> finishLoad(started, loaded));
+        }
+        return loading != null ? loading : CompletableFuture.completedFuture(matrix);
+    }
+
+    private synchronized void finishLoad(CompletableFuture<InteractionMatrix> load, InteractionMatrix loaded) {
+        matrix = loaded;
+        if (loading == load) {
+            loading = null;
+        }
+    }
+
+    /**
+     * Finds the prescriptions the candidate conflicts with.
+     *
+     * @param candidate a prescription about to be saved
+     * @param others    the patient's other prescriptions, or any superset; the candidate itself is skipped
+     * @return the conflicts, each naming the candidate first
+     */
+    public List<Conflict> check(Prescription candidate, Collection<Prescription> others) {
+        return check(candidate, others, getMatrix());
+    }
+
+    /**
+     * Finds the prescriptions a prescription about to be saved conflicts with, without blocking the caller: the
+     * interactions are awaited and the patient's other prescriptions read in the background. Once the active medication
+     * index is loaded, only the prescriptions of interacting drugs are read, by ID, and nothing is read when there are
+     * none; until then every prescription taken while the candidate is taken is read.
+     *
+     * @param candidate         a prescription about to be saved
+     * @param activeMedications the index of the drugs each patient takes on each day
+     * @return a future completing with the conflicts, each naming the candidate first, with the drugs of the other
+     * prescriptions loaded
+     */
+    public CompletableFuture<List<Conflict>> findConflicts(Prescription candidate, ActiveMedicationIndex activeMedications) {
+        String patientId = candidate.getPatientRef().getId();
+        String drugId = candidate.getDrugRef().getId();
+        Date from = candidate.getDatePrescribed();
+        Date until = Date.valueOf(from.toLocalDate().plusDays(Math.max(1, candidate.getDuration())));
+        return whenLoaded().thenCompose(interactions -> {
+            CompletableFuture<List<Prescription>> others;
+            if (!activeMedications.isReady()) {
+                others = prescriptionDAO.getActivePrescriptions(patientId, from, until);
+            } else {
+                List<String> ids = activeMedications.activeDuring(patientId, from.toLocalDate(), until.toLocalDate()).stream()
+                        .filter(course -> interactions.interacts(drugId, course.drugId()))
+                        .map(ActiveMedicationIndex.Course::prescriptionId)
+                        .toList();
+                others = ids.isEmpty() ? CompletableFuture.completedFuture(List.of()) : prescriptionDAO.getPrescriptionsByIds(ids);
+            }
+            return others.thenApply(found -> check(candidate, found, interactions));
+        });
+    }
+
+    private static List<Conflict> check(Prescription candidate, Collection<Prescription> others, InteractionMatrix interactions) {
+        Course course = Course.of(candidate, interactions);
+        if (course == null) {
+            return List.of();
+        }
+
+        List<Conflict> conflicts = new ArrayList<>();
+        for (Prescription other : others) {
+            Course otherCourse = Course.of(other, interactions);
+            if (otherCourse != null && !other.getId().equals(candidate.getId())
+                    && otherCourse.patientId().equals(course.patientId())
+                    && course.overlaps(otherCourse) && interactions.interacts(course.drug(), otherCourse.drug())) {
+                conflicts.add(new Conflict(candidate, other, interactions.description(course.drug(), otherCourse.drug())));
+            }
+        }
+        return conflicts;
+    }
+
+    /**
+     * Finds every pair of conflicting prescriptions in a collection, such as a whole table.
+     * Each patient's prescriptions are swept in order of their first day while the set of drugs being taken is kept
+     * as a bitset, so a prescription is compared with the others only when one of them interacts with it.
+     *
+     * @param prescriptions the prescriptions to check
+     * @return the conflicts, each pair reported once with the later prescription first
+     */
+    public List<Conflict> checkAll(Collection<Prescription> prescriptions) {
+        InteractionMatrix interactions = getMatrix();
+        Map<String, List<Course>> byPatient = new HashMap<>();
+        for (Prescription prescription : prescriptions) {
+            Course course = Course.of(prescription, interactions);
+            if (course != null) {
+                byPatient.computeIfAbsent(course.patientId(), id -> new ArrayList<>()).add(course);
+            }
+        }
+
+        List<Conflict> conflicts = new ArrayList<>();
+        long[] taking = interactions.newDrugSet(); // Drugs taken on the current day
+        int[] takingCount = new int[interactions.size()]; // Prescriptions of each drug taken on the current day
+        PriorityQueue<Course> byLastDay = new PriorityQueue<>(Comparator.comparingLong(Course::end));
+        for (List<Course> courses : byPatient.values()) {
+            courses.sort(Comparator.comparingLong(Course::start));
+            for (Course course : courses) {
+                while (!byLastDay.isEmpty() && byLastDay.peek().end() <= course.start()) {
+                    stopTaking(byLastDay.poll().drug(), taking, takingCount);
+                }
+                if (interactions.interactsWithAny(course.drug(), taking)) {
+                    for (Course other : byLastDay) {
+                        if (interactions.interacts(course.drug(), other.drug())) {
+                            conflicts.add(new Conflict(course.prescription(), other.prescription(),
+                                    interactions.description(course.drug(), other.drug())));
+                        }
+                    }
+                }
+                byLastDay.add(course);
+                taking[course.drug() >>> 6] |= 1L << course.drug();
+                takingCount[course.drug()]++;
+            }
+            while (!byLastDay.isEmpty()) {
+                stopTaking(byLastDay.poll().drug(), taking, takingCount);
+            }
+        }
+        return conflicts;
+    }
+
+    private static void stopTaking(int drug, long[] taking, int[] takingCount) {
+        if (--takingCount[drug] == 0) {
+            taking[drug >>> 6] &= ~(1L << drug);
+        }
+    }
+
+    /**
+     * Two prescriptions of the same patient for interacting drugs taken at the same time.
+     *
+     * @param prescription  the prescription being checked
+     * @param conflictsWith the prescription it conflicts with
+     * @param description   what happens when both drugs are taken, or null if not recorded
+     */
+    public record Conflict(Prescription prescription, Prescription conflictsWith, String description) {
+    }
+
+    /**
+     * The days a prescription's drug is taken, from its first day up to but excluding its end day, counted in days
+     * since the epoch. Only prescriptions of drugs that have interactions are represented.
+     */
+    private record Course(Prescription prescription, String patientId, int drug, long start, long end) {
+
+        static Course of(Prescription prescription, InteractionMatrix interactions) {
+            if (prescription.getDatePrescribed() == null || prescription.getPatientRef() == null || prescription.getDrugRef() == null) {
+                return null;
+            }
+            int drug = interactions.indexOf(prescription.getDrugRef().getId());
+            if (drug < 0) {
+                return null;
+            }
+            long start = prescription.getDatePrescribed().toLocalDate().toEpochDay();
+            return new Course(prescription, prescription.getPatientRef().getId(), drug, start, start + Math.max(1, prescription.getDuration()));
+        }
+
+        boolean overlaps(Course other) {
+            return start < other.end && other.start < end;
+        }
+    }
+}
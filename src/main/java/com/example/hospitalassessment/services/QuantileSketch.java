@@ -0,0 +1,206 @@
+package com.example.hospitalassessment.services;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * A streaming summary of int values that answers quantile queries, such as the median or the 90th percentile, in
+ * memory that does not grow with the number of values. It is a KLL sketch: values are kept in levels, each value at
+ * level {@code h} standing for {@code 2^h} values of the stream. When a level fills up it is sorted and every other value,
+ * starting at random, moves up a level, so the kept values stay spread evenly over the ranks. With {@code k} values
+ * kept at the top level, a quantile's rank is off by about {@code 1.7 / k} of the count; the default {@code k} of 200
+ * keeps at most about 600 values. The count, sum, minimum and maximum are exact.
+ * Not thread-safe.
+ */
+public final class QuantileSketch {
+    private static final int DEFAULT_K = 200; // Values kept at the top level by default.
+    private static final double SHRINK = 2.0 / 3.0; // Factor by which each level below the top keeps fewer values.
+
+    private final int k; // Values kept at the top level.
+    private final SplittableRandom random; // Chooses which half of a full level moves up.
+    private int[][] levels = new int[1][8]; // Values at each level, lowest first; level h weighs 2^h.
+    private int[] sizes = new int[1]; // Number of values at each level.
+    private int kept; // Number of values kept at all levels.
+    private int capacity; // Number of values kept before a level is compacted.
+    private long count; // Number of values added.
+    private long sum; // Sum of the values added.
+    private int min = Integer.MAX_VALUE; // Smallest value added.
+    private int max = Integer.MIN_VALUE; // Largest value added.
+    private long[] sorted; // Kept values with their levels in order, built on the first query after a change.
+
+    /**
+     * Creates a sketch keeping 200 values at its top level.
+     */
+    public QuantileSketch() {
+        this(DEFAULT_K, 1);
+    }
+
+    /**
+     * Creates a sketch.
+     *
+     * @param k    the values kept at the top level; larger values give more accurate quantiles
+     * @param seed the seed for the choices made while compacting, so that the same values give the same quantiles
+     */
+    public QuantileSketch(int k, long seed) {
+        if (k < 8) {
+            throw new IllegalArgumentException("k must be at least 8");
+        }
+        this.k = k;
+        this.random = new SplittableRandom(seed);
+        this.capacity = levelCapacity(0);
+    }
+
+    /**
+     * Adds a value.
+     *
+     * @param value the value
+     */
+    public void add(int value) {
+        count++;
+        sum += value;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+        append(0, value);
+        kept++;
+        sorted = null;
+        if (kept >= capacity) {
+            compress();
+        }
+    }
+
+    /**
+     * Provides the number of values added.
+     */
+    public long count() {
+        return count;
+    }
+
+    /**
+     * Provides the mean of the values added, or 0 if none were.
+     */
+    public double mean() {
+        return count == 0 ? 0 : (double) sum / count;
+    }
+
+    /**
+     * Provides the smallest value added, or 0 if none were.
+     */
+    public int min() {
+        return count == 0 ? 0 : min;
+    }
+
+    /**
+     * Provides the largest value added, or 0 if none were.
+     */
+    public int max() {
+        return count == 0 ? 0 : max;
+    }
+
+    /**
+     * Provides an estimate of the value at a quantile: the smallest kept value such that at least the given fraction of
+     * the values added are at most it. The estimate is exact while no more values were added than fit the lowest level.
+     *
+     * @param fraction the quantile, from 0 for the minimum to 1 for the maximum
+     * @return the estimated value, or 0 if no values were added
+     */
+    public int quantile(double fraction) {
+        if (fraction < 0 || fraction > 1) {
+            throw new IllegalArgumentException("The quantile must be between 0 and 1");
+        }
+        if (count == 0) {
+            return 0;
+        }
+        if (fraction == 0) {
+            return min;
+        }
+        if (fraction == 1) {
+            return max;
+        }
+        if (sorted == null) {
+            sortKept();
+        }
+        double rank = fraction * count;
+        long weight = 0;
+        for (long entry : sorted) {
+            weight += 1L << (entry & 0xFF);
+            if (weight >= rank) {
+                return (int) (entry >> 8);
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Sorts the kept values, each packed with its level in the low byte so that the order of the packed entries is that
+     * of the values.
+     */
+    private void sortKept() {
+        long[] entries = new long[kept];
+        int n = 0;
+        for (int level = 0; level < levels.length; level++) {
+            for (int i = 0; i < sizes[level]; i++) {
+                entries[n++] = ((long) levels[level][i] << 8) | level;
+            }
+        }
+        Arrays.sort(entries);
+        sorted = entries;
+    }
+
+    /**
+     * Compacts the lowest full level into the one above it, adding a level first if it is the top one.
+     */
+    private void compress() {
+        for (int level = 0; level < levels.length; level++) {
+            if (sizes[level] >= levelCapacity(level)) {
+                if (level + 1 == levels.length) {
+                    grow();
+                }
+                compact(level);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Moves every other value of a level, in sorted order and starting at random, to the level above, where it counts
+     * twice. With an odd number of values the smallest stays behind.
+     */
+    private void compact(int level) {
+        int[] values = levels[level];
+        int size = sizes[level];
+        Arrays.sort(values, 0, size);
+        int first = size & 1;
+        int offset = random.nextBoolean() ? 1 : 0;
+        for (int i = first; i < size; i += 2) {
+            append(level + 1, values[i + offset]);
+        }
+        kept -= (size - first) / 2;
+        sizes[level] = first;
+    }
+
+    private void grow() {
+        levels = Arrays.copyOf(levels, levels.length + 1);
+        levels[levels.length - 1] = new int[8];
+        sizes = Arrays.copyOf(sizes, sizes.length + 1);
+        capacity = 0;
+        for (int level = 0; level < levels.length; level++) {
+            capacity += levelCapacity(level);
+        }
+    }
+
+    private void append(int level, int value) {
+        if (sizes[level] == levels[level].length) {
+            levels[level] = Arrays.copyOf(levels[level], levels[level].length * 2);
+        }
+        levels[level][sizes[level]++] = value;
+    }
+
+    /**
+     * Provides how many values a level keeps before it is compacted: {@code k} at the top level, shrinking by a third
+     * for each level below it, but at least two.
+     */
+    private int levelCapacity(int level) {
+        int depth = levels.length - level - 1;
+        return Math.max(2, (int) Math.ceil(k * Math.pow(SHRINK, depth)));
+    }
+}
@@ -0,0 +1,298 @@
+package com.example.hospitalassessment.services;
+
+import com.example.hospitalassessment.database.AsyncReportDAO;
+import com.example.hospitalassessment.database.ConnectionPool;
+import com.example.hospitalassessment.database.ReportDAO.DoctorWorkload;
+import com.example.hospitalassessment.database.ReportDAO.GroupWorkload;
+import com.example.hospitalassessment.database.ReportDAO.Grouping;
+import com.example.hospitalassessment.database.TrendDAO.Granularity;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Provides workload and drug utilisation reports and keeps them for a while, so that showing a report again costs
+ * nothing. A workload report is three aggregate queries run in parallel: per doctor, per hospital and per
+ * specialization. A drug utilisation report reads the period's prescriptions once, as they stream in, keeping per drug
+ * only counts and a {@link QuantileSketch} each for dosage and duration, so its percentiles take neither a sort nor
+ * memory growing with the number of prescriptions.
+ * Reports are kept for five minutes by default ({@code hospital.reports.maxAgeMillis}); the most recent periods asked for
+ * are kept, and {@link #invalidate()} drops them all.
+ */
+public class ReportService {
+    private static final long MAX_AGE_MILLIS = Long.getLong("hospital.reports.maxAgeMillis", 300_000); // Age after which a report is computed again.
+    private static final int CACHE_SIZE = 16; // Most reports of each kind kept.
+    private static final int TOP_PRESCRIBERS = 3; // Doctors listed per drug in a drug utilisation report.
+
+    private final AsyncReportDAO reportDAO; // Runs the aggregates through pooled connections.
+    private final Map<String, Cached<WorkloadReport>> reports = lruCache(); // Workload reports computed or computing by period. Guarded by this.
+    private final Map<String, Cached<DrugUtilisationReport>> drugReports = lruCache(); // Drug utilisation reports computed or computing by period. Guarded by this.
+
+    /**
+     * Creates the service, running aggregates through pooled connections.
+     *
+     * @param connectionPool the pool providing database connections for background loads
+     */
+    public ReportService(ConnectionPool connectionPool) {
+        this.reportDAO = new AsyncReportDAO(connectionPool);
+    }
+
+    /**
+     * Provides the workload report of a period, computing it unless a recent one is kept.
+     *
+     * @param from  the first day of the period
+     * @param until the day after the last day of the period
+     * @return a future completing with the report
+     */
+    public synchronized CompletableFuture<WorkloadReport> getWorkload(LocalDate from, LocalDate until) {
+        String key = from + "/" + until;
+        long now = System.currentTimeMillis();
+        Cached<WorkloadReport> cached = reports.get(key);
+        if (cached != null && now - cached.startedAt <= MAX_AGE_MILLIS && !cached.report.isCompletedExceptionally()) {
+            return cached.report;
+        }
+
+        CompletableFuture<List<DoctorWorkload>> doctors = reportDAO.getDoctorWorkloads(from, until);
+        CompletableFuture<List<GroupWorkload>> hospitals = reportDAO.getGroupWorkloads(Grouping.HOSPITAL, from, until);
+        CompletableFuture<List<GroupWorkload>> specializations = reportDAO.getGroupWorkloads(Grouping.SPECIALIZATION, from, until);
+        CompletableFuture<WorkloadReport> report = CompletableFuture.allOf(doctors, hospitals, specializations)
+                .thenApply(ignored -> new WorkloadReport(from, until, doctors.join(), hospitals.join(), specializations.join(),
+                        LocalDateTime.now()));
+        reports.put(key, new Cached<>(report, now));
+        return report;
+    }
+
+    /**
+     * Provides the drug utilisation report of a period, computing it unless a recent one is kept. Prescriptions are
+     * counted by day for periods of up to a month, by week for periods of up to half a year, and by month otherwise.
+     *
+     * @param from  the first day of the period
+     * @param until the day after the last day of the period
+     * @return a future completing with the report, or failing if the prescriptions cannot be read
+     */
+    public synchronized CompletableFuture<DrugUtilisationReport> getDrugUtilisation(LocalDate from, LocalDate until) {
+        String key = from + "/" + until;
+        long now = System.currentTimeMillis();
+        Cached<DrugUtilisationReport> cached = drugReports.get(key);
+        if (cached != null && now - cached.startedAt <= MAX_AGE_MILLIS && !cached.report.isCompletedExceptionally()) {
+            return cached.report;
+        }
+
+        long days = ChronoUnit.DAYS.between(from, until);
+        Granularity granularity = days <= 31 ? Granularity.DAY : days <= 183 ? Granularity.WEEK : Granularity.MONTH;
+        DrugTally tally = new DrugTally(periodStarts(granularity, from, until));
+        CompletableFuture<Map<String, String>> drugNames = reportDAO.getDrugNames();
+        CompletableFuture<Map<String, String>> doctorNames = reportDAO.getDoctorNames();
+        CompletableFuture<Long> scan = reportDAO.streamPrescriptions(from, until, tally::add);
+        CompletableFuture<DrugUtilisationReport> report = CompletableFuture.allOf(drugNames, doctorNames, scan)
+                .thenApply(ignored -> {
+                    if (scan.join() < 0) {
+                        throw new IllegalStateException("Could not read the prescriptions from " + from + " to " + until + ".");
+                    }
+                    return new DrugUtilisationReport(from, until, granularity, tally.periodStarts, tally.drugs(drugNames.join(), doctorNames.join()),
+                            scan.join(), LocalDateTime.now());
+                });
+        drugReports.put(key, new Cached<>(report, now));
+        return report;
+    }
+
+    /**
+     * Drops every kept report, so that the next request computes it again.
+     */
+    public synchronized void invalidate() {
+        reports.clear();
+        drugReports.clear();
+    }
+
+    private static <T> Map<String, Cached<T>> lruCache() {
+        return new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Cached<T>> eldest) {
+                return size() > CACHE_SIZE;
+            }
+        };
+    }
+
+    /**
+     * Provides the first day of every period overlapping a range, oldest first.
+     */
+    private static List<LocalDate> periodStarts(Granularity granularity, LocalDate from, LocalDate until) {
+        List<LocalDate> starts = new ArrayList<>();
+        LocalDate start = switch (granularity) {
+            case DAY -> from;
+            case WEEK -> from.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+            case MONTH -> from.withDayOfMonth(1);
+        };
+        ChronoUnit unit = switch (granularity) {
+            case DAY -> ChronoUnit.DAYS;
+            case WEEK -> ChronoUnit.WEEKS;
+            case MONTH -> ChronoUnit.MONTHS;
+        };
+        for (; start.isBefore(until); start = start.plus(1, unit)) {
+            starts.add(start);
+        }
+        return starts;
+    }
+
+    private static String describe(String id, Map<String, String> names) {
+        String name = names.get(id);
+        if (name != null) {
+            return name;
+        }
+        return id.isEmpty() ? "(none)" : id + " (deleted)";
+    }
+
+    /**
+     * Drug utilisation figures gathered while prescriptions stream in, one prescription at a time.
+     * Fed by a single thread; read once the stream has ended.
+     */
+    private static final class DrugTally {
+        private final List<LocalDate> periodStarts; // The first day of each period counted.
+        private final long[] startDays; // The first day of each period counted, as epoch days.
+        private final Map<String, Drug> drugs = new HashMap<>(); // Figures per drug ID, empty for prescriptions without a drug.
+
+        DrugTally(List<LocalDate> periodStarts) {
+            this.periodStarts = periodStarts;
+            this.startDays = periodStarts.stream().mapToLong(LocalDate::toEpochDay).toArray();
+        }
+
+        void add(String drugId, String doctorId, long epochDay, int dosage, int duration) {
+            Drug drug = drugs.computeIfAbsent(drugId == null ? "" : drugId, id -> new Drug(startDays.length));
+            drug.prescriptions++;
+            int period = Arrays.binarySearch(startDays, epochDay);
+            drug.perPeriod[period >= 0 ? period : -period - 2]++;
+            drug.dosage.add(dosage);
+            drug.duration.add(duration);
+            drug.prescribers.computeIfAbsent(doctorId == null ? "" : doctorId, id -> new int[1])[0]++;
+        }
+
+        /**
+         * Provides the figures of every drug prescribed, most prescribed first.
+         */
+        List<DrugUtilisation> drugs(Map<String, String> drugNames, Map<String, String> doctorNames) {
+            List<DrugUtilisation> result = new ArrayList<>(drugs.size());
+            drugs.forEach((drugId, drug) -> {
+                List<Prescriber> top = drug.prescribers.entrySet().stream()
+                        .sorted(Comparator.comparingInt((Map.Entry<String, int[]> e) -> -e.getValue()[0]).thenComparing(Map.Entry::getKey))
+                        .limit(TOP_PRESCRIBERS)
+                        .map(e -> new Prescriber(e.getKey(), describe(e.getKey(), doctorNames), e.getValue()[0]))
+                        .toList();
+                result.add(new DrugUtilisation(drugId, describe(drugId, drugNames), drug.prescriptions, drug.perPeriod,
+                        distribution(drug.dosage), distribution(drug.duration), top));
+            });
+            result.sort(Comparator.comparingInt(DrugUtilisation::prescriptions).reversed().thenComparing(DrugUtilisation::drugId));
+            return result;
+        }
+
+        private static Distribution distribution(QuantileSketch sketch) {
+            return new Distribution(sketch.mean(), sketch.min(), sketch.quantile(0.5), sketch.quantile(0.9), sketch.quantile(0.99), sketch.max());
+        }
+
+        /**
+         * The figures of one drug.
+         */
+        private static final class Drug {
+            private final int[] perPeriod; // Prescriptions written in each period.
+            private final QuantileSketch dosage = new QuantileSketch(); // Dosages prescribed.
+            private final QuantileSketch duration = new QuantileSketch(); // Durations prescribed, in days.
+            private final Map<String, int[]> prescribers = new HashMap<>(); // Prescriptions written by each doctor ID.
+            private int prescriptions; // Prescriptions written.
+
+            Drug(int periods) {
+                this.perPeriod = new int[periods];
+            }
+        }
+    }
+
+    /**
+     * A report computed or being computed, with when it was started.
+     */
+    private record Cached<T>(CompletableFuture<T> report, long startedAt) {
+    }
+
+    /**
+     * The workload of every doctor, hospital and specialization within a period.
+     *
+     * @param from            the first day of the period
+     * @param until           the day after the last day of the period
+     * @param doctors         each doctor's workload, busiest first
+     * @param hospitals       each hospital's workload, busiest first
+     * @param specializations each specialization's workload, busiest first
+     * @param computedAt      when the report was computed
+     */
+    public record WorkloadReport(LocalDate from, LocalDate until, List<DoctorWorkload> doctors, List<GroupWorkload> hospitals,
+                                 List<GroupWorkload> specializations, LocalDateTime computedAt) {
+
+        /**
+         * Provides the number of days in the period.
+         */
+        public long days() {
+            return ChronoUnit.DAYS.between(from, until);
+        }
+    }
+
+    /**
+     * The use of every drug prescribed within a period.
+     *
+     * @param from          the first day of the period
+     * @param until         the day after the last day of the period
+     * @param granularity   the length of the periods prescriptions are counted in
+     * @param periodStarts  the first day of each of those periods, oldest first
+     * @param drugs         the figures of each drug, most prescribed first
+     * @param prescriptions the number of prescriptions read
+     * @param computedAt    when the report was computed
+     */
+    public record DrugUtilisationReport(LocalDate from, LocalDate until, Granularity granularity, List<LocalDate> periodStarts,
+                                        List<DrugUtilisation> drugs, long prescriptions, LocalDateTime computedAt) {
+    }
+
+    /**
+     * The use of one drug within a period.
+     *
+     * @param drugId         the ID of the drug, empty for prescriptions without one
+     * @param name           the name of the drug
+     * @param prescriptions  the number of prescriptions
+     * @param perPeriod      the number of prescriptions in each period of the report
+     * @param dosage         the distribution of the dosages prescribed
+     * @param duration       the distribution of the durations prescribed, in days
+     * @param topPrescribers the doctors prescribing the drug most often, most first
+     */
+    public record DrugUtilisation(String drugId, String name, int prescriptions, int[] perPeriod, Distribution dosage,
+                                  Distribution duration, List<Prescriber> topPrescribers) {
+    }
+
+    /**
+     * Summary statistics of prescribed values. The mean, minimum and maximum are exact; the percentiles are estimates
+     * whose rank is typically within one percent of the true one.
+     *
+     * @param mean   the mean
+     * @param min    the smallest value
+     * @param median the 50th percentile
+     * @param p90    the 90th percentile
+     * @param p99    the 99th percentile
+     * @param max    the largest value
+     */
+    public record Distribution(double mean, int min, int median, int p90, int p99, int max) {
+    }
+
+    /**
+     * A doctor prescribing a drug.
+     *
+     * @param doctorId      the ID of the doctor, empty for prescriptions without one
+     * @param name          the doctor's full name
+     * @param prescriptions the number of prescriptions of the drug they wrote
+     */
+    public record Prescriber(String doctorId, String name, int prescriptions) {
+    }
+}
@@ -0,0 +1,136 @@
+package com.example.hospitalassessment.services;
+
+import com.example.hospitalassessment.database.AsyncTrendDAO;
+import com.example.hospitalassessment.database.ConnectionPool;
+import com.example.hospitalassessment.database.TrendDAO.Granularity;
+import com.example.hospitalassessment.database.TrendDAO.Metric;
+import com.example.hospitalassessment.database.TrendDAO.Rollup;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Turns the rollups kept in the database into chart-ready trends: the most frequent values of a metric,
+ * each with a count for every period of the range and zero where nothing happened, plus the rest combined.
+ * Reading a trend touches only the summary rows of the range, never the visit or prescription tables.
+ */
+public class TrendService {
+    private final AsyncTrendDAO trendDAO; // Reads rollups through pooled connections.
+
+    /**
+     * Creates the service, reading rollups through pooled connections.
+     *
+     * @param connectionPool the pool providing database connections for background loads
+     */
+    public TrendService(ConnectionPool connectionPool) {
+        this.trendDAO = new AsyncTrendDAO(connectionPool);
+    }
+
+    /**
+     * Loads the trend of a metric over the latest periods up to and including the one containing a day.
+     *
+     * @param metric      what to count
+     * @param granularity the length of each period
+     * @param periods     the number of periods to show
+     * @param until       a day in the last period to show
+     * @param top         the number of values shown separately; the others are combined as "Other"
+     * @return a future completing with the trend
+     */
+    public CompletableFuture<Trend> getTrend(Metric metric, Granularity granularity, int periods, LocalDate until, int top) {
+        List<LocalDate> starts = new ArrayList<>(periods);
+        LocalDate start = periodStart(granularity, until);
+        for (int i = 0; i < periods; i++) {
+            starts.add(0, start);
+            start = start.minus(1, unit(granularity));
+        }
+        LocalDate end = starts.get(starts.size() - 1).plus(1, unit(granularity));
+        return trendDAO.getRollups(metric, granularity, starts.get(0), end)
+                .thenApply(rollups -> toTrend(metric, granularity, starts, rollups, top));
+    }
+
+    private static Trend toTrend(Metric metric, Granularity granularity, List<LocalDate> starts, List<Rollup> rollups, int top) {
+        Map<LocalDate, Integer> positions = new HashMap<>();
+        for (int i = 0; i < starts.size(); i++) {
+            positions.put(starts.get(i), i);
+        }
+
+        Map<String, int[]> counts = new HashMap<>(); // Counts per period by dimension
+        Map<String, String> labels = new HashMap<>();
+        Map<String, Long> totals = new HashMap<>();
+        for (Rollup rollup : rollups) {
+            Integer position = positions.get(rollup.periodStart());
+            if (position == null) {
+                continue; // Outside the periods shown
+            }
+            counts.computeIfAbsent(rollup.dimension(), dimension -> new int[starts.size()])[position] += rollup.count();
+            labels.putIfAbsent(rollup.dimension(), rollup.label() != null ? rollup.label() : describeMissing(rollup.dimension()));
+            totals.merge(rollup.dimension(), (long) rollup.count(), Long::sum);
+        }
+
+        List<String> ranked = new ArrayList<>(counts.keySet());
+        ranked.sort(Comparator.comparingLong((String dimension) -> totals.get(dimension)).reversed().thenComparing(labels::get));
+        List<Series> series = new ArrayList<>();
+        int[] other = new int[starts.size()];
+        for (int i = 0; i < ranked.size(); i++) {
+            int[] dimensionCounts = counts.get(ranked.get(i));
+            if (i < top) {
+                series.add(new Series(labels.get(ranked.get(i)), dimensionCounts));
+            } else {
+                for (int period = 0; period < other.length; period++) {
+                    other[period] += dimensionCounts[period];
+                }
+            }
+        }
+        if (ranked.size() > top) {
+            series.add(new Series("Other", other));
+        }
+        return new Trend(metric, granularity, List.copyOf(starts), series);
+    }
+
+    private static String describeMissing(String dimension) {
+        return dimension.isEmpty() ? "(none)" : dimension + " (deleted)";
+    }
+
+    /**
+     * Provides the first day of the period containing a day.
+     */
+    private static LocalDate periodStart(Granularity granularity, LocalDate day) {
+        return switch (granularity) {
+            case DAY -> day;
+            case WEEK -> day.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+            case MONTH -> day.withDayOfMonth(1);
+        };
+    }
+
+    private static ChronoUnit unit(Granularity granularity) {
+        return switch (granularity) {
+            case DAY -> ChronoUnit.DAYS;
+            case WEEK -> ChronoUnit.WEEKS;
+            case MONTH -> ChronoUnit.MONTHS;
+        };
+    }
+
+    /**
+     * Counts of a metric over consecutive periods.
+     *
+     * @param metric       what was counted
+     * @param granularity  the length of each period
+     * @param periodStarts the first day of each period, oldest first
+     * @param series       the counts of the most frequent values, most frequent first, then the others combined
+     */
+    public record Trend(Metric metric, Granularity granularity, List<LocalDate> periodStarts, List<Series> series) {
+    }
+
+    /**
+     * The counts of one value in every period of a trend.
+     *
+     * @param label  the name of the value
+     * @param counts the count in each period, in the order of the trend's periods
+     */
+    public record Series(String label, int[] counts) {
+    }
+}
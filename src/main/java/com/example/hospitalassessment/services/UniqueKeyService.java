@@ -0,0 +1,191 @@
+package com.example.hospitalassessment.services;
+
+import com.example.hospitalassessment.database.*;
+import com.example.hospitalassessment.forms.AsyncFieldValidator;
+
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Checks as-you-type whether IDs and email addresses entered in entry forms are already in use.
+ * Every kind of key is summarised by a Bloom filter loaded once in the background, which answers
+ * "definitely new" for most values without touching the database. Only values the filter may contain
+ * are confirmed with an indexed existence query, sent once typing has paused.
+ * The filters are kept up to date by recording keys as they are saved, here or by other users.
+ */
+public class UniqueKeyService {
+
+    /**
+     * The kinds of keys that must be unique.
+     */
+    public enum KeyType {
+        DOCTOR_ID, DOCTOR_EMAIL, PATIENT_ID, PATIENT_EMAIL, DRUG_ID, INSURANCE_ID, PRESCRIPTION_ID
+    }
+
+    private static final double FALSE_POSITIVE_RATE = 0.01; // Fraction of new values that still need a query.
+    private static final int MIN_CAPACITY = 1024; // Smallest number of keys a filter is sized for.
+    private static final long CONFIRM_DELAY_MILLIS = 300; // Pause in typing before a possible collision is queried.
+    private static final String IN_USE = "is already in use"; // Problem reported for a key that exists.
+
+    private final Map<KeyType, Supplier<CompletableFuture<List<String>>>> loaders = new EnumMap<>(KeyType.class); // Loads every existing key.
+    private final Map<KeyType, Function<String, CompletableFuture<Boolean>>> lookups = new EnumMap<>(KeyType.class); // Checks one key with an indexed query.
+    private final Map<KeyType, RowKeys> rowKeys = new EnumMap<>(KeyType.class); // Other keys of a row, loaded by its ID.
+    private final Map<KeyType, CompletableFuture<BloomFilter>> filters = new ConcurrentHashMap<>(); // Current (possibly loading) filters.
+    private final Map<KeyType, AtomicLong> latestChecks = new EnumMap<>(KeyType.class); // Sequence number of the newest pending query per key type.
+    private final CircuitBreaker circuitBreaker; // Tells an empty key list from one that could not be loaded.
+    private final Executor confirmDelay = CompletableFuture.delayedExecutor(CONFIRM_DELAY_MILLIS, TimeUnit.MILLISECONDS); // Debounces confirming queries.
+
+    /**
+     * Creates the service, loading keys through pooled connections.
+     *
+     * @param connectionPool the pool providing database connections for background loads
+     */
+    public UniqueKeyService(ConnectionPool connectionPool) {
+        AsyncDoctorDAO doctorDAO = new AsyncDoctorDAO(connectionPool);
+        AsyncPatientDAO patientDAO = new AsyncPatientDAO(connectionPool);
+        AsyncDrugDAO drugDAO = new AsyncDrugDAO(connectionPool);
+        AsyncInsuranceDAO insuranceDAO = new AsyncInsuranceDAO(connectionPool);
+        AsyncPrescriptionDAO prescriptionDAO = new AsyncPrescriptionDAO(connectionPool);
+        this.circuitBreaker = connectionPool.getCircuitBreaker();
+
+        register(KeyType.DOCTOR_ID, doctorDAO::getDoctorIds, doctorDAO::doctorExists);
+        register(KeyType.DOCTOR_EMAIL, doctorDAO::getDoctorEmails, doctorDAO::doctorEmailExists);
+        register(KeyType.PATIENT_ID, patientDAO::getPatientIds, patientDAO::patientExists);
+        register(KeyType.PATIENT_EMAIL, patientDAO::getPatientEmails, patientDAO::patientEmailExists);
+        register(KeyType.DRUG_ID, drugDAO::getDrugIds, drugDAO::drugExists);
+        register(KeyType.INSURANCE_ID, insuranceDAO::getInsuranceIds, insuranceDAO::insuranceExists);
+        register(KeyType.PRESCRIPTION_ID, prescriptionDAO::getPrescriptionIds, prescriptionDAO::prescriptionExists);
+
+        rowKeys.put(KeyType.DOCTOR_ID, new RowKeys(KeyType.DOCTOR_EMAIL, doctorDAO::getDoctorEmailsByIds));
+        rowKeys.put(KeyType.PATIENT_ID, new RowKeys(KeyType.PATIENT_EMAIL, patientDAO::getPatientEmailsByIds));
+    }
+
+    /**
+     * Loads the keys of another type held by the rows with the given IDs, e.g. the emails of changed doctors.
+     */
+    private record RowKeys(KeyType type, Function<Collection<String>, CompletableFuture<List<String>>> loader) {
+    }
+
+    private void register(KeyType type, Supplier<CompletableFuture<List<String>>> loader, Function<String, CompletableFuture<Boolean>> lookup) {
+        loaders.put(type, loader);
+        lookups.put(type, lookup);
+        latestChecks.put(type, new AtomicLong());
+    }
+
+    /**
+     * Starts loading the filters of the given key types unless they are already loaded or loading.
+     *
+     * @param types the key types to warm
+     */
+    public void prefetch(KeyType... types) {
+        for (KeyType type : types) {
+            filter(type);
+        }
+    }
+
+    /**
+     * Provides a form validator reporting values that are already used as keys of the given type.
+     * Values the filter has never seen are accepted immediately; others are confirmed with a query after
+     * a short pause, which is abandoned if a newer value is checked in the meantime.
+     *
+     * @param type the kind of key the field holds
+     * @return a validator for the field
+     */
+    public AsyncFieldValidator validator(KeyType type) {
+        return value -> {
+            if (value == null || value.toString().isBlank()) {
+                return CompletableFuture.completedFuture(null);
+            }
+            String key = value.toString().trim();
+
+            CompletableFuture<BloomFilter> filter = filter(type);
+            if (filter.isDone() && !filter.isCompletedExceptionally() && !filter.join().mightContain(normalize(key))) {
+                return CompletableFuture.completedFuture(null); // Definitely not in use
+            }
+
+            long check = latestChecks.get(type).incrementAndGet();
+            return CompletableFuture.supplyAsync(() -> check, confirmDelay).thenCompose(ignored -> {
+                if (latestChecks.get(type).get() != check) {
+                    throw new CancellationException("Superseded by a newer value");
+                }
+                return lookups.get(type).apply(key);
+            }).thenApply(exists -> exists ? IN_USE : null);
+        };
+    }
+
+    /**
+     * Records a key that has just been saved so that the filter keeps answering correctly.
+     * A filter holding more keys than it was sized for is rebuilt in the background.
+     *
+     * @param type the kind of key
+     * @param key  the saved key
+     */
+    public void recordKey(KeyType type, String key) {
+        CompletableFuture<BloomFilter> filter = filters.get(type);
+        if (filter == null || key == null || key.isBlank()) {
+            return;
+        }
+        filter.thenAccept(loaded -> {
+            loaded.put(normalize(key));
+            if (loaded.isSaturated()) {
+                filters.replace(type, filter, load(type));
+            }
+        });
+    }
+
+    /**
+     * Records the keys of rows saved by other users, of which only the IDs are known.
+     * The other keys of those rows, such as their email addresses, are loaded in the background and recorded too,
+     * unless their filter has not been loaded yet and will read them anyway.
+     *
+     * @param idType the kind of ID the rows are keyed by
+     * @param ids    the IDs of the saved rows
+     */
+    public void recordSavedRows(KeyType idType, Collection<String> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        ids.forEach(id -> recordKey(idType, id));
+
+        RowKeys other = rowKeys.get(idType);
+        if (other != null && filters.containsKey(other.type())) {
+            other.loader().apply(List.copyOf(ids)).thenAccept(keys -> keys.forEach(key -> recordKey(other.type(), key)));
+        }
+    }
+
+    private CompletableFuture<BloomFilter> filter(KeyType type) {
+        return filters.compute(type, (key, current) ->
+                current == null || current.isCompletedExceptionally() ? load(key) : current);
+    }
+
+    private CompletableFuture<BloomFilter> load(KeyType type) {
+        return loaders.get(type).get().thenApply(keys -> {
+            if (keys.isEmpty() && !circuitBreaker.isAvailable()) {
+                // Loaded again on the next check rather than treating every key as new
+                throw new IllegalStateException("The database is unavailable");
+            }
+            // Leave room for the filter to grow before its false positive rate degrades
+            BloomFilter filter = new BloomFilter(Math.max(MIN_CAPACITY, keys.size() * 2), FALSE_POSITIVE_RATE);
+            keys.forEach(key -> filter.put(normalize(key)));
+            return filter;
+        });
+    }
+
+    /**
+     * Normalises a key the way the database compares them: ignoring surrounding spaces and case.
+     */
+    private static String normalize(String key) {
+        return key.trim().toLowerCase(Locale.ROOT);
+    }
+}
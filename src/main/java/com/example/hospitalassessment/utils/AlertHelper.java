@@ -1,5 +1,6 @@
 package com.example.hospitalassessment.utils;
 
+import com.example.hospitalassessment.database.OperationResult;
 import javafx.scene.control.Alert;
 import javafx.scene.control.ButtonType;
 
@@ -25,6 +26,16 @@ public class AlertHelper {
         alert.showAndWait();
     }
 
+    /**
+     * Displays the outcome of a DAO operation as an information alert on success or an error alert otherwise.
+     *
+     * @param title  the title of the alert dialog
+     * @param result the result returned by the DAO
+     */
+    public static void showResult(String title, OperationResult result) {
+        showAlert(title, result.getMessage(), result.isSuccess() ? Alert.AlertType.INFORMATION : Alert.AlertType.ERROR);
+    }
+
     /**
      * Displays a confirmation dialog with the given title and message.
      *
@@ -0,0 +1,41 @@
+package com.example.hospitalassessment.utils;
+
+import javafx.application.Platform;
+import javafx.scene.control.Alert;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Utility class for continuing on the JavaFX application thread once background work completes.
+ */
+public class FxFutures {
+
+    /**
+     * Runs an action on the JavaFX application thread once a future completes.
+     * If the future is already complete and the caller is on the application thread, the action runs immediately.
+     * If the future fails, an error alert with the given message is shown instead.
+     *
+     * @param future       the background work to wait for
+     * @param action       the action to run on the application thread
+     * @param errorMessage the message shown if the background work fails
+     */
+    public static void runWhenReady(CompletableFuture<?> future, Runnable action, String errorMessage) {
+        Runnable continuation = () -> {
+            if (future.isCompletedExceptionally()) {
+                future.exceptionally(error -> {
+                    error.printStackTrace();
+                    return null;
+                });
+                AlertHelper.showAlert("Error", errorMessage, Alert.AlertType.ERROR);
+            } else {
+                action.run();
+            }
+        };
+
+        if (future.isDone() && Platform.isFxApplicationThread()) {
+            continuation.run();
+        } else {
+            future.whenComplete((result, error) -> Platform.runLater(continuation));
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.hospitalassessment.utils;
+
+import com.example.hospitalassessment.forms.FieldDescriptor;
+import com.example.hospitalassessment.forms.FormSchema;
+import com.example.hospitalassessment.forms.FormValues;
+import javafx.geometry.Insets;
+import javafx.scene.control.*;
+import javafx.scene.layout.GridPane;
+
+import java.util.*;
+
+/**
+ * Combines an edit with changes another user saved to the same record in the meantime.
+ * Each field is compared with the value the form was opened with: a field changed on only one side keeps that change,
+ * and only fields changed differently on both sides are shown to the user to choose between.
+ */
+public class MergeDialog {
+
+    /**
+     * Merges the user's values with the record as it is now saved.
+     * Shows a dialog only if both sides changed the same field.
+     *
+     * @param schema the fields of the form
+     * @param base   the values the form was opened with
+     * @param mine   the values the user saved
+     * @param theirs the values currently saved in the database
+     * @return the merged values, or null if the user cancelled
+     */
+    public static FormValues merge(FormSchema schema, Map<String, ?> base, FormValues mine, Map<String, ?> theirs) {
+        Map<String, Object> merged = new LinkedHashMap<>();
+        List<FieldDescriptor> conflicts = new ArrayList<>();
+        for (FieldDescriptor field : schema.getFields()) {
+            String name = field.getName();
+            Object original = base.get(name);
+            Object own = mine.asMap().get(name);
+            Object other = theirs.get(name);
+
+            if (same(own, other) || same(other, original)) {
+                merged.put(name, own); // Only this user changed it, or both made the same change
+            } else if (same(own, original)) {
+                merged.put(name, other); // Only the other user changed it
+            } else {
+                conflicts.add(field);
+            }
+        }
+
+        if (conflicts.isEmpty()) {
+            return new FormValues(merged);
+        }
+        Map<String, Object> chosen = chooseValues(schema.getName(), conflicts, mine, theirs);
+        if (chosen == null) {
+            return null;
+        }
+        // Keep the schema's field order
+        Map<String, Object> ordered = new LinkedHashMap<>();
+        for (FieldDescriptor field : schema.getFields()) {
+            ordered.put(field.getName(), merged.containsKey(field.getName()) ? merged.get(field.getName()) : chosen.get(field.getName()));
+        }
+        return new FormValues(ordered);
+    }
+
+    /**
+     * Asks the user which value to keep for each field both sides changed.
+     *
+     * @return the chosen values by field name, or null if the user cancelled
+     */
+    private static Map<String, Object> chooseValues(String recordType, List<FieldDescriptor> conflicts, FormValues mine, Map<String, ?> theirs) {
+        GridPane grid = new GridPane();
+        grid.setHgap(12);
+        grid.setVgap(8);
+        grid.setPadding(new Insets(10));
+        grid.addRow(0, new Label("Field"), new Label("Your value"), new Label("Their value"));
+
+        Map<String, RadioButton> keepMine = new HashMap<>();
+        int row = 1;
+        for (FieldDescriptor field : conflicts) {
+            ToggleGroup group = new ToggleGroup();
+            RadioButton own = new RadioButton(display(mine.asMap().get(field.getName())));
+            RadioButton other = new RadioButton(display(theirs.get(field.getName())));
+            own.setToggleGroup(group);
+            other.setToggleGroup(group);
+            own.setSelected(true);
+            keepMine.put(field.getName(), own);
+            grid.addRow(row++, new Label(field.getName()), own, other);
+        }
+
+        Dialog<ButtonType> dialog = new Dialog<>();
+        dialog.setTitle("Merge Changes");
+        dialog.setHeaderText("Another user saved this " + recordType.toLowerCase() + " while you were editing it.\n"
+                + "Changes to other fields have been combined. Choose which value to keep for each field below.");
+        dialog.getDialogPane().setContent(grid);
+        dialog.getDialogPane().getButtonTypes().addAll(ButtonType.OK, ButtonType.CANCEL);
+
+        Optional<ButtonType> answer = dialog.showAndWait();
+        if (answer.isEmpty() || answer.get() != ButtonType.OK) {
+            return null;
+        }
+
+        Map<String, Object> chosen = new HashMap<>();
+        for (FieldDescriptor field : conflicts) {
+            chosen.put(field.getName(), keepMine.get(field.getName()).isSelected()
+                    ? mine.asMap().get(field.getName())
+                    : theirs.get(field.getName()));
+        }
+        return chosen;
+    }
+
+    /**
+     * Compares two field values, treating an empty text field the same as a missing value.
+     */
+    private static boolean same(Object a, Object b) {
+        return Objects.equals(blankToNull(a), blankToNull(b));
+    }
+
+    private static Object blankToNull(Object value) {
+        return value instanceof String text && text.isBlank() ? null : value;
+    }
+
+    private static String display(Object value) {
+        return blankToNull(value) == null ? "(empty)" : value.toString();
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.hospitalassessment.utils;
+
+import com.example.hospitalassessment.database.ReferenceCache;
+import com.example.hospitalassessment.models.BaseEntity;
+import com.example.hospitalassessment.models.EntityRef;
+import javafx.application.Platform;
+import javafx.beans.property.SimpleStringProperty;
+import javafx.beans.value.ObservableValue;
+
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Resolves entity references shown in table cells in batches.
+ * Cells rendered during one layout pass register the references they need; on the next pulse the batcher
+ * loads them with one query per referenced table and fills in the cell text.
+ * Only references in rows that are actually rendered are loaded.
+ */
+public class ReferenceBatcher {
+    private static final String PENDING_TEXT = "Loading..."; // Cell text shown until a reference is resolved.
+
+    private final Map<ReferenceCache<?>, Set<String>> pendingIds = new LinkedHashMap<>(); // IDs to load per cache on the next flush.
+    private final List<Runnable> pendingUpdates = new ArrayList<>(); // Cell updates to apply once the IDs are loaded.
+    private boolean flushScheduled; // Whether a flush is already queued on the application thread.
+
+    /**
+     * Provides the cell text for a referenced entity.
+     * If the reference is resolved the text is returned immediately; otherwise a placeholder is returned
+     * and updated once the batch containing the reference has been loaded.
+     *
+     * @param ref   the reference to display
+     * @param cache the cache the reference resolves through
+     * @param label converts the entity, or null if it no longer exists, to the cell text
+     * @param <T>   the type of the referenced entity
+     * @return an observable value holding the cell text
+     */
+    public <T extends BaseEntity> ObservableValue<String> label(EntityRef<T> ref, ReferenceCache<T> cache, Function<T, String> label) {
+        if (ref.isResolved()) {
+            return new SimpleStringProperty(label.apply(ref.get()));
+        }
+
+        SimpleStringProperty text = new SimpleStringProperty(PENDING_TEXT);
+        pendingIds.computeIfAbsent(cache, key -> new LinkedHashSet<>()).add(ref.getId());
+        pendingUpdates.add(() -> text.set(label.apply(ref.get())));
+
+        if (!flushScheduled) {
+            flushScheduled = true;
+            Platform.runLater(this::flush);
+        }
+        return text;
+    }
+
+    /**
+     * Loads every reference requested since the last flush and updates the waiting cells.
+     */
+    private void flush() {
+        flushScheduled = false;
+
+        Map<ReferenceCache<?>, Set<String>> ids = new LinkedHashMap<>(pendingIds);
+        List<Runnable> updates = new ArrayList<>(pendingUpdates);
+        pendingIds.clear();
+        pendingUpdates.clear();
+
+        ids.forEach(ReferenceCache::loadAll);
+        updates.forEach(Runnable::run);
+    }
+}
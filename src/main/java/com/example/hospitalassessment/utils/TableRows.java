@@ -0,0 +1,81 @@
+package com.example.hospitalassessment.utils;
+
+import javafx.collections.ObservableList;
+
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Utility class for refreshing table data in place.
+ * Applying only the differences keeps the table's selection, scroll position, filter and sort order intact,
+ * which replacing the whole list would reset.
+ */
+public class TableRows {
+
+    /**
+     * Updates the rows of a table to match freshly loaded data.
+     * Rows whose key no longer exists are removed, rows whose content changed are replaced,
+     * new rows are appended, and unchanged rows are kept as the same objects.
+     *
+     * @param rows    the list backing the table
+     * @param fresh   the newly loaded rows
+     * @param key     extracts the identity of a row
+     * @param content extracts the values that are compared to detect a changed row
+     * @param <T>     the row type
+     */
+    public static <T> void merge(ObservableList<T> rows, List<T> fresh, Function<T, ?> key, Function<T, List<?>> content) {
+        Map<Object, T> freshByKey = new LinkedHashMap<>();
+        for (T row : fresh) {
+            freshByKey.put(key.apply(row), row);
+        }
+
+        // Walk backwards so removals do not shift the rows still to be visited.
+        for (int i = rows.size() - 1; i >= 0; i--) {
+            T current = rows.get(i);
+            T updated = freshByKey.remove(key.apply(current));
+            if (updated == null) {
+                rows.remove(i);
+            } else if (!content.apply(current).equals(content.apply(updated))) {
+                rows.set(i, updated);
+            }
+        }
+
+        if (!freshByKey.isEmpty()) {
+            rows.addAll(freshByKey.values());
+        }
+    }
+
+    /**
+     * Applies changes to some rows of a table without reloading the others.
+     * Rows with a deleted key are removed, rows whose content changed are replaced, and new rows are appended.
+     *
+     * @param rows        the list backing the table
+     * @param fresh       the newly loaded versions of the inserted and updated rows
+     * @param deletedKeys the keys of the deleted rows
+     * @param key         extracts the identity of a row, comparable with the deleted keys
+     * @param content     extracts the values that are compared to detect a changed row
+     * @param <T>         the row type
+     */
+    public static <T> void apply(ObservableList<T> rows, List<T> fresh, Collection<?> deletedKeys, Function<T, ?> key, Function<T, List<?>> content) {
+        Map<Object, T> freshByKey = new LinkedHashMap<>();
+        for (T row : fresh) {
+            freshByKey.put(key.apply(row), row);
+        }
+        Set<?> deleted = new HashSet<>(deletedKeys);
+
+        for (int i = rows.size() - 1; i >= 0; i--) {
+            T current = rows.get(i);
+            Object currentKey = key.apply(current);
+            T updated = freshByKey.remove(currentKey);
+            if (deleted.contains(currentKey)) {
+                rows.remove(i);
+            } else if (updated != null && !content.apply(current).equals(content.apply(updated))) {
+                rows.set(i, updated);
+            }
+        }
+
+        if (!freshByKey.isEmpty()) {
+            rows.addAll(freshByKey.values());
+        }
+    }
+}
@@ -3,10 +3,19 @@ module com.example.hospitalassessment {
     requires javafx.fxml;
     requires java.sql;
     requires java.dotenv;
+    requires jdk.httpserver;
 
     exports com.example.hospitalassessment;
     opens com.example.hospitalassessment to javafx.fxml;
     opens com.example.hospitalassessment.models to javafx.base;
     exports com.example.hospitalassessment.controllers;
     opens com.example.hospitalassessment.controllers to javafx.fxml;
+    exports com.example.hospitalassessment.forms;
+
+    // Data layer packages: these must not import JavaFX so they can run headless from the class path.
+    exports com.example.hospitalassessment.database;
+    exports com.example.hospitalassessment.models;
+    exports com.example.hospitalassessment.services;
+    exports com.example.hospitalassessment.server;
+    exports com.example.hospitalassessment.batch;
 }
\ No newline at end of file
@@ -0,0 +1,95 @@
+package com.example.hospitalassessment.services;
+
+import com.example.hospitalassessment.services.CohortIndex.Dimension;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks how CohortQuery parses precedence, grouping and quoting, and which queries it rejects.
+ */
+class CohortQueryTest {
+    private static final CompressedBitmap INSURER_A = CompressedBitmap.of(0, 1, 2, 3);
+    private static final CompressedBitmap DRUG_B = CompressedBitmap.of(0, 1, 4, 5);
+    private static final CompressedBitmap DOCTOR_C = CompressedBitmap.of(0, 2, 4, 6);
+
+    private final List<String> lookups = new ArrayList<>(); // Values looked up, as "dimension=value".
+
+    /**
+     * An index of eight patients answering from fixed bitmaps. Its loaders are never used, so it needs no connection pool.
+     */
+    private final CohortIndex index = new CohortIndex(null) {
+        @Override
+        public CompressedBitmap allPatients() {
+            return CompressedBitmap.of(0, 1, 2, 3, 4, 5, 6, 7);
+        }
+
+        @Override
+        public CompressedBitmap patients(Dimension dimension, String value) {
+            lookups.add(dimension + "=" + value);
+            Map<String, CompressedBitmap> bitmaps = Map.of("INSURER=A", INSURER_A, "DRUG=B", DRUG_B, "DOCTOR=C", DOCTOR_C);
+            return bitmaps.getOrDefault(dimension + "=" + value, CompressedBitmap.EMPTY);
+        }
+    };
+
+    @Test
+    void andBindsTighterThanOr() {
+        assertEquals(List.of(0, 1, 2, 3, 4), evaluate("insurer:A OR drug:B AND doctor:C"));
+        assertEquals(List.of(0, 1, 2, 3, 4), evaluate("drug:B AND doctor:C OR insurer:A"));
+    }
+
+    @Test
+    void notBindsTighterThanAnd() {
+        assertEquals(List.of(4, 5), evaluate("NOT insurer:A AND drug:B"));
+        assertEquals(List.of(4, 5, 6, 7), evaluate("NOT insurer:A OR NOT insurer:A AND drug:B"));
+        assertEquals(List.of(0, 1, 2, 3), evaluate("NOT NOT insurer:A"));
+    }
+
+    @Test
+    void parenthesesOverridePrecedence() {
+        assertEquals(List.of(0, 2, 4), evaluate("(insurer:A OR drug:B) AND doctor:C"));
+        assertEquals(List.of(2, 3, 4, 5, 6, 7), evaluate("NOT (insurer:A AND drug:B)"));
+        assertEquals(List.of(0, 2, 4), evaluate("((insurer:A) OR (drug:B)) AND (doctor:C)"));
+    }
+
+    @Test
+    void keywordsAndDimensionsIgnoreCase() {
+        assertEquals(List.of(0, 1, 2, 3, 4, 5), evaluate("Insurer:A or DRUG:B"));
+        assertEquals(List.of(6, 7), evaluate("not insurer:A and not drug:B"));
+    }
+
+    @Test
+    void quotedValuesKeepSpacesAndParentheses() {
+        evaluate("diagnosis:\"type 2 diabetes (adult)\" OR specialization:cardiology");
+
+        assertEquals(List.of("DIAGNOSIS=type 2 diabetes (adult)", "SPECIALIZATION=cardiology"), lookups);
+    }
+
+    @Test
+    void rejectsMalformedQueries() {
+        assertRejected("", "The query ends too early.");
+        assertRejected("insurer:A AND", "The query ends too early.");
+        assertRejected("NOT", "The query ends too early.");
+        assertRejected("(insurer:A OR drug:B", "A parenthesis is not closed.");
+        assertRejected("insurer:A)", "Unexpected ')'.");
+        assertRejected("insurer:A drug:B", "Unexpected 'drug:B'.");
+        assertRejected("insurer", "Expected dimension:value but found 'insurer'.");
+        assertRejected("ward:3", "Unknown dimension 'ward'.");
+        assertRejected("diagnosis:\"flu", "A quoted value is not closed.");
+    }
+
+    private List<Integer> evaluate(String query) {
+        List<Integer> patients = new ArrayList<>();
+        CohortQuery.parse(query).evaluate(index).forEach(patients::add);
+        return patients;
+    }
+
+    private static void assertRejected(String query, String message) {
+        IllegalArgumentException error = assertThrows(IllegalArgumentException.class, () -> CohortQuery.parse(query));
+        assertEquals(message, error.getMessage());
+    }
+}
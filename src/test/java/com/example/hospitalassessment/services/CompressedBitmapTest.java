@@ -0,0 +1,183 @@
+package com.example.hospitalassessment.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.BitSet;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks CompressedBitmap against java.util.BitSet, in particular where chunks switch between their array and bitset
+ * forms at 4096 values.
+ */
+class CompressedBitmapTest {
+    private static final int ARRAY_LIMIT = 4096; // Most values a chunk keeps as an array.
+
+    @Test
+    void ofIgnoresOrderAndRepeats() {
+        CompressedBitmap bitmap = CompressedBitmap.of(70_000, 3, 3, 1 << 20, 0, 70_000);
+
+        assertEquals(bitSetOf(0, 3, 70_000, 1 << 20), toBitSet(bitmap));
+        assertEquals(4, bitmap.cardinality());
+        assertTrue(CompressedBitmap.of().isEmpty());
+    }
+
+    @Test
+    void switchesBetweenArrayAndBitsetAtTheLimit() {
+        int[] values = new int[ARRAY_LIMIT];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = i * 2;
+        }
+        CompressedBitmap atLimit = CompressedBitmap.of(values);
+        BitSet expected = bitSetOf(values);
+        assertEquals(expected, toBitSet(atLimit));
+
+        CompressedBitmap overLimit = atLimit.with(1);
+        expected.set(1);
+        assertEquals(expected, toBitSet(overLimit));
+        assertEquals(ARRAY_LIMIT + 1, overLimit.cardinality());
+        assertTrue(overLimit.contains(1));
+        assertTrue(overLimit.contains(2 * (ARRAY_LIMIT - 1)));
+        assertFalse(overLimit.contains(3));
+
+        CompressedBitmap backAtLimit = overLimit.without(0);
+        expected.clear(0);
+        assertEquals(expected, toBitSet(backAtLimit));
+        assertEquals(ARRAY_LIMIT, backAtLimit.cardinality());
+        assertFalse(backAtLimit.contains(0));
+        assertTrue(backAtLimit.contains(1));
+    }
+
+    @Test
+    void withAndWithoutLeaveTheOriginalUnchanged() {
+        CompressedBitmap original = CompressedBitmap.of(1, 2, 65_536);
+
+        assertSame(original, original.with(2));
+        assertSame(original, original.without(3));
+        CompressedBitmap changed = original.with(3).without(65_536);
+
+        assertEquals(bitSetOf(1, 2, 65_536), toBitSet(original));
+        assertEquals(bitSetOf(1, 2, 3), toBitSet(changed));
+    }
+
+    @Test
+    void removingTheLastValueOfAChunkDropsTheChunk() {
+        CompressedBitmap bitmap = CompressedBitmap.of(5, 131_072).without(131_072);
+
+        assertEquals(bitSetOf(5), toBitSet(bitmap));
+        assertTrue(bitmap.without(5).isEmpty());
+    }
+
+    @Test
+    void randomChangesMatchBitSet() {
+        Random random = new Random(42);
+        CompressedBitmap bitmap = CompressedBitmap.EMPTY;
+        BitSet expected = new BitSet();
+
+        // Three chunks, narrow enough that the first fills past the array limit and empties again
+        for (int step = 0; step < 40_000; step++) {
+            int value = (random.nextInt(3) << 16) | random.nextInt(step < 20_000 ? 8192 : 256);
+            if (step < 20_000 ? random.nextInt(10) < 8 : random.nextInt(10) < 9) {
+                bitmap = bitmap.with(value);
+                expected.set(value);
+            } else {
+                bitmap = bitmap.without(value);
+                expected.clear(value);
+            }
+            if (step % 1000 == 0) {
+                assertEquals(expected, toBitSet(bitmap), "after step " + step);
+            }
+        }
+        assertEquals(expected, toBitSet(bitmap));
+        assertEquals(expected.cardinality(), bitmap.cardinality());
+    }
+
+    @Test
+    void setOperationsMatchBitSetAcrossChunkKinds() {
+        Random random = new Random(7);
+        // Chunk 0 sparse on both sides, 1 sparse and dense, 2 dense and sparse, 3 dense on both sides, 4 and 5 on one side only
+        CompressedBitmap left = randomChunk(random, 0, 100).or(randomChunk(random, 1, 300)).or(randomChunk(random, 2, 20_000))
+                .or(randomChunk(random, 3, 30_000)).or(randomChunk(random, 4, 50));
+        CompressedBitmap right = randomChunk(random, 0, 100).or(randomChunk(random, 1, 20_000)).or(randomChunk(random, 2, 300))
+                .or(randomChunk(random, 3, 30_000)).or(randomChunk(random, 5, 5_000));
+        BitSet leftBits = toBitSet(left);
+        BitSet rightBits = toBitSet(right);
+
+        BitSet and = (BitSet) leftBits.clone();
+        and.and(rightBits);
+        assertEquals(and, toBitSet(left.and(right)));
+        assertEquals(and, toBitSet(right.and(left)));
+
+        BitSet or = (BitSet) leftBits.clone();
+        or.or(rightBits);
+        assertEquals(or, toBitSet(left.or(right)));
+        assertEquals(or, toBitSet(right.or(left)));
+
+        BitSet leftNotRight = (BitSet) leftBits.clone();
+        leftNotRight.andNot(rightBits);
+        assertEquals(leftNotRight, toBitSet(left.andNot(right)));
+
+        BitSet rightNotLeft = (BitSet) rightBits.clone();
+        rightNotLeft.andNot(leftBits);
+        assertEquals(rightNotLeft, toBitSet(right.andNot(left)));
+    }
+
+    @Test
+    void andNotShrinksABitsetChunkBelowTheLimitAndDropsEmptiedChunks() {
+        int[] dense = new int[ARRAY_LIMIT + 10];
+        for (int i = 0; i < dense.length; i++) {
+            dense[i] = i;
+        }
+        int[] removed = new int[20];
+        for (int i = 0; i < removed.length; i++) {
+            removed[i] = i * 3;
+        }
+        CompressedBitmap bitmap = CompressedBitmap.of(dense);
+
+        BitSet expected = bitSetOf(dense);
+        for (int value : removed) {
+            expected.clear(value);
+        }
+        CompressedBitmap shrunk = bitmap.andNot(CompressedBitmap.of(removed));
+        assertEquals(expected, toBitSet(shrunk));
+        assertEquals(ARRAY_LIMIT - 10, shrunk.cardinality());
+        assertEquals(expected, toBitSet(shrunk.with(dense[0]).without(dense[0])));
+
+        assertTrue(bitmap.andNot(bitmap).isEmpty());
+        assertTrue(CompressedBitmap.of(1, 2).andNot(bitmap).isEmpty());
+        assertTrue(bitmap.and(CompressedBitmap.of(1 << 16)).isEmpty());
+    }
+
+    private static CompressedBitmap randomChunk(Random random, int chunk, int size) {
+        int[] values = new int[size];
+        for (int i = 0; i < size; i++) {
+            values[i] = (chunk << 16) | random.nextInt(1 << 16);
+        }
+        return CompressedBitmap.of(values);
+    }
+
+    private static BitSet bitSetOf(int... values) {
+        BitSet bits = new BitSet();
+        for (int value : values) {
+            bits.set(value);
+        }
+        return bits;
+    }
+
+    /**
+     * Copies a bitmap into a BitSet, checking that forEach visits the values in ascending order.
+     */
+    private static BitSet toBitSet(CompressedBitmap bitmap) {
+        BitSet bits = new BitSet();
+        int[] previous = {-1};
+        bitmap.forEach(value -> {
+            assertTrue(value > previous[0], "values out of order");
+            previous[0] = value;
+            bits.set(value);
+        });
+        assertEquals(bits.cardinality(), bitmap.cardinality());
+        assertEquals(bits.isEmpty(), bitmap.isEmpty());
+        return bits;
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.hospitalassessment.services;
+
+import com.example.hospitalassessment.database.DrugInteractionDAO.Interaction;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks the lookups of InteractionMatrix, including drug sets spanning more than one 64-bit word.
+ */
+class InteractionMatrixTest {
+
+    @Test
+    void interactionsApplyInEitherOrder() {
+        InteractionMatrix matrix = InteractionMatrix.of(List.of(
+                new Interaction("warfarin", "aspirin", "Bleeding"),
+                new Interaction("aspirin", "warfarin", "Bleeding"),
+                new Interaction("simvastatin", "clarithromycin", null)));
+
+        assertEquals(4, matrix.size());
+        assertTrue(matrix.interacts("warfarin", "aspirin"));
+        assertTrue(matrix.interacts("aspirin", "warfarin"));
+        assertTrue(matrix.interacts("clarithromycin", "simvastatin"));
+        assertFalse(matrix.interacts("warfarin", "simvastatin"));
+        assertFalse(matrix.interacts("aspirin", "aspirin"));
+    }
+
+    @Test
+    void drugsWithoutInteractionsAreNotNumbered() {
+        InteractionMatrix matrix = InteractionMatrix.of(List.of(new Interaction("a", "b", null)));
+
+        assertEquals(-1, matrix.indexOf("paracetamol"));
+        assertEquals(-1, matrix.indexOf(null));
+        assertFalse(matrix.interacts("a", "paracetamol"));
+        assertFalse(matrix.interacts(null, "b"));
+        assertEquals(0, InteractionMatrix.EMPTY.size());
+        assertFalse(InteractionMatrix.EMPTY.interacts("a", "b"));
+    }
+
+    @Test
+    void descriptionsDoNotDependOnTheOrderOfTheDrugs() {
+        InteractionMatrix matrix = InteractionMatrix.of(List.of(
+                new Interaction("warfarin", "aspirin", "Bleeding"),
+                new Interaction("simvastatin", "clarithromycin", null)));
+        int warfarin = matrix.indexOf("warfarin");
+        int aspirin = matrix.indexOf("aspirin");
+
+        assertEquals("Bleeding", matrix.description(warfarin, aspirin));
+        assertEquals("Bleeding", matrix.description(aspirin, warfarin));
+        assertNull(matrix.description(matrix.indexOf("simvastatin"), matrix.indexOf("clarithromycin")));
+        assertNull(matrix.description(warfarin, matrix.indexOf("simvastatin")));
+    }
+
+    @Test
+    void drugSetsSpanSeveralWords() {
+        // A chain of 150 drugs, each interacting only with the next, so rows and sets take three words
+        List<Interaction> interactions = new ArrayList<>();
+        for (int i = 0; i < 149; i++) {
+            interactions.add(new Interaction("D" + i, "D" + (i + 1), null));
+        }
+        InteractionMatrix matrix = InteractionMatrix.of(interactions);
+        assertEquals(150, matrix.size());
+
+        long[] drugSet = matrix.newDrugSet();
+        assertEquals(3, drugSet.length);
+        for (String drugId : List.of("D10", "D70", "D140")) {
+            int drug = matrix.indexOf(drugId);
+            drugSet[drug >>> 6] |= 1L << drug;
+        }
+
+        assertTrue(matrix.interactsWithAny(matrix.indexOf("D139"), drugSet));
+        assertTrue(matrix.interactsWithAny(matrix.indexOf("D71"), drugSet));
+        assertTrue(matrix.interactsWithAny(matrix.indexOf("D9"), drugSet));
+        assertFalse(matrix.interactsWithAny(matrix.indexOf("D100"), drugSet));
+        assertFalse(matrix.interactsWithAny(matrix.indexOf("D0"), drugSet));
+        assertFalse(matrix.interactsWithAny(matrix.indexOf("D0"), matrix.newDrugSet()));
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.hospitalassessment.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks QuantileSketch against the exact ranks of known distributions.
+ */
+class QuantileSketchTest {
+
+    @Test
+    void isExactWhileTheLowestLevelHasRoom() {
+        QuantileSketch sketch = new QuantileSketch();
+        for (int value : shuffled(100, new Random(1))) {
+            sketch.add(value + 1);
+        }
+
+        assertEquals(50, sketch.quantile(0.5));
+        assertEquals(90, sketch.quantile(0.9));
+        assertEquals(1, sketch.quantile(0.001));
+        assertEquals(1, sketch.quantile(0));
+        assertEquals(100, sketch.quantile(1));
+    }
+
+    @Test
+    void rankErrorStaysWithinTheBoundOnAUniformStream() {
+        int n = 1_000_000;
+        int k = 200;
+        QuantileSketch sketch = new QuantileSketch(k, 3);
+        for (int value : shuffled(n, new Random(2))) {
+            sketch.add(value);
+        }
+
+        // The values are 0 to n - 1, so the rank of a value is the value itself
+        double bound = 2 * 1.7 / k;
+        for (int percent = 1; percent < 100; percent++) {
+            double fraction = percent / 100.0;
+            int estimate = sketch.quantile(fraction);
+            double rankError = Math.abs((estimate + 1) / (double) n - fraction);
+            assertTrue(rankError <= bound, "quantile " + fraction + " estimated as " + estimate + ", rank error " + rankError);
+        }
+    }
+
+    @Test
+    void rankErrorStaysWithinTheBoundOnASkewedStream() {
+        // Each value v is added v + 1 times, in increasing order, so later values dominate and arrive already sorted
+        int distinct = 2_000;
+        QuantileSketch sketch = new QuantileSketch(200, 4);
+        long[] ranks = new long[distinct];
+        long total = 0;
+        for (int value = 0; value < distinct; value++) {
+            for (int i = 0; i <= value; i++) {
+                sketch.add(value);
+            }
+            total += value + 1;
+            ranks[value] = total;
+        }
+
+        double bound = 2 * 1.7 / 200;
+        for (int percent = 1; percent < 100; percent++) {
+            double fraction = percent / 100.0;
+            int estimate = sketch.quantile(fraction);
+            long below = estimate == 0 ? 0 : ranks[estimate - 1];
+            // A quantile falling inside a run of equal values is exact anywhere in the run
+            double low = below / (double) total;
+            double high = ranks[estimate] / (double) total;
+            assertTrue(fraction >= low - bound && fraction <= high + bound, "quantile " + fraction + " estimated as " + estimate);
+        }
+    }
+
+    @Test
+    void countMeanMinimumAndMaximumAreExact() {
+        QuantileSketch sketch = new QuantileSketch(8, 5);
+        long sum = 0;
+        Random random = new Random(6);
+        for (int i = 0; i < 50_000; i++) {
+            int value = random.nextInt(2_000_001) - 1_000_000;
+            sketch.add(value);
+            sum += value;
+        }
+        sketch.add(-1_000_001);
+        sketch.add(1_000_001);
+
+        assertEquals(50_002, sketch.count());
+        assertEquals(sum / 50_002.0, sketch.mean(), 1e-9);
+        assertEquals(-1_000_001, sketch.min());
+        assertEquals(1_000_001, sketch.max());
+        assertEquals(-1_000_001, sketch.quantile(0));
+        assertEquals(1_000_001, sketch.quantile(1));
+    }
+
+    @Test
+    void emptySketchAnswersZero() {
+        QuantileSketch sketch = new QuantileSketch();
+
+        assertEquals(0, sketch.count());
+        assertEquals(0, sketch.mean());
+        assertEquals(0, sketch.min());
+        assertEquals(0, sketch.max());
+        assertEquals(0, sketch.quantile(0.5));
+    }
+
+    @Test
+    void rejectsInvalidArguments() {
+        assertThrows(IllegalArgumentException.class, () -> new QuantileSketch(7, 1));
+        QuantileSketch sketch = new QuantileSketch();
+        assertThrows(IllegalArgumentException.class, () -> sketch.quantile(-0.1));
+        assertThrows(IllegalArgumentException.class, () -> sketch.quantile(1.1));
+    }
+
+    private static int[] shuffled(int n, Random random) {
+        int[] values = new int[n];
+        for (int i = 0; i < n; i++) {
+            values[i] = i;
+        }
+        for (int i = n - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = values[i];
+            values[i] = values[j];
+            values[j] = swap;
+        }
+        return values;
+    }
+}